@@ -5,25 +5,50 @@ import android.view.GestureDetector;
 import android.view.MotionEvent;
 import androidx.appcompat.app.AppCompatActivity;
 
+import java.io.File;
+import java.nio.file.Path;
+
 import com.github.matteoCarda.simplerougelike.R;
 import com.github.matteoCarda.simplerougelike.controller.GameController;
-import com.github.matteoCarda.simplerougelike.view.GameView;
+import com.github.matteoCarda.simplerougelike.controller.GameLoop;
+import com.github.matteoCarda.simplerougelike.service.SpawnRules;
+import com.github.matteoCarda.simplerougelike.view.GameDisplay;
 
 /**
  * L'Activity principale dell'applicazione, punto di ingresso del gioco.
  * Questa classe ha due ruoli fondamentali:
- * 1. Ospitare la GameView, che si occupa di tutto il rendering grafico.
+ * 1. Ospitare la view di gioco (GameView, o GameSurfaceView se attivata), che si occupa di tutto il rendering grafico.
  * 2. Catturare l'input dell'utente (in questo caso, gli "swipe") e tradurlo in comandi per il GameController.
+ * I comandi vengono accodati al {@link GameLoop}: il thread della UI non esegue mai la logica di un turno.
  */
 public class MainActivity extends AppCompatActivity {
 
-    private GameController gameController;
-    private GameView gameView;
+    private GameLoop gameLoop;
+    private GameDisplay gameView;
     private GestureDetector gestureDetector;
     private static final int MAP_WIDTH = 50;
     private static final int MAP_HEIGHT = 50;
     private static final int ENEMY_COUNT = 20;
     private static final int ITEM_COUNT = 10;
+    // Un'ondata di 3 nemici ogni 40 turni e una pozione ogni 60, senza superare la popolazione iniziale.
+    private static final SpawnRules SPAWN_RULES = SpawnRules.NONE
+            .withEnemyWaves(40, 3, ENEMY_COUNT)
+            .withItems(60, ITEM_COUNT);
+    // false: GameView classica; true: renderer su SurfaceView con thread dedicato e animazioni.
+    private static final boolean USE_SURFACE_RENDERER = false;
+    // Nome del file di salvataggio nella memoria interna dell'app.
+    private static final String SAVE_FILE_NAME = "savegame.bin";
+    // true: registra livelli e mosse in JOURNAL_FILE_NAME, per rigiocare le partite con JournalReplayer.
+    private static final boolean RECORD_JOURNAL = false;
+    private static final String JOURNAL_FILE_NAME = "journal.bin";
+    // true: scrive gli eventi di gioco (attacchi, danni, raccolte...) in EVENT_FILE_NAME, per il debug.
+    private static final boolean RECORD_EVENTS = false;
+    private static final String EVENT_FILE_NAME = "events.bin";
+    // Report delle metriche dei turni e CSV degli ultimi frame, scritti a ogni onStop mentre l'overlay
+    // di debug è attivo (pressione lunga).
+    private static final String METRICS_FILE_NAME = "turn-metrics.txt";
+    private static final String FRAME_STATS_FILE_NAME = "frames.csv";
+    private boolean debugOverlay;
 
 
     /**
@@ -33,21 +58,62 @@ public class MainActivity extends AppCompatActivity {
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
-        // Imposta il layout dell'activity. Usa 'activity_main.xml' che conterrà la nostra GameView.
-        setContentView(R.layout.activity_main);
+        // La generazione del primo livello parte subito in background, in parallelo alla creazione dell'interfaccia.
+        GameController.getInstance().prefetchLevels(MAP_WIDTH, MAP_HEIGHT, ENEMY_COUNT, ITEM_COUNT);
+
+        // Imposta il layout dell'activity: 'activity_main.xml' contiene la GameView classica,
+        // 'activity_main_surface.xml' la GameSurfaceView. In entrambi la view ha id 'gameView'.
+        setContentView(USE_SURFACE_RENDERER ? R.layout.activity_main_surface : R.layout.activity_main);
 
         // Inizializziamo i componenti principali del gioco.
-        gameController = GameController.getInstance();
+        // Il controller viene usato solo dal thread della logica; la view legge le fotografie pubblicate dal loop.
+        gameLoop = new GameLoop(GameController.getInstance());
         gameView = findViewById(R.id.gameView);
+        gameView.setGameLoop(gameLoop);
 
         // Avviamo una nuova partita con dimensioni e numero di nemici/oggetti predefiniti.
         // In futuro, questi valori potrebbero venire da una schermata di selezione del livello.
-        gameController.startNewGame(MAP_WIDTH, MAP_HEIGHT, ENEMY_COUNT, ITEM_COUNT);
+        // Se c'è una partita salvata (es. dopo che il sistema ha chiuso il processo) la riprendiamo.
+        if (RECORD_JOURNAL) {
+            gameLoop.recordJournal(new File(getFilesDir(), JOURNAL_FILE_NAME).toPath());
+        }
+        if (RECORD_EVENTS) {
+            gameLoop.recordEvents(new File(getFilesDir(), EVENT_FILE_NAME).toPath());
+        }
+        gameLoop.setSpawnRules(SPAWN_RULES);
+        gameLoop.resumeOrStartNewGame(getSaveFile(), MAP_WIDTH, MAP_HEIGHT, ENEMY_COUNT, ITEM_COUNT);
 
         // Impostiamo il sistema di rilevamento dei gesti (swipe) per l'input del giocatore.
         setupGestureDetector();
     }
 
+    /**
+     * Salva la partita quando l'Activity non è più visibile: dopo onStop il processo può essere chiuso in ogni momento.
+     */
+    @Override
+    protected void onStop() {
+        super.onStop();
+        gameLoop.saveGame(getSaveFile());
+        if (debugOverlay) {
+            gameLoop.dumpMetrics(new File(getFilesDir(), METRICS_FILE_NAME).toPath());
+            gameView.exportFrameStats(new File(getFilesDir(), FRAME_STATS_FILE_NAME).toPath());
+        }
+    }
+
+    private Path getSaveFile() {
+        return new File(getFilesDir(), SAVE_FILE_NAME).toPath();
+    }
+
+    /**
+     * Ferma il thread della logica quando l'Activity viene distrutta.
+     */
+    @Override
+    protected void onDestroy() {
+        gameView.setGameLoop(null);
+        gameLoop.shutdown();
+        super.onDestroy();
+    }
+
     /**
      * Metodo chiamato quando l'utente tocca lo schermo.
      * Passiamo l'evento al nostro GestureDetector, che capirà se si tratta di uno swipe.
@@ -66,6 +132,25 @@ public class MainActivity extends AppCompatActivity {
             private static final int SWIPE_THRESHOLD = 100; // Minima distanza in pixel per considerare un movimento come "swipe".
             private static final int SWIPE_VELOCITY_THRESHOLD = 100; // Minima velocità del dito.
 
+            /**
+             * Una pressione lunga accende o spegne l'overlay di debug: metriche dei turni e profilatore dei frame.
+             */
+            @Override
+            public void onLongPress(MotionEvent e) {
+                debugOverlay = !debugOverlay;
+                gameLoop.setMetricsEnabled(debugOverlay);
+                gameView.setFrameProfilerEnabled(debugOverlay);
+            }
+
+            /**
+             * Un doppio tocco avvia il viaggio automatico verso la cella toccata.
+             */
+            @Override
+            public boolean onDoubleTap(MotionEvent e) {
+                gameView.travelToPoint(e.getX(), e.getY());
+                return true;
+            }
+
             @Override
             public boolean onFling(MotionEvent e1, MotionEvent e2, float velocityX, float velocityY) {
                 // Calcoliamo la differenza di posizione tra l'inizio e la fine del gesto.
@@ -77,22 +162,21 @@ public class MainActivity extends AppCompatActivity {
                     // È uno swipe orizzontale.
                     if (Math.abs(diffX) > SWIPE_THRESHOLD && Math.abs(velocityX) > SWIPE_VELOCITY_THRESHOLD) {
                         if (diffX > 0) {
-                            gameController.handlePlayerTurn(GameController.Direction.RIGHT);
+                            gameLoop.enqueue(GameController.Direction.RIGHT);
                         } else {
-                            gameController.handlePlayerTurn(GameController.Direction.LEFT);
+                            gameLoop.enqueue(GameController.Direction.LEFT);
                         }
-                        gameView.invalidate(); // Dopo l'azione, chiediamo alla GameView di ridisegnarsi.
+                        // Nessun invalidate(): la view si ridisegna quando il turno pubblica il nuovo stato.
                         return true;
                     }
                 } else {
                     // È uno swipe verticale.
                     if (Math.abs(diffY) > SWIPE_THRESHOLD && Math.abs(velocityY) > SWIPE_VELOCITY_THRESHOLD) {
                         if (diffY > 0) {
-                            gameController.handlePlayerTurn(GameController.Direction.DOWN);
+                            gameLoop.enqueue(GameController.Direction.DOWN);
                         } else {
-                            gameController.handlePlayerTurn(GameController.Direction.UP);
+                            gameLoop.enqueue(GameController.Direction.UP);
                         }
-                        gameView.invalidate(); // Ridisegniamo la scena.
                         return true;
                     }
                 }
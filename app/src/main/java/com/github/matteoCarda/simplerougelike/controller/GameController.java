@@ -8,18 +8,34 @@ import com.github.matteoCarda.simplerougelike.model.entity.Player;
 import com.github.matteoCarda.simplerougelike.service.CharacterService;
 import com.github.matteoCarda.simplerougelike.service.CombatService;
 import com.github.matteoCarda.simplerougelike.service.EnemyAIService;
+import com.github.matteoCarda.simplerougelike.service.EnemyTurnEngine;
+import com.github.matteoCarda.simplerougelike.service.FieldOfView;
+import com.github.matteoCarda.simplerougelike.service.GameEventBus;
+import com.github.matteoCarda.simplerougelike.service.HierarchicalPathfinder;
+import com.github.matteoCarda.simplerougelike.service.LevelPrefetchService;
 import com.github.matteoCarda.simplerougelike.service.ItemService;
+import com.github.matteoCarda.simplerougelike.service.LightingEngine;
+import com.github.matteoCarda.simplerougelike.service.Perception;
+import com.github.matteoCarda.simplerougelike.service.SpawnRules;
+import com.github.matteoCarda.simplerougelike.service.SpawnService;
 import com.github.matteoCarda.simplerougelike.util.MapGenerator;
+import com.github.matteoCarda.simplerougelike.util.SaveGameFormat;
+import com.github.matteoCarda.simplerougelike.util.TurnMetrics;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.List;
 
 import squidpony.squidai.DijkstraMap;
-import squidpony.squidgrid.FOV;
 
 /**
  * Gestore centrale dello stato e della logica di gioco (Singleton).
  * Fa da ponte tra l'input dell'utente, i servizi di logica e lo stato del modello.
+ * Non è thread-safe: nell'app viene usato solo dal thread della logica di {@link GameLoop},
+ * mentre la view legge le {@link RenderSnapshot} che questo pubblica.
  */
 public class GameController {
     private static GameController instance;
@@ -28,19 +44,35 @@ public class GameController {
     private GameMap gameMap;
     private Player player;
     private GameState gameState;
+    private long turnCount;
+    private long levelSeed; // Seme dei turni del livello corrente, salvato insieme alla partita.
 
     // Servizi delegati alla logica di business
-    private final MapGenerator mapGenerator;
     private final CombatService combatService;
     private final CharacterService characterService;
     private final ItemService itemService;
     private final EnemyAIService enemyAIService;
+    private final EnemyTurnEngine enemyTurnEngine;
+    private final LevelPrefetchService levelPrefetchService;
+    private final SpawnService spawnService; // Comparse durante il livello, con pool di nemici e oggetti.
+    private final GameEventBus eventBus; // Eventi di gioco per log a schermo, file e test.
+    private final TurnMetrics metrics = new TurnMetrics(); // Tempi delle fasi dei turni, spenti di default.
+    private TurnJournal journal; // Registro dei turni, se attivo.
+
+    /** Numero di livelli preparati in anticipo per le nuove partite. */
+    public static final int PREFETCHED_LEVELS = 2;
 
     // Gestione del Field of View (FOV)
-    private static final int PLAYER_VISION_RADIUS = 8;
-    private FOV fov;
-    private double[][] playerFov; // Mappa di visibilità per il rendering
-    private double[][] resistanceMap; // Mappa statica della "resistenza" alla luce (1.0 = muro)
+    public static final int PLAYER_VISION_RADIUS = 8;
+    private FieldOfView fieldOfView; // Luce a un byte per cella, solo nella finestra del raggio visivo
+    private LightingEngine lighting; // Torce e oggetti luminosi, per l'ombreggiatura del rendering
+    // Copia a matrice piena per il vecchio accessor getPlayerFov(), allocata solo se qualcuno la chiede.
+    private double[][] legacyPlayerFov;
+    private int legacyFovOriginX;
+    private int legacyFovOriginY;
+    private boolean legacyFovFilled;
+    // Percorsi lunghi del giocatore (viaggio automatico): grafo dei portali del livello, costruito al primo uso.
+    private HierarchicalPathfinder pathfinder;
 
     public enum GameState { PLAYING, GAME_OVER, VICTORY }
     public enum Direction { UP, DOWN, LEFT, RIGHT }
@@ -56,84 +88,350 @@ public class GameController {
     }
 
     /**
-     * Costruttore privato (Singleton). Inizializza tutti i servizi.
+     * Costruttore (Singleton). Inizializza tutti i servizi.
+     * Visibile nel package solo per {@link JournalReplayer}, che rigioca le partite su istanze separate.
      */
-    private GameController() {
-        this.mapGenerator = new MapGenerator();
+    GameController() {
         this.characterService = new CharacterService();
-        this.combatService = new CombatService(this.characterService);
-        this.itemService = new ItemService(this.characterService);
+        this.eventBus = new GameEventBus();
+        this.combatService = new CombatService(this.characterService, this.eventBus);
+        this.itemService = new ItemService(this.characterService, this.eventBus);
         this.enemyAIService = new EnemyAIService(this.combatService, this.characterService);
+        this.enemyTurnEngine = new EnemyTurnEngine(this.enemyAIService, this.combatService, this.characterService);
+        this.levelPrefetchService = new LevelPrefetchService(PREFETCHED_LEVELS);
+        this.spawnService = new SpawnService();
         this.gameState = GameState.GAME_OVER; // Il gioco parte in attesa di una nuova partita.
     }
 
     // --- GETTERS PER LA VIEW ---
     public GameMap getGameMap() { return gameMap; }
     public GameState getGameState() { return gameState; }
-    public double[][] getPlayerFov() { return playerFov; }
+    public long getTurnCount() { return turnCount; }
+    public long getGameTime() { return enemyTurnEngine.getTime(); }
+    public FieldOfView getFieldOfView() { return fieldOfView; }
+    public LightingEngine getLighting() { return lighting; }
+    public TurnJournal getJournal() { return journal; }
+    public HierarchicalPathfinder getPathfinder() { return pathfinder; }
+    public SpawnService getSpawnService() { return spawnService; }
     public boolean isAlive(Character character) { return characterService.isAlive(character); }
+    public boolean hasGameInProgress() { return gameMap != null && gameState == GameState.PLAYING; }
+
+    /**
+     * Il bus degli eventi di gioco. Sottoscrivibile da qualsiasi thread; pubblicato solo dal thread della logica.
+     */
+    public GameEventBus getEventBus() { return eventBus; }
+
+    /**
+     * Le metriche dei turni. Si attivano con {@link TurnMetrics#setEnabled} e si leggono da qualsiasi thread.
+     */
+    public TurnMetrics getMetrics() { return metrics; }
+
+    /**
+     * Sceglie tra il motore dei turni a due fasi (parallelo) e il comportamento sequenziale classico.
+     */
+    public void setParallelEnemyTurns(boolean parallel) {
+        enemyTurnEngine.setParallel(parallel);
+        if (journal != null) journal.recordParallel(parallel);
+    }
+
+    /**
+     * Imposta le regole di comparsa di nemici e oggetti, valide da subito e per i livelli successivi
+     * (di default {@link SpawnRules#NONE}). Come la modalità dei turni, le regole finiscono nel registro dei turni.
+     */
+    public void setSpawnRules(SpawnRules rules) {
+        spawnService.setRules(rules);
+        if (gameMap != null) spawnService.reserve(gameMap);
+        if (journal != null) journal.recordSpawnRules(rules);
+    }
+
+    /**
+     * Registra da qui in poi livelli e turni nel registro indicato (null per smettere).
+     * Se c'è una partita in corso, il suo stato viene registrato subito come punto di partenza.
+     * Il registro va usato dallo stesso thread della logica e chiuso da chi lo ha creato.
+     */
+    public void setJournal(TurnJournal journal) {
+        this.journal = journal;
+        if (journal != null && hasGameInProgress()) {
+            journal.recordRestoredLevel(encodeState(), enemyTurnEngine.isParallel());
+            recordSpawnRules();
+        }
+    }
+
+    /**
+     * Avvia in background la preparazione dei livelli con questi parametri, senza aspettarla.
+     * Chiamabile da qualsiasi thread, ad esempio all'avvio dell'app prima di costruire l'interfaccia.
+     */
+    public void prefetchLevels(int width, int height, int enemyCount, int itemCount) {
+        levelPrefetchService.configure(width, height, enemyCount, itemCount);
+    }
 
     /**
-     * Inizializza una nuova partita, generando mappa e stato del FOV.
+     * Inizializza una nuova partita con un livello preparato in anticipo (o generato ora, se nessuno è pronto)
+     * e avvia la preparazione del successivo.
      */
     public void startNewGame(int width, int height, int enemyCount, int itemCount) {
-        this.gameMap = mapGenerator.generateMap(width, height, enemyCount, itemCount);
+        levelPrefetchService.configure(width, height, enemyCount, itemCount);
+        LevelPrefetchService.PreparedLevel level = levelPrefetchService.take();
+        enemyAIService.usePathing(level.getPathing());
+        startLevel(level.getGameMap(), level.getSeed());
+        recordLevel(TurnJournal.TERRAIN_DENSE, level.getSeed(), width, height, enemyCount, itemCount);
+    }
+
+    /**
+     * Inizializza una nuova partita riproducibile: mappa e turni dei nemici dipendono solo dal seme.
+     * Usato da test e benchmark.
+     */
+    public void startNewGame(int width, int height, int enemyCount, int itemCount, long seed) {
+        startLevel(new MapGenerator(seed).generateMap(width, height, enemyCount, itemCount), seed);
+        recordLevel(TurnJournal.TERRAIN_DENSE, seed, width, height, enemyCount, itemCount);
+    }
+
+    /**
+     * Inizializza una partita in un mondo a blocchi generati su richiesta attorno al giocatore:
+     * tempo di avvio e memoria non dipendono dalle dimensioni del mondo.
+     */
+    public void startNewChunkedGame(int width, int height, int enemyCount, int itemCount, long seed) {
+        startLevel(new MapGenerator(seed).generateChunkedMap(width, height, enemyCount, itemCount), seed);
+        recordLevel(TurnJournal.TERRAIN_CHUNKED, seed, width, height, enemyCount, itemCount);
+    }
+
+    /**
+     * Salva la partita in corso. Se la partita è finita il salvataggio viene cancellato:
+     * una sconfitta non si può annullare riprendendo la partita.
+     * @param file Il file del salvataggio.
+     * @throws IOException se la scrittura fallisce.
+     */
+    public void saveGame(Path file) throws IOException {
+        if (gameMap == null || gameState != GameState.PLAYING) {
+            Files.deleteIfExists(file);
+            return;
+        }
+        SaveGameFormat.write(new SaveGameFormat.SaveData(gameMap, levelSeed, turnCount, enemyTurnEngine.getTime()), file);
+    }
+
+    /**
+     * Riprende una partita salvata con {@link #saveGame}.
+     * @param file Il file del salvataggio.
+     * @throws IOException se il file manca, è di un'altra versione o è corrotto; in tal caso lo stato non cambia.
+     */
+    public void loadGame(Path file) throws IOException {
+        resumeGame(SaveGameFormat.read(file));
+    }
+
+    /**
+     * Riprende una partita da un salvataggio già decodificato.
+     * I turni successivi sono identici a quelli che si sarebbero giocati senza interruzione.
+     */
+    public void resumeGame(SaveGameFormat.SaveData data) {
+        startLevel(data.getGameMap(), data.getSeed());
+        this.turnCount = data.getTurnCount();
+        enemyTurnEngine.setSeed(data.getSeed(), data.getTurnCount(), data.getTime());
+        checkEndGameConditions();
+        if (journal != null) {
+            journal.recordRestoredLevel(encodeState(), enemyTurnEngine.isParallel());
+            recordSpawnRules();
+        }
+    }
+
+    private void recordLevel(byte terrainKind, long seed, int width, int height, int enemyCount, int itemCount) {
+        if (journal != null) {
+            journal.recordLevel(terrainKind, seed, width, height, enemyCount, itemCount, enemyTurnEngine.isParallel());
+            recordSpawnRules();
+        }
+    }
+
+    /**
+     * Un livello nuovo nel registro riparte senza comparse: le regole attive vanno registrate subito dopo.
+     */
+    private void recordSpawnRules() {
+        if (spawnService.getRules().isActive()) journal.recordSpawnRules(spawnService.getRules());
+    }
+
+    private ByteBuffer encodeState() {
+        return SaveGameFormat.encode(new SaveGameFormat.SaveData(gameMap, levelSeed, turnCount, enemyTurnEngine.getTime()));
+    }
+
+    /**
+     * Imposta il livello corrente e pre-calcola lo stato del FOV.
+     */
+    private void startLevel(GameMap newMap, long turnSeed) {
+        // Nemici e oggetti rimasti sul livello abbandonato tornano nei pool per le comparse dei prossimi.
+        if (gameMap != null && gameMap != newMap) spawnService.retire(gameMap);
+        this.gameMap = newMap;
         this.player = gameMap.getPlayer();
+        gameMap.focus(player.getX(), player.getY());
         this.gameState = GameState.PLAYING;
+        this.turnCount = 0;
+        this.levelSeed = turnSeed;
+        enemyTurnEngine.setSeed(turnSeed);
 
-        // Pre-calcola la mappa di resistenza per il FOV.
-        this.fov = new FOV();
-        this.playerFov = new double[width][height];
-        this.resistanceMap = new double[width][height];
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                resistanceMap[x][y] = gameMap.getTile(x, y).isWalkable() ? 0.0 : 1.0;
-            }
+        // Il FOV legge i muri direttamente dal terreno: niente mappe di resistenza grandi quanto il livello.
+        this.fieldOfView = new FieldOfView(gameMap, PLAYER_VISION_RADIUS);
+        // I nemici vedono il giocatore se e solo se lui vede loro: la percezione riusa il suo campo visivo.
+        enemyAIService.setPerception(new Perception(gameMap, fieldOfView));
+        this.legacyPlayerFov = null;
+        this.legacyFovFilled = false;
+        this.pathfinder = new HierarchicalPathfinder(gameMap);
+        // Le luci dipendono solo dal seme e dagli oggetti: non servono nei salvataggi né nel registro dei turni.
+        this.lighting = new LightingEngine(gameMap);
+        lighting.placeTorches(turnSeed);
+        lighting.placeRoomLights(turnSeed);
+        for (int i = 0; i < gameMap.getItems().size(); i++) {
+            lighting.addItemLight(gameMap.getItems().get(i));
         }
+        spawnService.reserve(gameMap);
         calculateFov();
     }
 
     /**
-     * Gestisce un intero turno di gioco a partire dall'azione del giocatore.
+     * Gestisce un intero turno di gioco a partire dall'azione del giocatore: dopo l'azione la simulazione
+     * avanza, in ordine di tempo, fino alla prossima azione del giocatore (vedi {@link EnemyTurnEngine}).
      * @param direction L'input di movimento del giocatore.
      */
     public void handlePlayerTurn(Direction direction) {
         if (gameState != GameState.PLAYING) return;
+        if (journal != null) journal.recordTurn(direction);
+        // Un solo controllo per turno: a metriche spente nessuna fase legge l'orologio.
+        TurnMetrics timing = metrics.isEnabled() ? metrics : null;
+        long turnStart = TurnMetrics.start(timing);
 
-        handlePlayerAction(direction);
-        processEnemyTurns();
+        handlePlayerAction(direction, timing);
+        processEnemyTurns(timing);
+        long start = TurnMetrics.start(timing);
         checkEndGameConditions();
+        TurnMetrics.stop(timing, TurnMetrics.Phase.END_CONDITIONS, start);
+        turnCount++;
+        TurnMetrics.stop(timing, TurnMetrics.Phase.TURN, turnStart);
+
+        if (journal != null && turnCount % TurnJournal.KEYFRAME_INTERVAL == 0) {
+            journal.recordKeyframe(turnCount, encodeState());
+        }
+    }
+
+    /**
+     * Cerca il percorso del giocatore verso una cella, per il viaggio automatico.
+     * @return Le celle da attraversare (x * altezza della mappa + y), destinazione compresa,
+     *         o null se non c'è una partita in corso o la cella non è raggiungibile.
+     */
+    public int[] findTravelPath(int goalX, int goalY) {
+        if (!hasGameInProgress()) return null;
+        return pathfinder.findPath(player.getX(), player.getY(), goalX, goalY);
+    }
+
+    /**
+     * Esegue un passo del viaggio automatico: un turno normale verso la cella adiacente indicata,
+     * registrato nel registro dei turni come una mossa qualsiasi.
+     * Il viaggio si interrompe prima del passo se un nemico è nel raggio di aggro.
+     * @return true se il giocatore è arrivato nella cella e il viaggio può continuare.
+     */
+    public boolean travelStep(int x, int y) {
+        if (gameState != GameState.PLAYING || enemyAIService.isAnyEnemyInAggroRange(gameMap, player)) return false;
+        int dx = x - player.getX();
+        int dy = y - player.getY();
+        if (Math.abs(dx) + Math.abs(dy) != 1) return false;
+        Direction direction = (dx > 0) ? Direction.RIGHT : (dx < 0) ? Direction.LEFT : (dy > 0) ? Direction.DOWN : Direction.UP;
+        handlePlayerTurn(direction);
+        // Un oggetto raccolto non ferma il viaggio; un nemico sulla strada sì (il passo diventa un attacco).
+        return gameState == GameState.PLAYING && player.getX() == x && player.getY() == y;
+    }
+
+    /**
+     * Crea una fotografia immutabile dello stato da disegnare.
+     * Copia solo la finestra del FOV attorno al giocatore, quindi il costo dipende dal raggio visivo
+     * e non dalle dimensioni della mappa o dal numero di entità.
+     * @return La fotografia, o null se non c'è una partita.
+     */
+    public RenderSnapshot createRenderSnapshot() {
+        if (gameMap == null) return null;
+        int radius = PLAYER_VISION_RADIUS;
+        int side = radius * 2 + 1;
+        int originX = player.getX() - radius;
+        int originY = player.getY() - radius;
+        byte[] lightWindow = new byte[side * side];
+        int enemyCount = 0;
+        int itemCount = 0;
+        int[] enemyIds = new int[side * side];
+        int[] enemyXs = new int[side * side];
+        int[] enemyYs = new int[side * side];
+        int[] itemXs = new int[side * side];
+        int[] itemYs = new int[side * side];
+
+        for (int dx = 0; dx < side; dx++) {
+            int x = originX + dx;
+            if (x < 0 || x >= gameMap.getWidth()) continue;
+            for (int dy = 0; dy < side; dy++) {
+                int y = originY + dy;
+                if (y < 0 || y >= gameMap.getHeight() || !fieldOfView.isVisible(x, y)) continue;
+                // La luce del giocatore cala con la distanza; torce e oggetti la possono superare.
+                lightWindow[dx * side + dy] = (byte) Math.max(fieldOfView.getLight(x, y), lighting.getLight(x, y));
+
+                Enemy enemy = getEnemyAt(x, y);
+                if (enemy != null) {
+                    enemyIds[enemyCount] = enemy.getId();
+                    enemyXs[enemyCount] = x;
+                    enemyYs[enemyCount] = y;
+                    enemyCount++;
+                }
+                if (gameMap.getItemAt(x, y) != null) {
+                    itemXs[itemCount] = x;
+                    itemYs[itemCount] = y;
+                    itemCount++;
+                }
+            }
+        }
+
+        return new RenderSnapshot(turnCount, gameState, gameMap,
+                player.getX(), player.getY(), player.getHealth(), player.getMaxHealth(),
+                radius, lightWindow,
+                Arrays.copyOf(enemyIds, enemyCount), Arrays.copyOf(enemyXs, enemyCount), Arrays.copyOf(enemyYs, enemyCount),
+                Arrays.copyOf(itemXs, itemCount), Arrays.copyOf(itemYs, itemCount));
     }
 
     /**
      * Esegue l'azione del giocatore e aggiorna il FOV.
      */
-    private void handlePlayerAction(Direction direction) {
+    private void handlePlayerAction(Direction direction, TurnMetrics timing) {
+        long start = TurnMetrics.start(timing);
         movePlayer(direction);
+        start = TurnMetrics.stop(timing, TurnMetrics.Phase.PLAYER_ACTION, start);
         if (characterService.isAlive(player)) {
             calculateFov();
+            TurnMetrics.stop(timing, TurnMetrics.Phase.FOV, start);
         }
     }
 
     /**
-     * Esegue il turno per ogni nemico vivo, usando una mappa Dijkstra per il pathfinding.
+     * Fa agire i nemici vivi scelti dallo scheduler fino alla prossima azione del giocatore,
+     * usando una mappa Dijkstra per il pathfinding, poi applica le regole di comparsa.
      */
-    private void processEnemyTurns() {
-        // Crea una mappa di costo per Dijkstra, dove l'obiettivo è il giocatore.
-        DijkstraMap dijkstraMapToPlayer = enemyAIService.getDijkstraMap(gameMap);
-        dijkstraMapToPlayer.setGoal(player.getX(), player.getY());
-        dijkstraMapToPlayer.scan(null);
+    private void processEnemyTurns(TurnMetrics timing) {
+        // Mappa di Dijkstra verso il giocatore: costruita una volta per livello e riscansionata solo se il giocatore si è mosso.
+        // Se nessun nemico può inseguire (nel raggio di aggro, o che vede il giocatore) la scansione viene saltata del tutto.
+        long start = TurnMetrics.start(timing);
+        DijkstraMap dijkstraMapToPlayer = null;
+        if (enemyAIService.needsDijkstraMap(gameMap, player)) {
+            dijkstraMapToPlayer = enemyAIService.getDijkstraMapTo(gameMap, player.getX(), player.getY());
+            if (timing != null) timing.addCellsScanned(enemyAIService.getLastScanCellCount());
+        }
+        start = TurnMetrics.stop(timing, TurnMetrics.Phase.DIJKSTRA, start);
 
-        // Fa agire ogni nemico e raccoglie i morti per la rimozione.
-        List<Enemy> enemiesToRemove = new ArrayList<>();
-        for (Enemy enemy : new ArrayList<>(gameMap.getEnemies())) { // Itera su una copia per evitare ConcurrentModificationException
-            if (characterService.isAlive(enemy)) {
-                enemyAIService.performTurn(enemy, gameMap, player, dijkstraMapToPlayer);
-            } else {
-                enemiesToRemove.add(enemy);
-            }
+        // Fa agire i nemici del turno (in due fasi o in sequenza, a seconda del motore): quelli lontani meno spesso.
+        enemyTurnEngine.processTurn(gameMap, player, dijkstraMapToPlayer, timing);
+        start = TurnMetrics.stop(timing, TurnMetrics.Phase.ENEMY_PHASE, start);
+
+        // Rimuove i morti con swap-remove direttamente nell'archivio dei nemici e li restituisce al pool,
+        // poi fa comparire le entità previste dalle regole, fuori dal campo visivo.
+        spawnService.removeDeadEnemies(gameMap);
+        // Gli oggetti nuovi finiscono in fondo alla lista: solo loro ricevono una luce.
+        List<Item> items = gameMap.getItems();
+        int itemsBefore = items.size();
+        spawnService.spawn(gameMap, fieldOfView, turnCount, levelSeed);
+        for (int i = itemsBefore; i < items.size(); i++) {
+            lighting.addItemLight(items.get(i));
         }
-        gameMap.getEnemies().removeAll(enemiesToRemove);
+        // Un oggetto comparso appena fuori dal campo visivo può illuminarne il bordo già in questa fotografia.
+        if (items.size() > itemsBefore) updateLighting();
+        TurnMetrics.stop(timing, TurnMetrics.Phase.SPAWN, start);
     }
 
     /**
@@ -151,7 +449,7 @@ public class GameController {
         }
 
         // Controlla se la mossa è valida.
-        if (targetX < 0 || targetX >= gameMap.getWidth() || targetY < 0 || targetY >= gameMap.getHeight() || !gameMap.getTile(targetX, targetY).isWalkable()) {
+        if (!gameMap.isWalkable(targetX, targetY)) {
             return; // Urta un muro o esce dalla mappa.
         }
 
@@ -166,35 +464,29 @@ public class GameController {
         Item targetItem = getItemAt(targetX, targetY);
         if (targetItem != null) {
             itemService.onPickup(targetItem, player);
-            gameMap.getItems().remove(targetItem);
+            lighting.removeItemLight(targetItem);
+            gameMap.removeItem(targetItem);
         }
 
-        // Se la cella è libera, si muove.
+        // Se la cella è libera, si muove; in un mondo a blocchi si caricano le zone verso cui sta andando.
         player.setPosition(targetX, targetY);
+        eventBus.publish(GameEventBus.MOVE, GameEventBus.ACTOR_PLAYER, Player.NO_ID, targetX, targetY, 0);
+        gameMap.focus(targetX, targetY);
     }
 
     /**
-     * Cerca un nemico vivo in una data coordinata.
+     * Cerca un nemico vivo in una data coordinata, tramite l'indice di occupazione della mappa.
      */
     private Enemy getEnemyAt(int x, int y) {
-        for (Enemy enemy : gameMap.getEnemies()) {
-            if (characterService.isAlive(enemy) && enemy.getX() == x && enemy.getY() == y) {
-                return enemy;
-            }
-        }
-        return null;
+        Enemy enemy = gameMap.getEnemyAt(x, y);
+        return characterService.isAlive(enemy) ? enemy : null;
     }
 
     /**
-     * Cerca un oggetto in una data coordinata.
+     * Cerca un oggetto in una data coordinata, tramite l'indice di occupazione della mappa.
      */
     private Item getItemAt(int x, int y) {
-        for (Item item : gameMap.getItems()) {
-            if (item.getX() == x && item.getY() == y) {
-                return item;
-            }
-        }
-        return null;
+        return gameMap.getItemAt(x, y);
     }
 
     /**
@@ -203,15 +495,42 @@ public class GameController {
     private void checkEndGameConditions() {
         if (!characterService.isAlive(player)) {
             gameState = GameState.GAME_OVER;
-            System.out.println("Game Over! Sei stato sconfitto.");
         }
         // TODO: Aggiungere condizione di vittoria (es. nemici sconfitti, oggetto trovato, etc.)
     }
 
     /**
-     * Ricalcola il campo visivo del giocatore.
+     * Ricalcola il campo visivo del giocatore, poi calcola le luci in attesa che raggiungono la sua finestra.
+     * Se il giocatore non si è mosso e nessuna luce è cambiata non viene ricalcolato nulla.
      */
     private void calculateFov() {
-        FOV.reuseFOV(resistanceMap, playerFov, player.getX(), player.getY(), PLAYER_VISION_RADIUS);
+        fieldOfView.update(player.getX(), player.getY());
+        updateLighting();
+    }
+
+    /**
+     * Calcola le luci in attesa che raggiungono la finestra del campo visivo del giocatore.
+     */
+    private void updateLighting() {
+        int radius = PLAYER_VISION_RADIUS;
+        lighting.update(player.getX() - radius, player.getY() - radius, player.getX() + radius, player.getY() + radius);
+    }
+
+    /**
+     * Ritorna il campo visivo come matrice [larghezza][altezza] di luce (0.0 = non visibile), come {@code FOV.reuseFOV}.
+     * La matrice viene allocata alla prima chiamata e aggiornata solo nella finestra del raggio visivo.
+     * @deprecated Usare {@link #getFieldOfView()}, che non richiede 8 byte per cella.
+     */
+    @Deprecated
+    public double[][] getPlayerFov() {
+        if (gameMap == null) return null;
+        if (legacyPlayerFov == null) {
+            legacyPlayerFov = new double[gameMap.getWidth()][gameMap.getHeight()];
+        }
+        fieldOfView.copyTo(legacyPlayerFov, legacyFovOriginX, legacyFovOriginY, legacyFovFilled);
+        legacyFovOriginX = fieldOfView.getOriginX();
+        legacyFovOriginY = fieldOfView.getOriginY();
+        legacyFovFilled = true;
+        return legacyPlayerFov;
     }
 }
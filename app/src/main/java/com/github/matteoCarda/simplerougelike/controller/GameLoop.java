@@ -0,0 +1,339 @@
+package com.github.matteoCarda.simplerougelike.controller;
+
+import com.github.matteoCarda.simplerougelike.service.GameEventBus;
+import com.github.matteoCarda.simplerougelike.service.SpawnRules;
+import com.github.matteoCarda.simplerougelike.util.EventFileSink;
+import com.github.matteoCarda.simplerougelike.util.TurnMetrics;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread dedicato alla logica di gioco.
+ * Il thread della UI si limita ad accodare comandi ({@link #enqueue}) e a disegnare l'ultima
+ * {@link RenderSnapshot} pubblicata; FOV, pathfinding e turni dei nemici girano tutti qui.
+ * I comandi vengono eseguiti uno alla volta, nell'ordine di arrivo: gli input ricevuti durante
+ * un turno lento restano in coda e non vanno persi.
+ */
+public class GameLoop {
+
+    // Attesa massima, in shutdown, dei comandi ancora in coda: la chiama il thread della UI.
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 2000;
+
+    /**
+     * Ascoltatore notificato (sul thread della logica) ogni volta che viene pubblicata una nuova fotografia.
+     * Tipicamente chiede un ridisegno alla view.
+     */
+    public interface SnapshotListener {
+        void onSnapshotPublished(RenderSnapshot snapshot);
+    }
+
+    private final GameController gameController;
+    private final ExecutorService executor;
+    private final CopyOnWriteArrayList<SnapshotListener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicInteger pendingCommands = new AtomicInteger();
+
+    // Ultima fotografia pubblicata: volatile, così la view la legge senza lock.
+    private volatile RenderSnapshot snapshot;
+    // Registro dei turni, usato solo dal thread della logica.
+    private TurnJournal journal;
+    // Scrittura degli eventi su file, usata solo dal thread della logica.
+    private EventFileSink eventSink;
+
+    /**
+     * Costruttore. Avvia il thread della logica.
+     * @param gameController Il controller, che da qui in poi va usato solo attraverso questo loop.
+     */
+    public GameLoop(GameController gameController) {
+        this.gameController = gameController;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "game-logic");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Accoda l'avvio di una nuova partita.
+     */
+    public void startNewGame(int width, int height, int enemyCount, int itemCount) {
+        executor.execute(() -> {
+            gameController.startNewGame(width, height, enemyCount, itemCount);
+            publishSnapshot();
+        });
+    }
+
+    /**
+     * Accoda l'avvio di una nuova partita riproducibile.
+     */
+    public void startNewGame(int width, int height, int enemyCount, int itemCount, long seed) {
+        executor.execute(() -> {
+            gameController.startNewGame(width, height, enemyCount, itemCount, seed);
+            publishSnapshot();
+        });
+    }
+
+    /**
+     * Accoda la ripresa della partita: quella ancora in memoria se c'è, altrimenti quella salvata.
+     * Se il salvataggio manca o non è leggibile viene avviata una nuova partita con i parametri indicati.
+     */
+    public void resumeOrStartNewGame(Path saveFile, int width, int height, int enemyCount, int itemCount) {
+        executor.execute(() -> {
+            // Stesso processo (es. rotazione dello schermo): la partita è ancora in memoria.
+            if (!gameController.hasGameInProgress()) {
+                try {
+                    gameController.loadGame(saveFile);
+                } catch (IOException e) {
+                    gameController.startNewGame(width, height, enemyCount, itemCount);
+                }
+            }
+            publishSnapshot();
+        });
+    }
+
+    /**
+     * Accoda il salvataggio della partita, eseguito dopo i comandi già in coda.
+     * Gli errori di scrittura vengono ignorati: il salvataggio precedente resta intatto.
+     * Anche il registro dei turni e gli eventi, se attivi, vengono scritti su file.
+     */
+    public void saveGame(Path saveFile) {
+        executor.execute(() -> {
+            if (journal != null) journal.flush();
+            if (eventSink != null) eventSink.flush();
+            try {
+                gameController.saveGame(saveFile);
+            } catch (IOException e) {
+                // Il file temporaneo non ha sostituito il salvataggio valido: si riproverà alla prossima occasione.
+            }
+        });
+    }
+
+    /**
+     * Accoda l'attivazione del registro dei turni: da qui in poi livelli e mosse vengono scritti nel file,
+     * che viene sostituito. Gli errori di apertura vengono ignorati: si gioca senza registro.
+     */
+    public void recordJournal(Path journalFile) {
+        executor.execute(() -> {
+            closeJournal();
+            try {
+                journal = TurnJournal.create(journalFile);
+                gameController.setJournal(journal);
+            } catch (IOException e) {
+                journal = null;
+            }
+        });
+    }
+
+    /**
+     * Accoda l'attivazione del file degli eventi: da qui in poi gli eventi di gioco vengono scritti nel file,
+     * che viene sostituito. Gli errori di apertura vengono ignorati: si gioca senza file.
+     */
+    public void recordEvents(Path eventFile) {
+        executor.execute(() -> {
+            closeEventSink();
+            try {
+                eventSink = EventFileSink.open(gameController.getEventBus(), eventFile);
+                // Il file non deve perdere eventi nemmeno nei turni che ne pubblicano più della capacità del bus.
+                gameController.getEventBus().setLogicThreadConsumer(eventSink::drain);
+            } catch (IOException e) {
+                eventSink = null;
+            }
+        });
+    }
+
+    /**
+     * Accoda il cambio delle regole di comparsa di nemici e oggetti (vedi {@link GameController#setSpawnRules}).
+     */
+    public void setSpawnRules(SpawnRules rules) {
+        executor.execute(() -> gameController.setSpawnRules(rules));
+    }
+
+    /**
+     * Accoda l'avvio di una partita in un mondo a blocchi generati su richiesta.
+     */
+    public void startNewChunkedGame(int width, int height, int enemyCount, int itemCount, long seed) {
+        executor.execute(() -> {
+            gameController.startNewChunkedGame(width, height, enemyCount, itemCount, seed);
+            publishSnapshot();
+        });
+    }
+
+    /**
+     * Accoda un comando di movimento del giocatore. Ritorna subito.
+     * @param direction La direzione scelta dal giocatore.
+     */
+    public void enqueue(GameController.Direction direction) {
+        pendingCommands.incrementAndGet();
+        executor.execute(() -> {
+            try {
+                gameController.handlePlayerTurn(direction);
+                publishSnapshot();
+            } finally {
+                pendingCommands.decrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * Accoda un viaggio automatico del giocatore verso una cella: un turno per passo lungo il percorso
+     * del {@link com.github.matteoCarda.simplerougelike.service.HierarchicalPathfinder}, pubblicando una fotografia
+     * dopo ogni passo. Il viaggio si ferma se un nemico si avvicina o se nel frattempo arriva un altro comando.
+     */
+    public void travelTo(int x, int y) {
+        pendingCommands.incrementAndGet();
+        executor.execute(() -> {
+            try {
+                int[] path = gameController.findTravelPath(x, y);
+                if (path == null) return;
+                int height = gameController.getGameMap().getHeight();
+                for (int cell : path) {
+                    boolean moved = gameController.travelStep(cell / height, cell % height);
+                    publishSnapshot();
+                    if (!moved || pendingCommands.get() > 1) break;
+                }
+            } finally {
+                pendingCommands.decrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * Ritorna l'ultima fotografia pubblicata.
+     * @return La fotografia, o null se nessuna partita è ancora stata avviata.
+     */
+    public RenderSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Il bus degli eventi di gioco, sottoscrivibile da qualsiasi thread (es. quello di disegno).
+     */
+    public GameEventBus getEventBus() {
+        return gameController.getEventBus();
+    }
+
+    /**
+     * Le metriche dei turni, leggibili da qualsiasi thread (es. dall'overlay di debug).
+     */
+    public TurnMetrics getMetrics() {
+        return gameController.getMetrics();
+    }
+
+    /**
+     * Accende o spegne le metriche dei turni e ripubblica la fotografia, così la view aggiorna l'overlay.
+     */
+    public void setMetricsEnabled(boolean enabled) {
+        executor.execute(() -> {
+            gameController.getMetrics().setEnabled(enabled);
+            publishSnapshot();
+        });
+    }
+
+    /**
+     * Accoda la scrittura del report delle metriche in un file di testo. Gli errori di scrittura vengono ignorati.
+     */
+    public void dumpMetrics(Path reportFile) {
+        executor.execute(() -> {
+            try {
+                gameController.getMetrics().writeReport(reportFile);
+            } catch (IOException e) {
+                // Il report è solo diagnostico: si riproverà alla prossima occasione.
+            }
+        });
+    }
+
+    /**
+     * Numero di comandi di movimento accodati e non ancora completati.
+     */
+    public int getPendingCommands() {
+        return pendingCommands.get();
+    }
+
+    public void addSnapshotListener(SnapshotListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeSnapshotListener(SnapshotListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Attende che tutti i comandi accodati finora siano stati eseguiti.
+     * @return true se la coda è stata svuotata entro il tempo indicato.
+     */
+    public boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+        Future<?> marker = executor.submit(() -> { });
+        try {
+            marker.get(timeout, unit);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Ferma il thread della logica dopo i comandi ancora in coda (compreso un eventuale salvataggio)
+     * e aspetta che abbia finito. Non accetta altri comandi.
+     * L'attesa serve perché il controller è condiviso e non è thread-safe: un nuovo loop creato subito dopo
+     * (es. dopo una rotazione dello schermo) non deve usarlo mentre questo esegue ancora turni o chiude i file.
+     */
+    public void shutdown() {
+        if (!executor.isShutdown()) {
+            executor.execute(() -> {
+                closeJournal();
+                closeEventSink();
+            });
+        }
+        executor.shutdown();
+        listeners.clear();
+        try {
+            executor.awaitTermination(SHUTDOWN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void closeJournal() {
+        if (journal == null) return;
+        // Il controller potrebbe già usare il registro di un altro loop: si stacca solo il proprio.
+        if (gameController.getJournal() == journal) gameController.setJournal(null);
+        try {
+            journal.close();
+        } catch (IOException e) {
+            // Il registro resta valido fino all'ultimo record scritto per intero.
+        }
+        journal = null;
+    }
+
+    private void closeEventSink() {
+        if (eventSink == null) return;
+        gameController.getEventBus().setLogicThreadConsumer(null);
+        try {
+            eventSink.close();
+        } catch (IOException e) {
+            // Restano nel file gli eventi scritti prima dell'errore.
+        }
+        eventSink = null;
+    }
+
+    private void publishSnapshot() {
+        // Gli eventi del comando appena eseguito passano nel buffer del file; l'I/O avviene a blocchi pieni.
+        if (eventSink != null) eventSink.drain();
+
+        RenderSnapshot published = gameController.createRenderSnapshot();
+        snapshot = published;
+        for (SnapshotListener listener : listeners) {
+            listener.onSnapshotPublished(published);
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.github.matteoCarda.simplerougelike.controller;
+
+import com.github.matteoCarda.simplerougelike.service.SpawnRules;
+import com.github.matteoCarda.simplerougelike.util.SaveGameFormat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rigioca senza interfaccia le partite scritte da un {@link TurnJournal}.
+ * All'apertura il file viene mappato in memoria e scorso una sola volta per indicizzare livelli e fotogrammi chiave;
+ * ogni richiesta costruisce poi un {@link GameController} nuovo e indipendente da quello del gioco.
+ * Per arrivare a un turno si parte dal fotogramma chiave più vicino che lo precede, quindi il costo
+ * è al massimo {@link TurnJournal#KEYFRAME_INTERVAL} turni, qualunque sia la lunghezza della partita.
+ * Un record finale troncato (es. il processo è stato chiuso a metà scrittura) viene ignorato.
+ */
+public class JournalReplayer {
+
+    private static final GameController.Direction[] DIRECTIONS = GameController.Direction.values();
+
+    private final ByteBuffer data;
+    private final List<Level> levels = new ArrayList<>();
+
+    private JournalReplayer(ByteBuffer data) throws IOException {
+        this.data = data;
+        index();
+    }
+
+    /**
+     * Apre un registro mappandolo in memoria.
+     * @throws IOException se il file non è leggibile o non è un registro di una versione supportata.
+     */
+    public static JournalReplayer open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new JournalReplayer(buffer);
+        }
+    }
+
+    /**
+     * Numero di livelli (nuove partite o riprese da un salvataggio) nel registro.
+     */
+    public int getLevelCount() {
+        return levels.size();
+    }
+
+    /**
+     * Numero del turno raggiunto alla fine del livello indicato.
+     */
+    public long getTurnCount(int level) {
+        return level(level).endTurn;
+    }
+
+    /**
+     * Numero del turno da cui parte il livello indicato (diverso da 0 se ripreso da un salvataggio).
+     */
+    public long getStartTurn(int level) {
+        return level(level).startTurn;
+    }
+
+    /**
+     * Rigioca per intero il livello indicato.
+     * @return Un controller nello stato finale del livello.
+     */
+    public GameController replay(int level) throws IOException {
+        Level entry = level(level);
+        GameController controller = start(entry);
+        advance(controller, entry.bodyStart, entry.end, entry.startTurn, entry.endTurn);
+        return controller;
+    }
+
+    /**
+     * Ricostruisce lo stato del livello indicato subito dopo il turno {@code turn},
+     * partendo dal fotogramma chiave più vicino.
+     * @return Un controller con {@code getTurnCount() == turn}.
+     * @throws IllegalArgumentException se il turno non appartiene al livello.
+     */
+    public GameController seek(int level, long turn) throws IOException {
+        Level entry = level(level);
+        if (turn < entry.startTurn || turn > entry.endTurn) {
+            throw new IllegalArgumentException("Turno " + turn + " fuori dal livello: "
+                    + entry.startTurn + ".." + entry.endTurn);
+        }
+        // Ultimo fotogramma chiave non successivo al turno cercato (i fotogrammi sono in ordine di turno).
+        Keyframe keyframe = null;
+        for (int i = entry.keyframes.size() - 1; i >= 0 && keyframe == null; i--) {
+            if (entry.keyframes.get(i).turn <= turn) keyframe = entry.keyframes.get(i);
+        }
+
+        GameController controller;
+        int from;
+        long fromTurn;
+        if (keyframe == null) {
+            controller = start(entry);
+            from = entry.bodyStart;
+            fromTurn = entry.startTurn;
+        } else {
+            controller = new GameController();
+            controller.setParallelEnemyTurns(keyframe.parallel);
+            if (keyframe.spawnRules >= 0) controller.setSpawnRules(spawnRulesAt(keyframe.spawnRules));
+            controller.resumeGame(SaveGameFormat.decode(slice(keyframe.saveOffset, keyframe.saveLength)));
+            from = keyframe.next;
+            fromTurn = keyframe.turn;
+        }
+        advance(controller, from, entry.end, fromTurn, turn);
+        return controller;
+    }
+
+    private Level level(int level) {
+        if (level < 0 || level >= levels.size()) {
+            throw new IndexOutOfBoundsException("Livello " + level + " su " + levels.size());
+        }
+        return levels.get(level);
+    }
+
+    /**
+     * Crea un controller all'inizio del livello.
+     */
+    private GameController start(Level entry) throws IOException {
+        GameController controller = new GameController();
+        int p = entry.start;
+        byte type = data.get(p);
+        if (type == TurnJournal.RECORD_LEVEL) {
+            byte terrainKind = data.get(p + 1);
+            long seed = data.getLong(p + 2);
+            int width = data.getInt(p + 10);
+            int height = data.getInt(p + 14);
+            int enemyCount = data.getInt(p + 18);
+            int itemCount = data.getInt(p + 22);
+            controller.setParallelEnemyTurns(data.get(p + 26) != 0);
+            if (terrainKind == TurnJournal.TERRAIN_CHUNKED) {
+                controller.startNewChunkedGame(width, height, enemyCount, itemCount, seed);
+            } else {
+                controller.startNewGame(width, height, enemyCount, itemCount, seed);
+            }
+        } else {
+            controller.setParallelEnemyTurns(data.get(p + 1) != 0);
+            controller.resumeGame(SaveGameFormat.decode(slice(p + 6, data.getInt(p + 2))));
+        }
+        return controller;
+    }
+
+    /**
+     * Applica i record da {@code from} a {@code end} finché il controller non arriva al turno {@code toTurn}.
+     */
+    private void advance(GameController controller, int from, int end, long fromTurn, long toTurn) {
+        int p = from;
+        long turn = fromTurn;
+        while (turn < toTurn && p < end) {
+            byte type = data.get(p);
+            if (type >= TurnJournal.RECORD_TURN) {
+                controller.handlePlayerTurn(DIRECTIONS[type - TurnJournal.RECORD_TURN]);
+                turn++;
+            } else if (type == TurnJournal.RECORD_PARALLEL) {
+                controller.setParallelEnemyTurns(data.get(p + 1) != 0);
+            } else if (type == TurnJournal.RECORD_SPAWN_RULES) {
+                controller.setSpawnRules(spawnRulesAt(p));
+            }
+            p += recordLength(p);
+        }
+    }
+
+    /**
+     * Scorre il registro una volta e ne costruisce l'indice.
+     */
+    private void index() throws IOException {
+        int limit = data.limit();
+        if (limit < TurnJournal.HEADER_BYTES || data.getInt(0) != TurnJournal.MAGIC) {
+            throw new IOException("Non è un registro dei turni valido");
+        }
+        short version = data.getShort(4);
+        if (version != TurnJournal.VERSION) {
+            throw new IOException("Versione del registro non supportata: " + version);
+        }
+
+        Level current = null;
+        boolean parallel = false;
+        int spawnRules = -1; // Posizione dell'ultimo record delle regole di comparsa del livello, o -1.
+        int p = TurnJournal.HEADER_BYTES;
+        while (p < limit) {
+            int length = recordLength(p);
+            if (length < 0 || length > limit - p) break; // Record sconosciuto o troncato.
+            byte type = data.get(p);
+            if (type == TurnJournal.RECORD_LEVEL || type == TurnJournal.RECORD_RESTORED_LEVEL) {
+                if (current != null) current.end = p;
+                long startTurn = 0;
+                if (type == TurnJournal.RECORD_RESTORED_LEVEL) {
+                    startTurn = SaveGameFormat.decode(slice(p + 6, data.getInt(p + 2))).getTurnCount();
+                }
+                current = new Level(p, p + length, startTurn);
+                levels.add(current);
+                parallel = data.get(p + (type == TurnJournal.RECORD_LEVEL ? 26 : 1)) != 0;
+                spawnRules = -1;
+            } else if (type == TurnJournal.RECORD_PARALLEL) {
+                // Le impostazioni possono precedere il primo livello (es. cambiate prima di avviare la partita).
+                parallel = data.get(p + 1) != 0;
+            } else if (type == TurnJournal.RECORD_SPAWN_RULES) {
+                spawnRules = p;
+            } else if (current == null) {
+                break; // Turni senza un livello: il registro non è valido da qui in poi.
+            } else if (type == TurnJournal.RECORD_KEYFRAME) {
+                current.keyframes.add(new Keyframe(data.getLong(p + 1), p + 13, data.getInt(p + 9), p + length,
+                        parallel, spawnRules));
+            } else {
+                current.endTurn++;
+            }
+            p += length;
+        }
+        if (current != null) current.end = p;
+    }
+
+    /**
+     * Lunghezza del record che inizia in {@code p}, o -1 se il tipo è sconosciuto o il record è troncato.
+     */
+    private int recordLength(int p) {
+        byte type = data.get(p);
+        int remaining = data.limit() - p;
+        switch (type) {
+            case TurnJournal.RECORD_LEVEL:
+                return 1 + 1 + 8 + 4 * 4 + 1;
+            case TurnJournal.RECORD_RESTORED_LEVEL:
+                return remaining < 6 ? -1 : 6 + data.getInt(p + 2);
+            case TurnJournal.RECORD_KEYFRAME:
+                return remaining < 13 ? -1 : 13 + data.getInt(p + 9);
+            case TurnJournal.RECORD_PARALLEL:
+                return 2;
+            case TurnJournal.RECORD_SPAWN_RULES:
+                return 1 + 8 * 4;
+            default:
+                return (type >= TurnJournal.RECORD_TURN && type < TurnJournal.RECORD_TURN + DIRECTIONS.length) ? 1 : -1;
+        }
+    }
+
+    /**
+     * Legge le regole di comparsa dal record che inizia in {@code p}.
+     */
+    private SpawnRules spawnRulesAt(int p) {
+        return new SpawnRules(data.getInt(p + 1), data.getInt(p + 5), data.getInt(p + 9), data.getInt(p + 13),
+                data.getInt(p + 17), data.getInt(p + 21), data.getInt(p + 25), data.getInt(p + 29));
+    }
+
+    /**
+     * Vista del salvataggio incorporato, con la posizione 0 all'inizio del salvataggio come vuole {@link SaveGameFormat#decode}.
+     */
+    private ByteBuffer slice(int offset, int length) {
+        ByteBuffer view = data.duplicate();
+        view.limit(offset + length);
+        view.position(offset);
+        return view.slice();
+    }
+
+    private static final class Level {
+        final int start;
+        final int bodyStart;
+        final long startTurn;
+        final List<Keyframe> keyframes = new ArrayList<>();
+        int end;
+        long endTurn;
+
+        Level(int start, int bodyStart, long startTurn) {
+            this.start = start;
+            this.bodyStart = bodyStart;
+            this.startTurn = startTurn;
+            this.endTurn = startTurn;
+        }
+    }
+
+    private static final class Keyframe {
+        final long turn;
+        final int saveOffset;
+        final int saveLength;
+        final int next;
+        final boolean parallel;
+        final int spawnRules;
+
+        Keyframe(long turn, int saveOffset, int saveLength, int next, boolean parallel, int spawnRules) {
+            this.turn = turn;
+            this.saveOffset = saveOffset;
+            this.saveLength = saveLength;
+            this.next = next;
+            this.parallel = parallel;
+            this.spawnRules = spawnRules;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.github.matteoCarda.simplerougelike.controller;
+
+import com.github.matteoCarda.simplerougelike.model.GameMap;
+
+/**
+ * Fotografia immutabile dello stato di gioco da disegnare, pubblicata dal thread della logica dopo ogni turno.
+ * La view la legge senza lock: tutti i campi sono final e gli array vengono copiati alla creazione,
+ * quindi un turno successivo non può modificarla mentre viene disegnata.
+ * Contiene solo ciò che il rendering usa davvero: il terreno (che non cambia durante un livello),
+ * il giocatore e la finestra del campo visivo attorno a lui, con la luce di ogni cella e nemici e oggetti visibili.
+ */
+public final class RenderSnapshot {
+
+    private final long turn;
+    private final GameController.GameState gameState;
+
+    // Il terreno della mappa è scritto solo alla generazione: leggerlo da un altro thread è sicuro.
+    private final GameMap terrain;
+
+    private final int playerX;
+    private final int playerY;
+    private final double playerHealth;
+    private final double playerMaxHealth;
+
+    // Finestra quadrata del FOV centrata sul giocatore, con la luce di ogni cella (0 = non visibile):
+    // fuori dal raggio nulla è visibile.
+    private final int fovRadius;
+    private final int fovSide;
+    private final byte[] lightWindow;
+
+    // Nemici vivi e oggetti dentro il FOV, come array paralleli.
+    private final int[] enemyIds;
+    private final int[] enemyXs;
+    private final int[] enemyYs;
+    private final int[] itemXs;
+    private final int[] itemYs;
+
+    RenderSnapshot(long turn, GameController.GameState gameState, GameMap terrain,
+                   int playerX, int playerY, double playerHealth, double playerMaxHealth,
+                   int fovRadius, byte[] lightWindow,
+                   int[] enemyIds, int[] enemyXs, int[] enemyYs, int[] itemXs, int[] itemYs) {
+        this.turn = turn;
+        this.gameState = gameState;
+        this.terrain = terrain;
+        this.playerX = playerX;
+        this.playerY = playerY;
+        this.playerHealth = playerHealth;
+        this.playerMaxHealth = playerMaxHealth;
+        this.fovRadius = fovRadius;
+        this.fovSide = fovRadius * 2 + 1;
+        this.lightWindow = lightWindow;
+        this.enemyIds = enemyIds;
+        this.enemyXs = enemyXs;
+        this.enemyYs = enemyYs;
+        this.itemXs = itemXs;
+        this.itemYs = itemYs;
+    }
+
+    /** Numero di turni giocati nel livello al momento della fotografia. */
+    public long getTurn() { return turn; }
+
+    public GameController.GameState getGameState() { return gameState; }
+
+    public int getWidth() { return terrain.getWidth(); }
+
+    public int getHeight() { return terrain.getHeight(); }
+
+    /**
+     * Controlla se due fotografie appartengono allo stesso livello (stessa mappa).
+     */
+    public boolean isSameLevel(RenderSnapshot other) {
+        return other != null && other.terrain == terrain;
+    }
+
+    /**
+     * Controlla se una cella è pavimento.
+     * @return true se la cella è dentro la mappa ed è calpestabile.
+     */
+    public boolean isWalkable(int x, int y) { return terrain.isWalkable(x, y); }
+
+    public int getPlayerX() { return playerX; }
+
+    public int getPlayerY() { return playerY; }
+
+    public double getPlayerHealth() { return playerHealth; }
+
+    public double getPlayerMaxHealth() { return playerMaxHealth; }
+
+    /** Raggio della finestra del FOV: fuori dal quadrato di lato 2 * raggio + 1 attorno al giocatore nulla è visibile. */
+    public int getFovRadius() { return fovRadius; }
+
+    /**
+     * Controlla se una cella era nel campo visivo del giocatore.
+     */
+    public boolean isVisible(int x, int y) {
+        return getLight(x, y) > 0;
+    }
+
+    /**
+     * Ritorna la luce di una cella visibile: la maggiore tra quella del giocatore e quella di torce e oggetti.
+     * @return Da 0 (non visibile) a {@link com.github.matteoCarda.simplerougelike.service.FieldOfView#MAX_LIGHT}.
+     */
+    public int getLight(int x, int y) {
+        int dx = x - playerX + fovRadius;
+        int dy = y - playerY + fovRadius;
+        if (dx < 0 || dx >= fovSide || dy < 0 || dy >= fovSide) return 0;
+        return lightWindow[dx * fovSide + dy] & 0xFF;
+    }
+
+    /** Numero di nemici visibili; gli indici validi vanno da 0 a getEnemyCount() - 1. */
+    public int getEnemyCount() { return enemyXs.length; }
+
+    /** Id stabile del nemico, utile per seguire lo stesso nemico tra due fotografie. */
+    public int getEnemyId(int index) { return enemyIds[index]; }
+
+    public int getEnemyX(int index) { return enemyXs[index]; }
+
+    public int getEnemyY(int index) { return enemyYs[index]; }
+
+    /** Numero di oggetti visibili. */
+    public int getItemCount() { return itemXs.length; }
+
+    public int getItemX(int index) { return itemXs[index]; }
+
+    public int getItemY(int index) { return itemYs[index]; }
+}
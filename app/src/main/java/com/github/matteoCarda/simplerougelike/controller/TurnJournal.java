@@ -0,0 +1,190 @@
+package com.github.matteoCarda.simplerougelike.controller;
+
+import com.github.matteoCarda.simplerougelike.service.SpawnRules;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Registro binario, in sola aggiunta, di tutto ciò che serve a rigiocare una partita.
+ * Struttura (big-endian): intestazione {@link #MAGIC}, {@link #VERSION}, poi una sequenza di record
+ * che iniziano con un byte di tipo:
+ * - inizio livello: tipo di terreno, seme, dimensioni, nemici, oggetti e modalità dei turni (il livello
+ *   si rigenera identico dal seme);
+ * - livello ripreso da un salvataggio: il salvataggio completo, che fa anche da fotogramma chiave;
+ * - fotogramma chiave: numero del turno e salvataggio completo dello stato dopo quel turno;
+ * - cambio di modalità dei turni;
+ * - cambio delle regole di comparsa (un livello nuovo parte senza regole: quelle attive seguono subito
+ *   il record del livello);
+ * - turno: un solo byte, tipo e direzione del giocatore insieme.
+ * La casualità dei nemici dipende solo dal seme e dal numero del turno, quindi bastano gli input
+ * per ricostruire ogni turno; i fotogrammi chiave servono a {@link JournalReplayer} per saltare a un turno
+ * qualsiasi senza rigiocare il livello dall'inizio.
+ * I record passano da un piccolo buffer e vengono aggiunti al file tramite un FileChannel.
+ * Un registro che non riesce a scrivere si disattiva e conserva l'errore: la partita non si ferma per questo.
+ */
+public class TurnJournal implements AutoCloseable {
+
+    /** "SRLJ": identifica un registro dei turni di questo gioco. */
+    public static final int MAGIC = 0x53524C4A;
+    /** Versione corrente del formato. */
+    public static final short VERSION = 3;
+    /** Ogni quanti turni viene scritto un fotogramma chiave. */
+    public static final int KEYFRAME_INTERVAL = 256;
+
+    static final int HEADER_BYTES = 4 + 2 + 2;
+
+    static final byte RECORD_LEVEL = 1;
+    static final byte RECORD_RESTORED_LEVEL = 2;
+    static final byte RECORD_KEYFRAME = 3;
+    static final byte RECORD_PARALLEL = 4;
+    static final byte RECORD_SPAWN_RULES = 5;
+    // I turni occupano i valori da RECORD_TURN a RECORD_TURN + numero di direzioni - 1.
+    static final byte RECORD_TURN = 16;
+
+    static final byte TERRAIN_DENSE = 0;
+    static final byte TERRAIN_CHUNKED = 1;
+
+    private static final int BUFFER_BYTES = 4096;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+    private IOException failure;
+
+    private TurnJournal(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Crea un registro vuoto, sostituendo un eventuale file esistente.
+     * @throws IOException se il file non si può creare.
+     */
+    public static TurnJournal create(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        TurnJournal journal = new TurnJournal(channel);
+        journal.buffer.putInt(MAGIC).putShort(VERSION).putShort((short) 0);
+        journal.flush();
+        if (journal.failure != null) {
+            channel.close();
+            throw journal.failure;
+        }
+        return journal;
+    }
+
+    /**
+     * Registra l'inizio di un livello generato dal seme.
+     */
+    void recordLevel(byte terrainKind, long seed, int width, int height, int enemyCount, int itemCount,
+                     boolean parallel) {
+        ensureSpace(1 + 1 + 8 + 4 * 4 + 1);
+        if (failure != null) return;
+        buffer.put(RECORD_LEVEL).put(terrainKind).putLong(seed)
+                .putInt(width).putInt(height).putInt(enemyCount).putInt(itemCount)
+                .put(parallel ? (byte) 1 : 0);
+    }
+
+    /**
+     * Registra un livello ripreso da un salvataggio.
+     * @param save Il salvataggio codificato, dalla posizione corrente al limite.
+     */
+    void recordRestoredLevel(ByteBuffer save, boolean parallel) {
+        ensureSpace(1 + 1 + 4);
+        if (failure != null) return;
+        buffer.put(RECORD_RESTORED_LEVEL).put(parallel ? (byte) 1 : 0).putInt(save.remaining());
+        putBlock(save);
+    }
+
+    /**
+     * Registra un fotogramma chiave: lo stato completo dopo il turno indicato.
+     * @param save Il salvataggio codificato, dalla posizione corrente al limite.
+     */
+    void recordKeyframe(long turn, ByteBuffer save) {
+        ensureSpace(1 + 8 + 4);
+        if (failure != null) return;
+        buffer.put(RECORD_KEYFRAME).putLong(turn).putInt(save.remaining());
+        putBlock(save);
+    }
+
+    void recordParallel(boolean parallel) {
+        ensureSpace(2);
+        if (failure != null) return;
+        buffer.put(RECORD_PARALLEL).put(parallel ? (byte) 1 : 0);
+    }
+
+    void recordSpawnRules(SpawnRules rules) {
+        ensureSpace(1 + 8 * 4);
+        if (failure != null) return;
+        buffer.put(RECORD_SPAWN_RULES)
+                .putInt(rules.getWaveInterval()).putInt(rules.getWaveSize()).putInt(rules.getMaxEnemies())
+                .putInt(rules.getItemInterval()).putInt(rules.getMaxItems()).putInt(rules.getBudget())
+                .putInt(rules.getMinDistance()).putInt(rules.getMaxDistance());
+    }
+
+    void recordTurn(GameController.Direction direction) {
+        ensureSpace(1);
+        if (failure != null) return;
+        buffer.put((byte) (RECORD_TURN + direction.ordinal()));
+    }
+
+    /**
+     * Scrive nel file i record ancora nel buffer.
+     */
+    public void flush() {
+        if (failure != null) return;
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Il primo errore di scrittura, o null se il registro è integro.
+     */
+    public IOException getFailure() {
+        return failure;
+    }
+
+    /**
+     * Scrive i record rimasti e chiude il file.
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+        channel.close();
+        if (failure != null) throw failure;
+    }
+
+    private void ensureSpace(int bytes) {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    /**
+     * Blocchi grandi (i salvataggi) vengono scritti direttamente, senza passare dal buffer.
+     */
+    private void putBlock(ByteBuffer block) {
+        if (block.remaining() <= buffer.remaining()) {
+            buffer.put(block);
+            return;
+        }
+        flush();
+        if (failure != null) return;
+        try {
+            while (block.hasRemaining()) {
+                channel.write(block);
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+}
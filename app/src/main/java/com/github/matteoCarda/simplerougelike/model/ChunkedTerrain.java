@@ -0,0 +1,205 @@
+package com.github.matteoCarda.simplerougelike.model;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Terreno di un mondo molto grande, diviso in blocchi quadrati di {@link #CHUNK_SIZE} celle di lato.
+ * I blocchi vengono generati su richiesta da una {@link ChunkSource} deterministica:
+ * - quando il giocatore si avvicina ({@link #focus}) i blocchi attorno a lui vengono generati in anticipo
+ *   su un thread in background;
+ * - i blocchi lontani vengono scaricati, e se servono di nuovo vengono rigenerati identici;
+ * - se una cella di un blocco non ancora pronto viene letta, il blocco viene generato subito sul thread chiamante.
+ * La memoria occupata dalle celle dipende quindi dal raggio di caricamento, non dalle dimensioni del mondo.
+ * La lettura è thread-safe (logica, rendering e generatore possono accedere insieme);
+ * {@link #focus} va chiamato da un solo thread, quello della logica.
+ */
+public final class ChunkedTerrain implements Terrain {
+
+    /** Lato di un blocco, in celle. */
+    public static final int CHUNK_SIZE = 64;
+    /** Lato massimo del mondo: il numero di celle deve restare rappresentabile come x * altezza + y in un int. */
+    public static final int MAX_SIDE = 32768;
+
+    private static final int CHUNK_SHIFT = 6;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /**
+     * Genera il contenuto di un blocco. Deve essere deterministica e sicura da chiamare da più thread:
+     * a parità di coordinate restituisce sempre le stesse celle.
+     */
+    public interface ChunkSource {
+        /**
+         * @return I codici di Tile del blocco, {@link #CHUNK_SIZE} x {@link #CHUNK_SIZE}, indicizzati come x * CHUNK_SIZE + y.
+         */
+        byte[] generate(int chunkX, int chunkY);
+    }
+
+    // Un solo thread di generazione condiviso da tutti i mondi: i blocchi vengono generati uno alla volta.
+    private static final ExecutorService LOADER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "chunk-loader");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    private final int width;
+    private final int height;
+    private final int chunksX;
+    private final int chunksY;
+    private final int loadRadius;
+    private final ChunkSource source;
+
+    // Tabella dei blocchi (null = non caricato), indicizzata chunkX * chunksY + chunkY.
+    private final AtomicReferenceArray<byte[]> chunks;
+    // Indici dei blocchi caricati e di quelli in coda al generatore.
+    private final Set<Integer> loaded = ConcurrentHashMap.newKeySet();
+    private final Set<Integer> pending = ConcurrentHashMap.newKeySet();
+
+    // Blocco attorno a cui si sta giocando, aggiornato da focus().
+    private volatile int focusChunkX;
+    private volatile int focusChunkY;
+    // false finché focus non è mai stato chiamato. Usato solo dal thread della logica.
+    private boolean focused;
+
+    /**
+     * Costruttore. Nessun blocco viene generato finché non viene letto o richiesto da {@link #focus}.
+     * @param width Larghezza del mondo, in celle.
+     * @param height Altezza del mondo, in celle.
+     * @param loadRadius Raggio, in blocchi, attorno al giocatore entro cui i blocchi vengono tenuti in memoria.
+     * @param source Il generatore dei blocchi.
+     */
+    public ChunkedTerrain(int width, int height, int loadRadius, ChunkSource source) {
+        if (width <= 0 || height <= 0 || width > MAX_SIDE || height > MAX_SIDE) {
+            throw new IllegalArgumentException("Dimensioni del mondo non valide: " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.chunksX = (width + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        this.chunksY = (height + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        this.loadRadius = loadRadius;
+        this.source = source;
+        this.chunks = new AtomicReferenceArray<>(chunksX * chunksY);
+    }
+
+    @Override
+    public int getWidth() { return width; }
+
+    @Override
+    public int getHeight() { return height; }
+
+    @Override
+    public byte get(int x, int y) {
+        int index = (x >> CHUNK_SHIFT) * chunksY + (y >> CHUNK_SHIFT);
+        byte[] chunk = chunks.get(index);
+        if (chunk == null) {
+            chunk = load(index);
+        }
+        return chunk[(x & CHUNK_MASK) * CHUNK_SIZE + (y & CHUNK_MASK)];
+    }
+
+    @Override
+    public boolean isLoaded(int x, int y) {
+        return chunks.get((x >> CHUNK_SHIFT) * chunksY + (y >> CHUNK_SHIFT)) != null;
+    }
+
+    @Override
+    public boolean isActive(int x, int y) {
+        return Math.max(Math.abs((x >> CHUNK_SHIFT) - focusChunkX), Math.abs((y >> CHUNK_SHIFT) - focusChunkY)) <= loadRadius;
+    }
+
+    /**
+     * Accoda la generazione dei blocchi entro il raggio di caricamento e scarica quelli oltre il raggio + 1
+     * (il margine evita di scaricare e rigenerare un blocco quando il giocatore cammina lungo un bordo).
+     * Se il giocatore resta nello stesso blocco non c'è nulla da fare: nessuna scansione e nessuna allocazione.
+     */
+    @Override
+    public void focus(int x, int y) {
+        int centerX = x >> CHUNK_SHIFT;
+        int centerY = y >> CHUNK_SHIFT;
+        if (focused && centerX == focusChunkX && centerY == focusChunkY) return;
+        focused = true;
+        focusChunkX = centerX;
+        focusChunkY = centerY;
+
+        for (Integer index : loaded) {
+            if (distanceFromFocus(index) > loadRadius + 1) {
+                // Prima fuori dall'elenco, poi fuori dalla tabella: un load() concorrente può ripubblicare il blocco
+                // solo dopo che la tabella è tornata a null, e allora lo riaggiunge all'elenco, che resta esatto.
+                loaded.remove(index);
+                chunks.set(index, null);
+            }
+        }
+
+        // Dal blocco del giocatore verso l'esterno, così i più vicini sono pronti per primi.
+        for (int ring = 0; ring <= loadRadius; ring++) {
+            for (int chunkX = centerX - ring; chunkX <= centerX + ring; chunkX++) {
+                for (int chunkY = centerY - ring; chunkY <= centerY + ring; chunkY++) {
+                    boolean onRing = Math.max(Math.abs(chunkX - centerX), Math.abs(chunkY - centerY)) == ring;
+                    if (onRing && chunkX >= 0 && chunkX < chunksX && chunkY >= 0 && chunkY < chunksY) {
+                        prefetch(chunkX * chunksY + chunkY);
+                    }
+                }
+            }
+        }
+    }
+
+    public int getLoadRadius() {
+        return loadRadius;
+    }
+
+    public ChunkSource getSource() {
+        return source;
+    }
+
+    /**
+     * Numero di blocchi attualmente in memoria.
+     */
+    public int getLoadedChunkCount() {
+        return loaded.size();
+    }
+
+    @Override
+    public long estimateMemoryFootprint() {
+        // Tabella dei riferimenti più 16 byte di intestazione e CHUNK_SIZE^2 byte per ogni blocco caricato.
+        return 16L + 4L * chunksX * chunksY + (long) loaded.size() * (16L + CHUNK_SIZE * CHUNK_SIZE);
+    }
+
+    private void prefetch(int index) {
+        if (chunks.get(index) != null || !pending.add(index)) return;
+        LOADER.execute(() -> {
+            try {
+                // Il giocatore potrebbe essersi già allontanato mentre il blocco era in coda.
+                if (distanceFromFocus(index) <= loadRadius + 1) {
+                    load(index);
+                }
+            } finally {
+                pending.remove(index);
+            }
+        });
+    }
+
+    /**
+     * Genera un blocco e lo pubblica. Se due thread lo generano insieme vince il primo:
+     * il risultato è comunque identico, essendo la generazione deterministica.
+     */
+    private byte[] load(int index) {
+        byte[] generated = source.generate(index / chunksY, index % chunksY);
+        if (generated.length != CHUNK_SIZE * CHUNK_SIZE) {
+            throw new IllegalStateException("Blocco di dimensione errata: " + generated.length);
+        }
+        if (chunks.compareAndSet(index, null, generated)) {
+            loaded.add(index);
+            return generated;
+        }
+        byte[] existing = chunks.get(index);
+        return (existing != null) ? existing : generated;
+    }
+
+    private int distanceFromFocus(int index) {
+        return Math.max(Math.abs(index / chunksY - focusChunkX), Math.abs(index % chunksY - focusChunkY));
+    }
+}
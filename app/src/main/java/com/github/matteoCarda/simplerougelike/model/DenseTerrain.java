@@ -0,0 +1,58 @@
+package com.github.matteoCarda.simplerougelike.model;
+
+/**
+ * Terreno compatto in un unico array: un byte per cella, indicizzato come x * height + y.
+ */
+public final class DenseTerrain implements Terrain {
+
+    private final byte[] cells;
+    private final int width;
+    private final int height;
+
+    /**
+     * Costruttore.
+     * @param cells Codici di Tile, uno per cella, indicizzati come x * height + y.
+     * @param width Larghezza della mappa.
+     * @param height Altezza della mappa.
+     */
+    public DenseTerrain(byte[] cells, int width, int height) {
+        if (cells.length != width * height) {
+            throw new IllegalArgumentException("Dimensioni del terreno non coerenti: " + cells.length + " != " + width + "x" + height);
+        }
+        this.cells = cells;
+        this.width = width;
+        this.height = height;
+    }
+
+    @Override
+    public int getWidth() { return width; }
+
+    @Override
+    public int getHeight() { return height; }
+
+    @Override
+    public byte get(int x, int y) {
+        return cells[x * height + y];
+    }
+
+    @Override
+    public boolean isLoaded(int x, int y) {
+        return true;
+    }
+
+    @Override
+    public boolean isActive(int x, int y) {
+        return true;
+    }
+
+    @Override
+    public void focus(int x, int y) {
+        // Tutto il livello è già in memoria.
+    }
+
+    @Override
+    public long estimateMemoryFootprint() {
+        // 16 byte di intestazione dell'array, più il contenuto.
+        return 16L + cells.length;
+    }
+}
@@ -1,10 +1,16 @@
 package com.github.matteoCarda.simplerougelike.model;
 
 import com.github.matteoCarda.simplerougelike.model.entity.Enemy;
+import com.github.matteoCarda.simplerougelike.model.entity.EnemyStore;
+import com.github.matteoCarda.simplerougelike.model.entity.GameObject;
 import com.github.matteoCarda.simplerougelike.model.entity.Player;
 import com.github.matteoCarda.simplerougelike.model.entity.Item;
 import com.github.matteoCarda.simplerougelike.model.tile.Tile;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -13,57 +19,163 @@ import java.util.List;
  */
 public class GameMap {
 
-    // Griglia statica del livello.
-    private final Tile[][] grid;
+    // Griglia statica del livello: un codice di Tile per cella, densa o a blocchi caricati su richiesta.
+    private final Terrain terrain;
 
     // Riferimenti diretti alle entità.
     private final Player player;
-    private final List<Enemy> enemies;
     private final List<Item> items;
 
+    // I nemici vivono in un archivio a array paralleli; gli oggetti Enemy ne sono viste.
+    private final EnemyStore enemyStore;
+
+    // Vista in sola lettura degli oggetti: le modifiche passano da add/remove per tenere aggiornati gli indici.
+    private final List<Item> itemsView;
+
+    // Indici di occupazione per cella (uno per nemici, uno per oggetti) e registro id -> oggetto.
+    private final OccupancyGrid enemyGrid;
+    private final OccupancyGrid itemGrid;
+    private final List<GameObject> objectsById = new ArrayList<>();
+    // Id del registro liberati dalle rimozioni, riassegnati prima di allungare il registro.
+    private int[] freeObjectIds = new int[16];
+    private int freeObjectIdCount;
+    private final GameObject.PositionListener positionListener = this::onPositionChanged;
+
     // Dimensioni della mappa, cachate per efficienza.
     private final int width;
     private final int height;
 
     /**
-     * Costruttore principale.
+     * Costruttore di compatibilità a partire da una griglia di Tile.
+     * La griglia viene convertita nella rappresentazione compatta e non viene trattenuta.
      * @param grid La griglia di Tile generata.
      * @param player L'oggetto Player.
      * @param enemies La lista dei nemici.
      * @param items La lista degli oggetti.
      */
     public GameMap(Tile[][] grid, Player player, List<Enemy> enemies, List<Item> items) {
-        this.grid = grid;
+        this(toTerrain(grid), grid.length, (grid.length > 0) ? grid[0].length : 0, player, enemies, items);
+    }
+
+    /**
+     * Costruttore principale.
+     * @param terrain Codici di Tile, uno per cella, indicizzati come x * height + y.
+     * @param width Larghezza della mappa.
+     * @param height Altezza della mappa.
+     * @param player L'oggetto Player.
+     * @param enemies La lista dei nemici.
+     * @param items La lista degli oggetti.
+     */
+    public GameMap(byte[] terrain, int width, int height, Player player, List<Enemy> enemies, List<Item> items) {
+        this(new DenseTerrain(terrain, width, height), player, enemies, items);
+    }
+
+    /**
+     * Costruttore a partire da un terreno qualsiasi, ad esempio un {@link ChunkedTerrain} per i mondi molto grandi.
+     * @param terrain Il terreno del livello.
+     * @param player L'oggetto Player.
+     * @param enemies La lista dei nemici.
+     * @param items La lista degli oggetti.
+     */
+    public GameMap(Terrain terrain, Player player, List<Enemy> enemies, List<Item> items) {
+        this.terrain = terrain;
         this.player = player;
-        this.enemies = enemies;
-        this.items = items;
-        this.width = grid.length;
-        this.height = (grid.length > 0) ? grid[0].length : 0;
+        this.items = new ArrayList<>(items.size());
+        this.itemsView = Collections.unmodifiableList(this.items);
+        this.width = terrain.getWidth();
+        this.height = terrain.getHeight();
+        this.enemyGrid = new OccupancyGrid(width, height);
+        this.itemGrid = new OccupancyGrid(width, height);
+        this.enemyStore = new EnemyStore(enemyGrid);
+
+        for (Enemy enemy : enemies) {
+            addEnemy(enemy);
+        }
+        for (Item item : items) {
+            addItem(item);
+        }
     }
 
     // --- GETTERS ---
 
     /**
      * Ritorna la Tile a una data coordinata, con controllo dei limiti.
+     * La Tile restituita è l'istanza condivisa del suo tipo.
      * @return La Tile, o null se le coordinate sono fuori mappa.
      */
     public Tile getTile(int x, int y) {
         if (x >= 0 && x < width && y >= 0 && y < height) {
-            return grid[x][y];
+            return Tile.fromCode(terrain.get(x, y));
         }
         return null;
     }
 
+    /**
+     * Controlla se una cella è calpestabile leggendo direttamente il terreno compatto.
+     * @return true se la cella è dentro la mappa ed è pavimento.
+     */
+    public boolean isWalkable(int x, int y) {
+        return x >= 0 && x < width && y >= 0 && y < height && terrain.get(x, y) == Tile.FLOOR;
+    }
+
+    /**
+     * Stima la memoria occupata dalle strutture per cella di questa mappa (terreno e indici di occupazione),
+     * entità escluse. Con la vecchia griglia di oggetti Tile il solo terreno costava circa 28 byte per cella;
+     * ora ne costa uno. Per un terreno a blocchi conta solo la parte caricata.
+     * @return Il numero approssimativo di byte.
+     */
+    public long estimateMemoryFootprint() {
+        return terrain.estimateMemoryFootprint()
+                + enemyGrid.estimateMemoryFootprint()
+                + itemGrid.estimateMemoryFootprint();
+    }
+
+    /**
+     * Controlla se una cella è nella zona attiva attorno al giocatore (vedi {@link Terrain#isActive}).
+     * Per una mappa densa è sempre vero dentro i limiti.
+     */
+    public boolean isActive(int x, int y) {
+        return x >= 0 && x < width && y >= 0 && y < height && terrain.isActive(x, y);
+    }
+
+    /**
+     * Segnala al terreno la posizione del giocatore, così che carichi le zone vicine e scarichi quelle lontane.
+     */
+    public void focus(int x, int y) {
+        if (x >= 0 && x < width && y >= 0 && y < height) {
+            terrain.focus(x, y);
+        }
+    }
+
+    public Terrain getTerrain() {
+        return terrain;
+    }
+
     public Player getPlayer() {
         return player;
     }
 
+    /**
+     * Ritorna i nemici del livello, in ordine di slot dell'archivio.
+     * @return Una vista non modificabile: usare {@link #addEnemy} e {@link #removeEnemy}.
+     */
     public List<Enemy> getEnemies() {
-        return enemies;
+        return enemyStore.asList();
     }
 
+    /**
+     * Ritorna l'archivio a array dei nemici, per i cicli che vogliono leggere i dati per slot.
+     */
+    public EnemyStore getEnemyStore() {
+        return enemyStore;
+    }
+
+    /**
+     * Ritorna gli oggetti del livello.
+     * @return Una vista non modificabile: usare {@link #addItem} e {@link #removeItem}.
+     */
     public List<Item> getItems() {
-        return items;
+        return itemsView;
     }
 
     public int getWidth() {
@@ -73,4 +185,178 @@ public class GameMap {
     public int getHeight() {
         return height;
     }
+
+    /**
+     * Converte una griglia di Tile nell'array compatto di codici.
+     */
+    private static byte[] toTerrain(Tile[][] grid) {
+        int width = grid.length;
+        int height = (width > 0) ? grid[0].length : 0;
+        byte[] terrain = new byte[width * height];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                terrain[x * height + y] = grid[x][y].getCode();
+            }
+        }
+        return terrain;
+    }
+
+    // --- INDICE DI OCCUPAZIONE ---
+
+    /**
+     * Ritorna il nemico che occupa una cella, in O(1).
+     * @return Il nemico, o null se la cella è libera o fuori mappa.
+     */
+    public Enemy getEnemyAt(int x, int y) {
+        int id = enemyGrid.get(x, y);
+        return id == OccupancyGrid.EMPTY ? null : enemyStore.getById(id);
+    }
+
+    /**
+     * Ritorna l'oggetto presente in una cella, in O(1).
+     * @return L'oggetto, o null se la cella è libera o fuori mappa.
+     */
+    public Item getItemAt(int x, int y) {
+        int id = itemGrid.get(x, y);
+        return id == OccupancyGrid.EMPTY ? null : (Item) objectsById.get(id);
+    }
+
+    /**
+     * Raccoglie i nemici entro una distanza di Manhattan da un punto.
+     * Il costo dipende solo dall'area del raggio, non dal numero di nemici nel livello.
+     * @param centerX Coordinata x del centro.
+     * @param centerY Coordinata y del centro.
+     * @param radius Distanza di Manhattan massima.
+     * @param out Lista in cui aggiungere i nemici trovati (non viene svuotata).
+     * @return La stessa lista passata come parametro.
+     */
+    public List<Enemy> findEnemiesWithin(int centerX, int centerY, int radius, List<Enemy> out) {
+        int minX = Math.max(0, centerX - radius);
+        int maxX = Math.min(width - 1, centerX + radius);
+        for (int x = minX; x <= maxX; x++) {
+            int span = radius - Math.abs(x - centerX);
+            int minY = Math.max(0, centerY - span);
+            int maxY = Math.min(height - 1, centerY + span);
+            for (int y = minY; y <= maxY; y++) {
+                int id = enemyGrid.get(x, y);
+                if (id != OccupancyGrid.EMPTY) {
+                    out.add(enemyStore.getById(id));
+                }
+            }
+        }
+        return out;
+    }
+
+    // --- GESTIONE DELLE ENTITÀ ---
+
+    /**
+     * Aggiunge un nemico al livello: i suoi dati passano nell'archivio e la cella viene registrata.
+     */
+    public void addEnemy(Enemy enemy) {
+        enemyStore.add(enemy);
+    }
+
+    /**
+     * Rimuove un nemico dal livello (swap-remove) e libera la sua cella.
+     */
+    public void removeEnemy(Enemy enemy) {
+        enemyStore.remove(enemy);
+    }
+
+    /**
+     * Rimuove in blocco un gruppo di nemici.
+     */
+    public void removeEnemies(Collection<Enemy> toRemove) {
+        for (Enemy enemy : toRemove) {
+            enemyStore.remove(enemy);
+        }
+    }
+
+    /**
+     * Rimuove tutti i nemici morti con swap-remove, senza liste di appoggio.
+     * @return Il numero di nemici rimossi.
+     */
+    public int removeDeadEnemies() {
+        return enemyStore.removeDead();
+    }
+
+    /**
+     * Come {@link #removeDeadEnemies()}, ma aggiunge i nemici rimossi alla lista indicata, ad esempio per riciclarli.
+     * @param removedOut Lista in cui aggiungere i nemici rimossi (non viene svuotata).
+     * @return Il numero di nemici rimossi.
+     */
+    public int removeDeadEnemies(List<Enemy> removedOut) {
+        return enemyStore.removeDead(removedOut);
+    }
+
+    /**
+     * Toglie dal livello tutti i nemici e gli oggetti, che tornano scollegati e riutilizzabili.
+     * Il terreno resta intatto. Usato quando il livello viene abbandonato.
+     * @param enemiesOut Lista in cui aggiungere i nemici rimossi (non viene svuotata).
+     * @param itemsOut Lista in cui aggiungere gli oggetti rimossi (non viene svuotata).
+     */
+    public void clearEntities(List<Enemy> enemiesOut, List<Item> itemsOut) {
+        enemyStore.clear(enemiesOut);
+        // Dall'ultimo al primo: ogni rimozione dalla lista costa O(1).
+        for (int i = items.size() - 1; i >= 0; i--) {
+            Item item = items.remove(i);
+            itemGrid.remove(item.getX(), item.getY(), item.getId());
+            unregister(item);
+            itemsOut.add(item);
+        }
+    }
+
+    /**
+     * Aggiunge un oggetto al livello e lo registra nell'indice di occupazione.
+     */
+    public void addItem(Item item) {
+        register(item);
+        items.add(item);
+        itemGrid.put(item.getX(), item.getY(), item.getId());
+    }
+
+    /**
+     * Rimuove un oggetto dal livello (es. dopo la raccolta) e libera la sua cella.
+     */
+    public void removeItem(Item item) {
+        if (items.remove(item)) {
+            itemGrid.remove(item.getX(), item.getY(), item.getId());
+            unregister(item);
+        }
+    }
+
+    /**
+     * Assegna un id all'oggetto, riusando quello di un oggetto rimosso se c'è:
+     * il registro resta grande quanto il massimo di oggetti presenti insieme.
+     */
+    private void register(GameObject gameObject) {
+        if (freeObjectIdCount > 0) {
+            int id = freeObjectIds[--freeObjectIdCount];
+            gameObject.attach(id, positionListener);
+            objectsById.set(id, gameObject);
+            return;
+        }
+        gameObject.attach(objectsById.size(), positionListener);
+        objectsById.add(gameObject);
+    }
+
+    private void unregister(GameObject gameObject) {
+        int id = gameObject.getId();
+        if (id >= 0 && id < objectsById.size() && objectsById.get(id) == gameObject) {
+            objectsById.set(id, null);
+            if (freeObjectIdCount == freeObjectIds.length) {
+                freeObjectIds = Arrays.copyOf(freeObjectIds, freeObjectIdCount * 2);
+            }
+            freeObjectIds[freeObjectIdCount++] = id;
+        }
+        gameObject.attach(GameObject.NO_ID, null);
+    }
+
+    /**
+     * Mantiene aggiornato l'indice quando un oggetto registrato cambia posizione.
+     * I nemici aggiornano il proprio indice direttamente tramite l'archivio.
+     */
+    private void onPositionChanged(GameObject gameObject, int oldX, int oldY) {
+        itemGrid.move(gameObject.getId(), oldX, oldY, gameObject.getX(), gameObject.getY());
+    }
 }
@@ -0,0 +1,187 @@
+package com.github.matteoCarda.simplerougelike.model;
+
+import java.util.Arrays;
+
+/**
+ * Indice di occupazione basato su griglia.
+ * Per ogni cella memorizza l'id intero dell'entità che la occupa (o {@link #EMPTY}),
+ * così che la domanda "chi c'è in (x,y)?" costi O(1) invece di una scansione della lista.
+ * Sulle mappe molto grandi la griglia è divisa in pagine di {@link #PAGE_SIZE} x {@link #PAGE_SIZE} celle,
+ * allocate quando vi entra la prima entità e liberate quando esce l'ultima: la memoria segue le zone abitate
+ * in quel momento, non l'area del mondo né quella esplorata. Alcune pagine vuote restano da parte
+ * ({@link #SPARE_PAGES}), così un'entità che va avanti e indietro su un bordo non alloca a ogni passo.
+ */
+public class OccupancyGrid {
+
+    /** Valore che indica una cella libera. */
+    public static final int EMPTY = -1;
+
+    /** Lato di una pagina, in celle, quando la griglia è paginata. */
+    public static final int PAGE_SIZE = 64;
+    /** Oltre questo numero di celle la griglia viene paginata. */
+    public static final int DENSE_CELL_LIMIT = 1 << 22;
+    /** Pagine vuote tenute da parte per essere riusate invece di riallocate. */
+    public static final int SPARE_PAGES = 4;
+
+    private static final int PAGE_SHIFT = 6;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private final int width;
+    private final int height;
+    // Array monodimensionale indicizzato per colonne (x * height + y), come la griglia delle tile.
+    // Null se la griglia è paginata.
+    private final int[] cells;
+    // Pagine (indicizzate pageX * pagesY + pageY, null = tutta libera), usate solo se cells è null.
+    private final int[][] pages;
+    // Celle occupate di ogni pagina (al massimo PAGE_SIZE², sta in uno short): a zero la pagina viene tolta.
+    private final short[] pageCounts;
+    private final int pagesY;
+    private int allocatedPages;
+    // Pagine vuote (tutte EMPTY) pronte da riusare.
+    private final int[][] sparePages;
+    private int spareCount;
+
+    /**
+     * Costruttore. Tutte le celle partono libere.
+     * @param width Larghezza della mappa.
+     * @param height Altezza della mappa.
+     */
+    public OccupancyGrid(int width, int height) {
+        this.width = width;
+        this.height = height;
+        if ((long) width * height <= DENSE_CELL_LIMIT) {
+            this.cells = new int[width * height];
+            Arrays.fill(cells, EMPTY);
+            this.pages = null;
+            this.pageCounts = null;
+            this.pagesY = 0;
+            this.sparePages = null;
+        } else {
+            this.cells = null;
+            this.pagesY = (height + PAGE_SIZE - 1) >> PAGE_SHIFT;
+            this.pages = new int[((width + PAGE_SIZE - 1) >> PAGE_SHIFT) * pagesY][];
+            this.pageCounts = new short[pages.length];
+            this.sparePages = new int[SPARE_PAGES][];
+        }
+    }
+
+    /**
+     * Controlla se le coordinate sono dentro la griglia.
+     */
+    public boolean isInBounds(int x, int y) {
+        return x >= 0 && x < width && y >= 0 && y < height;
+    }
+
+    /**
+     * Ritorna l'id dell'entità nella cella indicata.
+     * @return L'id, oppure {@link #EMPTY} se la cella è libera o fuori mappa.
+     */
+    public int get(int x, int y) {
+        if (!isInBounds(x, y)) return EMPTY;
+        if (cells != null) return cells[x * height + y];
+        int[] page = pages[(x >> PAGE_SHIFT) * pagesY + (y >> PAGE_SHIFT)];
+        return (page == null) ? EMPTY : page[(x & PAGE_MASK) * PAGE_SIZE + (y & PAGE_MASK)];
+    }
+
+    /**
+     * Registra un'entità in una cella, sovrascrivendo l'eventuale occupante precedente.
+     */
+    public void put(int x, int y, int id) {
+        if (!isInBounds(x, y)) return;
+        if (cells != null) {
+            cells[x * height + y] = id;
+            return;
+        }
+        int pageIndex = (x >> PAGE_SHIFT) * pagesY + (y >> PAGE_SHIFT);
+        int[] page = pages[pageIndex];
+        if (page == null) {
+            if (id == EMPTY) return;
+            if (spareCount > 0) {
+                page = sparePages[--spareCount];
+                sparePages[spareCount] = null;
+            } else {
+                page = new int[PAGE_SIZE * PAGE_SIZE];
+                Arrays.fill(page, EMPTY);
+            }
+            pages[pageIndex] = page;
+            allocatedPages++;
+        }
+        int cell = (x & PAGE_MASK) * PAGE_SIZE + (y & PAGE_MASK);
+        int previous = page[cell];
+        page[cell] = id;
+        if (previous == EMPTY && id != EMPTY) {
+            pageCounts[pageIndex]++;
+        } else if (previous != EMPTY && id == EMPTY && --pageCounts[pageIndex] == 0) {
+            releasePage(pageIndex);
+        }
+    }
+
+    /**
+     * Toglie dalla tabella una pagina rimasta vuota, conservandola se c'è posto tra quelle da parte.
+     */
+    private void releasePage(int pageIndex) {
+        if (spareCount < SPARE_PAGES) {
+            sparePages[spareCount++] = pages[pageIndex];
+        }
+        pages[pageIndex] = null;
+        allocatedPages--;
+    }
+
+    /**
+     * Libera una cella, ma solo se è ancora occupata dall'entità indicata.
+     * In questo modo un'entità che lascia una cella non cancella chi ci è entrato nel frattempo.
+     */
+    public void remove(int x, int y, int id) {
+        if (get(x, y) == id) {
+            put(x, y, EMPTY);
+        }
+    }
+
+    /**
+     * Sposta un'entità da una cella all'altra.
+     */
+    public void move(int id, int oldX, int oldY, int newX, int newY) {
+        remove(oldX, oldY, id);
+        put(newX, newY, id);
+    }
+
+    /**
+     * Libera tutte le celle.
+     */
+    public void clear() {
+        if (cells != null) {
+            Arrays.fill(cells, EMPTY);
+        } else {
+            Arrays.fill(pages, null);
+            Arrays.fill(pageCounts, (short) 0);
+            allocatedPages = 0;
+        }
+    }
+
+    /**
+     * Stima la memoria occupata dall'indice: 4 byte per cella più l'intestazione dell'array.
+     * Se la griglia è paginata contano solo la tabella delle pagine con i contatori, le pagine allocate
+     * e quelle vuote tenute da parte.
+     */
+    public long estimateMemoryFootprint() {
+        if (cells != null) {
+            return 16L + 4L * cells.length;
+        }
+        return 16L + 6L * pages.length + (allocatedPages + spareCount) * (16L + 4L * PAGE_SIZE * PAGE_SIZE);
+    }
+
+    /**
+     * Numero di pagine con almeno un'entità (0 se la griglia non è paginata).
+     */
+    public int getAllocatedPageCount() {
+        return allocatedPages;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+}
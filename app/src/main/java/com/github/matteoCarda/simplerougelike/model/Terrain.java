@@ -0,0 +1,41 @@
+package com.github.matteoCarda.simplerougelike.model;
+
+/**
+ * Terreno statico di un livello: un codice di {@link com.github.matteoCarda.simplerougelike.model.tile.Tile} per cella.
+ * Può essere un unico array denso ({@link DenseTerrain}) o un mondo a blocchi generati su richiesta ({@link ChunkedTerrain}).
+ * Il terreno non cambia durante un livello, quindi può essere letto da più thread.
+ */
+public interface Terrain {
+
+    int getWidth();
+
+    int getHeight();
+
+    /**
+     * Ritorna il codice della cella. Le coordinate devono essere dentro la mappa.
+     */
+    byte get(int x, int y);
+
+    /**
+     * Controlla se la cella è già disponibile in memoria, senza caricarla.
+     * Un terreno denso è sempre tutto caricato.
+     */
+    boolean isLoaded(int x, int y);
+
+    /**
+     * Controlla se la cella è nella zona in cui si gioca, cioè entro il raggio di caricamento dall'ultimo {@link #focus}.
+     * A differenza di {@link #isLoaded} non dipende da quando il generatore in background finisce,
+     * quindi la logica di gioco che la usa resta deterministica. Un terreno denso è sempre tutto attivo.
+     */
+    boolean isActive(int x, int y);
+
+    /**
+     * Segnala la posizione attorno a cui si sta giocando, per caricare in anticipo e scaricare le zone lontane.
+     */
+    void focus(int x, int y);
+
+    /**
+     * Stima la memoria occupata dalle celle attualmente in memoria, in byte.
+     */
+    long estimateMemoryFootprint();
+}
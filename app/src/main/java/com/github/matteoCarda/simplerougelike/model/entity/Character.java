@@ -2,12 +2,17 @@ package com.github.matteoCarda.simplerougelike.model.entity;
 
 /**
  * Classe base astratta per tutte le entità "viventi" del gioco (es. Player, Enemy).
- * Contiene le statistiche fondamentali come salute e potenza d'attacco.
+ * Contiene le statistiche fondamentali come salute, potenza d'attacco e velocità.
  */
 public abstract class Character extends GameObject {
+
+    /** Velocità standard: un personaggio a questa velocità agisce una volta per turno del giocatore. */
+    public static final int NORMAL_SPEED = 100;
+
     protected double health;
     protected double maxHealth;
     protected double attackPower;
+    protected int speed = NORMAL_SPEED;
 
     /**
      * Costruttore.
@@ -33,4 +38,21 @@ public abstract class Character extends GameObject {
 
     public double getAttackPower() { return this.attackPower; }
     public void setAttackPower(double attackPower) { this.attackPower = attackPower; }
+
+    public int getSpeed() { return this.speed; }
+
+    /**
+     * Imposta la velocità: il doppio di {@link #NORMAL_SPEED} agisce due volte più spesso, la metà una volta ogni due.
+     * @throws IllegalArgumentException se la velocità non è positiva.
+     */
+    public void setSpeed(int speed) {
+        checkSpeed(speed);
+        this.speed = speed;
+    }
+
+    protected static void checkSpeed(int speed) {
+        if (speed <= 0) {
+            throw new IllegalArgumentException("Velocità non valida: " + speed);
+        }
+    }
 }
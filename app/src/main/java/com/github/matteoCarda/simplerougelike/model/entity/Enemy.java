@@ -3,9 +3,30 @@ package com.github.matteoCarda.simplerougelike.model.entity;
 /**
  * Rappresenta un'entità nemica.
  * Estende {@link Character} con statistiche di base fisse.
+ * Quando il nemico è su una mappa, i suoi dati vivono negli array di un {@link EnemyStore}
+ * e questo oggetto ne è solo una vista: getter e setter leggono e scrivono lo slot assegnato.
  */
 public class Enemy extends Character {
 
+    /** Salute (e salute massima) di un nemico appena creato. */
+    public static final double BASE_HEALTH = 30;
+    /** Potenza d'attacco di un nemico appena creato. */
+    public static final double BASE_ATTACK_POWER = 5;
+    /** Raggio visivo di un nemico appena creato, uguale a quello del giocatore. */
+    public static final int DEFAULT_SIGHT_RADIUS = 8;
+    /** Raggio visivo massimo di un nemico. */
+    public static final int MAX_SIGHT_RADIUS = 16;
+
+    // Raggio visivo e ricordo del giocatore: ultima posizione vista e azioni per cui il nemico la ricorda ancora.
+    private int sightRadius = DEFAULT_SIGHT_RADIUS;
+    private int lastSeenX;
+    private int lastSeenY;
+    private int memory;
+
+    // Archivio e slot a cui la vista è collegata (store è null se il nemico non è su una mappa).
+    private EnemyStore store;
+    private int slot;
+
     /**
      * Costruttore.
      * @param x Coordinata x iniziale.
@@ -13,6 +34,149 @@ public class Enemy extends Character {
      */
     public Enemy(int x, int y) {
         // Statistiche base per un nemico generico: 30 HP, 5 Attack Power.
-        super(x, y, 30, 5);
+        super(x, y, BASE_HEALTH, BASE_ATTACK_POWER);
+    }
+
+    /**
+     * Riporta un nemico non più su una mappa allo stato di un nemico appena creato, nella posizione indicata.
+     * Usato per riutilizzare le istanze di un pool invece di allocarne di nuove.
+     * @throws IllegalStateException se il nemico appartiene ancora a un archivio.
+     */
+    public void reset(int x, int y) {
+        if (store != null) {
+            throw new IllegalStateException("Il nemico appartiene ancora a un archivio");
+        }
+        this.x = x;
+        this.y = y;
+        this.health = BASE_HEALTH;
+        this.maxHealth = BASE_HEALTH;
+        this.attackPower = BASE_ATTACK_POWER;
+        this.speed = NORMAL_SPEED;
+        this.sightRadius = DEFAULT_SIGHT_RADIUS;
+        this.lastSeenX = 0;
+        this.lastSeenY = 0;
+        this.memory = 0;
+    }
+
+    // --- Collegamento all'archivio (usato solo da EnemyStore) ---
+
+    void bind(EnemyStore store, int slot) {
+        this.store = store;
+        this.slot = slot;
+    }
+
+    /**
+     * Scollega la vista, copiando nei campi l'ultimo stato noto dallo slot dell'archivio.
+     */
+    void unbind() {
+        EnemyStore from = store;
+        this.x = from.getX(slot);
+        this.y = from.getY(slot);
+        this.health = from.getHealth(slot);
+        this.maxHealth = from.getMaxHealth(slot);
+        this.attackPower = from.getAttackPower(slot);
+        this.speed = from.getSpeed(slot);
+        this.sightRadius = from.getSightRadius(slot);
+        this.lastSeenX = from.getLastSeenX(slot);
+        this.lastSeenY = from.getLastSeenY(slot);
+        this.memory = from.getMemory(slot);
+        this.store = null;
+        attach(NO_ID, null);
+    }
+
+    boolean isStored() { return store != null; }
+
+    boolean isStoredIn(EnemyStore candidate) { return store == candidate; }
+
+    int getSlot() { return slot; }
+
+    // --- Accesso ai dati, delegato all'archivio quando collegato ---
+
+    @Override
+    public int getX() { return store != null ? store.getX(slot) : x; }
+
+    @Override
+    public int getY() { return store != null ? store.getY(slot) : y; }
+
+    @Override
+    public void setPosition(int x, int y) {
+        if (store != null) {
+            store.setPosition(slot, x, y);
+        } else {
+            super.setPosition(x, y);
+        }
+    }
+
+    @Override
+    public double getHealth() { return store != null ? store.getHealth(slot) : health; }
+
+    @Override
+    public void setHealth(double health) {
+        if (store != null) store.setHealth(slot, health); else this.health = health;
+    }
+
+    @Override
+    public double getMaxHealth() { return store != null ? store.getMaxHealth(slot) : maxHealth; }
+
+    @Override
+    public void setMaxHealth(double maxHealth) {
+        if (store != null) store.setMaxHealth(slot, maxHealth); else this.maxHealth = maxHealth;
+    }
+
+    @Override
+    public double getAttackPower() { return store != null ? store.getAttackPower(slot) : attackPower; }
+
+    @Override
+    public void setAttackPower(double attackPower) {
+        if (store != null) store.setAttackPower(slot, attackPower); else this.attackPower = attackPower;
+    }
+
+    @Override
+    public int getSpeed() { return store != null ? store.getSpeed(slot) : speed; }
+
+    @Override
+    public void setSpeed(int speed) {
+        checkSpeed(speed);
+        if (store != null) store.setSpeed(slot, speed); else this.speed = speed;
+    }
+
+    /**
+     * Il raggio visivo, in celle (distanza euclidea, come il campo visivo del giocatore).
+     */
+    public int getSightRadius() { return store != null ? store.getSightRadius(slot) : sightRadius; }
+
+    /**
+     * Imposta il raggio visivo.
+     * @throws IllegalArgumentException se il raggio è fuori da 1..{@link #MAX_SIGHT_RADIUS}.
+     */
+    public void setSightRadius(int sightRadius) {
+        if (sightRadius < 1 || sightRadius > MAX_SIGHT_RADIUS) {
+            throw new IllegalArgumentException("Raggio visivo non valido: " + sightRadius);
+        }
+        if (store != null) store.setSightRadius(slot, sightRadius); else this.sightRadius = sightRadius;
+    }
+
+    /** Coordinata x dell'ultima posizione in cui il nemico ha visto il giocatore (valida se {@link #getMemory()} > 0). */
+    public int getLastSeenX() { return store != null ? store.getLastSeenX(slot) : lastSeenX; }
+
+    /** Coordinata y dell'ultima posizione in cui il nemico ha visto il giocatore (valida se {@link #getMemory()} > 0). */
+    public int getLastSeenY() { return store != null ? store.getLastSeenY(slot) : lastSeenY; }
+
+    /**
+     * Azioni per cui il nemico ricorda ancora l'ultima posizione vista del giocatore (0: nessun ricordo).
+     */
+    public int getMemory() { return store != null ? store.getMemory(slot) : memory; }
+
+    /**
+     * Registra l'ultima posizione vista del giocatore e per quante azioni ricordarla (0 per dimenticarla).
+     */
+    public void setLastSeen(int x, int y, int memory) {
+        if (store != null) {
+            store.setLastSeen(slot, x, y, memory);
+        } else {
+            this.lastSeenX = x;
+            this.lastSeenY = y;
+            this.memory = memory;
+        }
     }
 }
@@ -0,0 +1,305 @@
+package com.github.matteoCarda.simplerougelike.model.entity;
+
+import com.github.matteoCarda.simplerougelike.model.OccupancyGrid;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Archivio "data-oriented" dei nemici di un livello (struttura di array).
+ * Posizioni, salute, attacco, velocità e percezione stanno in array primitivi paralleli indicizzati per slot,
+ * così i cicli dell'IA e del rendering scorrono memoria contigua invece di saltare tra oggetti.
+ * Gli slot sono densi: un nemico rimosso viene rimpiazzato dall'ultimo (swap-remove).
+ * Ogni nemico ha anche un id intero stabile finché resta nell'archivio, usato dall'indice di occupazione.
+ * Gli id dei nemici rimossi vengono riutilizzati, così le tabelle per id restano grandi quanto la popolazione
+ * massima e non quanto tutti i nemici comparsi nel livello.
+ * Gli oggetti {@link Enemy} restano come viste sottili sugli array per il codice esistente.
+ */
+public final class EnemyStore {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final OccupancyGrid occupancy;
+
+    private int size;
+    private int[] xs = new int[INITIAL_CAPACITY];
+    private int[] ys = new int[INITIAL_CAPACITY];
+    private double[] health = new double[INITIAL_CAPACITY];
+    private double[] maxHealth = new double[INITIAL_CAPACITY];
+    private double[] attackPower = new double[INITIAL_CAPACITY];
+    private int[] speeds = new int[INITIAL_CAPACITY];
+    private int[] sightRadii = new int[INITIAL_CAPACITY];
+    private int[] lastSeenXs = new int[INITIAL_CAPACITY];
+    private int[] lastSeenYs = new int[INITIAL_CAPACITY];
+    private int[] memories = new int[INITIAL_CAPACITY];
+    private int[] ids = new int[INITIAL_CAPACITY];
+    private Enemy[] views = new Enemy[INITIAL_CAPACITY];
+
+    // Mappa id -> slot (-1 se l'id non è in uso).
+    private int[] slotById = new int[INITIAL_CAPACITY];
+    private int nextId;
+    // Id liberati dalle rimozioni, riassegnati prima di crearne di nuovi (l'ultimo liberato per primo).
+    private int[] freeIds = new int[INITIAL_CAPACITY];
+    private int freeIdCount;
+    private long addedCount;
+
+    private final List<Enemy> listView = new AbstractList<Enemy>() {
+        @Override
+        public Enemy get(int index) {
+            if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Indice " + index + ", dimensione " + size);
+            return views[index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    };
+
+    /**
+     * Costruttore.
+     * @param occupancy L'indice di occupazione dei nemici da tenere aggiornato.
+     */
+    public EnemyStore(OccupancyGrid occupancy) {
+        this.occupancy = occupancy;
+    }
+
+    // --- ACCESSO PER SLOT (cicli caldi) ---
+
+    /** Numero di nemici presenti; gli slot validi vanno da 0 a size() - 1. */
+    public int size() { return size; }
+
+    public int getX(int slot) { return xs[slot]; }
+
+    public int getY(int slot) { return ys[slot]; }
+
+    public double getHealth(int slot) { return health[slot]; }
+
+    public double getMaxHealth(int slot) { return maxHealth[slot]; }
+
+    public double getAttackPower(int slot) { return attackPower[slot]; }
+
+    public int getSpeed(int slot) { return speeds[slot]; }
+
+    public int getSightRadius(int slot) { return sightRadii[slot]; }
+
+    public int getLastSeenX(int slot) { return lastSeenXs[slot]; }
+
+    public int getLastSeenY(int slot) { return lastSeenYs[slot]; }
+
+    /** Azioni per cui il nemico dello slot ricorda ancora la posizione del giocatore (0: nessun ricordo). */
+    public int getMemory(int slot) { return memories[slot]; }
+
+    /** Ritorna la vista {@link Enemy} dello slot. */
+    public Enemy getEnemy(int slot) { return views[slot]; }
+
+    /**
+     * Ritorna il nemico con l'id indicato.
+     * @return Il nemico, o null se l'id non è (più) presente.
+     */
+    public Enemy getById(int id) {
+        if (id < 0 || id >= nextId) return null;
+        int slot = slotById[id];
+        return slot < 0 ? null : views[slot];
+    }
+
+    /**
+     * Ritorna lo slot del nemico con l'id indicato.
+     * @return Lo slot, o -1 se l'id non è (più) presente.
+     */
+    public int getSlot(int id) {
+        if (id < 0 || id >= nextId) return -1;
+        return slotById[id];
+    }
+
+    /**
+     * Limite superiore degli id: gli id validi vanno da 0 a getIdCount() - 1.
+     * Cresce solo quando la popolazione supera il massimo raggiunto finora.
+     */
+    public int getIdCount() {
+        return nextId;
+    }
+
+    /**
+     * Numero di nemici aggiunti dalla creazione dell'archivio: cambia se e solo se sono arrivati nuovi nemici,
+     * anche quando riusano l'id di uno rimosso.
+     */
+    public long getAddedCount() {
+        return addedCount;
+    }
+
+    /**
+     * Ritorna una vista in sola lettura dei nemici, in ordine di slot.
+     * L'ordine cambia quando un nemico viene rimosso.
+     */
+    public List<Enemy> asList() {
+        return listView;
+    }
+
+    // --- AGGIUNTA E RIMOZIONE ---
+
+    /**
+     * Copia lo stato del nemico negli array e lo trasforma in una vista sul nuovo slot.
+     */
+    public void add(Enemy enemy) {
+        if (enemy.isStored()) {
+            throw new IllegalStateException("Il nemico appartiene già a un archivio");
+        }
+        ensureCapacity(size + 1);
+        int id;
+        if (freeIdCount > 0) {
+            id = freeIds[--freeIdCount];
+        } else {
+            id = nextId++;
+            if (id >= slotById.length) {
+                slotById = Arrays.copyOf(slotById, slotById.length * 2);
+            }
+        }
+        addedCount++;
+        int slot = size++;
+        xs[slot] = enemy.getX();
+        ys[slot] = enemy.getY();
+        health[slot] = enemy.getHealth();
+        maxHealth[slot] = enemy.getMaxHealth();
+        attackPower[slot] = enemy.getAttackPower();
+        speeds[slot] = enemy.getSpeed();
+        sightRadii[slot] = enemy.getSightRadius();
+        lastSeenXs[slot] = enemy.getLastSeenX();
+        lastSeenYs[slot] = enemy.getLastSeenY();
+        memories[slot] = enemy.getMemory();
+        ids[slot] = id;
+        views[slot] = enemy;
+        slotById[id] = slot;
+        enemy.attach(id, null);
+        enemy.bind(this, slot);
+        occupancy.put(xs[slot], ys[slot], id);
+    }
+
+    /**
+     * Rimuove un nemico, se presente in questo archivio.
+     * @return true se il nemico è stato rimosso.
+     */
+    public boolean remove(Enemy enemy) {
+        if (!enemy.isStoredIn(this)) return false;
+        swapRemove(enemy.getSlot());
+        return true;
+    }
+
+    /**
+     * Rimuove con swap-remove tutti i nemici senza salute
+     * (stessa regola di {@link com.github.matteoCarda.simplerougelike.service.CharacterService#isAlive}).
+     * @return Il numero di nemici rimossi.
+     */
+    public int removeDead() {
+        return removeDead(null);
+    }
+
+    /**
+     * Come {@link #removeDead()}, ma aggiunge i nemici rimossi alla lista indicata (es. per restituirli a un pool).
+     * @param removedOut Lista in cui aggiungere i nemici rimossi (non viene svuotata), o null.
+     * @return Il numero di nemici rimossi.
+     */
+    public int removeDead(List<Enemy> removedOut) {
+        int removed = 0;
+        int slot = 0;
+        while (slot < size) {
+            if (health[slot] > 0) {
+                slot++;
+            } else {
+                if (removedOut != null) removedOut.add(views[slot]);
+                // Lo slot ora contiene l'ex ultimo nemico, che va controllato a sua volta.
+                swapRemove(slot);
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Rimuove tutti i nemici, dall'ultimo slot al primo (ogni rimozione costa O(1)).
+     * @param removedOut Lista in cui aggiungere i nemici rimossi (non viene svuotata), o null.
+     */
+    public void clear(List<Enemy> removedOut) {
+        while (size > 0) {
+            if (removedOut != null) removedOut.add(views[size - 1]);
+            swapRemove(size - 1);
+        }
+    }
+
+    /**
+     * Toglie lo slot indicato spostando al suo posto l'ultimo nemico.
+     * La vista rimossa torna a usare i propri campi, con i valori aggiornati.
+     */
+    private void swapRemove(int slot) {
+        Enemy removed = views[slot];
+        occupancy.remove(xs[slot], ys[slot], ids[slot]);
+        slotById[ids[slot]] = -1;
+        // Gli id liberi non superano mai quelli assegnati, quindi bastano tanti posti quanti slotById.
+        if (freeIds.length < slotById.length) {
+            freeIds = Arrays.copyOf(freeIds, slotById.length);
+        }
+        freeIds[freeIdCount++] = ids[slot];
+        removed.unbind();
+
+        int last = --size;
+        if (slot != last) {
+            xs[slot] = xs[last];
+            ys[slot] = ys[last];
+            health[slot] = health[last];
+            maxHealth[slot] = maxHealth[last];
+            attackPower[slot] = attackPower[last];
+            speeds[slot] = speeds[last];
+            sightRadii[slot] = sightRadii[last];
+            lastSeenXs[slot] = lastSeenXs[last];
+            lastSeenYs[slot] = lastSeenYs[last];
+            memories[slot] = memories[last];
+            ids[slot] = ids[last];
+            views[slot] = views[last];
+            slotById[ids[slot]] = slot;
+            views[slot].bind(this, slot);
+        }
+        views[last] = null;
+    }
+
+    // --- SCRITTURA (usata dalle viste Enemy) ---
+
+    void setPosition(int slot, int x, int y) {
+        occupancy.move(ids[slot], xs[slot], ys[slot], x, y);
+        xs[slot] = x;
+        ys[slot] = y;
+    }
+
+    void setHealth(int slot, double value) { health[slot] = value; }
+
+    void setMaxHealth(int slot, double value) { maxHealth[slot] = value; }
+
+    void setAttackPower(int slot, double value) { attackPower[slot] = value; }
+
+    void setSpeed(int slot, int value) { speeds[slot] = value; }
+
+    void setSightRadius(int slot, int value) { sightRadii[slot] = value; }
+
+    void setLastSeen(int slot, int x, int y, int memory) {
+        lastSeenXs[slot] = x;
+        lastSeenYs[slot] = y;
+        memories[slot] = memory;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= xs.length) return;
+        int newCapacity = Math.max(capacity, xs.length * 2);
+        xs = Arrays.copyOf(xs, newCapacity);
+        ys = Arrays.copyOf(ys, newCapacity);
+        health = Arrays.copyOf(health, newCapacity);
+        maxHealth = Arrays.copyOf(maxHealth, newCapacity);
+        attackPower = Arrays.copyOf(attackPower, newCapacity);
+        speeds = Arrays.copyOf(speeds, newCapacity);
+        sightRadii = Arrays.copyOf(sightRadii, newCapacity);
+        lastSeenXs = Arrays.copyOf(lastSeenXs, newCapacity);
+        lastSeenYs = Arrays.copyOf(lastSeenYs, newCapacity);
+        memories = Arrays.copyOf(memories, newCapacity);
+        ids = Arrays.copyOf(ids, newCapacity);
+        views = Arrays.copyOf(views, newCapacity);
+    }
+}
@@ -5,9 +5,25 @@ package com.github.matteoCarda.simplerougelike.model.entity;
  * Fornisce coordinate (x,y) e metodi base per la posizione.
  */
 public abstract class GameObject {
+
+    /** Id usato per gli oggetti non ancora registrati su una mappa. */
+    public static final int NO_ID = -1;
+
     protected int x;
     protected int y;
 
+    // Id assegnato dalla GameMap e ascoltatore che mantiene aggiornato l'indice di occupazione.
+    private int id = NO_ID;
+    private PositionListener positionListener;
+
+    /**
+     * Ascoltatore notificato ad ogni cambio di posizione.
+     * Usato dalla {@link com.github.matteoCarda.simplerougelike.model.GameMap} per aggiornare l'indice delle celle.
+     */
+    public interface PositionListener {
+        void onPositionChanged(GameObject gameObject, int oldX, int oldY);
+    }
+
     /**
      * Costruttore.
      * @param x Coordinata x iniziale.
@@ -22,13 +38,30 @@ public abstract class GameObject {
 
     public int getY() { return y; }
 
+    public int getId() { return id; }
+
+    /**
+     * Collega l'oggetto a una mappa. Chiamato solo dalla GameMap quando l'oggetto viene aggiunto o rimosso.
+     * @param id L'id assegnato, o {@link #NO_ID} per scollegarlo.
+     * @param positionListener L'ascoltatore da notificare, o null.
+     */
+    public void attach(int id, PositionListener positionListener) {
+        this.id = id;
+        this.positionListener = positionListener;
+    }
+
     /**
      * Aggiorna la posizione dell'oggetto.
      * @param x Nuova coordinata x.
      * @param y Nuova coordinata y.
      */
     public void setPosition(int x, int y) {
+        int oldX = this.x;
+        int oldY = this.y;
         this.x = x;
         this.y = y;
+        if (positionListener != null) {
+            positionListener.onPositionChanged(this, oldX, oldY);
+        }
     }
 }
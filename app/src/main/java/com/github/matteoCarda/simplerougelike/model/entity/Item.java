@@ -22,4 +22,16 @@ public abstract class Item extends GameObject {
         return name;
     }
 
+    /**
+     * Sposta un oggetto non più su una mappa nella posizione indicata, per riutilizzarlo da un pool.
+     * @throws IllegalStateException se l'oggetto è ancora registrato su una mappa.
+     */
+    public void reset(int x, int y) {
+        if (getId() != NO_ID) {
+            throw new IllegalStateException("L'oggetto è ancora su una mappa");
+        }
+        this.x = x;
+        this.y = y;
+    }
+
 }
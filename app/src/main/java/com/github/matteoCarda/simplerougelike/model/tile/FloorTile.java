@@ -5,13 +5,18 @@ package com.github.matteoCarda.simplerougelike.model.tile;
  */
 public class FloorTile extends Tile {
 
+    /** Istanza condivisa da tutte le celle di pavimento. */
+    public static final FloorTile INSTANCE = new FloorTile();
+
     /**
-     * Costruttore.
-     * @param x Coordinata x.
-     * @param y Coordinata y.
+     * Costruttore privato: usare {@link #INSTANCE}.
      */
-    public FloorTile(int x, int y) {
-        super(x, y);
+    private FloorTile() {
+    }
+
+    @Override
+    public byte getCode() {
+        return FLOOR;
     }
 
     /**
@@ -1,34 +1,31 @@
 package com.github.matteoCarda.simplerougelike.model.tile;
 
 /**
- * Classe base astratta per una singola cella della mappa di gioco.
- * Definisce la posizione e le proprietà fondamentali come la calpestabilità.
+ * Classe base astratta per un tipo di cella della mappa di gioco.
+ * Le tile sono flyweight immutabili: esiste una sola istanza per tipo, condivisa da tutte
+ * le celle. La posizione non è memorizzata qui ma è data dall'indice nella griglia del
+ * {@link com.github.matteoCarda.simplerougelike.model.GameMap}, che salva un solo byte per cella.
  */
 public abstract class Tile {
-    protected int x;
-    protected int y;
-    protected boolean isVisible;
+
+    /** Codice compatto di un muro. */
+    public static final byte WALL = 0;
+    /** Codice compatto di un pavimento. */
+    public static final byte FLOOR = 1;
 
     /**
-     * Costruttore.
-     * @param x Coordinata x.
-     * @param y Coordinata y.
+     * Ritorna l'istanza condivisa corrispondente a un codice compatto.
+     * @param code Il codice della cella.
+     * @return La tile condivisa (i codici sconosciuti sono trattati come muro).
      */
-    public Tile(int x, int y) {
-        this.x = x;
-        this.y = y;
+    public static Tile fromCode(byte code) {
+        return code == FLOOR ? FloorTile.INSTANCE : WallTile.INSTANCE;
     }
 
-    public int getX() { return x; }
-    public int getY() { return y; }
-
     /**
-     * Flag che indica se la casella è stata scoperta (esplorata) dal giocatore.
-     * Usato per il "Fog of War" persistente.
+     * Ritorna il codice compatto di questo tipo di tile, usato nella griglia della mappa.
      */
-    public boolean isVisible() { return isVisible; }
-
-    public void setVisible(boolean visible) { this.isVisible = visible; }
+    public abstract byte getCode();
 
     /**
      * Definisce se un'entità può passare attraverso questa cella.
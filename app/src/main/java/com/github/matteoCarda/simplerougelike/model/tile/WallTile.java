@@ -6,14 +6,18 @@ package com.github.matteoCarda.simplerougelike.model.tile;
  */
 public class WallTile extends Tile {
 
+    /** Istanza condivisa da tutte le celle di muro. */
+    public static final WallTile INSTANCE = new WallTile();
+
     /**
-     * Costruttore per una casella Muro.
-     *
-     * @param x La coordinata x della casella.
-     * @param y La coordinata y della casella.
+     * Costruttore privato: usare {@link #INSTANCE}.
      */
-    public WallTile(int x, int y){
-        super(x,y);
+    private WallTile(){
+    }
+
+    @Override
+    public byte getCode(){
+        return WALL;
     }
 
     /**
@@ -9,13 +9,31 @@ import com.github.matteoCarda.simplerougelike.model.entity.Character;
 public class CombatService {
 
     private final CharacterService characterService;
+    private final GameEventBus eventBus;
 
     /**
-     * Costruttore.
+     * Costruttore con un bus degli eventi privato.
      * @param characterService Istanza di CharacterService per la manipolazione dello stato dei personaggi.
      */
     public CombatService(CharacterService characterService) {
+        this(characterService, new GameEventBus());
+    }
+
+    /**
+     * Costruttore.
+     * @param characterService Istanza di CharacterService per la manipolazione dello stato dei personaggi.
+     * @param eventBus Il bus su cui pubblicare attacchi, danni e morti.
+     */
+    public CombatService(CharacterService characterService, GameEventBus eventBus) {
         this.characterService = characterService;
+        this.eventBus = eventBus;
+    }
+
+    /**
+     * Il bus su cui vengono pubblicati gli eventi di combattimento.
+     */
+    public GameEventBus getEventBus() {
+        return eventBus;
     }
 
     /**
@@ -38,10 +56,19 @@ public class CombatService {
         // Delega l'applicazione del danno al service apposito.
         characterService.takeDamage(target, damage);
 
-        System.out.println(attacker.getClass().getSimpleName() + " attacca " + target.getClass().getSimpleName() +
-                " per " + damage + " danni. Vita rimanente: " + target.getHealth());
+        // Eventi a campi primitivi: nessuna stringa né I/O durante il turno.
+        int attackerId = GameEventBus.actorId(attacker);
+        int targetId = GameEventBus.actorId(target);
+        int x = target.getX();
+        int y = target.getY();
+        eventBus.publish(GameEventBus.ATTACK, attackerId, targetId, x, y, damage);
+        eventBus.publish(GameEventBus.DAMAGE, targetId, attackerId, x, y, target.getHealth());
 
         // Ritorna lo stato di "morte" del target post-attacco.
-        return !characterService.isAlive(target);
+        boolean dead = !characterService.isAlive(target);
+        if (dead) {
+            eventBus.publish(GameEventBus.DEATH, targetId, attackerId, x, y, 0);
+        }
+        return dead;
     }
 }
@@ -1,13 +1,14 @@
 package com.github.matteoCarda.simplerougelike.service;
 
 import com.github.matteoCarda.simplerougelike.model.GameMap;
+import com.github.matteoCarda.simplerougelike.model.OccupancyGrid;
 import com.github.matteoCarda.simplerougelike.model.entity.Enemy;
 import com.github.matteoCarda.simplerougelike.model.entity.Player;
 
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 import squidpony.squidai.DijkstraMap;
-import squidpony.squidmath.Coord;
 
 /**
  * Gestisce l'Intelligenza Artificiale (IA) dei nemici.
@@ -18,6 +19,58 @@ public class EnemyAIService {
     private final CharacterService characterService;
     private final Random random = new Random();
 
+    /**
+     * Distanza di Manhattan entro cui serve la mappa di Dijkstra verso il giocatore;
+     * senza {@link Perception} è anche la distanza entro cui un nemico insegue.
+     * Con la percezione la scansione arriva fin dove vedono i nemici che inseguono (vedi {@link #needsDijkstraMap}).
+     */
+    public static final int AGGRO_RADIUS = 8;
+    /** Passi extra oltre la portata dell'inseguimento coperti dalla scansione limitata, per aggirare gli ostacoli. */
+    public static final int SCAN_MARGIN = 4;
+    /**
+     * Lato della finestra di Dijkstra sulle mappe molto grandi (oltre {@link OccupancyGrid#DENSE_CELL_LIMIT} celle):
+     * invece di una DijkstraMap grande quanto il mondo se ne tiene una di questo lato attorno al giocatore.
+     */
+    public static final int DIJKSTRA_WINDOW_SIZE = 128;
+
+    // Intenzioni restituite da decideIntent: un valore >= 0 è la cella di destinazione (x * altezza + y).
+    /** Il nemico resta fermo. */
+    public static final int INTENT_WAIT = -1;
+    /** Il nemico attacca il giocatore. */
+    public static final int INTENT_ATTACK = -2;
+
+    // Spostamenti cardinali, gli stessi usati dalla DijkstraMap (misura di Manhattan).
+    private static final int[] STEP_X = {0, 0, -1, 1};
+    private static final int[] STEP_Y = {-1, 1, 0, 0};
+
+    // Cache della mappa di Dijkstra: il terreno non cambia durante un livello,
+    // quindi la mappa viene costruita una sola volta per GameMap e riutilizzata.
+    private GameMap cachedGameMap;
+    private DijkstraMap cachedDijkstraMap;
+    // Origine, in coordinate del mondo, della zona coperta dalla DijkstraMap (0,0 se copre tutta la mappa).
+    private boolean windowed;
+    private int windowOriginX;
+    private int windowOriginY;
+    // Obiettivo dell'ultima scansione valida; hasScannedGoal è false se la mappa va rigenerata.
+    private boolean hasScannedGoal;
+    private int scannedGoalX;
+    private int scannedGoalY;
+    private int scannedLimit;
+    // Rettangolo (estremi inclusi) in cui il gradiente può differire dalla mappa fisica:
+    // è l'unica area da ripulire prima della scansione successiva.
+    private int dirtyMinX, dirtyMinY, dirtyMaxX, dirtyMaxY;
+    // Celle coperte dall'ultima chiamata a getDijkstraMapTo (0 se ha riusato la scansione precedente).
+    private long lastScanCells;
+
+    // Modalità di scansione: se true la flood fill si ferma alla portata dell'inseguimento più il margine.
+    private boolean boundedScan = true;
+    // Distanza di Manhattan entro cui i nemici di questo turno inseguono lungo il gradiente (vedi needsDijkstraMap).
+    private int pursuitReach = AGGRO_RADIUS;
+    // Percezione del livello corrente, o null per inseguire in base alla sola distanza.
+    private Perception perception;
+    // Lista di appoggio riutilizzata per le query di prossimità.
+    private final List<Enemy> nearbyEnemies = new ArrayList<>();
+
     /**
      * Costruttore del servizio di IA.
      * @param combatService Servizio per la gestione del combattimento.
@@ -32,12 +85,13 @@ public class EnemyAIService {
      * Esegue il turno di un nemico, determinando l'azione da compiere.
      * La logica è la seguente:
      * 1. Se adiacente al giocatore, attacca.
-     * 2. Se nel raggio di inseguimento, si muove verso il giocatore usando Dijkstra.
+     * 2. Se sa dove si trova il giocatore, lo insegue (vedi {@link #setPerception}).
      * 3. Altrimenti, si muove casualmente.
      * @param enemy Il nemico che deve agire.
      * @param gameMap La mappa di gioco attuale.
      * @param player Il giocatore, target principale.
-     * @param dijkstraMap La mappa di Dijkstra pre-calcolata con il giocatore come target.
+     * @param dijkstraMap La mappa di Dijkstra già scansionata con il giocatore come target,
+     *                    o null se nessun nemico è nel raggio di aggro.
      */
     public void performTurn(Enemy enemy, GameMap gameMap, Player player, DijkstraMap dijkstraMap){
         // Distanza di Manhattan, un calcolo veloce per la prossimità.
@@ -50,16 +104,10 @@ public class EnemyAIService {
         }
 
         // 2. Inseguimento
-        if (distance <= 8){ // Raggio di "aggro"
-            // Calcola il prossimo passo verso il giocatore.
-            ArrayList<Coord> path = dijkstraMap.findPath(1, null,null, Coord.get(enemy.getX(), enemy.getY()));
-            if (!path.isEmpty()){
-                Coord nextStep = path.get(0);
-                if (isMoveValid(nextStep.x, nextStep.y, gameMap, player)){
-                    enemy.setPosition(nextStep.x, nextStep.y);
-                    return; // Azione del turno completata.
-                }
-            }
+        int nextStep = pursue(enemy, gameMap, player, dijkstraMap, distance);
+        if (nextStep != INTENT_WAIT){
+            moveEnemy(enemy, nextStep / gameMap.getHeight(), nextStep % gameMap.getHeight());
+            return; // Azione del turno completata.
         }
 
         // 3. Movimento casuale (fallback)
@@ -69,42 +117,520 @@ public class EnemyAIService {
         int targetY = enemy.getY() + dirY;
 
         if (isMoveValid(targetX, targetY, gameMap, player)){
-            enemy.setPosition(targetX, targetY);
+            moveEnemy(enemy, targetX, targetY);
         } // Altrimenti, il nemico sta fermo.
     }
 
     /**
-     * Genera una mappa di costi per l'algoritmo di Dijkstra a partire dalla mappa di gioco.
+     * Sceglie l'azione di un nemico senza modificare lo stato del gioco.
+     * Segue le stesse regole di {@link #performTurn}, ma il movimento casuale è ricavato da
+     * randomBits invece che dal Random condiviso: il metodo è quindi sicuro da chiamare in parallelo
+     * e, a parità di input, dà sempre lo stesso risultato.
+     * @param enemy Il nemico che deve decidere.
+     * @param gameMap La mappa di gioco attuale (solo lettura).
+     * @param player Il giocatore, target principale.
+     * @param dijkstraMap La mappa di Dijkstra già scansionata, o null.
+     * @param randomBits Bit casuali propri di questo nemico e di questo turno.
+     * @return {@link #INTENT_ATTACK}, {@link #INTENT_WAIT} o la cella di destinazione (x * altezza + y).
+     */
+    public int decideIntent(Enemy enemy, GameMap gameMap, Player player, DijkstraMap dijkstraMap, long randomBits) {
+        int distance = Math.abs(enemy.getX() - player.getX()) + Math.abs(enemy.getY() - player.getY());
+
+        if (distance <= 1) {
+            return INTENT_ATTACK;
+        }
+
+        int nextStep = pursue(enemy, gameMap, player, dijkstraMap, distance);
+        if (nextStep != INTENT_WAIT) {
+            return nextStep;
+        }
+
+        // Due valori da -1 a 1 presi da metà diverse dei bit casuali.
+        int targetX = enemy.getX() + (int) Long.remainderUnsigned(randomBits, 3) - 1;
+        int targetY = enemy.getY() + (int) Long.remainderUnsigned(randomBits >>> 32, 3) - 1;
+        if (isMoveValid(targetX, targetY, gameMap, player)) {
+            return targetX * gameMap.getHeight() + targetY;
+        }
+        return INTENT_WAIT;
+    }
+
+    /**
+     * Imposta la percezione del livello corrente. Con una percezione un nemico insegue solo se ha visto il giocatore:
+     * se lo vede segue il gradiente di Dijkstra, se lo ha perso di vista va verso l'ultima posizione ricordata.
+     * Senza (null, il valore iniziale) vale la sola distanza: insegue chiunque sia entro {@link #AGGRO_RADIUS},
+     * anche attraverso i muri.
+     */
+    public void setPerception(Perception perception) {
+        this.perception = perception;
+    }
+
+    public Perception getPerception() {
+        return perception;
+    }
+
+    /**
+     * Aggiorna il ricordo del giocatore dei nemici che stanno per agire (vedi {@link Perception#perceive}).
+     * Va chiamato prima delle loro decisioni; senza percezione non fa nulla.
+     */
+    public void perceive(Enemy[] enemies, int count, Player player) {
+        if (perception != null) {
+            perception.perceive(enemies, count, player);
+        }
+    }
+
+    /**
+     * Sceglie il passo di inseguimento di un nemico non adiacente al giocatore.
+     * @return La cella di destinazione (x * altezza + y), già controllata con isMoveValid,
+     *         o {@link #INTENT_WAIT} se il nemico non insegue o non ha un passo valido.
+     */
+    private int pursue(Enemy enemy, GameMap gameMap, Player player, DijkstraMap dijkstraMap, int distance) {
+        if (perception == null) {
+            return distance <= AGGRO_RADIUS ? gradientStep(enemy, gameMap, player, dijkstraMap) : INTENT_WAIT;
+        }
+        if (enemy.getMemory() == 0) {
+            return INTENT_WAIT;
+        }
+        int targetX = enemy.getLastSeenX();
+        int targetY = enemy.getLastSeenY();
+        if (targetX == player.getX() && targetY == player.getY()) {
+            // Il giocatore è dove il nemico lo ha visto: il gradiente porta da lui aggirando gli ostacoli.
+            int nextStep = gradientStep(enemy, gameMap, player, dijkstraMap);
+            if (nextStep != INTENT_WAIT) return nextStep;
+        }
+        // Il gradiente porta al giocatore vero, che il nemico non vede: va in linea retta verso il ricordo.
+        return directStep(enemy, gameMap, player, targetX, targetY);
+    }
+
+    /**
+     * Passo lungo il gradiente della mappa di Dijkstra, se valido.
+     */
+    private int gradientStep(Enemy enemy, GameMap gameMap, Player player, DijkstraMap dijkstraMap) {
+        if (dijkstraMap == null) return INTENT_WAIT;
+        int nextStep = findNextStep(dijkstraMap, gameMap, enemy.getX(), enemy.getY());
+        if (nextStep != INTENT_WAIT
+                && isMoveValid(nextStep / gameMap.getHeight(), nextStep % gameMap.getHeight(), gameMap, player)) {
+            return nextStep;
+        }
+        return INTENT_WAIT;
+    }
+
+    /**
+     * Passo cardinale verso una cella, prima lungo l'asse con la distanza maggiore e poi lungo l'altro.
+     */
+    private int directStep(Enemy enemy, GameMap gameMap, Player player, int targetX, int targetY) {
+        int x = enemy.getX();
+        int y = enemy.getY();
+        int dx = Integer.signum(targetX - x);
+        int dy = Integer.signum(targetY - y);
+        boolean horizontalFirst = Math.abs(targetX - x) >= Math.abs(targetY - y);
+        for (int attempt = 0; attempt < 2; attempt++) {
+            boolean horizontal = (attempt == 0) == horizontalFirst;
+            int stepX = horizontal ? x + dx : x;
+            int stepY = horizontal ? y : y + dy;
+            if ((stepX != x || stepY != y) && isMoveValid(stepX, stepY, gameMap, player)) {
+                return stepX * gameMap.getHeight() + stepY;
+            }
+        }
+        return INTENT_WAIT;
+    }
+
+    /**
+     * Reinizializza il generatore casuale usato da {@link #performTurn}, per turni riproducibili.
+     */
+    public void setSeed(long seed) {
+        random.setSeed(seed);
+    }
+
+    /**
+     * Ritorna la mappa di Dijkstra della mappa di gioco, costruendola solo la prima volta.
+     * Il chiamante può modificarne gli obiettivi, perciò la scansione in cache viene invalidata.
      * @param gameMap La mappa di gioco.
      * @return una DijkstraMap pronta per il pathfinding.
      */
     public DijkstraMap getDijkstraMap(GameMap gameMap) {
-        // I muri ('#') hanno costo infinito, il pavimento ('.') ha costo base.
-        char[][] costMap = new char[gameMap.getWidth()][gameMap.getHeight()];
-        for (int x = 0; x < gameMap.getWidth(); x++) {
-            for (int y = 0; y < gameMap.getHeight(); y++) {
-                costMap[x][y] = gameMap.getTile(x, y).isWalkable() ? '.' : '#';
+        DijkstraMap dijkstraMap = ensureDijkstraMap(gameMap);
+        hasScannedGoal = false;
+        markAllDirty(dijkstraMap);
+        return dijkstraMap;
+    }
+
+    /**
+     * Attiva o disattiva la scansione limitata al raggio di aggro.
+     * @param boundedScan true per limitare la flood fill attorno all'obiettivo, false per scansionare tutto il livello.
+     */
+    public void setBoundedScan(boolean boundedScan) {
+        if (this.boundedScan != boundedScan) {
+            this.boundedScan = boundedScan;
+            hasScannedGoal = false;
+        }
+    }
+
+    public boolean isBoundedScan() {
+        return boundedScan;
+    }
+
+    /**
+     * Controlla se almeno un nemico vivo è entro {@link #AGGRO_RADIUS} dal giocatore, cioè abbastanza vicino
+     * da poterlo inseguire lungo il gradiente.
+     * Usa l'indice di occupazione della mappa, quindi il costo dipende solo dall'area del raggio.
+     * @return true se serve una mappa di Dijkstra per questo turno.
+     */
+    public boolean isAnyEnemyInAggroRange(GameMap gameMap, Player player) {
+        nearbyEnemies.clear();
+        gameMap.findEnemiesWithin(player.getX(), player.getY(), AGGRO_RADIUS, nearbyEnemies);
+        boolean found = false;
+        for (int i = 0; i < nearbyEnemies.size() && !found; i++) {
+            found = characterService.isAlive(nearbyEnemies.get(i));
+        }
+        nearbyEnemies.clear();
+        return found;
+    }
+
+    /**
+     * Controlla se in questo turno qualche nemico seguirà il gradiente di Dijkstra verso il giocatore,
+     * e fissa fin dove deve arrivare la scansione di {@link #getDijkstraMapTo}.
+     * Basta un nemico vivo entro {@link #AGGRO_RADIUS}, come senza percezione. Con la percezione contano anche
+     * i nemici vivi che vedono il giocatore, o che lo ricordano proprio dove si trova: il loro raggio visivo è
+     * euclideo, quindi in diagonale arrivano oltre {@link #AGGRO_RADIUS} di Manhattan, e la scansione copre
+     * il raggio più grande fra i loro.
+     * Va chiamato dopo l'aggiornamento del campo visivo del giocatore.
+     * @return true se serve una mappa di Dijkstra per questo turno.
+     */
+    public boolean needsDijkstraMap(GameMap gameMap, Player player) {
+        pursuitReach = AGGRO_RADIUS;
+        boolean found = isAnyEnemyInAggroRange(gameMap, player);
+        if (perception == null) return found;
+        gameMap.findEnemiesWithin(player.getX(), player.getY(), manhattanReach(Enemy.MAX_SIGHT_RADIUS), nearbyEnemies);
+        for (int i = 0; i < nearbyEnemies.size(); i++) {
+            Enemy enemy = nearbyEnemies.get(i);
+            if (!characterService.isAlive(enemy)) continue;
+            boolean remembersHere = enemy.getMemory() > 0
+                    && enemy.getLastSeenX() == player.getX() && enemy.getLastSeenY() == player.getY();
+            if (remembersHere || perception.canSeePlayer(enemy)) {
+                int distance = Math.abs(enemy.getX() - player.getX()) + Math.abs(enemy.getY() - player.getY());
+                pursuitReach = Math.max(pursuitReach, Math.max(distance, manhattanReach(enemy.getSightRadius())));
+                found = true;
+            }
+        }
+        nearbyEnemies.clear();
+        return found;
+    }
+
+    /**
+     * Distanza di Manhattan massima di una cella entro un raggio euclideo (per eccesso: r * 1.5 >= r * sqrt(2)).
+     */
+    private static int manhattanReach(int radius) {
+        return radius + radius / 2;
+    }
+
+    /**
+     * Ritorna la mappa di Dijkstra scansionata verso un obiettivo (tipicamente il giocatore).
+     * Se l'obiettivo non è cambiato dall'ultima chiamata (es. il giocatore ha urtato un muro),
+     * la scansione precedente è ancora valida e viene restituita senza ricalcoli.
+     * @param gameMap La mappa di gioco.
+     * @param goalX Coordinata x dell'obiettivo.
+     * @param goalY Coordinata y dell'obiettivo.
+     * @return La DijkstraMap con il gradiente verso l'obiettivo.
+     */
+    public DijkstraMap getDijkstraMapTo(GameMap gameMap, int goalX, int goalY) {
+        DijkstraMap dijkstraMap = ensureDijkstraMap(gameMap);
+        int limit = pursuitReach + SCAN_MARGIN;
+        if (hasScannedGoal && scannedGoalX == goalX && scannedGoalY == goalY && scannedLimit >= limit) {
+            lastScanCells = 0;
+            return dijkstraMap;
+        }
+        if (windowed && !isInsideWindow(goalX, goalY, limit)) {
+            recenterWindow(gameMap, dijkstraMap, goalX, goalY);
+        }
+        int localX = goalX - windowOriginX;
+        int localY = goalY - windowOriginY;
+        if (boundedScan) {
+            // Ripulisce solo l'area toccata dalla scansione precedente e inonda fino al raggio di aggro.
+            resetDirtyRegion(dijkstraMap);
+            dijkstraMap.clearGoals();
+            dijkstraMap.setGoal(localX, localY);
+            dijkstraMap.partialScan(null, limit, null);
+            dirtyMinX = Math.max(0, localX - limit);
+            dirtyMinY = Math.max(0, localY - limit);
+            dirtyMaxX = Math.min(dijkstraMap.width - 1, localX + limit);
+            dirtyMaxY = Math.min(dijkstraMap.height - 1, localY + limit);
+            scannedLimit = limit;
+        } else {
+            dijkstraMap.reset();
+            dijkstraMap.setGoal(localX, localY);
+            // La variante void di scan non alloca la copia del gradiente.
+            dijkstraMap.scan(null, null);
+            markAllDirty(dijkstraMap);
+            scannedLimit = Integer.MAX_VALUE;
+        }
+        hasScannedGoal = true;
+        scannedGoalX = goalX;
+        scannedGoalY = goalY;
+        lastScanCells = (long) (dirtyMaxX - dirtyMinX + 1) * (dirtyMaxY - dirtyMinY + 1);
+        return dijkstraMap;
+    }
+
+    /**
+     * Numero di celle coperte dalla scansione dell'ultima chiamata a {@link #getDijkstraMapTo},
+     * o 0 se quella chiamata ha riusato la scansione precedente. Usato dalle metriche dei turni.
+     */
+    public long getLastScanCellCount() {
+        return lastScanCells;
+    }
+
+    /**
+     * Costruisce la mappa di costi e la DijkstraMap se la mappa di gioco è cambiata.
+     */
+    private DijkstraMap ensureDijkstraMap(GameMap gameMap) {
+        if (cachedDijkstraMap == null || cachedGameMap != gameMap) {
+            usePathing(preparePathing(gameMap));
+        }
+        return cachedDijkstraMap;
+    }
+
+    /**
+     * Costruisce la mappa di costi e la DijkstraMap di un livello senza toccare lo stato del servizio,
+     * così che possa essere eseguito su un altro thread (es. durante il prefetch del livello successivo).
+     * @param gameMap Il livello, che nel frattempo non deve essere modificato.
+     * @return I dati da passare a {@link #usePathing} quando il livello diventa quello corrente.
+     */
+    public static PreparedPathing preparePathing(GameMap gameMap) {
+        boolean windowed = (long) gameMap.getWidth() * gameMap.getHeight() > OccupancyGrid.DENSE_CELL_LIMIT;
+        int width = windowed ? Math.min(DIJKSTRA_WINDOW_SIZE, gameMap.getWidth()) : gameMap.getWidth();
+        int height = windowed ? Math.min(DIJKSTRA_WINDOW_SIZE, gameMap.getHeight()) : gameMap.getHeight();
+        int originX = 0;
+        int originY = 0;
+        if (windowed) {
+            // Prima finestra centrata sul giocatore; verrà spostata quando l'obiettivo si avvicina al bordo.
+            originX = clampOrigin(gameMap.getPlayer().getX(), width, gameMap.getWidth());
+            originY = clampOrigin(gameMap.getPlayer().getY(), height, gameMap.getHeight());
+        }
+        // Le griglie della DijkstraMap vengono allocate qui, una volta per livello, e poi solo riscritte.
+        DijkstraMap dijkstraMap = new DijkstraMap(new double[width][height]);
+        fillWindow(dijkstraMap, gameMap, originX, originY);
+        return new PreparedPathing(gameMap, dijkstraMap, windowed, originX, originY);
+    }
+
+    /**
+     * Adotta una DijkstraMap preparata in anticipo con {@link #preparePathing}.
+     */
+    public void usePathing(PreparedPathing pathing) {
+        cachedGameMap = pathing.gameMap;
+        cachedDijkstraMap = pathing.dijkstraMap;
+        windowed = pathing.windowed;
+        windowOriginX = pathing.originX;
+        windowOriginY = pathing.originY;
+        hasScannedGoal = false;
+        markAllDirty(cachedDijkstraMap);
+    }
+
+    /**
+     * Riscrive sul posto la mappa fisica e il gradiente della zona coperta dalla DijkstraMap.
+     * I muri hanno valore {@link DijkstraMap#WALL}, il pavimento {@link DijkstraMap#FLOOR}; le celle non ancora
+     * caricate di un mondo a blocchi contano come muri, così la costruzione non forza la loro generazione.
+     */
+    private static void fillWindow(DijkstraMap dijkstraMap, GameMap gameMap, int originX, int originY) {
+        fillPhysical(dijkstraMap, gameMap, originX, originY, 0, dijkstraMap.width, 0, dijkstraMap.height);
+        for (int x = 0; x < dijkstraMap.width; x++) {
+            System.arraycopy(dijkstraMap.physicalMap[x], 0, dijkstraMap.gradientMap[x], 0, dijkstraMap.height);
+        }
+    }
+
+    /**
+     * Riscrive dal terreno la mappa fisica del rettangolo di celle locali [minX, maxX) x [minY, maxY).
+     */
+    private static void fillPhysical(DijkstraMap dijkstraMap, GameMap gameMap, int originX, int originY,
+                                     int minX, int maxX, int minY, int maxY) {
+        for (int x = minX; x < maxX; x++) {
+            int worldX = originX + x;
+            double[] physical = dijkstraMap.physicalMap[x];
+            for (int y = minY; y < maxY; y++) {
+                int worldY = originY + y;
+                boolean walkable = gameMap.isActive(worldX, worldY) && gameMap.isWalkable(worldX, worldY);
+                physical[y] = walkable ? DijkstraMap.FLOOR : DijkstraMap.WALL;
+            }
+        }
+    }
+
+    /**
+     * Sposta la finestra di Dijkstra per centrarla sull'obiettivo, senza allocare.
+     * La parte che resta nella finestra viene traslata sul posto: le colonne si scambiano di posto e le righe
+     * si copiano con arraycopy. Dal terreno si rileggono solo le strisce appena scoperte, quindi il costo
+     * di un attraversamento segue lo spostamento e non l'area della finestra.
+     */
+    private void recenterWindow(GameMap gameMap, DijkstraMap dijkstraMap, int goalX, int goalY) {
+        int originX = clampOrigin(goalX, dijkstraMap.width, gameMap.getWidth());
+        int originY = clampOrigin(goalY, dijkstraMap.height, gameMap.getHeight());
+        int shiftX = originX - windowOriginX;
+        int shiftY = originY - windowOriginY;
+        windowOriginX = originX;
+        windowOriginY = originY;
+        int width = dijkstraMap.width;
+        int height = dijkstraMap.height;
+        if (Math.abs(shiftX) >= width || Math.abs(shiftY) >= height) {
+            // Nessuna cella in comune con la finestra precedente.
+            fillPhysical(dijkstraMap, gameMap, originX, originY, 0, width, 0, height);
+        } else {
+            double[][] physical = dijkstraMap.physicalMap;
+            // Le colonne che escono da un lato rientrano dall'altro, dove verranno riscritte.
+            rotateLeft(physical, shiftX >= 0 ? shiftX : width + shiftX);
+            int keptMinX = Math.max(0, -shiftX);
+            int keptMaxX = Math.min(width, width - shiftX);
+            for (int x = keptMinX; x < keptMaxX; x++) {
+                if (shiftY > 0) {
+                    System.arraycopy(physical[x], shiftY, physical[x], 0, height - shiftY);
+                } else if (shiftY < 0) {
+                    System.arraycopy(physical[x], 0, physical[x], -shiftY, height + shiftY);
+                }
             }
+            if (shiftX > 0) fillPhysical(dijkstraMap, gameMap, originX, originY, keptMaxX, width, 0, height);
+            if (shiftX < 0) fillPhysical(dijkstraMap, gameMap, originX, originY, 0, keptMinX, 0, height);
+            if (shiftY > 0) fillPhysical(dijkstraMap, gameMap, originX, originY, keptMinX, keptMaxX, height - shiftY, height);
+            if (shiftY < 0) fillPhysical(dijkstraMap, gameMap, originX, originY, keptMinX, keptMaxX, 0, -shiftY);
         }
-        // 'M' abilita il movimento diagonale (misura di distanza di Chebyshev).
-        return new DijkstraMap(costMap, 'M');
+        // Il gradiente viene riportato alla mappa fisica dalla prossima scansione.
+        markAllDirty(dijkstraMap);
+    }
+
+    /**
+     * Ruota sul posto un array di colonne di {@code distance} posizioni verso sinistra, con tre inversioni.
+     */
+    private static void rotateLeft(double[][] columns, int distance) {
+        if (distance == 0 || distance == columns.length) return;
+        reverse(columns, 0, distance);
+        reverse(columns, distance, columns.length);
+        reverse(columns, 0, columns.length);
+    }
+
+    private static void reverse(double[][] columns, int from, int to) {
+        for (int i = from, j = to - 1; i < j; i++, j--) {
+            double[] swap = columns[i];
+            columns[i] = columns[j];
+            columns[j] = swap;
+        }
+    }
+
+    /**
+     * Controlla se la scansione attorno all'obiettivo resta tutta dentro la finestra
+     * (o tocca solo i bordi del mondo, oltre i quali la finestra non può comunque andare).
+     */
+    private boolean isInsideWindow(int goalX, int goalY, int limit) {
+        DijkstraMap dijkstraMap = cachedDijkstraMap;
+        int maxX = windowOriginX + dijkstraMap.width - 1;
+        int maxY = windowOriginY + dijkstraMap.height - 1;
+        int worldMaxX = cachedGameMap.getWidth() - 1;
+        int worldMaxY = cachedGameMap.getHeight() - 1;
+        return goalX >= windowOriginX && goalX <= maxX && goalY >= windowOriginY && goalY <= maxY
+                && (goalX - limit >= windowOriginX || windowOriginX == 0)
+                && (goalX + limit <= maxX || maxX == worldMaxX)
+                && (goalY - limit >= windowOriginY || windowOriginY == 0)
+                && (goalY + limit <= maxY || maxY == worldMaxY);
+    }
+
+    private static int clampOrigin(int center, int windowSize, int worldSize) {
+        return Math.max(0, Math.min(worldSize - windowSize, center - windowSize / 2));
+    }
+
+    /**
+     * Riporta al valore della mappa fisica le celle del rettangolo sporco.
+     */
+    private void resetDirtyRegion(DijkstraMap dijkstraMap) {
+        if (dirtyMaxX < dirtyMinX || dirtyMaxY < dirtyMinY) return;
+        int length = dirtyMaxY - dirtyMinY + 1;
+        for (int x = dirtyMinX; x <= dirtyMaxX; x++) {
+            System.arraycopy(dijkstraMap.physicalMap[x], dirtyMinY, dijkstraMap.gradientMap[x], dirtyMinY, length);
+        }
+    }
+
+    private void markAllDirty(DijkstraMap dijkstraMap) {
+        dirtyMinX = 0;
+        dirtyMinY = 0;
+        dirtyMaxX = dijkstraMap.width - 1;
+        dirtyMaxY = dijkstraMap.height - 1;
+    }
+
+    /**
+     * Trova il passo successivo verso l'obiettivo scendendo lungo il gradiente della mappa.
+     * A differenza di findPath non riesegue la scansione e non costruisce un percorso completo.
+     * Coordinate e risultato sono in coordinate del mondo, anche quando la mappa copre solo una finestra.
+     * @return La cella adiacente con il costo minore (x * altezza della mappa + y), o {@link #INTENT_WAIT}
+     *         se nessuna è più vicina all'obiettivo.
+     */
+    private int findNextStep(DijkstraMap dijkstraMap, GameMap gameMap, int worldX, int worldY) {
+        // Una mappa passata dall'esterno (non quella in cache) copre sempre tutto il livello.
+        boolean cached = dijkstraMap == cachedDijkstraMap;
+        int originX = cached ? windowOriginX : 0;
+        int originY = cached ? windowOriginY : 0;
+        int x = worldX - originX;
+        int y = worldY - originY;
+        double[][] gradient = dijkstraMap == null ? null : dijkstraMap.gradientMap;
+        if (gradient == null || x < 0 || x >= gradient.length || y < 0 || y >= gradient[x].length) {
+            return INTENT_WAIT;
+        }
+        double best = gradient[x][y];
+        int bestX = x;
+        int bestY = y;
+        for (int d = 0; d < STEP_X.length; d++) {
+            int nx = x + STEP_X[d];
+            int ny = y + STEP_Y[d];
+            if (nx < 0 || nx >= gradient.length || ny < 0 || ny >= gradient[nx].length) continue;
+            if (gradient[nx][ny] < best) {
+                best = gradient[nx][ny];
+                bestX = nx;
+                bestY = ny;
+            }
+        }
+        return (bestX == x && bestY == y) ? INTENT_WAIT : (bestX + originX) * gameMap.getHeight() + bestY + originY;
     }
 
     /**
      * Controlla se una mossa verso (x,y) è valida.
-     * Una mossa non è valida se esce dalla mappa, finisce su un muro,
+     * Una mossa non è valida se esce dalla mappa, finisce su un muro o in una zona non caricata
+     * (così i nemici lontani dal giocatore in un mondo a blocchi restano fermi),
      * o su una cella già occupata dal giocatore o da un altro nemico.
+     * Visibile nel package perché usato anche dalla fase di risoluzione di {@link EnemyTurnEngine}.
      */
-    private boolean isMoveValid(int x, int y, GameMap gameMap, Player player) {
-        if (x < 0 || x >= gameMap.getWidth() || y < 0 || y >= gameMap.getHeight()) return false;
-        if (!gameMap.getTile(x, y).isWalkable()) return false;
+    boolean isMoveValid(int x, int y, GameMap gameMap, Player player) {
+        if (!gameMap.isActive(x, y) || !gameMap.isWalkable(x, y)) return false; // Fuori mappa, fuori dalla zona attiva o muro.
         if (player.getX() == x && player.getY() == y) return false;
 
-        for (Enemy otherEnemy : gameMap.getEnemies()) {
-            if (characterService.isAlive(otherEnemy) && otherEnemy.getX() == x && otherEnemy.getY() == y) {
-                return false; // Cella occupata da un altro nemico.
-            }
+        // Cella occupata da un altro nemico (lookup O(1) sull'indice della mappa).
+        return !characterService.isAlive(gameMap.getEnemyAt(x, y));
+    }
+
+    /**
+     * Sposta un nemico e pubblica il movimento sul bus degli eventi.
+     * Visibile nel package perché usato anche dalla fase di risoluzione di {@link EnemyTurnEngine}.
+     */
+    void moveEnemy(Enemy enemy, int x, int y) {
+        enemy.setPosition(x, y);
+        combatService.getEventBus().publish(GameEventBus.MOVE, enemy.getId(), Enemy.NO_ID, x, y, 0);
+    }
+
+    /**
+     * DijkstraMap di un livello costruita in anticipo, con la zona che copre.
+     */
+    public static final class PreparedPathing {
+        private final GameMap gameMap;
+        private final DijkstraMap dijkstraMap;
+        private final boolean windowed;
+        private final int originX;
+        private final int originY;
+
+        private PreparedPathing(GameMap gameMap, DijkstraMap dijkstraMap, boolean windowed, int originX, int originY) {
+            this.gameMap = gameMap;
+            this.dijkstraMap = dijkstraMap;
+            this.windowed = windowed;
+            this.originX = originX;
+            this.originY = originY;
+        }
+
+        public GameMap getGameMap() {
+            return gameMap;
+        }
+
+        DijkstraMap getDijkstraMap() {
+            return dijkstraMap;
         }
-        return true;
     }
 }
@@ -0,0 +1,172 @@
+package com.github.matteoCarda.simplerougelike.service;
+
+import com.github.matteoCarda.simplerougelike.model.GameMap;
+import com.github.matteoCarda.simplerougelike.model.entity.Enemy;
+import com.github.matteoCarda.simplerougelike.model.entity.EnemyStore;
+import com.github.matteoCarda.simplerougelike.model.entity.Player;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sceglie quali nemici agiscono in un turno, dividendoli in fasce in base alla distanza di Manhattan dal giocatore:
+ * <ul>
+ *     <li>{@link Tier#ACTIVE}: nel raggio di aggro, inseguono il giocatore; agiscono a ogni turno.</li>
+ *     <li>{@link Tier#NEARBY}: entro {@link #NEARBY_RADIUS}; agiscono a ogni turno.</li>
+ *     <li>{@link Tier#DISTANT}: entro {@link #DORMANT_RADIUS}; agiscono un turno ogni {@link #DISTANT_INTERVAL},
+ *         sfasati per slot così da distribuire il lavoro.</li>
+ *     <li>{@link Tier#DORMANT}: oltre; restano fermi finché il giocatore non si avvicina.</li>
+ * </ul>
+ * I nemici entro {@link #DORMANT_RADIUS} ("svegli") sono tenuti in un insieme aggiornato in modo incrementale:
+ * i dormienti non si muovono, quindi quando il giocatore fa un passo possono svegliarsi solo quelli sul bordo
+ * del nuovo raggio, e basta controllare quelle celle invece di tutti i nemici del livello.
+ * Le fasce dipendono solo da posizioni, turno e slot, quindi salvataggi e registri dei turni restano esatti.
+ */
+public class EnemyScheduler {
+
+    /**
+     * Fascia di attività di un nemico.
+     */
+    public enum Tier { ACTIVE, NEARBY, DISTANT, DORMANT }
+
+    /** Distanza entro cui i nemici agiscono a ogni turno: copre il campo visivo del giocatore con margine. */
+    public static final int NEARBY_RADIUS = 24;
+    /** Distanza oltre cui i nemici dormono. */
+    public static final int DORMANT_RADIUS = 64;
+    /** Ogni quanti turni agisce un nemico lontano. */
+    public static final int DISTANT_INTERVAL = 4;
+
+    private static final Tier[] TIERS = Tier.values();
+
+    // Stato a cui si riferisce l'insieme dei nemici svegli.
+    private GameMap gameMap;
+    private long addedCount;
+    private int playerX;
+    private int playerY;
+
+    // Insieme dei nemici svegli, per id: flag per la ricerca e lista compatta per lo scorrimento.
+    private boolean[] awake = new boolean[0];
+    private int[] awakeIds = new int[0];
+    private int awakeCount;
+
+    private final int[] tierCounts = new int[TIERS.length];
+    // Lista di appoggio per la ricostruzione completa.
+    private final List<Enemy> found = new ArrayList<>();
+
+    /**
+     * Scrive in {@code slots}, in ordine crescente, gli slot dei nemici che agiscono in questo turno.
+     * @param gameMap La mappa di gioco.
+     * @param player Il giocatore.
+     * @param turn Il numero del turno, per sfasare i nemici lontani.
+     * @param slots Array di almeno {@code gameMap.getEnemyStore().size()} posizioni.
+     * @return Il numero di slot scritti.
+     */
+    public int schedule(GameMap gameMap, Player player, long turn, int[] slots) {
+        EnemyStore store = gameMap.getEnemyStore();
+        int px = player.getX();
+        int py = player.getY();
+        if (gameMap != this.gameMap || store.getAddedCount() != addedCount || Math.abs(px - playerX) + Math.abs(py - playerY) > 1) {
+            rebuild(gameMap, store, px, py);
+        } else if (px != playerX || py != playerY) {
+            wakeRing(gameMap, px, py);
+        }
+        playerX = px;
+        playerY = py;
+
+        Arrays.fill(tierCounts, 0);
+        int count = 0;
+        int kept = 0;
+        for (int i = 0; i < awakeCount; i++) {
+            int id = awakeIds[i];
+            int slot = store.getSlot(id);
+            int distance = (slot < 0) ? Integer.MAX_VALUE : Math.abs(store.getX(slot) - px) + Math.abs(store.getY(slot) - py);
+            if (distance > DORMANT_RADIUS) {
+                // Rimosso dalla mappa o uscito dal raggio: torna a dormire.
+                awake[id] = false;
+                continue;
+            }
+            awakeIds[kept++] = id;
+            Tier tier = tierOf(distance);
+            tierCounts[tier.ordinal()]++;
+            if (tier != Tier.DISTANT || (turn + slot) % DISTANT_INTERVAL == 0) {
+                slots[count++] = slot;
+            }
+        }
+        awakeCount = kept;
+        tierCounts[Tier.DORMANT.ordinal()] = store.size() - awakeCount;
+
+        // L'ordine di slot è quello in cui il motore risolve le mosse: lo stesso di un turno senza fasce.
+        Arrays.sort(slots, 0, count);
+        return count;
+    }
+
+    /**
+     * Numero di nemici nella fascia indicata all'ultima chiamata di {@link #schedule}.
+     */
+    public int getTierCount(Tier tier) {
+        return tierCounts[tier.ordinal()];
+    }
+
+    /**
+     * Fascia di un nemico alla distanza di Manhattan indicata dal giocatore.
+     */
+    public static Tier tierOf(int distance) {
+        if (distance <= EnemyAIService.AGGRO_RADIUS) return Tier.ACTIVE;
+        if (distance <= NEARBY_RADIUS) return Tier.NEARBY;
+        if (distance <= DORMANT_RADIUS) return Tier.DISTANT;
+        return Tier.DORMANT;
+    }
+
+    /**
+     * Ricostruisce da zero l'insieme dei nemici svegli con una ricerca sull'indice di occupazione.
+     * Serve al cambio di livello, dopo un salto del giocatore o quando arrivano nuovi nemici.
+     */
+    private void rebuild(GameMap gameMap, EnemyStore store, int px, int py) {
+        this.gameMap = gameMap;
+        this.addedCount = store.getAddedCount();
+        int idCount = store.getIdCount();
+        if (awake.length < idCount) {
+            // Crescita geometrica: una popolazione che sale a poco a poco non rialloca a ogni comparsa.
+            int capacity = Math.max(idCount, awake.length * 2);
+            awake = new boolean[capacity];
+            awakeIds = new int[capacity];
+        } else {
+            Arrays.fill(awake, false);
+        }
+        awakeCount = 0;
+        gameMap.findEnemiesWithin(px, py, DORMANT_RADIUS, found);
+        for (int i = 0; i < found.size(); i++) {
+            wake(found.get(i).getId());
+        }
+        found.clear();
+    }
+
+    /**
+     * Sveglia i nemici sul bordo del raggio attorno alla nuova posizione del giocatore.
+     * Dopo un passo le celle appena entrate nel raggio sono tutte a distanza esattamente {@link #DORMANT_RADIUS}.
+     */
+    private void wakeRing(GameMap gameMap, int px, int py) {
+        for (int dx = -DORMANT_RADIUS; dx <= DORMANT_RADIUS; dx++) {
+            int dy = DORMANT_RADIUS - Math.abs(dx);
+            wakeAt(gameMap, px + dx, py + dy);
+            if (dy != 0) {
+                wakeAt(gameMap, px + dx, py - dy);
+            }
+        }
+    }
+
+    private void wakeAt(GameMap gameMap, int x, int y) {
+        Enemy enemy = gameMap.getEnemyAt(x, y);
+        if (enemy != null) {
+            wake(enemy.getId());
+        }
+    }
+
+    private void wake(int id) {
+        if (!awake[id]) {
+            awake[id] = true;
+            awakeIds[awakeCount++] = id;
+        }
+    }
+}
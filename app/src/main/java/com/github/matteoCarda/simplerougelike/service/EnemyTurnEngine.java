@@ -0,0 +1,343 @@
+package com.github.matteoCarda.simplerougelike.service;
+
+import com.github.matteoCarda.simplerougelike.model.GameMap;
+import com.github.matteoCarda.simplerougelike.model.entity.Character;
+import com.github.matteoCarda.simplerougelike.model.entity.Enemy;
+import com.github.matteoCarda.simplerougelike.model.entity.EnemyStore;
+import com.github.matteoCarda.simplerougelike.model.entity.Player;
+import com.github.matteoCarda.simplerougelike.util.TurnMetrics;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import squidpony.squidai.DijkstraMap;
+
+/**
+ * Esegue la fase dei nemici di un turno, cioè tutte le loro azioni fino alla prossima azione del giocatore.
+ * Le azioni sono ordinate per istante dall'{@link EnergyScheduler} in base alla velocità di ognuno: un nemico
+ * veloce può agire più volte in un turno, uno lento saltarne alcuni. Le azioni dello stesso istante
+ * formano un gruppo; con le velocità normali c'è un solo gruppo per turno con tutti i nemici.
+ * In modalità parallela ogni gruppo è diviso in due fasi:
+ * 1. "Decidi": ogni nemico sceglie un'intenzione (attacco, passo verso una cella, attesa)
+ *    leggendo il mondo senza modificarlo; questa fase viene distribuita su più core con fork-join.
+ * 2. "Risolvi": le intenzioni vengono applicate in ordine di lista, su un solo thread.
+ *    Se due nemici vogliono la stessa cella vince il primo, l'altro resta fermo.
+ * I bit casuali di ogni nemico dipendono solo da seme, turno e slot, quindi il risultato
+ * è riproducibile indipendentemente da come i thread si dividono il lavoro.
+ * In modalità sequenziale si usa il comportamento classico di {@link EnemyAIService#performTurn}.
+ * In entrambe le modalità gli attori del turno sono scelti dall'{@link EnemyScheduler}, così il costo segue
+ * i nemici vicini al giocatore (quelli lontani agiscono meno spesso, quelli molto lontani dormono), e prima
+ * di agire aggiornano sul thread della logica il ricordo del giocatore ({@link EnemyAIService#perceive}),
+ * che la fase "decidi" legge soltanto.
+ */
+public class EnemyTurnEngine {
+
+    // Sotto questa soglia un blocco di nemici viene deciso sul thread corrente, senza ulteriori divisioni.
+    private static final int DECIDE_THRESHOLD = 256;
+
+    private final EnemyAIService enemyAIService;
+    private final CombatService combatService;
+    private final CharacterService characterService;
+    private final ForkJoinPool pool;
+    private final EnemyScheduler scheduler = new EnemyScheduler();
+    private final EnergyScheduler energyScheduler = new EnergyScheduler();
+
+    private boolean parallel = true;
+    private boolean tiered = true;
+    private long seed;
+    private long turn;
+    private long time; // Istante, in tick, dell'ultima azione del giocatore.
+
+    // Buffer riutilizzati tra un turno e l'altro: slot scelti dallo scheduler delle fasce,
+    // poi attori del gruppo corrente, loro slot e relative intenzioni.
+    private int[] scheduled = new int[0];
+    private Enemy[] actors = new Enemy[0];
+    private int[] actorSlots = new int[0];
+    private int[] intents = new int[0];
+
+    /**
+     * Costruttore. Usa il pool fork-join comune della JVM.
+     * @param enemyAIService Servizio che contiene le regole di decisione dei nemici.
+     * @param combatService Servizio per applicare gli attacchi.
+     * @param characterService Servizio per lo stato di vita dei personaggi.
+     */
+    public EnemyTurnEngine(EnemyAIService enemyAIService, CombatService combatService, CharacterService characterService) {
+        this(enemyAIService, combatService, characterService, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Costruttore con un pool fork-join esplicito (es. per limitare i thread nei test).
+     */
+    public EnemyTurnEngine(EnemyAIService enemyAIService, CombatService combatService,
+                           CharacterService characterService, ForkJoinPool pool) {
+        this.enemyAIService = enemyAIService;
+        this.combatService = combatService;
+        this.characterService = characterService;
+        this.pool = pool;
+    }
+
+    /**
+     * Attiva la modalità a due fasi (true) o torna al comportamento sequenziale (false).
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * Attiva le fasce di attività dell'{@link EnemyScheduler} (true, predefinito) o fa agire tutti i nemici
+     * a ogni turno (false, ad esempio per confrontare i costi).
+     */
+    public void setTieredScheduling(boolean tiered) {
+        this.tiered = tiered;
+    }
+
+    public boolean isTieredScheduling() {
+        return tiered;
+    }
+
+    /**
+     * Lo scheduler delle fasce, per leggere quanti nemici ci sono in ognuna dopo l'ultimo turno.
+     */
+    public EnemyScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Imposta il seme dei turni e azzera il contatore. Lo stesso seme, sulla stessa mappa,
+     * produce sempre la stessa sequenza di turni.
+     */
+    public void setSeed(long seed) {
+        setSeed(seed, 0, 0);
+    }
+
+    /**
+     * Come {@link #setSeed(long, long, long)}, per una partita giocata sempre a velocità normale.
+     */
+    public void setSeed(long seed, long turn) {
+        setSeed(seed, turn, turn * EnergyScheduler.actionDelay(Character.NORMAL_SPEED));
+    }
+
+    /**
+     * Imposta il seme, il numero del prossimo turno e l'orologio, ad esempio per riprendere una partita salvata.
+     * La casualità di ogni turno dipende solo dal seme, dal numero del turno e dallo stato della mappa,
+     * e gli istanti delle azioni solo dall'orologio e dalle velocità, quindi riprendere dal turno N
+     * dà gli stessi risultati che arrivarci giocando.
+     * @param time L'istante, in tick, dell'ultima azione del giocatore.
+     */
+    public void setSeed(long seed, long turn, long time) {
+        this.seed = seed;
+        this.turn = turn;
+        this.time = time;
+    }
+
+    /**
+     * L'istante, in tick, dell'ultima azione del giocatore. Avanza a ogni turno dell'intervallo tra due sue azioni.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Fa agire i nemici vivi della mappa scelti dallo scheduler delle fasce, per tutte le loro azioni
+     * fino alla prossima azione del giocatore; poi porta l'orologio a quell'istante.
+     * I nemici morti non vengono rimossi: se ne occupa il chiamante.
+     * @param gameMap La mappa di gioco.
+     * @param player Il giocatore.
+     * @param dijkstraMap La mappa di Dijkstra verso il giocatore, o null se nessuno è nel raggio di aggro.
+     */
+    public void processTurn(GameMap gameMap, Player player, DijkstraMap dijkstraMap) {
+        processTurn(gameMap, player, dijkstraMap, null);
+    }
+
+    /**
+     * Come {@link #processTurn(GameMap, Player, DijkstraMap)}, misurando le fasi.
+     * @param metrics Dove registrare durate e nemici processati, o null per non misurare.
+     */
+    public void processTurn(GameMap gameMap, Player player, DijkstraMap dijkstraMap, TurnMetrics metrics) {
+        List<Enemy> enemies = gameMap.getEnemies();
+        EnemyStore store = gameMap.getEnemyStore();
+        int size = enemies.size();
+        if (actors.length < size) {
+            scheduled = new int[size];
+            actors = new Enemy[size];
+            actorSlots = new int[size];
+            intents = new int[size];
+        }
+        int scheduledCount = size;
+        if (tiered) {
+            scheduledCount = scheduler.schedule(gameMap, player, turn, scheduled);
+        } else {
+            for (int i = 0; i < size; i++) {
+                scheduled[i] = i;
+            }
+        }
+
+        // La finestra del turno arriva fino alla prossima azione del giocatore.
+        long until = time + EnergyScheduler.actionDelay(player.getSpeed());
+        energyScheduler.begin(time, until, size);
+        for (int i = 0; i < scheduledCount; i++) {
+            energyScheduler.add(scheduled[i], store.getSpeed(scheduled[i]));
+        }
+
+        long turnSeed = turnSeed();
+        if (!parallel) {
+            // Il generatore del turno sequenziale viene riseminato a ogni turno, come quello delle due fasi.
+            enemyAIService.setSeed(turnSeed);
+        }
+        long actions = 0;
+        for (int group = 0; !energyScheduler.isEmpty(); group++) {
+            // Istantanea degli attori del gruppo (stesso istante, slot crescenti): la lista può cambiare
+            // solo dopo la fase di risoluzione.
+            long instant = energyScheduler.peekTime();
+            int count = 0;
+            while (!energyScheduler.isEmpty() && energyScheduler.peekTime() == instant) {
+                int slot = energyScheduler.next();
+                actorSlots[count] = slot;
+                actors[count] = enemies.get(slot);
+                count++;
+            }
+            // Il primo gruppo usa il seme del turno, così a velocità normali i bit casuali non cambiano.
+            long groupSeed = (group == 0) ? turnSeed : mix(turnSeed + group * 0xD1B54A32D192ED03L);
+            actGroup(gameMap, player, dijkstraMap, count, groupSeed, metrics);
+            actions += count;
+
+            // Rilascia i riferimenti per non trattenere nemici rimossi dalla mappa.
+            for (int i = 0; i < count; i++) {
+                actors[i] = null;
+            }
+        }
+        if (metrics != null) {
+            metrics.addEnemiesProcessed(actions);
+        }
+        time = until;
+        turn++;
+    }
+
+    /**
+     * Fa agire un gruppo di attori: in due fasi o in sequenza, a seconda della modalità.
+     */
+    private void actGroup(GameMap gameMap, Player player, DijkstraMap dijkstraMap, int count, long groupSeed,
+                          TurnMetrics metrics) {
+        enemyAIService.perceive(actors, count, player);
+        if (parallel) {
+            long start = TurnMetrics.start(metrics);
+            decide(gameMap, player, dijkstraMap, count, groupSeed);
+            start = TurnMetrics.stop(metrics, TurnMetrics.Phase.ENEMY_DECIDE, start);
+            resolve(gameMap, player, count);
+            TurnMetrics.stop(metrics, TurnMetrics.Phase.ENEMY_RESOLVE, start);
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            if (characterService.isAlive(actors[i])) {
+                long start = TurnMetrics.start(metrics);
+                enemyAIService.performTurn(actors[i], gameMap, player, dijkstraMap);
+                TurnMetrics.stop(metrics, TurnMetrics.Phase.ENEMY_TURN, start);
+            }
+        }
+    }
+
+    /**
+     * Fase 1: calcola le intenzioni di tutti gli attori, in parallelo se sono abbastanza.
+     */
+    private void decide(GameMap gameMap, Player player, DijkstraMap dijkstraMap, int count, long groupSeed) {
+        if (count <= DECIDE_THRESHOLD) {
+            // Pochi attori: nessun task da allocare, si decide direttamente sul thread della logica.
+            decideRange(gameMap, player, dijkstraMap, groupSeed, 0, count);
+        } else {
+            pool.invoke(new DecideTask(gameMap, player, dijkstraMap, groupSeed, 0, count));
+        }
+    }
+
+    /**
+     * Decide le intenzioni degli attori da {@code from} (compreso) a {@code to} (escluso).
+     * Scrive solo nelle posizioni corrispondenti dell'array delle intenzioni.
+     */
+    private void decideRange(GameMap gameMap, Player player, DijkstraMap dijkstraMap, long groupSeed, int from, int to) {
+        for (int i = from; i < to; i++) {
+            Enemy enemy = actors[i];
+            if (!characterService.isAlive(enemy)) {
+                intents[i] = EnemyAIService.INTENT_WAIT;
+                continue;
+            }
+            // I bit dipendono dallo slot, non dall'id: gli slot si conservano nei salvataggi, gli id no.
+            long randomBits = mix(groupSeed ^ actorSlots[i]);
+            intents[i] = enemyAIService.decideIntent(enemy, gameMap, player, dijkstraMap, randomBits);
+        }
+    }
+
+    /**
+     * Fase 2: applica le intenzioni in ordine di lista, ricontrollando le mosse sullo stato aggiornato.
+     */
+    private void resolve(GameMap gameMap, Player player, int count) {
+        int height = gameMap.getHeight();
+        for (int i = 0; i < count; i++) {
+            Enemy enemy = actors[i];
+            int intent = intents[i];
+            if (!characterService.isAlive(enemy) || intent == EnemyAIService.INTENT_WAIT) {
+                continue;
+            }
+            if (intent == EnemyAIService.INTENT_ATTACK) {
+                combatService.performAttack(enemy, player);
+                continue;
+            }
+            int targetX = intent / height;
+            int targetY = intent % height;
+            // La cella può essere stata presa da un nemico risolto prima: in quel caso si resta fermi.
+            if (enemyAIService.isMoveValid(targetX, targetY, gameMap, player)) {
+                enemyAIService.moveEnemy(enemy, targetX, targetY);
+            }
+        }
+    }
+
+    private long turnSeed() {
+        return mix(seed + turn * 0x9E3779B97F4A7C15L);
+    }
+
+    /**
+     * Funzione di mescolamento a 64 bit (finalizzatore di SplitMix64).
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Task fork-join che divide un intervallo di attori fino a {@link #DECIDE_THRESHOLD} e lo passa a decideRange.
+     */
+    private final class DecideTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final GameMap gameMap;
+        private final Player player;
+        private final DijkstraMap dijkstraMap;
+        private final long turnSeed;
+        private final int from;
+        private final int to;
+
+        DecideTask(GameMap gameMap, Player player, DijkstraMap dijkstraMap, long turnSeed, int from, int to) {
+            this.gameMap = gameMap;
+            this.player = player;
+            this.dijkstraMap = dijkstraMap;
+            this.turnSeed = turnSeed;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > DECIDE_THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new DecideTask(gameMap, player, dijkstraMap, turnSeed, from, middle),
+                        new DecideTask(gameMap, player, dijkstraMap, turnSeed, middle, to));
+                return;
+            }
+            decideRange(gameMap, player, dijkstraMap, turnSeed, from, to);
+        }
+    }
+}
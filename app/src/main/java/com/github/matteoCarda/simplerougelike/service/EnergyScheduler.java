@@ -0,0 +1,129 @@
+package com.github.matteoCarda.simplerougelike.service;
+
+import com.github.matteoCarda.simplerougelike.model.entity.Character;
+
+/**
+ * Coda di priorità delle azioni dei nemici, ordinate per istante della prossima azione.
+ * Il tempo di gioco è misurato in tick: un personaggio alla velocità {@link Character#NORMAL_SPEED}
+ * agisce ogni {@link #TICKS_PER_ACTION} tick, uno al doppio della velocità ogni metà.
+ * Le azioni di un personaggio cadono sui multipli del suo intervallo ({@link #actionDelay}), quindi l'istante
+ * della prossima azione si ricava dal solo orologio e non va salvato per ogni nemico: anche un nemico rimasto
+ * fermo (es. dormiente) riprende dal primo multiplo successivo, senza accumulare azioni arretrate.
+ * <p>
+ * Per ogni turno del giocatore si apre una finestra (da, a]: {@link #add} inserisce la prima azione del nemico
+ * nella finestra e {@link #next} la estrae, reinserendo la successiva se cade ancora nella finestra.
+ * La coda è un heap binario di long che impacchettano (istante relativo, slot): ogni operazione costa O(log n),
+ * senza allocazioni, e a parità di istante esce prima lo slot minore, quindi l'ordine è deterministico.
+ * Non è thread-safe: va usato dal thread della logica.
+ */
+public class EnergyScheduler {
+
+    /** Tick tra due azioni a velocità normale. Divisibile per molte velocità comuni (es. 50, 150, 200, 300). */
+    public static final int TICKS_PER_ACTION = 120;
+
+    private long from;
+    private long until;
+    private long[] heap = new long[0];
+    private int size;
+    // Intervallo tra due azioni, per slot, per reinserire un nemico dopo la sua azione.
+    private long[] delays = new long[0];
+
+    /**
+     * Tick tra due azioni di un personaggio con la velocità indicata (almeno 1).
+     */
+    public static long actionDelay(int speed) {
+        return Math.max(1L, (long) TICKS_PER_ACTION * Character.NORMAL_SPEED / speed);
+    }
+
+    /**
+     * Svuota la coda e apre la finestra (from, until].
+     * @param slotCount Numero di slot dei nemici del livello: gli slot passati ad {@link #add} sono minori.
+     */
+    public void begin(long from, long until, int slotCount) {
+        if (until - from > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Finestra troppo lunga: " + (until - from) + " tick");
+        }
+        this.from = from;
+        this.until = until;
+        size = 0;
+        if (heap.length < slotCount) {
+            heap = new long[slotCount];
+            delays = new long[slotCount];
+        }
+    }
+
+    /**
+     * Inserisce la prima azione di un nemico nella finestra, se ne ha una.
+     * @param slot Lo slot del nemico (ogni slot al massimo una volta per finestra).
+     * @param speed La sua velocità.
+     */
+    public void add(int slot, int speed) {
+        long delay = actionDelay(speed);
+        delays[slot] = delay;
+        long time = (from / delay + 1) * delay;
+        if (time <= until) {
+            push(slot, time);
+        }
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Istante della prossima azione in coda. La coda non deve essere vuota.
+     */
+    public long peekTime() {
+        return from + (heap[0] >>> 32);
+    }
+
+    /**
+     * Estrae la prossima azione e reinserisce la successiva dello stesso nemico, se cade nella finestra.
+     * @return Lo slot del nemico che agisce.
+     */
+    public int next() {
+        long top = heap[0];
+        int slot = (int) top;
+        long time = from + (top >>> 32);
+        heap[0] = heap[--size];
+        siftDown(0);
+        long nextTime = time + delays[slot];
+        if (nextTime <= until) {
+            push(slot, nextTime);
+        }
+        return slot;
+    }
+
+    private void push(int slot, long time) {
+        int index = size++;
+        heap[index] = ((time - from) << 32) | slot;
+        siftUp(index);
+    }
+
+    private void siftUp(int index) {
+        long value = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heap[parent] <= value) break;
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = value;
+    }
+
+    private void siftDown(int index) {
+        if (size == 0) return;
+        long value = heap[index];
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            if (child + 1 < size && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (value <= heap[child]) break;
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = value;
+    }
+}
@@ -0,0 +1,272 @@
+package com.github.matteoCarda.simplerougelike.service;
+
+import com.github.matteoCarda.simplerougelike.model.GameMap;
+
+import java.util.Arrays;
+
+/**
+ * Campo visivo incrementale di un osservatore (il giocatore) su una mappa.
+ * Usa lo stesso shadowcasting a raggio circolare di {@code FOV.reuseFOV} di SquidLib, ma:
+ * - legge i muri direttamente dal terreno compatto della GameMap, senza mappa di resistenza;
+ * - salva la luce come un byte per cella (0 = non visibile, 255 = piena luce), e solo nella finestra
+ *   quadrata di lato 2 * raggio + 1 attorno all'osservatore, l'unica zona che lo shadowcasting può toccare;
+ * - se l'osservatore non si è mosso non ricalcola nulla;
+ * - dopo ogni ricalcolo espone l'elenco delle celle la cui visibilità è cambiata, così renderer e IA
+ *   possono reagire solo a quelle.
+ * La memoria usata dipende dal raggio, non dalle dimensioni della mappa.
+ */
+public class FieldOfView {
+
+    /** Livello di luce massimo, quello della cella dell'osservatore. */
+    public static final int MAX_LIGHT = 255;
+
+    private final GameMap gameMap;
+    private final int radius;
+    private final int side;
+    private final double decay;
+
+    // Luce della finestra corrente e di quella precedente (scambiate a ogni ricalcolo), indicizzate dx * side + dy.
+    private byte[] light;
+    private byte[] previousLight;
+    private int originX;
+    private int originY;
+    private boolean computed;
+    private boolean stale;
+
+    // Celle (codificate x * altezza + y) la cui visibilità è cambiata nell'ultimo ricalcolo.
+    private final int[] changedCells;
+    private int changedCount;
+
+    /**
+     * Costruttore. Il campo visivo parte vuoto: nessuna cella è visibile fino al primo {@link #update}.
+     * @param gameMap La mappa di cui leggere i muri.
+     * @param radius Il raggio visivo, in celle.
+     */
+    public FieldOfView(GameMap gameMap, int radius) {
+        if (radius < 1) {
+            throw new IllegalArgumentException("Il raggio visivo deve essere almeno 1: " + radius);
+        }
+        this.gameMap = gameMap;
+        this.radius = radius;
+        this.side = radius * 2 + 1;
+        this.decay = 1.0 / radius;
+        this.light = new byte[side * side];
+        this.previousLight = new byte[side * side];
+        // Nel caso peggiore cambiano tutte le celle della finestra vecchia e di quella nuova.
+        this.changedCells = new int[side * side * 2];
+    }
+
+    /**
+     * Ricalcola il campo visivo da una posizione.
+     * @return false se l'osservatore era già lì e il calcolo è stato saltato (nessuna cella cambiata).
+     */
+    public boolean update(int x, int y) {
+        if (computed && !stale && x == originX && y == originY) {
+            changedCount = 0;
+            return false;
+        }
+        boolean hadPrevious = computed;
+        int oldOriginX = originX;
+        int oldOriginY = originY;
+
+        byte[] swap = previousLight;
+        previousLight = light;
+        light = swap;
+        Arrays.fill(light, (byte) 0);
+        originX = x;
+        originY = y;
+        computed = true;
+        stale = false;
+
+        light[radius * side + radius] = (byte) MAX_LIGHT;
+        shadowCast(1, 1.0, 0.0, 0, 1, 1, 0);
+        shadowCast(1, 1.0, 0.0, 1, 0, 0, 1);
+        shadowCast(1, 1.0, 0.0, 0, 1, -1, 0);
+        shadowCast(1, 1.0, 0.0, 1, 0, 0, -1);
+        shadowCast(1, 1.0, 0.0, 0, -1, -1, 0);
+        shadowCast(1, 1.0, 0.0, -1, 0, 0, -1);
+        shadowCast(1, 1.0, 0.0, 0, -1, 1, 0);
+        shadowCast(1, 1.0, 0.0, -1, 0, 0, 1);
+
+        collectChanges(hadPrevious, oldOriginX, oldOriginY);
+        return true;
+    }
+
+    /**
+     * Forza il prossimo {@link #update} a ricalcolare anche se l'osservatore non si muove (es. se cambia il terreno).
+     */
+    public void invalidate() {
+        stale = true;
+    }
+
+    /**
+     * Controlla se una cella è nel campo visivo.
+     */
+    public boolean isVisible(int x, int y) {
+        return getLight(x, y) > 0;
+    }
+
+    /**
+     * Ritorna il livello di luce di una cella.
+     * @return Da 0 (non visibile) a {@link #MAX_LIGHT} (cella dell'osservatore).
+     */
+    public int getLight(int x, int y) {
+        if (!computed) return 0;
+        int dx = x - originX + radius;
+        int dy = y - originY + radius;
+        if (dx < 0 || dx >= side || dy < 0 || dy >= side) return 0;
+        return light[dx * side + dy] & 0xFF;
+    }
+
+    /**
+     * Copia la luce della finestra attorno all'osservatore, indicizzata dx * (2 * raggio + 1) + dy
+     * con dx e dy spostamenti dall'angolo in alto a sinistra della finestra.
+     * @param out Array di almeno (2 * raggio + 1)² byte.
+     */
+    public void copyLight(byte[] out) {
+        System.arraycopy(light, 0, out, 0, light.length);
+    }
+
+    public int getRadius() { return radius; }
+
+    public int getOriginX() { return originX; }
+
+    public int getOriginY() { return originY; }
+
+    /**
+     * Numero di celle la cui visibilità è cambiata nell'ultimo {@link #update}.
+     */
+    public int getChangedCount() { return changedCount; }
+
+    public int getChangedX(int index) { return changedCells[index] / gameMap.getHeight(); }
+
+    public int getChangedY(int index) { return changedCells[index] % gameMap.getHeight(); }
+
+    /**
+     * Copia la luce della finestra in una matrice grande quanto la mappa, nello stesso formato di {@code FOV.reuseFOV}
+     * (0.0 = non visibile, 1.0 = piena luce). Vengono azzerate solo le celle che erano visibili nella copia precedente,
+     * a patto che {@code out} sia sempre aggiornata con questo metodo.
+     * @param out Matrice [larghezza][altezza] da aggiornare.
+     * @param previousOriginX Origine della copia precedente (ignorata se {@code hasPrevious} è false).
+     * @param previousOriginY Origine della copia precedente.
+     * @param hasPrevious false se {@code out} è ancora tutta a zero.
+     */
+    public void copyTo(double[][] out, int previousOriginX, int previousOriginY, boolean hasPrevious) {
+        if (hasPrevious) {
+            fillWindow(out, previousOriginX, previousOriginY, 0.0);
+        }
+        if (!computed) return;
+        int minX = Math.max(0, originX - radius);
+        int maxX = Math.min(gameMap.getWidth() - 1, originX + radius);
+        int minY = Math.max(0, originY - radius);
+        int maxY = Math.min(gameMap.getHeight() - 1, originY + radius);
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+                out[x][y] = getLight(x, y) / (double) MAX_LIGHT;
+            }
+        }
+    }
+
+    private void fillWindow(double[][] out, int centerX, int centerY, double value) {
+        int minX = Math.max(0, centerX - radius);
+        int maxX = Math.min(gameMap.getWidth() - 1, centerX + radius);
+        int minY = Math.max(0, centerY - radius);
+        int maxY = Math.min(gameMap.getHeight() - 1, centerY + radius);
+        for (int x = minX; x <= maxX; x++) {
+            Arrays.fill(out[x], minY, maxY + 1, value);
+        }
+    }
+
+    /**
+     * Shadowcasting ricorsivo su un ottante, trasposto da {@code FOV.shadowCast} di SquidLib
+     * (stessi calcoli delle pendenze, stessi limiti), così il risultato coincide con {@code FOV.reuseFOV}.
+     */
+    private void shadowCast(int row, double start, double end, int xx, int xy, int yx, int yy) {
+        double newStart = 0.0;
+        if (start < end) {
+            return;
+        }
+        int width = gameMap.getWidth();
+        int height = gameMap.getHeight();
+        boolean blocked = false;
+        rows:
+        for (int distance = row; distance <= radius && distance < width + height && !blocked; ++distance) {
+            int deltaY = -distance;
+            for (int deltaX = -distance; deltaX <= 0; ++deltaX) {
+                int currentX = originX + deltaX * xx + deltaY * xy;
+                int currentY = originY + deltaX * yx + deltaY * yy;
+                double leftSlope = ((float) deltaX - 0.5f) / ((float) deltaY + 0.5f);
+                double rightSlope = ((float) deltaX + 0.5f) / ((float) deltaY - 0.5f);
+                if (currentX < 0 || currentY < 0 || currentX >= width || currentY >= height || start < rightSlope) continue;
+                if (end > leftSlope) continue rows;
+
+                double deltaRadius = Math.sqrt(deltaX * deltaX + deltaY * deltaY);
+                if (deltaRadius <= radius) {
+                    setLight(currentX, currentY, 1.0 - decay * deltaRadius);
+                }
+                boolean wall = !gameMap.isWalkable(currentX, currentY);
+                if (blocked) {
+                    if (wall) {
+                        newStart = rightSlope;
+                        continue;
+                    }
+                    blocked = false;
+                    start = newStart;
+                    continue;
+                }
+                if (!wall || distance >= radius) continue;
+                blocked = true;
+                shadowCast(distance + 1, start, leftSlope, xx, xy, yx, yy);
+                newStart = rightSlope;
+            }
+        }
+    }
+
+    /**
+     * Converte una luce in [0, 1] in byte arrotondando per eccesso, così ogni cella con luce positiva resta visibile.
+     */
+    private void setLight(int x, int y, double value) {
+        int level = (value <= 0.0) ? 0 : (int) Math.min(MAX_LIGHT, Math.ceil(value * MAX_LIGHT));
+        light[(x - originX + radius) * side + (y - originY + radius)] = (byte) level;
+    }
+
+    /**
+     * Confronta la finestra precedente con quella nuova e registra le celle che hanno cambiato visibilità.
+     * Fuori da entrambe le finestre nulla è visibile, quindi basta scorrere le due finestre.
+     */
+    private void collectChanges(boolean hadPrevious, int oldOriginX, int oldOriginY) {
+        changedCount = 0;
+        int width = gameMap.getWidth();
+        int height = gameMap.getHeight();
+
+        if (hadPrevious) {
+            // Celle della vecchia finestra: confronto diretto.
+            for (int dx = 0; dx < side; dx++) {
+                int x = oldOriginX - radius + dx;
+                if (x < 0 || x >= width) continue;
+                for (int dy = 0; dy < side; dy++) {
+                    int y = oldOriginY - radius + dy;
+                    if (y < 0 || y >= height) continue;
+                    boolean wasVisible = previousLight[dx * side + dy] != 0;
+                    if (wasVisible != isVisible(x, y)) {
+                        changedCells[changedCount++] = x * height + y;
+                    }
+                }
+            }
+        }
+        // Celle della nuova finestra fuori dalla vecchia: prima non erano visibili.
+        for (int dx = 0; dx < side; dx++) {
+            int x = originX - radius + dx;
+            if (x < 0 || x >= width) continue;
+            for (int dy = 0; dy < side; dy++) {
+                int y = originY - radius + dy;
+                if (y < 0 || y >= height) continue;
+                boolean insideOld = hadPrevious
+                        && Math.abs(x - oldOriginX) <= radius && Math.abs(y - oldOriginY) <= radius;
+                if (!insideOld && light[dx * side + dy] != 0) {
+                    changedCells[changedCount++] = x * height + y;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.github.matteoCarda.simplerougelike.service;
+
+import com.github.matteoCarda.simplerougelike.model.entity.Character;
+import com.github.matteoCarda.simplerougelike.model.entity.Player;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bus degli eventi di gioco (attacchi, danni, morti, raccolte, movimenti) su un buffer circolare preallocato.
+ * Ogni evento occupa uno slot di campi primitivi (tipo, autore, bersaglio, cella, valore):
+ * pubblicare non alloca e non prende lock, quindi si può fare dal percorso caldo dei turni.
+ * - Il publisher è uno solo: il thread della logica.
+ * - I consumatori (log a schermo, file, test) sono quanti si vuole, su qualsiasi thread: ognuno ha
+ *   la sua {@link Subscription} con il proprio cursore e legge gli eventi quando vuole, con {@link Subscription#drain}.
+ * Il buffer non aspetta i consumatori lenti: se uno resta indietro di più di {@code capacity} eventi,
+ * quelli più vecchi vengono sovrascritti e contati come persi in quella sottoscrizione.
+ * Un consumatore che non deve perdere nulla (il file degli eventi) gira sul thread della logica e si registra
+ * con {@link #setLogicThreadConsumer}: publish lo fa leggere a ogni mezzo buffer, anche nel mezzo di un turno.
+ * I campi degli slot sono array atomici: il publisher li scrive con rilascio e i consumatori li leggono con
+ * acquisizione, così il controllo "lo slot è stato sovrascritto?" fatto dopo la lettura vede davvero
+ * ogni scrittura che l'ha sporcata (i VarHandle con i loro fence richiederebbero Android 13).
+ */
+public class GameEventBus {
+
+    /** Un personaggio attacca: autore, bersaglio, cella del bersaglio, danno. */
+    public static final int ATTACK = 0;
+    /** Un personaggio subisce danni: autore = chi li subisce, cella, vita rimanente. */
+    public static final int DAMAGE = 1;
+    /** Un personaggio muore: autore = chi muore, cella. */
+    public static final int DEATH = 2;
+    /** Il giocatore raccoglie un oggetto: autore, id dell'oggetto, cella. */
+    public static final int PICKUP = 3;
+    /** Un personaggio si sposta: autore, cella di arrivo. */
+    public static final int MOVE = 4;
+
+    /** Id con cui il giocatore compare negli eventi (i nemici usano il loro id, sempre >= 0). */
+    public static final int ACTOR_PLAYER = -2;
+    /** Numero di eventi conservati se non indicato diversamente. */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    /**
+     * Riceve gli eventi letti da {@link Subscription#drain}, uno alla volta e in ordine di pubblicazione.
+     */
+    public interface Handler {
+        void onEvent(int type, int actor, int target, int x, int y, double value);
+    }
+
+    private final int mask;
+    private final AtomicIntegerArray types;
+    private final AtomicIntegerArray actors;
+    private final AtomicIntegerArray targets;
+    private final AtomicIntegerArray xs;
+    private final AtomicIntegerArray ys;
+    // Valori come bit del double.
+    private final AtomicLongArray values;
+    // Numero di eventi pubblicati: lo slot dell'evento n è n & mask. Scritto solo dal publisher.
+    private final AtomicLong published = new AtomicLong();
+    // Consumatore sul thread della logica, chiamato da publish a ogni mezzo buffer (null se assente).
+    private Runnable logicThreadConsumer;
+
+    public GameEventBus() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Costruttore.
+     * @param capacity Numero di eventi conservati, arrotondato alla potenza di due successiva.
+     */
+    public GameEventBus(int capacity) {
+        if (capacity < 1 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Capacità non valida: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) size <<= 1;
+        this.mask = size - 1;
+        this.types = new AtomicIntegerArray(size);
+        this.actors = new AtomicIntegerArray(size);
+        this.targets = new AtomicIntegerArray(size);
+        this.xs = new AtomicIntegerArray(size);
+        this.ys = new AtomicIntegerArray(size);
+        this.values = new AtomicLongArray(size);
+    }
+
+    /**
+     * Id di un personaggio negli eventi: {@link #ACTOR_PLAYER} per il giocatore, l'id per i nemici.
+     */
+    public static int actorId(Character character) {
+        return (character instanceof Player) ? ACTOR_PLAYER : character.getId();
+    }
+
+    /**
+     * Pubblica un evento. Da chiamare solo dal thread della logica.
+     */
+    public void publish(int type, int actor, int target, int x, int y, double value) {
+        long sequence = published.get();
+        int slot = (int) sequence & mask;
+        // Scritture con rilascio: non possono diventare visibili prima del contatore dell'evento precedente,
+        // quindi un consumatore che le vede vede anche che lo slot sta per essere riusato.
+        types.lazySet(slot, type);
+        actors.lazySet(slot, actor);
+        targets.lazySet(slot, target);
+        xs.lazySet(slot, x);
+        ys.lazySet(slot, y);
+        values.lazySet(slot, Double.doubleToRawLongBits(value));
+        // Scrittura con rilascio: chi legge il nuovo contatore vede anche i campi dello slot.
+        published.lazySet(sequence + 1);
+        // Un turno con migliaia di nemici pubblica più eventi della capacità: il consumatore legge prima
+        // di restare indietro di un buffer intero.
+        if (logicThreadConsumer != null && ((sequence + 1) & (mask >> 1)) == 0) {
+            logicThreadConsumer.run();
+        }
+    }
+
+    /**
+     * Imposta il consumatore che gira sul thread della logica (null per toglierlo). Da chiamare da quel thread.
+     * publish lo chiama ogni {@code capacity / 2} eventi, così una sottoscrizione letta da lì non perde mai eventi
+     * per quanti ne pubblichi un singolo turno.
+     */
+    public void setLogicThreadConsumer(Runnable consumer) {
+        this.logicThreadConsumer = consumer;
+    }
+
+    /**
+     * Numero totale di eventi pubblicati.
+     */
+    public long getPublishedCount() {
+        return published.get();
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Crea una sottoscrizione che riceverà gli eventi pubblicati da ora in poi.
+     */
+    public Subscription subscribe() {
+        return new Subscription(published.get());
+    }
+
+    /**
+     * Cursore di lettura di un consumatore. Va usato da un solo thread alla volta.
+     */
+    public final class Subscription {
+        private long next;
+        private long lost;
+
+        private Subscription(long next) {
+            this.next = next;
+        }
+
+        /**
+         * Consegna all'handler tutti gli eventi pubblicati dall'ultima chiamata.
+         * @return Il numero di eventi consegnati.
+         */
+        public int drain(Handler handler) {
+            int delivered = 0;
+            long available = published.get();
+            while (next < available) {
+                if (available - next > mask) {
+                    // Rimasto troppo indietro: gli eventi più vecchi sono già stati (o stanno per essere) sovrascritti.
+                    long skipped = available - next - mask;
+                    lost += skipped;
+                    next += skipped;
+                }
+                int slot = (int) next & mask;
+                int type = types.get(slot);
+                int actor = actors.get(slot);
+                int target = targets.get(slot);
+                int x = xs.get(slot);
+                int y = ys.get(slot);
+                double value = Double.longBitsToDouble(values.get(slot));
+                // Se nel frattempo il publisher ha fatto il giro del buffer, lo slot letto potrebbe essere misto.
+                // Le letture dei campi sono con acquisizione, quindi non possono scivolare dopo questo controllo.
+                available = published.get();
+                if (available - next > mask) {
+                    continue;
+                }
+                next++;
+                delivered++;
+                handler.onEvent(type, actor, target, x, y, value);
+            }
+            return delivered;
+        }
+
+        /**
+         * Numero di eventi persi perché sovrascritti prima di essere letti.
+         */
+        public long getLostCount() {
+            return lost;
+        }
+    }
+}
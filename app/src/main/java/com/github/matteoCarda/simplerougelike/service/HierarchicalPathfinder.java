@@ -0,0 +1,542 @@
+package com.github.matteoCarda.simplerougelike.service;
+
+import com.github.matteoCarda.simplerougelike.model.GameMap;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Pathfinding gerarchico (HPA*) per percorsi lunghi su livelli grandi.
+ * La mappa è divisa in blocchi di {@link #CLUSTER_SIZE} x {@link #CLUSTER_SIZE} celle; lungo ogni confine tra due
+ * blocchi, ogni tratto attraversabile ("entrata") ha uno o due portali. Per ogni blocco si calcolano una volta
+ * le distanze tra i suoi portali: il livello diventa un grafo di portali molto più piccolo della griglia.
+ * Un percorso si cerca con A* sul grafo e poi si raffina con una BFS dentro ogni blocco attraversato,
+ * quindi il costo dipende dalla lunghezza del percorso e non dall'area della mappa.
+ * <p>
+ * I blocchi sono costruiti al primo uso e tenuti in cache per tutto il livello: in un mondo a blocchi
+ * si costruiscono solo quelli vicini ai percorsi cercati. Se il terreno di una zona cambia,
+ * {@link #invalidate} scarta solo i blocchi che la toccano.
+ * Il percorso è 4-connesso, come i passi del giocatore e l'inseguimento dei nemici, ed è quasi ottimo:
+ * passa dai portali, quindi può essere qualche cella più lungo del minimo.
+ * Non è thread-safe: va usato dal thread della logica.
+ */
+public class HierarchicalPathfinder {
+
+    /** Lato di un blocco, in celle. */
+    public static final int CLUSTER_SIZE = 16;
+    private static final int CLUSTER_SHIFT = 4;
+    /** Nodi del grafo espansi al massimo da una ricerca: oltre, la destinazione è considerata irraggiungibile. */
+    public static final int SEARCH_LIMIT = 1 << 17;
+    /** Da questa lunghezza un'entrata ha un portale per estremo invece di uno solo al centro. */
+    static final int WIDE_ENTRANCE = 6;
+
+    // Al massimo 8 entrate per lato (celle aperte alternate a muri), quindi 32 portali per blocco.
+    private static final int MAX_PORTALS = 32;
+    private static final int PORTAL_SHIFT = 5;
+    private static final int PORTAL_MASK = MAX_PORTALS - 1;
+    // Oltre questo numero di blocchi la cache usa una mappa invece di un array grande quanto il mondo.
+    private static final int DENSE_CLUSTER_LIMIT = 1 << 16;
+    private static final int UNREACHABLE = -1;
+    private static final int NO_NODE = -1;
+    // Nodo virtuale della destinazione nella coda di A*: nessun nodo reale arriva a questo valore.
+    private static final int GOAL_NODE = Integer.MAX_VALUE;
+
+    // Lati di un blocco: direzione verso il blocco vicino. Il lato opposto di s è s ^ 1.
+    private static final int[] SIDE_X = {0, 0, -1, 1};
+    private static final int[] SIDE_Y = {-1, 1, 0, 0};
+
+    private final GameMap gameMap;
+    private final int width;
+    private final int height;
+    private final int clustersX;
+    private final int clustersY;
+    // Cache dei blocchi costruiti, indicizzati clusterX * clustersY + clusterY (null = da costruire).
+    private final Cluster[] denseClusters;
+    private final Map<Integer, Cluster> sparseClusters;
+    private int builtClusterCount;
+    private long buildCount;
+
+    // Stato di A*: coda di (f << 32 | nodo), con nodo = indice del blocco << PORTAL_SHIFT | portale.
+    private long[] open = new long[256];
+    private int openSize;
+    private int searchStamp;
+    private int goalX;
+    private int goalY;
+    private int goalCost;
+    private int goalParent;
+    private int expandedNodes;
+
+    // BFS locale dentro un blocco, indicizzata (x - x0) * CLUSTER_SIZE + (y - y0).
+    private final int[] localDist = new int[CLUSTER_SIZE * CLUSTER_SIZE];
+    private final int[] localParent = new int[CLUSTER_SIZE * CLUSTER_SIZE];
+    private final int[] localQueue = new int[CLUSTER_SIZE * CLUSTER_SIZE];
+    private final int[] startCosts = new int[MAX_PORTALS];
+    private final int[] goalCosts = new int[MAX_PORTALS];
+
+    // Appoggio per la costruzione dei portali di un blocco.
+    private final int[] scratchX = new int[MAX_PORTALS];
+    private final int[] scratchY = new int[MAX_PORTALS];
+    private final int[] scratchSide = new int[MAX_PORTALS];
+    private int scratchCount;
+
+    // Percorso in costruzione.
+    private int[] pathCells = new int[64];
+    private int pathLength;
+
+    /**
+     * Costruttore. Nessun blocco viene costruito finché non serve a una ricerca.
+     * @param gameMap La mappa su cui cercare i percorsi.
+     */
+    public HierarchicalPathfinder(GameMap gameMap) {
+        this.gameMap = gameMap;
+        this.width = gameMap.getWidth();
+        this.height = gameMap.getHeight();
+        this.clustersX = (width + CLUSTER_SIZE - 1) / CLUSTER_SIZE;
+        this.clustersY = (height + CLUSTER_SIZE - 1) / CLUSTER_SIZE;
+        if ((long) clustersX * clustersY <= DENSE_CLUSTER_LIMIT) {
+            this.denseClusters = new Cluster[clustersX * clustersY];
+            this.sparseClusters = null;
+        } else {
+            this.denseClusters = null;
+            this.sparseClusters = new HashMap<>();
+        }
+    }
+
+    public GameMap getGameMap() {
+        return gameMap;
+    }
+
+    /**
+     * Numero di blocchi attualmente in cache.
+     */
+    public int getBuiltClusterCount() {
+        return builtClusterCount;
+    }
+
+    /**
+     * Numero di costruzioni di blocchi dalla creazione, ricostruzioni dopo {@link #invalidate} comprese.
+     */
+    public long getBuildCount() {
+        return buildCount;
+    }
+
+    /**
+     * Nodi del grafo espansi dall'ultima ricerca.
+     */
+    public int getLastExpandedNodes() {
+        return expandedNodes;
+    }
+
+    /**
+     * Cerca un percorso tra due celle.
+     * @return Le celle da attraversare (x * altezza della mappa + y), dalla prima dopo la partenza fino alla
+     *         destinazione compresa; un array vuoto se partenza e destinazione coincidono; null se la destinazione
+     *         non è raggiungibile o una delle due celle non è calpestabile.
+     */
+    public int[] findPath(int startX, int startY, int goalX, int goalY) {
+        expandedNodes = 0;
+        if (!gameMap.isWalkable(startX, startY) || !gameMap.isWalkable(goalX, goalY)) return null;
+        if (startX == goalX && startY == goalY) return new int[0];
+
+        int startIndex = clusterIndex(startX, startY);
+        int goalIndex = clusterIndex(goalX, goalY);
+        Cluster start = cluster(startIndex);
+        Cluster goal = cluster(goalIndex);
+        pathLength = 0;
+
+        // Nello stesso blocco basta quasi sempre una BFS locale; se le celle non sono collegate dentro il blocco
+        // il percorso deve uscire, e si passa al grafo.
+        if (start == goal && appendLocalPath(start, startX, startY, goalX, goalY)) {
+            return Arrays.copyOf(pathCells, pathLength);
+        }
+
+        localSearch(start, startX, startY);
+        for (int i = 0; i < start.portalCount; i++) {
+            startCosts[i] = localDist[start.local(start.cellX[i], start.cellY[i])];
+        }
+        localSearch(goal, goalX, goalY);
+        for (int i = 0; i < goal.portalCount; i++) {
+            goalCosts[i] = localDist[goal.local(goal.cellX[i], goal.cellY[i])];
+        }
+
+        if (!searchGraph(startIndex, start, goal, goalX, goalY)) return null;
+        refine(startX, startY, goalX, goalY);
+        return Arrays.copyOf(pathCells, pathLength);
+    }
+
+    /**
+     * Scarta i blocchi che toccano il rettangolo indicato (estremi compresi), da chiamare quando il suo terreno
+     * cambia: verranno ricostruiti alla prossima ricerca che li attraversa. Una cella sul bordo di un blocco
+     * invalida anche il vicino, perché cambiano le entrate del confine che condividono.
+     */
+    public void invalidate(int minX, int minY, int maxX, int maxY) {
+        int fromX = Math.max(0, minX - 1) / CLUSTER_SIZE;
+        int fromY = Math.max(0, minY - 1) / CLUSTER_SIZE;
+        int toX = Math.min(width - 1, maxX + 1) / CLUSTER_SIZE;
+        int toY = Math.min(height - 1, maxY + 1) / CLUSTER_SIZE;
+        for (int cx = fromX; cx <= toX; cx++) {
+            for (int cy = fromY; cy <= toY; cy++) {
+                int index = cx * clustersY + cy;
+                Cluster removed;
+                if (denseClusters != null) {
+                    removed = denseClusters[index];
+                    denseClusters[index] = null;
+                } else {
+                    removed = sparseClusters.remove(index);
+                }
+                if (removed != null) builtClusterCount--;
+            }
+        }
+    }
+
+    /**
+     * A* sul grafo dei portali, dai portali del blocco di partenza a un nodo virtuale di destinazione
+     * collegato ai portali del blocco di arrivo.
+     * @return true se la destinazione è stata raggiunta (il percorso parte da goalParent).
+     */
+    private boolean searchGraph(int startIndex, Cluster start, Cluster goal, int goalX, int goalY) {
+        this.goalX = goalX;
+        this.goalY = goalY;
+        searchStamp++;
+        openSize = 0;
+        goalCost = Integer.MAX_VALUE;
+        goalParent = NO_NODE;
+        for (int i = 0; i < start.portalCount; i++) {
+            if (startCosts[i] != UNREACHABLE) {
+                relax(startIndex, start, i, startCosts[i], NO_NODE);
+            }
+        }
+
+        while (openSize > 0) {
+            int node = (int) pop();
+            if (node == GOAL_NODE) return true;
+            int index = node >>> PORTAL_SHIFT;
+            int portal = node & PORTAL_MASK;
+            Cluster cluster = cluster(index);
+            if (cluster.closed[portal]) continue;
+            cluster.closed[portal] = true;
+            if (++expandedNodes > SEARCH_LIMIT) return false;
+            int g = cluster.g[portal];
+
+            // Verso la destinazione.
+            if (cluster == goal && goalCosts[portal] != UNREACHABLE && g + goalCosts[portal] < goalCost) {
+                goalCost = g + goalCosts[portal];
+                goalParent = node;
+                push(goalCost, GOAL_NODE);
+            }
+            // Verso gli altri portali dello stesso blocco.
+            int n = cluster.portalCount;
+            for (int other = 0; other < n; other++) {
+                int cost = cluster.costs[portal * n + other];
+                if (other != portal && cost != UNREACHABLE) {
+                    relax(index, cluster, other, g + cost, node);
+                }
+            }
+            // Oltre il confine, verso il portale gemello del blocco vicino.
+            int side = cluster.side[portal];
+            int nx = cluster.cellX[portal] + SIDE_X[side];
+            int ny = cluster.cellY[portal] + SIDE_Y[side];
+            int neighborIndex = clusterIndex(nx, ny);
+            Cluster neighbor = cluster(neighborIndex);
+            int twin = neighbor.find(nx, ny, side ^ 1);
+            if (twin >= 0) {
+                relax(neighborIndex, neighbor, twin, g + 1, node);
+            }
+        }
+        return false;
+    }
+
+    private void relax(int index, Cluster cluster, int portal, int g, int parent) {
+        if (cluster.stamp != searchStamp) {
+            cluster.stamp = searchStamp;
+            Arrays.fill(cluster.g, Integer.MAX_VALUE);
+            Arrays.fill(cluster.closed, false);
+        }
+        if (cluster.closed[portal] || g >= cluster.g[portal]) return;
+        cluster.g[portal] = g;
+        cluster.parent[portal] = parent;
+        int heuristic = Math.abs(cluster.cellX[portal] - goalX) + Math.abs(cluster.cellY[portal] - goalY);
+        push(g + heuristic, (index << PORTAL_SHIFT) | portal);
+    }
+
+    /**
+     * Ricostruisce la catena di portali trovata da A* e la raffina cella per cella.
+     */
+    private void refine(int startX, int startY, int goalX, int goalY) {
+        int count = 0;
+        for (int node = goalParent; node != NO_NODE; node = cluster(node >>> PORTAL_SHIFT).parent[node & PORTAL_MASK]) {
+            count++;
+        }
+        int[] nodes = new int[count];
+        int node = goalParent;
+        for (int i = count - 1; i >= 0; i--) {
+            nodes[i] = node;
+            node = cluster(node >>> PORTAL_SHIFT).parent[node & PORTAL_MASK];
+        }
+
+        int x = startX;
+        int y = startY;
+        Cluster current = cluster(clusterIndex(startX, startY));
+        for (int i = 0; i < count; i++) {
+            Cluster next = cluster(nodes[i] >>> PORTAL_SHIFT);
+            int portal = nodes[i] & PORTAL_MASK;
+            int px = next.cellX[portal];
+            int py = next.cellY[portal];
+            if (next == current) {
+                appendLocalPath(current, x, y, px, py);
+            } else {
+                // Passo oltre il confine, tra due portali gemelli.
+                appendCell(px, py);
+            }
+            current = next;
+            x = px;
+            y = py;
+        }
+        appendLocalPath(current, x, y, goalX, goalY);
+    }
+
+    /**
+     * Aggiunge al percorso il tratto più breve tra due celle dello stesso blocco, senza uscirne.
+     * @return false se le celle non sono collegate dentro il blocco.
+     */
+    private boolean appendLocalPath(Cluster cluster, int fromX, int fromY, int toX, int toY) {
+        if (fromX == toX && fromY == toY) return true;
+        localSearch(cluster, fromX, fromY);
+        int target = cluster.local(toX, toY);
+        if (localDist[target] == UNREACHABLE) return false;
+        int steps = localDist[target];
+        ensurePathCapacity(pathLength + steps);
+        int local = target;
+        for (int i = pathLength + steps - 1; i >= pathLength; i--) {
+            int x = cluster.x0 + (local >>> CLUSTER_SHIFT);
+            int y = cluster.y0 + (local & (CLUSTER_SIZE - 1));
+            pathCells[i] = x * height + y;
+            local = localParent[local];
+        }
+        pathLength += steps;
+        return true;
+    }
+
+    private void appendCell(int x, int y) {
+        ensurePathCapacity(pathLength + 1);
+        pathCells[pathLength++] = x * height + y;
+    }
+
+    private void ensurePathCapacity(int capacity) {
+        if (pathCells.length < capacity) {
+            pathCells = Arrays.copyOf(pathCells, Math.max(capacity, pathCells.length * 2));
+        }
+    }
+
+    /**
+     * BFS 4-connessa dentro un blocco: riempie localDist (UNREACHABLE dove non arriva) e localParent.
+     */
+    private void localSearch(Cluster cluster, int fromX, int fromY) {
+        Arrays.fill(localDist, UNREACHABLE);
+        int origin = cluster.local(fromX, fromY);
+        int lastX = cluster.x1 - cluster.x0;
+        int lastY = cluster.y1 - cluster.y0;
+        boolean[] walkable = cluster.walkable;
+        localDist[origin] = 0;
+        localQueue[0] = origin;
+        int head = 0;
+        int tail = 1;
+        while (head < tail) {
+            int local = localQueue[head++];
+            int x = local >>> CLUSTER_SHIFT;
+            int y = local & (CLUSTER_SIZE - 1);
+            int dist = localDist[local] + 1;
+            for (int d = 0; d < SIDE_X.length; d++) {
+                int nx = x + SIDE_X[d];
+                int ny = y + SIDE_Y[d];
+                if (nx < 0 || nx > lastX || ny < 0 || ny > lastY) continue;
+                int next = (nx << CLUSTER_SHIFT) | ny;
+                if (localDist[next] != UNREACHABLE || !walkable[next]) continue;
+                localDist[next] = dist;
+                localParent[next] = local;
+                localQueue[tail++] = next;
+            }
+        }
+    }
+
+    private int clusterIndex(int x, int y) {
+        return (x / CLUSTER_SIZE) * clustersY + y / CLUSTER_SIZE;
+    }
+
+    /**
+     * Ritorna il blocco indicato, costruendolo se non è in cache.
+     */
+    private Cluster cluster(int index) {
+        Cluster cluster = (denseClusters != null) ? denseClusters[index] : sparseClusters.get(index);
+        if (cluster == null) {
+            cluster = build(index / clustersY, index % clustersY);
+            if (denseClusters != null) {
+                denseClusters[index] = cluster;
+            } else {
+                sparseClusters.put(index, cluster);
+            }
+            builtClusterCount++;
+            buildCount++;
+        }
+        return cluster;
+    }
+
+    /**
+     * Trova le entrate sui quattro confini del blocco e calcola le distanze tra i loro portali.
+     */
+    private Cluster build(int clusterX, int clusterY) {
+        int x0 = clusterX * CLUSTER_SIZE;
+        int y0 = clusterY * CLUSTER_SIZE;
+        int x1 = Math.min(x0 + CLUSTER_SIZE, width) - 1;
+        int y1 = Math.min(y0 + CLUSTER_SIZE, height) - 1;
+        scratchCount = 0;
+        // Entrambi i blocchi di un confine lo scorrono nello stesso verso, quindi trovano gli stessi portali.
+        if (clusterY > 0) scanBorder(0, x0, y0, x1, y0);
+        if (clusterY < clustersY - 1) scanBorder(1, x0, y1, x1, y1);
+        if (clusterX > 0) scanBorder(2, x0, y0, x0, y1);
+        if (clusterX < clustersX - 1) scanBorder(3, x1, y0, x1, y1);
+
+        Cluster cluster = new Cluster(x0, y0, x1, y1, scratchCount);
+        // Le BFS del blocco leggono una copia locale del terreno invece di interrogare la mappa a ogni passo.
+        for (int x = x0; x <= x1; x++) {
+            for (int y = y0; y <= y1; y++) {
+                cluster.walkable[cluster.local(x, y)] = gameMap.isWalkable(x, y);
+            }
+        }
+        System.arraycopy(scratchX, 0, cluster.cellX, 0, scratchCount);
+        System.arraycopy(scratchY, 0, cluster.cellY, 0, scratchCount);
+        System.arraycopy(scratchSide, 0, cluster.side, 0, scratchCount);
+        int n = scratchCount;
+        for (int i = 0; i < n; i++) {
+            localSearch(cluster, cluster.cellX[i], cluster.cellY[i]);
+            for (int j = 0; j < n; j++) {
+                cluster.costs[i * n + j] = localDist[cluster.local(cluster.cellX[j], cluster.cellY[j])];
+            }
+        }
+        return cluster;
+    }
+
+    /**
+     * Scorre un lato del blocco, dalla cella (fromX, fromY) a (toX, toY), e aggiunge i portali delle sue entrate:
+     * tratti di celle calpestabili la cui cella gemella oltre il confine è calpestabile.
+     */
+    private void scanBorder(int side, int fromX, int fromY, int toX, int toY) {
+        int length = Math.max(toX - fromX, toY - fromY) + 1;
+        int stepX = (toX > fromX) ? 1 : 0;
+        int stepY = (toY > fromY) ? 1 : 0;
+        int runStart = -1;
+        for (int i = 0; i <= length; i++) {
+            int x = fromX + i * stepX;
+            int y = fromY + i * stepY;
+            boolean open = i < length && gameMap.isWalkable(x, y) && gameMap.isWalkable(x + SIDE_X[side], y + SIDE_Y[side]);
+            if (open && runStart < 0) {
+                runStart = i;
+            } else if (!open && runStart >= 0) {
+                int runLength = i - runStart;
+                if (runLength >= WIDE_ENTRANCE) {
+                    addPortal(fromX + runStart * stepX, fromY + runStart * stepY, side);
+                    addPortal(fromX + (i - 1) * stepX, fromY + (i - 1) * stepY, side);
+                } else {
+                    int middle = runStart + (runLength - 1) / 2;
+                    addPortal(fromX + middle * stepX, fromY + middle * stepY, side);
+                }
+                runStart = -1;
+            }
+        }
+    }
+
+    private void addPortal(int x, int y, int side) {
+        scratchX[scratchCount] = x;
+        scratchY[scratchCount] = y;
+        scratchSide[scratchCount] = side;
+        scratchCount++;
+    }
+
+    private void push(int f, int node) {
+        if (openSize == open.length) {
+            open = Arrays.copyOf(open, open.length * 2);
+        }
+        int index = openSize++;
+        long value = ((long) f << 32) | node;
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (open[parent] <= value) break;
+            open[index] = open[parent];
+            index = parent;
+        }
+        open[index] = value;
+    }
+
+    private long pop() {
+        long top = open[0];
+        long value = open[--openSize];
+        int index = 0;
+        int half = openSize >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            if (child + 1 < openSize && open[child + 1] < open[child]) {
+                child++;
+            }
+            if (value <= open[child]) break;
+            open[index] = open[child];
+            index = child;
+        }
+        if (openSize > 0) {
+            open[index] = value;
+        }
+        return top & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Un blocco della mappa con i suoi portali, le distanze tra loro e lo stato dell'ultima ricerca che lo ha toccato.
+     */
+    private static final class Cluster {
+        final int x0;
+        final int y0;
+        final int x1;
+        final int y1;
+        final int portalCount;
+        final int[] cellX;
+        final int[] cellY;
+        final int[] side;
+        // Distanza dal portale i al portale j in costs[i * portalCount + j], o UNREACHABLE.
+        final int[] costs;
+        // Celle calpestabili del blocco, indicizzate come local().
+        final boolean[] walkable = new boolean[CLUSTER_SIZE * CLUSTER_SIZE];
+
+        int stamp;
+        final int[] g;
+        final int[] parent;
+        final boolean[] closed;
+
+        Cluster(int x0, int y0, int x1, int y1, int portalCount) {
+            this.x0 = x0;
+            this.y0 = y0;
+            this.x1 = x1;
+            this.y1 = y1;
+            this.portalCount = portalCount;
+            this.cellX = new int[portalCount];
+            this.cellY = new int[portalCount];
+            this.side = new int[portalCount];
+            this.costs = new int[portalCount * portalCount];
+            this.g = new int[portalCount];
+            this.parent = new int[portalCount];
+            this.closed = new boolean[portalCount];
+        }
+
+        int local(int x, int y) {
+            return ((x - x0) << CLUSTER_SHIFT) | (y - y0);
+        }
+
+        /**
+         * Indice del portale nella cella indicata sul lato indicato, o -1.
+         */
+        int find(int x, int y, int side) {
+            for (int i = 0; i < portalCount; i++) {
+                if (cellX[i] == x && cellY[i] == y && this.side[i] == side) return i;
+            }
+            return -1;
+        }
+    }
+}
@@ -10,13 +10,24 @@ import com.github.matteoCarda.simplerougelike.model.entity.PotionItem;
 public class ItemService {
 
     private final CharacterService characterService;
+    private final GameEventBus eventBus;
 
     /**
-     * Costruttore.
+     * Costruttore con un bus degli eventi privato.
      * @param characterService Istanza di CharacterService per interagire con l'inventario del giocatore.
      */
     public ItemService(CharacterService characterService) {
+        this(characterService, new GameEventBus());
+    }
+
+    /**
+     * Costruttore.
+     * @param characterService Istanza di CharacterService per interagire con l'inventario del giocatore.
+     * @param eventBus Il bus su cui pubblicare le raccolte.
+     */
+    public ItemService(CharacterService characterService, GameEventBus eventBus) {
         this.characterService = characterService;
+        this.eventBus = eventBus;
     }
 
     /**
@@ -31,7 +42,7 @@ public class ItemService {
         boolean itemTaken = characterService.takeItem(player, item);
 
         if (itemTaken) {
-            System.out.println(player.getClass().getSimpleName() + " ha raccolto: " + item.getName());
+            eventBus.publish(GameEventBus.PICKUP, GameEventBus.ACTOR_PLAYER, item.getId(), item.getX(), item.getY(), 0);
         }
 
         // In futuro, si potrebbero aggiungere logiche specifiche per tipo di oggetto,
@@ -0,0 +1,186 @@
+package com.github.matteoCarda.simplerougelike.service;
+
+import com.github.matteoCarda.simplerougelike.model.GameMap;
+import com.github.matteoCarda.simplerougelike.util.MapGenerator;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Prepara in anticipo i livelli successivi su un thread dedicato.
+ * Mentre si gioca un livello, il servizio genera fino a {@code capacity} livelli con i parametri correnti
+ * (mappa, entità e DijkstraMap dei nemici), così che una nuova partita possa iniziare subito.
+ * Se i parametri cambiano, i livelli già pronti o in preparazione vengono scartati.
+ * Tutti i metodi sono thread-safe.
+ */
+public class LevelPrefetchService {
+
+    private final int capacity;
+    private final Random seeds;
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "level-prefetch");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    // Livelli pronti o in preparazione, nell'ordine in cui verranno consegnati. Protetti da this.
+    private final Deque<Future<PreparedLevel>> queue = new ArrayDeque<>();
+    private int width;
+    private int height;
+    private int enemyCount;
+    private int itemCount;
+    private boolean configured;
+
+    /**
+     * Costruttore con semi casuali.
+     * @param capacity Numero massimo di livelli pronti o in preparazione.
+     */
+    public LevelPrefetchService(int capacity) {
+        this(capacity, new Random().nextLong());
+    }
+
+    /**
+     * Costruttore riproducibile: la sequenza dei semi dei livelli dipende solo da {@code seed}.
+     * @param capacity Numero massimo di livelli pronti o in preparazione.
+     * @param seed Il seme da cui estrarre i semi dei livelli.
+     */
+    public LevelPrefetchService(int capacity, long seed) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("La capacità deve essere almeno 1: " + capacity);
+        }
+        this.capacity = capacity;
+        this.seeds = new Random(seed);
+    }
+
+    /**
+     * Imposta i parametri dei livelli da preparare e avvia la generazione.
+     * Se i parametri sono diversi dai precedenti, i livelli in coda vengono scartati e la loro generazione annullata.
+     */
+    public synchronized void configure(int width, int height, int enemyCount, int itemCount) {
+        if (configured && this.width == width && this.height == height
+                && this.enemyCount == enemyCount && this.itemCount == itemCount) {
+            return;
+        }
+        cancelAll();
+        this.width = width;
+        this.height = height;
+        this.enemyCount = enemyCount;
+        this.itemCount = itemCount;
+        this.configured = true;
+        refill();
+    }
+
+    /**
+     * Consegna il prossimo livello con i parametri correnti e ne accoda la sostituzione.
+     * Se il livello è ancora in preparazione ne attende la fine; se la coda è vuota (o la preparazione
+     * è fallita) il livello viene generato sul thread chiamante.
+     * @return Il livello, pronto da giocare.
+     * @throws IllegalStateException se {@link #configure} non è mai stato chiamato.
+     */
+    public PreparedLevel take() {
+        Future<PreparedLevel> next;
+        int w, h, enemies, items;
+        long fallbackSeed;
+        synchronized (this) {
+            if (!configured) {
+                throw new IllegalStateException("Parametri del livello non impostati");
+            }
+            next = queue.pollFirst();
+            w = width;
+            h = height;
+            enemies = enemyCount;
+            items = itemCount;
+            fallbackSeed = seeds.nextLong();
+            refill();
+        }
+        if (next != null) {
+            try {
+                return next.get();
+            } catch (CancellationException | ExecutionException e) {
+                // Annullato da un cambio di parametri nel frattempo, o generazione fallita: si riprova qui.
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return PreparedLevel.generate(w, h, enemies, items, fallbackSeed);
+    }
+
+    /**
+     * Numero di livelli già pronti da consegnare senza attesa.
+     */
+    public synchronized int getReadyCount() {
+        int ready = 0;
+        for (Future<PreparedLevel> future : queue) {
+            if (future.isDone() && !future.isCancelled()) ready++;
+        }
+        return ready;
+    }
+
+    /**
+     * Annulla le preparazioni in corso e ferma il thread. Dopo questa chiamata {@link #take} genera sempre in modo sincrono.
+     */
+    public synchronized void shutdown() {
+        cancelAll();
+        worker.shutdownNow();
+    }
+
+    private void refill() {
+        while (queue.size() < capacity && !worker.isShutdown()) {
+            int w = width;
+            int h = height;
+            int enemies = enemyCount;
+            int items = itemCount;
+            long seed = seeds.nextLong();
+            queue.addLast(worker.submit(() -> PreparedLevel.generate(w, h, enemies, items, seed)));
+        }
+    }
+
+    private void cancelAll() {
+        for (Future<PreparedLevel> future : queue) {
+            future.cancel(true);
+        }
+        queue.clear();
+    }
+
+    /**
+     * Un livello pronto da giocare: la mappa, il seme da cui è stata generata e la DijkstraMap dei nemici.
+     */
+    public static final class PreparedLevel {
+        private final GameMap gameMap;
+        private final long seed;
+        private final EnemyAIService.PreparedPathing pathing;
+
+        private PreparedLevel(GameMap gameMap, long seed, EnemyAIService.PreparedPathing pathing) {
+            this.gameMap = gameMap;
+            this.seed = seed;
+            this.pathing = pathing;
+        }
+
+        /**
+         * Genera un livello completo sul thread chiamante.
+         */
+        public static PreparedLevel generate(int width, int height, int enemyCount, int itemCount, long seed) {
+            GameMap gameMap = new MapGenerator(seed).generateMap(width, height, enemyCount, itemCount);
+            return new PreparedLevel(gameMap, seed, EnemyAIService.preparePathing(gameMap));
+        }
+
+        public GameMap getGameMap() {
+            return gameMap;
+        }
+
+        public long getSeed() {
+            return seed;
+        }
+
+        public EnemyAIService.PreparedPathing getPathing() {
+            return pathing;
+        }
+    }
+}
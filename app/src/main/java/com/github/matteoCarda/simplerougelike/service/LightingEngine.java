@@ -0,0 +1,581 @@
+package com.github.matteoCarda.simplerougelike.service;
+
+import com.github.matteoCarda.simplerougelike.model.ChunkedTerrain;
+import com.github.matteoCarda.simplerougelike.model.GameMap;
+import com.github.matteoCarda.simplerougelike.model.entity.Item;
+
+import java.util.Arrays;
+
+/**
+ * Illuminazione a più sorgenti (torce, oggetti luminosi, stanze illuminate) composta in una mappa di luce per cella.
+ * La luce di ogni sorgente è il suo campo visivo, calcolato con lo stesso shadowcasting del giocatore
+ * ({@link FieldOfView}) e salvato come finestra di byte; la mappa composita è la somma delle finestre applicate.
+ * Il terreno non cambia durante un livello, quindi il campo di una sorgente ferma si calcola una sola volta:
+ * si ricalcolano solo le sorgenti nuove, spostate o che raggiungono una cella di terreno cambiata
+ * ({@link #terrainChanged}). Il ricalcolo è pigro: {@link #update} applica solo le sorgenti in attesa
+ * che illuminano la zona richiesta (tipicamente la finestra del campo visivo del giocatore),
+ * quindi il costo di un turno dipende dalle sorgenti cambiate lì vicino e non da quante sono nel livello.
+ * La mappa composita è divisa in blocchi di {@link #BLOCK_SIZE} celle di lato, tenuti in una tabella hash
+ * per indice di blocco: esistono solo i blocchi che qualche sorgente può raggiungere, quindi la memoria segue
+ * le sorgenti e non l'area del mondo (anche nei mondi a blocchi molto grandi). Un blocco che nessuna sorgente
+ * raggiunge più viene tolto; alcuni restano da parte ({@link #SPARE_BLOCKS}) per essere riusati.
+ * Aggiungere una sorgente alloca tutto ciò che servirà a calcolarla.
+ * Non è thread-safe: va usato dal thread della logica (il rendering ne legge una copia nella fotografia).
+ */
+public class LightingEngine {
+
+    /** Luce massima di una cella, come quella del campo visivo. */
+    public static final int MAX_LIGHT = FieldOfView.MAX_LIGHT;
+    /** Raggio massimo di una sorgente. */
+    public static final int MAX_LIGHT_RADIUS = 12;
+    /** Lato, in celle, di un blocco della mappa composita. */
+    public static final int BLOCK_SIZE = 32;
+    /** Blocchi vuoti tenuti da parte per essere riusati invece di riallocati. */
+    public static final int SPARE_BLOCKS = 8;
+
+    /** Raggio e intensità delle torce appese ai muri. */
+    public static final int TORCH_RADIUS = 6;
+    public static final int TORCH_INTENSITY = 200;
+    /** Una torcia ogni TORCH_SPACING² celle circa. */
+    public static final int TORCH_SPACING = 16;
+    /** Raggio e intensità della luce degli oggetti a terra. */
+    public static final int ITEM_LIGHT_RADIUS = 3;
+    public static final int ITEM_LIGHT_INTENSITY = 140;
+    /** Raggio e intensità della luce diffusa di una stanza illuminata, posta al suo interno. */
+    public static final int ROOM_LIGHT_RADIUS = MAX_LIGHT_RADIUS;
+    public static final int ROOM_LIGHT_INTENSITY = 160;
+    /** Una stanza illuminata ogni ROOM_SPACING² celle circa. */
+    public static final int ROOM_SPACING = 24;
+
+    private static final int BLOCK_SHIFT = 5;
+    private static final int INITIAL_CAPACITY = 16;
+    // Celle provate per ogni torcia (o stanza) prima di rinunciare.
+    private static final int TORCH_PROBES = 16;
+    // Separano le sequenze casuali di torce e stanze da quelle dei turni e delle comparse, che usano lo stesso seme.
+    private static final long TORCH_SALT = 0x544F524354A4C4A5L;
+    private static final long ROOM_SALT = 0x524F4F4D4C495445L;
+    // Una cella è dentro una stanza se il quadrato di lato 2 * ROOM_CORE + 1 attorno a lei è tutto pavimento:
+    // i corridoi, larghi una cella, non lo sono mai.
+    private static final int ROOM_CORE = 2;
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    // Stato di una sorgente: id libero, in attesa di (ri)calcolo, sommata nella mappa composita.
+    private static final byte FREE = 0;
+    private static final byte PENDING = 1;
+    private static final byte APPLIED = 2;
+
+    private final GameMap gameMap;
+    private final int blocksX;
+    private final int blocksY;
+    // Tabella hash a indirizzamento aperto (scansione lineare) dei blocchi esistenti, per indice di blocco.
+    private Block[] table = new Block[INITIAL_CAPACITY];
+    private int blockCount;
+    private final Block[] spareBlocks = new Block[SPARE_BLOCKS];
+    private int spareCount;
+
+    // Sorgenti come array paralleli indicizzati per id; gli id liberati vengono riutilizzati.
+    private int[] xs = new int[INITIAL_CAPACITY];
+    private int[] ys = new int[INITIAL_CAPACITY];
+    private int[] radii = new int[INITIAL_CAPACITY];
+    private int[] intensities = new int[INITIAL_CAPACITY];
+    private byte[] states = new byte[INITIAL_CAPACITY];
+    // Luce già scalata per l'intensità, nella finestra di lato 2 * raggio + 1 attorno alla sorgente.
+    private byte[][] windows = new byte[INITIAL_CAPACITY][];
+    private int usedIds;
+    private int[] freeIds = new int[INITIAL_CAPACITY];
+    private int freeCount;
+    private int lightCount;
+
+    // Sorgente di ogni oggetto a terra (indice: id dell'oggetto sulla mappa), -1 se non ne ha.
+    private int[] lightByItem = new int[0];
+    // Un campo visivo di appoggio per ogni raggio, creato al primo uso.
+    private final FieldOfView[] scratch = new FieldOfView[MAX_LIGHT_RADIUS + 1];
+
+    private long recomputed;
+
+    /**
+     * Costruttore. Il livello parte senza sorgenti e senza luce.
+     * @param gameMap La mappa di cui leggere i muri.
+     */
+    public LightingEngine(GameMap gameMap) {
+        this.gameMap = gameMap;
+        this.blocksX = (gameMap.getWidth() + BLOCK_SIZE - 1) >> BLOCK_SHIFT;
+        this.blocksY = (gameMap.getHeight() + BLOCK_SIZE - 1) >> BLOCK_SHIFT;
+    }
+
+    /**
+     * Un blocco della mappa composita.
+     */
+    private static final class Block {
+        int key;
+        // Somma della luce per cella (indice dx * BLOCK_SIZE + dy).
+        final int[] sums = new int[BLOCK_SIZE * BLOCK_SIZE];
+        // Id delle sorgenti che si trovano nel blocco, per trovare quelle vicine a una zona.
+        int[] lights = new int[4];
+        int lightCount;
+        // Sorgenti che possono raggiungere il blocco: a zero il blocco viene tolto.
+        int reach;
+    }
+
+    // --- SORGENTI ---
+
+    /**
+     * Aggiunge una sorgente di luce. Viene calcolata al primo {@link #update} che ne tocca la zona.
+     * @param radius Raggio, da 1 a {@link #MAX_LIGHT_RADIUS}.
+     * @param intensity Luce al centro, da 1 a {@link #MAX_LIGHT}.
+     * @return L'id della sorgente.
+     * @throws IllegalArgumentException se la posizione è fuori mappa o raggio e intensità non sono validi.
+     */
+    public int addLight(int x, int y, int radius, int intensity) {
+        if (x < 0 || y < 0 || x >= gameMap.getWidth() || y >= gameMap.getHeight()) {
+            throw new IllegalArgumentException("Sorgente fuori mappa: " + x + "," + y);
+        }
+        if (radius < 1 || radius > MAX_LIGHT_RADIUS) {
+            throw new IllegalArgumentException("Raggio della luce non valido: " + radius);
+        }
+        if (intensity < 1 || intensity > MAX_LIGHT) {
+            throw new IllegalArgumentException("Intensità della luce non valida: " + intensity);
+        }
+        int id = (freeCount > 0) ? freeIds[--freeCount] : newId();
+        xs[id] = x;
+        ys[id] = y;
+        radii[id] = radius;
+        intensities[id] = intensity;
+        states[id] = PENDING;
+        int side = radius * 2 + 1;
+        if (windows[id] == null || windows[id].length != side * side) {
+            windows[id] = new byte[side * side];
+        }
+        if (scratch[radius] == null) {
+            scratch[radius] = new FieldOfView(gameMap, radius);
+        }
+        reserve(id);
+        lightCount++;
+        return id;
+    }
+
+    /**
+     * Toglie una sorgente, sottraendone la luce se era già applicata.
+     * @throws IllegalArgumentException se l'id non è una sorgente attiva.
+     */
+    public void removeLight(int id) {
+        checkLight(id);
+        if (states[id] == APPLIED) accumulate(id, -1);
+        release(id);
+        states[id] = FREE;
+        if (freeCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+        }
+        freeIds[freeCount++] = id;
+        lightCount--;
+    }
+
+    /**
+     * Sposta una sorgente: la sua luce viene tolta subito e ricalcolata nella nuova posizione al prossimo {@link #update}.
+     * @throws IllegalArgumentException se l'id non è una sorgente attiva o la posizione è fuori mappa.
+     */
+    public void moveLight(int id, int x, int y) {
+        checkLight(id);
+        if (x < 0 || y < 0 || x >= gameMap.getWidth() || y >= gameMap.getHeight()) {
+            throw new IllegalArgumentException("Sorgente fuori mappa: " + x + "," + y);
+        }
+        if (xs[id] == x && ys[id] == y) return;
+        if (states[id] == APPLIED) accumulate(id, -1);
+        release(id);
+        xs[id] = x;
+        ys[id] = y;
+        states[id] = PENDING;
+        reserve(id);
+    }
+
+    /**
+     * Segnala che la cella (x,y) ha cambiato opacità: le sorgenti che la raggiungono vengono ricalcolate.
+     * Costa quanto le sorgenti nei blocchi vicini, non quanto tutte quelle del livello.
+     */
+    public void terrainChanged(int x, int y) {
+        int minBlockX = Math.max(0, (x - MAX_LIGHT_RADIUS) >> BLOCK_SHIFT);
+        int maxBlockX = Math.min(blocksX - 1, Math.max(0, x + MAX_LIGHT_RADIUS) >> BLOCK_SHIFT);
+        int minBlockY = Math.max(0, (y - MAX_LIGHT_RADIUS) >> BLOCK_SHIFT);
+        int maxBlockY = Math.min(blocksY - 1, Math.max(0, y + MAX_LIGHT_RADIUS) >> BLOCK_SHIFT);
+        for (int blockX = minBlockX; blockX <= maxBlockX; blockX++) {
+            for (int blockY = minBlockY; blockY <= maxBlockY; blockY++) {
+                Block block = findBlock(blockX * blocksY + blockY);
+                if (block == null) continue;
+                for (int i = 0; i < block.lightCount; i++) {
+                    int id = block.lights[i];
+                    if (states[id] == APPLIED
+                            && Math.abs(xs[id] - x) <= radii[id] && Math.abs(ys[id] - y) <= radii[id]) {
+                        accumulate(id, -1);
+                        states[id] = PENDING;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Aggiunge la luce di un oggetto a terra, con {@link #ITEM_LIGHT_RADIUS} e {@link #ITEM_LIGHT_INTENSITY}.
+     * L'oggetto deve essere già sulla mappa (con il suo id).
+     */
+    public void addItemLight(Item item) {
+        int itemId = item.getId();
+        if (itemId < 0) {
+            throw new IllegalArgumentException("L'oggetto non è su una mappa");
+        }
+        if (itemId >= lightByItem.length) {
+            int oldLength = lightByItem.length;
+            lightByItem = Arrays.copyOf(lightByItem, Math.max(INITIAL_CAPACITY, Math.max(itemId + 1, oldLength * 2)));
+            Arrays.fill(lightByItem, oldLength, lightByItem.length, -1);
+        }
+        if (lightByItem[itemId] >= 0) return;
+        lightByItem[itemId] = addLight(item.getX(), item.getY(), ITEM_LIGHT_RADIUS, ITEM_LIGHT_INTENSITY);
+    }
+
+    /**
+     * Toglie la luce di un oggetto (es. appena raccolto), prima che lasci la mappa. Senza luce non fa nulla.
+     */
+    public void removeItemLight(Item item) {
+        int itemId = item.getId();
+        if (itemId < 0 || itemId >= lightByItem.length || lightByItem[itemId] < 0) return;
+        removeLight(lightByItem[itemId]);
+        lightByItem[itemId] = -1;
+    }
+
+    /**
+     * Appende torce ai muri in posizioni scelte dal seme, circa una ogni {@link #TORCH_SPACING}² celle:
+     * ogni torcia sta su un pavimento accanto a un muro. Nei mondi a blocchi non ne mette,
+     * perché cercare i muri forzerebbe la generazione di tutto il mondo.
+     * @return Il numero di torce aggiunte.
+     */
+    public int placeTorches(long seed) {
+        if (gameMap.getTerrain() instanceof ChunkedTerrain) return 0;
+        int width = gameMap.getWidth();
+        int height = gameMap.getHeight();
+        int torches = (int) ((long) width * height / (TORCH_SPACING * TORCH_SPACING));
+        long state = seed ^ TORCH_SALT;
+        int placed = 0;
+        for (int torch = 0; torch < torches; torch++) {
+            for (int probe = 0; probe < TORCH_PROBES; probe++) {
+                state += GOLDEN_GAMMA;
+                long bits = mix(state);
+                int x = (int) (((bits & 0xFFFFFFFFL) * width) >>> 32);
+                int y = (int) (((bits >>> 32) * height) >>> 32);
+                if (!gameMap.isWalkable(x, y) || !isNextToWall(x, y)) continue;
+                addLight(x, y, TORCH_RADIUS, TORCH_INTENSITY);
+                placed++;
+                break;
+            }
+        }
+        return placed;
+    }
+
+    /**
+     * Illumina alcune stanze con una luce diffusa posta al loro interno, in posizioni scelte dal seme:
+     * circa una ogni {@link #ROOM_SPACING}² celle, mai due a meno di {@link #ROOM_LIGHT_RADIUS} l'una dall'altra.
+     * Il generatore non conosce le stanze: la luce va su una cella circondata da pavimento, che nei corridoi
+     * non esiste, e i muri ne fermano il campo, quindi illumina la stanza e poco oltre le sue porte.
+     * Come le torce, nei mondi a blocchi non ne mette.
+     * @return Il numero di stanze illuminate.
+     */
+    public int placeRoomLights(long seed) {
+        if (gameMap.getTerrain() instanceof ChunkedTerrain) return 0;
+        int width = gameMap.getWidth();
+        int height = gameMap.getHeight();
+        int rooms = (int) ((long) width * height / (ROOM_SPACING * ROOM_SPACING));
+        int[] placedXs = new int[rooms];
+        int[] placedYs = new int[rooms];
+        long state = seed ^ ROOM_SALT;
+        int placed = 0;
+        for (int room = 0; room < rooms; room++) {
+            for (int probe = 0; probe < TORCH_PROBES; probe++) {
+                state += GOLDEN_GAMMA;
+                long bits = mix(state);
+                int x = (int) (((bits & 0xFFFFFFFFL) * width) >>> 32);
+                int y = (int) (((bits >>> 32) * height) >>> 32);
+                if (!isInsideRoom(x, y) || isNearPlaced(x, y, placedXs, placedYs, placed)) continue;
+                addLight(x, y, ROOM_LIGHT_RADIUS, ROOM_LIGHT_INTENSITY);
+                placedXs[placed] = x;
+                placedYs[placed] = y;
+                placed++;
+                break;
+            }
+        }
+        return placed;
+    }
+
+    private boolean isInsideRoom(int x, int y) {
+        for (int dx = -ROOM_CORE; dx <= ROOM_CORE; dx++) {
+            for (int dy = -ROOM_CORE; dy <= ROOM_CORE; dy++) {
+                if (!gameMap.isWalkable(x + dx, y + dy)) return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isNearPlaced(int x, int y, int[] placedXs, int[] placedYs, int placed) {
+        for (int i = 0; i < placed; i++) {
+            if (Math.abs(placedXs[i] - x) < ROOM_LIGHT_RADIUS && Math.abs(placedYs[i] - y) < ROOM_LIGHT_RADIUS) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isNextToWall(int x, int y) {
+        return !gameMap.isWalkable(x - 1, y) || !gameMap.isWalkable(x + 1, y)
+                || !gameMap.isWalkable(x, y - 1) || !gameMap.isWalkable(x, y + 1);
+    }
+
+    // --- CALCOLO ---
+
+    /**
+     * Calcola e somma nella mappa composita le sorgenti in attesa che illuminano il rettangolo indicato
+     * (estremi inclusi). Le altre restano in attesa finché una zona che raggiungono non viene richiesta.
+     * @return Il numero di sorgenti calcolate.
+     */
+    public int update(int minX, int minY, int maxX, int maxY) {
+        int minBlockX = Math.max(0, (minX - MAX_LIGHT_RADIUS) >> BLOCK_SHIFT);
+        int maxBlockX = Math.min(blocksX - 1, Math.max(0, maxX + MAX_LIGHT_RADIUS) >> BLOCK_SHIFT);
+        int minBlockY = Math.max(0, (minY - MAX_LIGHT_RADIUS) >> BLOCK_SHIFT);
+        int maxBlockY = Math.min(blocksY - 1, Math.max(0, maxY + MAX_LIGHT_RADIUS) >> BLOCK_SHIFT);
+        int count = 0;
+        for (int blockX = minBlockX; blockX <= maxBlockX; blockX++) {
+            for (int blockY = minBlockY; blockY <= maxBlockY; blockY++) {
+                Block block = findBlock(blockX * blocksY + blockY);
+                if (block == null) continue;
+                for (int i = 0; i < block.lightCount; i++) {
+                    int id = block.lights[i];
+                    if (states[id] != PENDING) continue;
+                    int radius = radii[id];
+                    if (xs[id] + radius < minX || xs[id] - radius > maxX
+                            || ys[id] + radius < minY || ys[id] - radius > maxY) continue;
+                    compute(id);
+                    count++;
+                }
+            }
+        }
+        recomputed += count;
+        return count;
+    }
+
+    /**
+     * Ritorna la luce composita di una cella, limitata a {@link #MAX_LIGHT}.
+     * Conta solo le sorgenti già calcolate da {@link #update}.
+     * @return Da 0 (buio) a {@link #MAX_LIGHT}; 0 fuori mappa.
+     */
+    public int getLight(int x, int y) {
+        if (x < 0 || y < 0 || x >= gameMap.getWidth() || y >= gameMap.getHeight()) return 0;
+        Block block = findBlock((x >> BLOCK_SHIFT) * blocksY + (y >> BLOCK_SHIFT));
+        if (block == null) return 0;
+        return Math.min(MAX_LIGHT, block.sums[(x & (BLOCK_SIZE - 1)) * BLOCK_SIZE + (y & (BLOCK_SIZE - 1))]);
+    }
+
+    /**
+     * Calcola il campo di una sorgente con il campo visivo di appoggio del suo raggio e lo somma.
+     */
+    private void compute(int id) {
+        FieldOfView fieldOfView = scratch[radii[id]];
+        // Il campo di appoggio è condiviso da tutte le sorgenti dello stesso raggio: va sempre ricalcolato.
+        fieldOfView.invalidate();
+        fieldOfView.update(xs[id], ys[id]);
+        byte[] window = windows[id];
+        fieldOfView.copyLight(window);
+        int intensity = intensities[id];
+        for (int i = 0; i < window.length; i++) {
+            int light = window[i] & 0xFF;
+            // Arrotondata per eccesso: ogni cella raggiunta resta illuminata anche con poca intensità.
+            window[i] = (byte) ((light * intensity + MAX_LIGHT - 1) / MAX_LIGHT);
+        }
+        accumulate(id, 1);
+        states[id] = APPLIED;
+    }
+
+    /**
+     * Somma (sign = 1) o sottrae (sign = -1) la finestra di una sorgente alla mappa composita.
+     */
+    private void accumulate(int id, int sign) {
+        int radius = radii[id];
+        int side = radius * 2 + 1;
+        int originX = xs[id] - radius;
+        int originY = ys[id] - radius;
+        byte[] window = windows[id];
+        // Le celle vicine stanno quasi sempre nello stesso blocco: si cerca nella tabella solo quando cambia.
+        int blockKey = -1;
+        int[] sums = null;
+        for (int dx = 0; dx < side; dx++) {
+            int x = originX + dx;
+            if (x < 0 || x >= gameMap.getWidth()) continue;
+            for (int dy = 0; dy < side; dy++) {
+                int light = window[dx * side + dy] & 0xFF;
+                if (light == 0) continue;
+                int y = originY + dy;
+                // Una luce positiva cade sempre dentro la mappa, in un blocco riservato da reserve.
+                int key = (x >> BLOCK_SHIFT) * blocksY + (y >> BLOCK_SHIFT);
+                if (key != blockKey) {
+                    blockKey = key;
+                    sums = findBlock(key).sums;
+                }
+                sums[(x & (BLOCK_SIZE - 1)) * BLOCK_SIZE + (y & (BLOCK_SIZE - 1))] += sign * light;
+            }
+        }
+    }
+
+    // --- INDICE E MEMORIA ---
+
+    private int newId() {
+        if (usedIds == xs.length) {
+            int capacity = usedIds * 2;
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            radii = Arrays.copyOf(radii, capacity);
+            intensities = Arrays.copyOf(intensities, capacity);
+            states = Arrays.copyOf(states, capacity);
+            windows = Arrays.copyOf(windows, capacity);
+        }
+        return usedIds++;
+    }
+
+    private void checkLight(int id) {
+        if (id < 0 || id >= usedIds || states[id] == FREE) {
+            throw new IllegalArgumentException("Sorgente di luce inesistente: " + id);
+        }
+    }
+
+    /**
+     * Crea (o ritrova) i blocchi che la sorgente può raggiungere e la registra nel blocco del suo centro.
+     */
+    private void reserve(int id) {
+        int radius = radii[id];
+        int maxBlockX = Math.min(gameMap.getWidth() - 1, xs[id] + radius) >> BLOCK_SHIFT;
+        int maxBlockY = Math.min(gameMap.getHeight() - 1, ys[id] + radius) >> BLOCK_SHIFT;
+        for (int blockX = Math.max(0, xs[id] - radius) >> BLOCK_SHIFT; blockX <= maxBlockX; blockX++) {
+            for (int blockY = Math.max(0, ys[id] - radius) >> BLOCK_SHIFT; blockY <= maxBlockY; blockY++) {
+                int key = blockX * blocksY + blockY;
+                Block block = findBlock(key);
+                if (block == null) block = insertBlock(key);
+                block.reach++;
+            }
+        }
+        Block home = findBlock((xs[id] >> BLOCK_SHIFT) * blocksY + (ys[id] >> BLOCK_SHIFT));
+        if (home.lightCount == home.lights.length) {
+            home.lights = Arrays.copyOf(home.lights, home.lights.length * 2);
+        }
+        home.lights[home.lightCount++] = id;
+    }
+
+    /**
+     * Opposto di {@link #reserve}: la luce della sorgente deve essere già stata sottratta.
+     * I blocchi che nessuna sorgente raggiunge più hanno tutte le somme a zero e vengono tolti.
+     */
+    private void release(int id) {
+        Block home = findBlock((xs[id] >> BLOCK_SHIFT) * blocksY + (ys[id] >> BLOCK_SHIFT));
+        int last = --home.lightCount;
+        for (int i = 0; i <= last; i++) {
+            if (home.lights[i] == id) {
+                home.lights[i] = home.lights[last];
+                break;
+            }
+        }
+        int radius = radii[id];
+        int maxBlockX = Math.min(gameMap.getWidth() - 1, xs[id] + radius) >> BLOCK_SHIFT;
+        int maxBlockY = Math.min(gameMap.getHeight() - 1, ys[id] + radius) >> BLOCK_SHIFT;
+        for (int blockX = Math.max(0, xs[id] - radius) >> BLOCK_SHIFT; blockX <= maxBlockX; blockX++) {
+            for (int blockY = Math.max(0, ys[id] - radius) >> BLOCK_SHIFT; blockY <= maxBlockY; blockY++) {
+                int key = blockX * blocksY + blockY;
+                if (--findBlock(key).reach == 0) removeBlock(key);
+            }
+        }
+    }
+
+    // --- TABELLA DEI BLOCCHI ---
+
+    private int slotOf(int key) {
+        return (int) (mix(key) & (table.length - 1));
+    }
+
+    /**
+     * @return Il blocco con l'indice indicato, o null se non esiste.
+     */
+    private Block findBlock(int key) {
+        int mask = table.length - 1;
+        for (int slot = slotOf(key); table[slot] != null; slot = (slot + 1) & mask) {
+            if (table[slot].key == key) return table[slot];
+        }
+        return null;
+    }
+
+    private Block insertBlock(int key) {
+        // Tabella piena al massimo a metà: le ricerche restano brevi.
+        if ((blockCount + 1) * 2 > table.length) {
+            Block[] old = table;
+            table = new Block[old.length * 2];
+            for (Block block : old) {
+                if (block != null) place(block);
+            }
+        }
+        Block block;
+        if (spareCount > 0) {
+            block = spareBlocks[--spareCount];
+            spareBlocks[spareCount] = null;
+        } else {
+            block = new Block();
+        }
+        block.key = key;
+        place(block);
+        blockCount++;
+        return block;
+    }
+
+    private void place(Block block) {
+        int mask = table.length - 1;
+        int slot = slotOf(block.key);
+        while (table[slot] != null) slot = (slot + 1) & mask;
+        table[slot] = block;
+    }
+
+    /**
+     * Toglie un blocco spostando indietro quelli che lo seguono nella stessa sequenza di scansione,
+     * così le ricerche non trovano buchi.
+     */
+    private void removeBlock(int key) {
+        int mask = table.length - 1;
+        int slot = slotOf(key);
+        while (table[slot].key != key) slot = (slot + 1) & mask;
+        Block removed = table[slot];
+        table[slot] = null;
+        blockCount--;
+        for (int next = (slot + 1) & mask; table[next] != null; next = (next + 1) & mask) {
+            int home = slotOf(table[next].key);
+            // Il blocco può occupare il buco solo se la sua posizione naturale non sta tra il buco e lui.
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                table[slot] = table[next];
+                table[next] = null;
+                slot = next;
+            }
+        }
+        if (spareCount < SPARE_BLOCKS) {
+            removed.lightCount = 0;
+            spareBlocks[spareCount++] = removed;
+        }
+    }
+
+    /**
+     * Funzione di mescolamento a 64 bit (finalizzatore di SplitMix64).
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // --- STATISTICHE ---
+
+    /** Sorgenti attive. */
+    public int getLightCount() { return lightCount; }
+
+    /** Blocchi della mappa composita in uso (quelli raggiungibili da almeno una sorgente). */
+    public int getBlockCount() { return blockCount; }
+
+    /** Calcoli di sorgenti eseguiti dall'avvio, in tutte le chiamate a {@link #update}. */
+    public long getRecomputedCount() { return recomputed; }
+}
@@ -0,0 +1,95 @@
+package com.github.matteoCarda.simplerougelike.service;
+
+import com.github.matteoCarda.simplerougelike.model.GameMap;
+import com.github.matteoCarda.simplerougelike.model.entity.Enemy;
+import com.github.matteoCarda.simplerougelike.model.entity.Player;
+
+/**
+ * Percezione dei nemici: dice se un nemico vede il giocatore e aggiorna il ricordo della sua ultima posizione.
+ * La visibilità è simmetrica per regola: un nemico vede il giocatore se e solo se la sua cella è nel campo visivo
+ * del giocatore ed è entro il raggio visivo del nemico. Così non serve uno shadowcasting per ogni nemico:
+ * il campo visivo già calcolato per il giocatore fa da bitmap e ogni domanda costa O(1).
+ * Per i nemici con un raggio visivo maggiore di quello del giocatore serve un campo più ampio: viene calcolato
+ * una volta, dalla posizione del giocatore e con il raggio {@link Enemy#MAX_SIGHT_RADIUS}, la prima volta
+ * che un nemico lo chiede, e vale per tutti i nemici finché il giocatore non si muove.
+ * Non è thread-safe: {@link #perceive} va chiamato dal thread della logica, prima della fase "decidi".
+ */
+public class Perception {
+
+    /** Azioni per cui un nemico ricorda la posizione del giocatore dopo averlo perso di vista. */
+    public static final int MEMORY_ACTIONS = 12;
+
+    private final GameMap gameMap;
+    private final FieldOfView playerView;
+    // Campo visivo dal giocatore per i raggi oltre il suo; creato solo se serve.
+    private FieldOfView wideView;
+
+    /**
+     * Costruttore.
+     * @param gameMap La mappa del livello.
+     * @param playerView Il campo visivo del giocatore, aggiornato dal chiamante prima di ogni fase dei nemici.
+     */
+    public Perception(GameMap gameMap, FieldOfView playerView) {
+        this.gameMap = gameMap;
+        this.playerView = playerView;
+    }
+
+    /**
+     * Controlla se un osservatore in (x,y) con il raggio visivo indicato vede il giocatore.
+     * @param sightRadius Raggio visivo, in celle (distanza euclidea), da 1 a {@link Enemy#MAX_SIGHT_RADIUS}.
+     */
+    public boolean canSeePlayer(int x, int y, int sightRadius) {
+        int dx = x - playerView.getOriginX();
+        int dy = y - playerView.getOriginY();
+        // Lo shadowcasting dà luce positiva solo alle celle a distanza minore del raggio.
+        if (dx * dx + dy * dy >= sightRadius * sightRadius) return false;
+        if (sightRadius <= playerView.getRadius()) {
+            return playerView.isVisible(x, y);
+        }
+        return wideView().isVisible(x, y);
+    }
+
+    /**
+     * Controlla se un nemico vede il giocatore, con il proprio raggio visivo.
+     */
+    public boolean canSeePlayer(Enemy enemy) {
+        return canSeePlayer(enemy.getX(), enemy.getY(), enemy.getSightRadius());
+    }
+
+    /**
+     * Aggiorna il ricordo di un gruppo di nemici che stanno per agire: chi vede il giocatore ne memorizza
+     * la posizione per {@link #MEMORY_ACTIONS} azioni; chi non lo vede consuma un'azione di ricordo,
+     * e lo perde del tutto quando arriva sulla posizione ricordata senza trovarlo.
+     * I raggi visivi possono essere diversi: tutti i nemici del gruppo condividono gli stessi campi visivi.
+     * @param enemies I nemici, dal primo all'indice {@code count} escluso.
+     * @param player Il giocatore.
+     * @return Il numero di nemici che vedono il giocatore.
+     */
+    public int perceive(Enemy[] enemies, int count, Player player) {
+        int seeing = 0;
+        for (int i = 0; i < count; i++) {
+            Enemy enemy = enemies[i];
+            if (canSeePlayer(enemy)) {
+                enemy.setLastSeen(player.getX(), player.getY(), MEMORY_ACTIONS);
+                seeing++;
+                continue;
+            }
+            int memory = enemy.getMemory();
+            if (memory == 0) continue;
+            boolean arrived = enemy.getX() == enemy.getLastSeenX() && enemy.getY() == enemy.getLastSeenY();
+            enemy.setLastSeen(enemy.getLastSeenX(), enemy.getLastSeenY(), arrived ? 0 : memory - 1);
+        }
+        return seeing;
+    }
+
+    /**
+     * Il campo visivo ampio, aggiornato alla posizione corrente del giocatore (senza ricalcoli se non si è mosso).
+     */
+    private FieldOfView wideView() {
+        if (wideView == null) {
+            wideView = new FieldOfView(gameMap, Enemy.MAX_SIGHT_RADIUS);
+        }
+        wideView.update(playerView.getOriginX(), playerView.getOriginY());
+        return wideView;
+    }
+}
@@ -0,0 +1,135 @@
+package com.github.matteoCarda.simplerougelike.service;
+
+/**
+ * Regole di comparsa di nemici e oggetti durante un livello, usate da {@link SpawnService}. Immutabili.
+ * I nemici arrivano a ondate: ogni {@code waveInterval} turni un'ondata di {@code waveSize} nemici
+ * (un'ondata da 1 nemico è una ricomparsa periodica); gli oggetti uno ogni {@code itemInterval} turni.
+ * Ogni turno fa comparire al più {@code budget} entità: un'ondata più grande si distribuisce sui turni seguenti.
+ * Le entità compaiono fuori dal campo visivo, a una distanza di Manhattan dal giocatore
+ * tra {@code minDistance} e {@code maxDistance}, e mai oltre i limiti {@code maxEnemies} e {@code maxItems}.
+ */
+public final class SpawnRules {
+
+    public static final int DEFAULT_BUDGET = 2;
+    public static final int DEFAULT_MIN_DISTANCE = 6;
+    public static final int DEFAULT_MAX_DISTANCE = 24;
+
+    /** Nessuna comparsa: la popolazione del livello è solo quella generata con la mappa. */
+    public static final SpawnRules NONE = new SpawnRules(0, 0, 0, 0, 0,
+            DEFAULT_BUDGET, DEFAULT_MIN_DISTANCE, DEFAULT_MAX_DISTANCE);
+
+    private final int waveInterval;
+    private final int waveSize;
+    private final int maxEnemies;
+    private final int itemInterval;
+    private final int maxItems;
+    private final int budget;
+    private final int minDistance;
+    private final int maxDistance;
+
+    /**
+     * Costruttore.
+     * @param waveInterval Turni tra l'inizio di due ondate di nemici (0: nessuna ondata).
+     * @param waveSize Nemici per ondata.
+     * @param maxEnemies Numero massimo di nemici sul livello oltre il quale non ne compaiono altri.
+     * @param itemInterval Turni tra due comparse di oggetti (0: nessun oggetto).
+     * @param maxItems Numero massimo di oggetti a terra oltre il quale non ne compaiono altri.
+     * @param budget Entità che possono comparire in un solo turno.
+     * @param minDistance Distanza minima dal giocatore.
+     * @param maxDistance Distanza massima dal giocatore.
+     * @throws IllegalArgumentException se un valore è negativo, il budget è nullo o le distanze non sono coerenti.
+     */
+    public SpawnRules(int waveInterval, int waveSize, int maxEnemies, int itemInterval, int maxItems,
+                      int budget, int minDistance, int maxDistance) {
+        if (waveInterval < 0 || waveSize < 0 || maxEnemies < 0 || itemInterval < 0 || maxItems < 0) {
+            throw new IllegalArgumentException("Intervalli e limiti non possono essere negativi");
+        }
+        if (budget < 1) {
+            throw new IllegalArgumentException("Budget non valido: " + budget);
+        }
+        if (minDistance < 1 || maxDistance < minDistance) {
+            throw new IllegalArgumentException("Distanze non valide: " + minDistance + ".." + maxDistance);
+        }
+        this.waveInterval = waveInterval;
+        this.waveSize = waveSize;
+        this.maxEnemies = maxEnemies;
+        this.itemInterval = itemInterval;
+        this.maxItems = maxItems;
+        this.budget = budget;
+        this.minDistance = minDistance;
+        this.maxDistance = maxDistance;
+    }
+
+    /**
+     * Copia delle regole con ondate di nemici.
+     */
+    public SpawnRules withEnemyWaves(int waveInterval, int waveSize, int maxEnemies) {
+        return new SpawnRules(waveInterval, waveSize, maxEnemies, itemInterval, maxItems, budget, minDistance, maxDistance);
+    }
+
+    /**
+     * Copia delle regole con la comparsa periodica di oggetti.
+     */
+    public SpawnRules withItems(int itemInterval, int maxItems) {
+        return new SpawnRules(waveInterval, waveSize, maxEnemies, itemInterval, maxItems, budget, minDistance, maxDistance);
+    }
+
+    /**
+     * Copia delle regole con un altro budget per turno.
+     */
+    public SpawnRules withBudget(int budget) {
+        return new SpawnRules(waveInterval, waveSize, maxEnemies, itemInterval, maxItems, budget, minDistance, maxDistance);
+    }
+
+    /**
+     * Copia delle regole con un'altra fascia di distanze dal giocatore.
+     */
+    public SpawnRules withDistance(int minDistance, int maxDistance) {
+        return new SpawnRules(waveInterval, waveSize, maxEnemies, itemInterval, maxItems, budget, minDistance, maxDistance);
+    }
+
+    /**
+     * Controlla se le regole fanno comparire qualcosa.
+     */
+    public boolean isActive() {
+        return (waveInterval > 0 && waveSize > 0 && maxEnemies > 0) || (itemInterval > 0 && maxItems > 0);
+    }
+
+    public int getWaveInterval() { return waveInterval; }
+
+    public int getWaveSize() { return waveSize; }
+
+    public int getMaxEnemies() { return maxEnemies; }
+
+    public int getItemInterval() { return itemInterval; }
+
+    public int getMaxItems() { return maxItems; }
+
+    public int getBudget() { return budget; }
+
+    public int getMinDistance() { return minDistance; }
+
+    public int getMaxDistance() { return maxDistance; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof SpawnRules)) return false;
+        SpawnRules other = (SpawnRules) o;
+        return waveInterval == other.waveInterval && waveSize == other.waveSize && maxEnemies == other.maxEnemies
+                && itemInterval == other.itemInterval && maxItems == other.maxItems && budget == other.budget
+                && minDistance == other.minDistance && maxDistance == other.maxDistance;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = waveInterval;
+        result = 31 * result + waveSize;
+        result = 31 * result + maxEnemies;
+        result = 31 * result + itemInterval;
+        result = 31 * result + maxItems;
+        result = 31 * result + budget;
+        result = 31 * result + minDistance;
+        return 31 * result + maxDistance;
+    }
+}
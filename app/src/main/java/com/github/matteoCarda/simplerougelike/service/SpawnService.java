@@ -0,0 +1,208 @@
+package com.github.matteoCarda.simplerougelike.service;
+
+import com.github.matteoCarda.simplerougelike.model.GameMap;
+import com.github.matteoCarda.simplerougelike.model.entity.Enemy;
+import com.github.matteoCarda.simplerougelike.model.entity.Item;
+import com.github.matteoCarda.simplerougelike.model.entity.Player;
+import com.github.matteoCarda.simplerougelike.model.entity.PotionItem;
+import com.github.matteoCarda.simplerougelike.util.ObjectPool;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fa comparire nemici e oggetti durante il livello secondo le {@link SpawnRules}, riutilizzando le istanze
+ * da due {@link ObjectPool}: i nemici morti e le entità dei livelli abbandonati tornano nei pool
+ * e vengono reimpostati alla comparsa successiva, quindi le ondate non producono lavoro per il garbage collector.
+ * <p>
+ * Il costo di un turno è limitato: al più {@link SpawnRules#getBudget()} comparse, ognuna con al più
+ * {@link #PROBES_PER_SPAWN} celle provate (una comparsa senza cella valida viene saltata).
+ * Le scelte dipendono solo dal seme del livello, dal numero del turno e dallo stato della mappa,
+ * quindi salvataggi e registro dei turni rigiocano le stesse comparse.
+ * Non è thread-safe: va usato dal thread della logica.
+ */
+public class SpawnService {
+
+    /** Nemici liberi conservati al massimo dal pool. */
+    public static final int ENEMY_POOL_CAPACITY = 1024;
+    /** Oggetti liberi conservati al massimo dal pool. */
+    public static final int ITEM_POOL_CAPACITY = 256;
+    /** Celle provate per ogni comparsa prima di rinunciare. */
+    public static final int PROBES_PER_SPAWN = 32;
+
+    // Separa la sequenza casuale delle comparse da quella dei turni dei nemici, che usa lo stesso seme.
+    private static final long SPAWN_SALT = 0x5350574E5350574EL;
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private final ObjectPool<Enemy> enemyPool = new ObjectPool<>(() -> new Enemy(0, 0), ENEMY_POOL_CAPACITY);
+    private final ObjectPool<PotionItem> itemPool = new ObjectPool<>(() -> new PotionItem(0, 0), ITEM_POOL_CAPACITY);
+    // Liste di appoggio riutilizzate per le rimozioni.
+    private final List<Enemy> removedEnemies = new ArrayList<>();
+    private final List<Item> removedItems = new ArrayList<>();
+
+    private SpawnRules rules = SpawnRules.NONE;
+    // Stato del generatore durante le comparse di un turno.
+    private long probeState;
+
+    private long spawnedEnemies;
+    private long spawnedItems;
+    private long failedSpawns;
+
+    /**
+     * Imposta le regole, valide da subito per il livello corrente e per i successivi finché non vengono cambiate.
+     */
+    public void setRules(SpawnRules rules) {
+        this.rules = rules;
+    }
+
+    public SpawnRules getRules() {
+        return rules;
+    }
+
+    /**
+     * Prepara nei pool le istanze che le regole potranno chiedere in questo livello (fino ai limiti di popolazione),
+     * così che le comparse durante i turni non allochino.
+     */
+    public void reserve(GameMap gameMap) {
+        if (!rules.isActive()) return;
+        enemyPool.prefill(rules.getMaxEnemies() - gameMap.getEnemies().size());
+        itemPool.prefill(rules.getMaxItems() - gameMap.getItems().size());
+    }
+
+    /**
+     * Abbandona un livello: nemici e oggetti rimasti sulla mappa tornano nei pool.
+     * La mappa resta con il solo terreno e non va più usata per giocare.
+     */
+    public void retire(GameMap gameMap) {
+        gameMap.clearEntities(removedEnemies, removedItems);
+        for (int i = 0; i < removedEnemies.size(); i++) {
+            enemyPool.release(removedEnemies.get(i));
+        }
+        for (int i = 0; i < removedItems.size(); i++) {
+            Item item = removedItems.get(i);
+            if (item instanceof PotionItem) itemPool.release((PotionItem) item);
+        }
+        removedEnemies.clear();
+        removedItems.clear();
+    }
+
+    /**
+     * Rimuove i nemici morti dalla mappa (swap-remove) e li restituisce al pool.
+     * I nemici conservano il loro stato finché il pool non li riassegna.
+     * @return Il numero di nemici rimossi.
+     */
+    public int removeDeadEnemies(GameMap gameMap) {
+        int removed = gameMap.removeDeadEnemies(removedEnemies);
+        for (int i = 0; i < removed; i++) {
+            enemyPool.release(removedEnemies.get(i));
+        }
+        removedEnemies.clear();
+        return removed;
+    }
+
+    /**
+     * Fa comparire le entità previste dalle regole alla fine di un turno.
+     * @param gameMap La mappa del livello.
+     * @param fieldOfView Il campo visivo del giocatore (nessuna comparsa nelle celle visibili), o null.
+     * @param turn Il numero del turno appena giocato (0 per il primo).
+     * @param seed Il seme del livello.
+     * @return Il numero di entità comparse.
+     */
+    public int spawn(GameMap gameMap, FieldOfView fieldOfView, long turn, long seed) {
+        if (!rules.isActive()) return 0;
+        long completed = turn + 1;
+        int budget = rules.getBudget();
+
+        int enemies = Math.min(enemiesDue(completed, budget), rules.getMaxEnemies() - gameMap.getEnemies().size());
+        boolean itemDue = rules.getItemInterval() > 0 && completed % rules.getItemInterval() == 0
+                && gameMap.getItems().size() < rules.getMaxItems();
+        if (enemies <= 0 && !itemDue) return 0;
+
+        probeState = mix((seed ^ SPAWN_SALT) + completed * GOLDEN_GAMMA);
+        Player player = gameMap.getPlayer();
+        int spawned = 0;
+        for (int i = 0; i < enemies; i++) {
+            int cell = findSpawnCell(gameMap, fieldOfView, player.getX(), player.getY());
+            if (cell < 0) continue;
+            Enemy enemy = enemyPool.acquire();
+            enemy.reset(cell / gameMap.getHeight(), cell % gameMap.getHeight());
+            gameMap.addEnemy(enemy);
+            spawnedEnemies++;
+            spawned++;
+        }
+        if (itemDue && Math.max(enemies, 0) < budget) {
+            int cell = findSpawnCell(gameMap, fieldOfView, player.getX(), player.getY());
+            if (cell >= 0) {
+                PotionItem item = itemPool.acquire();
+                item.reset(cell / gameMap.getHeight(), cell % gameMap.getHeight());
+                gameMap.addItem(item);
+                spawnedItems++;
+                spawned++;
+            }
+        }
+        return spawned;
+    }
+
+    /**
+     * Nemici dell'ondata da far comparire dopo {@code completed} turni: l'ondata parte sui multipli dell'intervallo
+     * e prosegue nei turni seguenti, {@code budget} nemici alla volta.
+     */
+    private int enemiesDue(long completed, int budget) {
+        int interval = rules.getWaveInterval();
+        // La prima ondata parte dopo un intervallo intero, non al primo turno.
+        if (interval == 0 || completed < interval) return 0;
+        long alreadySpawned = (completed % interval) * budget;
+        return (int) Math.max(0, Math.min(budget, rules.getWaveSize() - alreadySpawned));
+    }
+
+    /**
+     * Prova fino a {@link #PROBES_PER_SPAWN} celle casuali nella fascia di distanze dal giocatore.
+     * Una cella va bene se è attiva, calpestabile, libera e fuori dal campo visivo.
+     * @return La cella (x * altezza + y), o -1 se nessuna cella provata va bene.
+     */
+    private int findSpawnCell(GameMap gameMap, FieldOfView fieldOfView, int playerX, int playerY) {
+        int minDistance = rules.getMinDistance();
+        int maxDistance = rules.getMaxDistance();
+        long span = 2L * maxDistance + 1;
+        for (int probe = 0; probe < PROBES_PER_SPAWN; probe++) {
+            probeState += GOLDEN_GAMMA;
+            long bits = mix(probeState);
+            int dx = (int) (((bits & 0xFFFFFFFFL) * span) >>> 32) - maxDistance;
+            int dy = (int) (((bits >>> 32) * span) >>> 32) - maxDistance;
+            int distance = Math.abs(dx) + Math.abs(dy);
+            if (distance < minDistance || distance > maxDistance) continue;
+            int x = playerX + dx;
+            int y = playerY + dy;
+            if (!gameMap.isActive(x, y) || !gameMap.isWalkable(x, y)) continue;
+            if (gameMap.getEnemyAt(x, y) != null || gameMap.getItemAt(x, y) != null) continue;
+            if (fieldOfView != null && fieldOfView.isVisible(x, y)) continue;
+            return x * gameMap.getHeight() + y;
+        }
+        failedSpawns++;
+        return -1;
+    }
+
+    /**
+     * Funzione di mescolamento a 64 bit (finalizzatore di SplitMix64).
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // --- STATISTICHE ---
+
+    public ObjectPool<Enemy> getEnemyPool() { return enemyPool; }
+
+    public ObjectPool<PotionItem> getItemPool() { return itemPool; }
+
+    /** Nemici fatti comparire dall'avvio. */
+    public long getSpawnedEnemyCount() { return spawnedEnemies; }
+
+    /** Oggetti fatti comparire dall'avvio. */
+    public long getSpawnedItemCount() { return spawnedItems; }
+
+    /** Comparse saltate perché nessuna delle celle provate andava bene. */
+    public long getFailedSpawnCount() { return failedSpawns; }
+}
@@ -0,0 +1,99 @@
+package com.github.matteoCarda.simplerougelike.util;
+
+import com.github.matteoCarda.simplerougelike.model.ChunkedTerrain;
+import com.github.matteoCarda.simplerougelike.model.tile.Tile;
+
+import squidpony.squidgrid.mapping.DungeonGenerator;
+import squidpony.squidmath.RNG;
+
+/**
+ * Generatore deterministico dei blocchi di un {@link ChunkedTerrain}.
+ * Ogni blocco è un piccolo dungeon di SquidLib con un seme derivato da quello del mondo e dalle sue coordinate,
+ * quindi può essere rigenerato identico in qualsiasi momento, da qualsiasi thread.
+ * Per collegare blocchi vicini, su ogni lato condiviso viene scavato un passaggio in una posizione
+ * che dipende solo dal lato: i due blocchi la calcolano allo stesso modo e scavano ciascuno la propria metà,
+ * dal bordo verso l'interno fino al primo pavimento.
+ */
+public class ChunkGenerator implements ChunkedTerrain.ChunkSource {
+
+    private static final int SIZE = ChunkedTerrain.CHUNK_SIZE;
+
+    private final long seed;
+    private final int chunksX;
+    private final int chunksY;
+
+    /**
+     * Costruttore.
+     * @param seed Il seme del mondo.
+     * @param chunksX Numero di blocchi in orizzontale (i blocchi sul bordo del mondo non vengono aperti verso l'esterno).
+     * @param chunksY Numero di blocchi in verticale.
+     */
+    public ChunkGenerator(long seed, int chunksX, int chunksY) {
+        this.seed = seed;
+        this.chunksX = chunksX;
+        this.chunksY = chunksY;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    @Override
+    public byte[] generate(int chunkX, int chunkY) {
+        char[][] grid = new DungeonGenerator(SIZE, SIZE, new RNG(mix(seed, chunkX, chunkY))).generate();
+
+        byte[] cells = new byte[SIZE * SIZE];
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                cells[x * SIZE + y] = (grid[x][y] == '#') ? Tile.WALL : Tile.FLOOR;
+            }
+        }
+
+        // Lati verticali (verso i blocchi a sinistra e a destra) e orizzontali (sopra e sotto).
+        if (chunkX > 0) {
+            carve(cells, 0, edgeOffset(chunkX - 1, chunkY, 0), 1, 0);
+        }
+        if (chunkX < chunksX - 1) {
+            carve(cells, SIZE - 1, edgeOffset(chunkX, chunkY, 0), -1, 0);
+        }
+        if (chunkY > 0) {
+            carve(cells, edgeOffset(chunkX, chunkY - 1, 1), 0, 0, 1);
+        }
+        if (chunkY < chunksY - 1) {
+            carve(cells, edgeOffset(chunkX, chunkY, 1), SIZE - 1, 0, -1);
+        }
+        return cells;
+    }
+
+    /**
+     * Scava in linea retta a partire dal bordo finché non incontra un pavimento già esistente.
+     */
+    private static void carve(byte[] cells, int x, int y, int stepX, int stepY) {
+        for (int i = 0; i < SIZE; i++) {
+            int index = x * SIZE + y;
+            if (i > 0 && cells[index] == Tile.FLOOR) return;
+            cells[index] = Tile.FLOOR;
+            x += stepX;
+            y += stepY;
+        }
+    }
+
+    /**
+     * Posizione del passaggio sul lato destro (axis 0) o inferiore (axis 1) del blocco indicato,
+     * sempre lontana dagli angoli.
+     */
+    private int edgeOffset(int chunkX, int chunkY, int axis) {
+        long hash = mix(seed ^ 0x9E3779B97F4A7C15L * (axis + 1), chunkX, chunkY);
+        return 1 + (int) Math.floorMod(hash, (long) (SIZE - 2));
+    }
+
+    /**
+     * Mescola seme e coordinate in un nuovo seme (finalizzatore di SplitMix64).
+     */
+    private static long mix(long seed, int chunkX, int chunkY) {
+        long z = seed + 0x9E3779B97F4A7C15L * (((long) chunkX << 32) ^ (chunkY & 0xFFFFFFFFL));
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,108 @@
+package com.github.matteoCarda.simplerougelike.util;
+
+import com.github.matteoCarda.simplerougelike.service.GameEventBus;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Scrive su file gli eventi di un {@link GameEventBus}, a blocchi.
+ * Struttura (big-endian): {@link #MAGIC}, {@link #VERSION}, poi un record di {@link #RECORD_BYTES} byte per evento:
+ * tipo (1 byte), autore, bersaglio, x, y (int) e valore (double).
+ * {@link #drain} copia gli eventi nuovi in un buffer; il file viene scritto solo quando il buffer è pieno,
+ * con {@link #flush} o alla chiusura, quindi la maggior parte delle chiamate non fa I/O.
+ * Non è thread-safe: va usato da un solo thread.
+ */
+public class EventFileSink implements GameEventBus.Handler, AutoCloseable {
+
+    /** "SRLE": identifica un file di eventi di questo gioco. */
+    public static final int MAGIC = 0x53524C45;
+    /** Versione corrente del formato. */
+    public static final short VERSION = 1;
+    /** Dimensione di un evento nel file. */
+    public static final int RECORD_BYTES = 1 + 4 * 4 + 8;
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    private final FileChannel channel;
+    private final GameEventBus.Subscription subscription;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+    private IOException failure;
+
+    private EventFileSink(FileChannel channel, GameEventBus.Subscription subscription) {
+        this.channel = channel;
+        this.subscription = subscription;
+    }
+
+    /**
+     * Crea il file (sostituendo quello esistente) e si iscrive agli eventi pubblicati da ora in poi.
+     * @throws IOException se il file non si può creare.
+     */
+    public static EventFileSink open(GameEventBus eventBus, Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        EventFileSink sink = new EventFileSink(channel, eventBus.subscribe());
+        sink.buffer.putInt(MAGIC).putShort(VERSION).putShort((short) 0);
+        return sink;
+    }
+
+    /**
+     * Copia nel buffer gli eventi arrivati dall'ultima chiamata, scrivendo su file solo i blocchi pieni.
+     * @return Il numero di eventi letti.
+     */
+    public int drain() {
+        return subscription.drain(this);
+    }
+
+    @Override
+    public void onEvent(int type, int actor, int target, int x, int y, double value) {
+        if (buffer.remaining() < RECORD_BYTES) {
+            writeBuffer();
+        }
+        buffer.put((byte) type).putInt(actor).putInt(target).putInt(x).putInt(y).putDouble(value);
+    }
+
+    /**
+     * Legge gli eventi rimasti e scrive su file tutto il buffer.
+     */
+    public void flush() {
+        drain();
+        writeBuffer();
+    }
+
+    /**
+     * Numero di eventi persi perché il bus li ha sovrascritti prima che venissero letti.
+     */
+    public long getLostCount() {
+        return subscription.getLostCount();
+    }
+
+    /**
+     * Il primo errore di scrittura, o null se il file è integro. Dopo un errore gli eventi vengono scartati.
+     */
+    public IOException getFailure() {
+        return failure;
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        channel.close();
+        if (failure != null) throw failure;
+    }
+
+    private void writeBuffer() {
+        buffer.flip();
+        try {
+            while (failure == null && buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+        buffer.clear();
+    }
+}
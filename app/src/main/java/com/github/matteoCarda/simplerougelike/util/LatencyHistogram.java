@@ -0,0 +1,115 @@
+package com.github.matteoCarda.simplerougelike.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Istogramma delle durate (in nanosecondi) a bucket log-lineari: ogni potenza di due è divisa in
+ * {@link #SUB_BUCKETS} bucket uguali, quindi i percentili hanno un errore relativo massimo di circa il 12%
+ * con un array fisso di poche centinaia di contatori, qualunque sia l'intervallo dei valori.
+ * Un solo thread registra ({@link #record}), senza lock né allocazioni; gli altri thread possono leggere
+ * in qualsiasi momento, vedendo al più l'ultima registrazione non ancora completa.
+ */
+public class LatencyHistogram {
+
+    /** Bucket per ogni potenza di due. */
+    public static final int SUB_BUCKETS = 8;
+
+    private static final int SUB_BUCKET_BITS = 3;
+    // Valori fino a 2^62: bastano per qualsiasi durata misurata con System.nanoTime.
+    private static final int BUCKET_COUNT = (62 - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Registra una durata. Da chiamare sempre dallo stesso thread.
+     * @param nanos La durata in nanosecondi (i valori negativi contano come 0).
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        int index = bucketIndex(value);
+        // Un solo scrittore: basta una scrittura ordinata, senza compare-and-set.
+        counts.lazySet(index, counts.get(index) + 1);
+        sum.lazySet(sum.get() + value);
+        if (value > max.get()) {
+            max.lazySet(value);
+        }
+        count.lazySet(count.get() + 1);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Durata media in nanosecondi, o 0 se non ci sono registrazioni.
+     */
+    public double getMean() {
+        long n = count.get();
+        return (n == 0) ? 0 : (double) sum.get() / n;
+    }
+
+    /**
+     * Stima del percentile indicato: il limite superiore del bucket che lo contiene, mai oltre il massimo.
+     * @param percentile Valore tra 0 e 100 (es. 50 per la mediana, 99 per il p99).
+     * @return La durata in nanosecondi, o 0 se non ci sono registrazioni.
+     */
+    public long getPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile non valido: " + percentile);
+        }
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            total += counts.get(i);
+        }
+        if (total == 0) return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(bucketUpperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Azzera l'istogramma. Da chiamare dal thread che registra.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.lazySet(i, 0);
+        }
+        count.lazySet(0);
+        sum.lazySet(0);
+        max.lazySet(0);
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = index % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return ((SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS)) + width - 1;
+    }
+}
@@ -1,13 +1,12 @@
 package com.github.matteoCarda.simplerougelike.util;
 
+import com.github.matteoCarda.simplerougelike.model.ChunkedTerrain;
 import com.github.matteoCarda.simplerougelike.model.GameMap;
 import com.github.matteoCarda.simplerougelike.model.entity.Enemy;
 import com.github.matteoCarda.simplerougelike.model.entity.Item;
 import com.github.matteoCarda.simplerougelike.model.entity.Player;
 import com.github.matteoCarda.simplerougelike.model.entity.PotionItem;
-import com.github.matteoCarda.simplerougelike.model.tile.FloorTile;
 import com.github.matteoCarda.simplerougelike.model.tile.Tile;
-import com.github.matteoCarda.simplerougelike.model.tile.WallTile;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -21,6 +20,10 @@ import squidpony.squidmath.RNG;
  * Utilizza la libreria SquidLib per creare la struttura del dungeon.
  */
 public class MapGenerator {
+
+    /** Raggio, in blocchi, entro cui un mondo a blocchi resta in memoria attorno al giocatore. */
+    public static final int CHUNK_LOAD_RADIUS = 2;
+
     private final RNG rng;
 
     /**
@@ -31,6 +34,15 @@ public class MapGenerator {
         this.rng = new RNG();
     }
 
+    /**
+     * Costruttore con seme fisso: a parità di seme e parametri la mappa generata è sempre la stessa.
+     * Utile per test, benchmark e riproduzione di partite.
+     * @param seed Il seme del generatore di numeri casuali.
+     */
+    public MapGenerator(long seed) {
+        this.rng = new RNG(seed);
+    }
+
     /**
      * Genera una mappa di gioco completa con stanze, corridoi, nemici e oggetti.
      *
@@ -46,16 +58,16 @@ public class MapGenerator {
         DungeonGenerator dungeonGenerator = new DungeonGenerator(width, height, rng);
         char[][] generatedGrid = dungeonGenerator.generate();
 
-        // 2. CONVERTIRE LA GRIGLIA DI CARATTERI IN OGGETTI TILE
-        Tile[][] grid = new Tile[width][height];
+        // 2. CONVERTIRE LA GRIGLIA DI CARATTERI NEL TERRENO COMPATTO (UN BYTE PER CELLA)
+        byte[] terrain = new byte[width * height];
         // MODIFICA: Usiamo DungeonUtility per ottenere le coordinate, è più pulito.
         ArrayList<Coord> floorCoords = new ArrayList<>();
         for (int x = 0; x < width; x++) {
             for (int y = 0; y < height; y++) {
                 if (generatedGrid[x][y] == '#') {
-                    grid[x][y] = new WallTile(x, y);
+                    terrain[x * height + y] = Tile.WALL;
                 } else {
-                    grid[x][y] = new FloorTile(x, y);
+                    terrain[x * height + y] = Tile.FLOOR;
                     floorCoords.add(Coord.get(x, y));
                 }
             }
@@ -90,10 +102,65 @@ public class MapGenerator {
         }
 
         // 4. CREARE E RESTITUIRE L'OGGETTO GAMEMAP COMPLETO
-        return new GameMap(grid, player, enemies, items);
+        return new GameMap(terrain, width, height, player, enemies, items);
     }
 
+    /**
+     * Genera un mondo a blocchi di dimensioni arbitrarie (fino a {@link ChunkedTerrain#MAX_SIDE} per lato).
+     * Il terreno non viene generato qui: i blocchi vengono creati su richiesta a partire da un seme
+     * estratto da questo generatore, quindi il costo non dipende dalle dimensioni del mondo.
+     * Giocatore, nemici e oggetti vengono posizionati nei blocchi attorno al centro del mondo.
+     *
+     * @param width      Larghezza del mondo.
+     * @param height     Altezza del mondo.
+     * @param enemyCount Numero di nemici da posizionare attorno al giocatore.
+     * @param itemCount  Numero di oggetti da posizionare attorno al giocatore.
+     * @return Un oggetto GameMap il cui terreno è un {@link ChunkedTerrain}.
+     * @throws IllegalStateException se attorno al centro non ci sono abbastanza caselle libere.
+     */
+    public GameMap generateChunkedMap(int width, int height, int enemyCount, int itemCount) {
+        int size = ChunkedTerrain.CHUNK_SIZE;
+        int chunksX = (width + size - 1) / size;
+        int chunksY = (height + size - 1) / size;
+        ChunkedTerrain terrain = new ChunkedTerrain(width, height, CHUNK_LOAD_RADIUS,
+                new ChunkGenerator(rng.nextLong(), chunksX, chunksY));
+
+        // Zona di partenza: il blocco centrale e quelli adiacenti (generati subito, alla prima lettura).
+        int centerChunkX = chunksX / 2;
+        int centerChunkY = chunksY / 2;
+        int minX = Math.max(0, centerChunkX - 1) * size;
+        int maxX = Math.min(width, (centerChunkX + 2) * size);
+        int minY = Math.max(0, centerChunkY - 1) * size;
+        int maxY = Math.min(height, (centerChunkY + 2) * size);
+        ArrayList<Coord> floorCoords = new ArrayList<>();
+        for (int x = minX; x < maxX; x++) {
+            for (int y = minY; y < maxY; y++) {
+                if (terrain.get(x, y) == Tile.FLOOR) {
+                    floorCoords.add(Coord.get(x, y));
+                }
+            }
+        }
+        if (floorCoords.size() < enemyCount + itemCount + 1) {
+            throw new IllegalStateException("Zona di partenza troppo piccola: non ci sono abbastanza caselle libere per posizionare tutto.");
+        }
+
+        Coord playerCoord = floorCoords.remove(rng.nextInt(floorCoords.size()));
+        Player player = new Player(playerCoord.x, playerCoord.y);
 
-}
+        List<Enemy> enemies = new ArrayList<>();
+        for (int i = 0; i < enemyCount; i++) {
+            Coord enemyCoord = floorCoords.remove(rng.nextInt(floorCoords.size()));
+            enemies.add(new Enemy(enemyCoord.x, enemyCoord.y));
+        }
 
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < itemCount; i++) {
+            Coord itemCoord = floorCoords.remove(rng.nextInt(floorCoords.size()));
+            items.add(new PotionItem(itemCoord.x, itemCoord.y));
+        }
 
+        GameMap gameMap = new GameMap(terrain, player, enemies, items);
+        gameMap.focus(player.getX(), player.getY());
+        return gameMap;
+    }
+}
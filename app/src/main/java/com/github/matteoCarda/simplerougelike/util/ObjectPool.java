@@ -0,0 +1,114 @@
+package com.github.matteoCarda.simplerougelike.util;
+
+import java.util.Arrays;
+
+/**
+ * Pool di oggetti riutilizzabili, con una pila di istanze libere di capacità fissa.
+ * {@link #acquire} restituisce un'istanza libera o, se non ce ne sono, ne crea una nuova con la fabbrica;
+ * {@link #release} la rimette a disposizione. Il pool non reimposta gli oggetti: chi li prende li riporta
+ * allo stato iniziale (es. {@link com.github.matteoCarda.simplerougelike.model.entity.Enemy#reset}).
+ * Le statistiche (creazioni, riusi, rilasci, scarti) servono a dimensionare capacità e riserve.
+ * Non è thread-safe: va usato dal thread della logica.
+ * @param <T> Il tipo degli oggetti.
+ */
+public final class ObjectPool<T> {
+
+    /**
+     * Crea una nuova istanza quando il pool è vuoto.
+     */
+    public interface Factory<T> {
+        T create();
+    }
+
+    private final Factory<T> factory;
+    private final Object[] free;
+    private int freeCount;
+
+    private long created;
+    private long reused;
+    private long released;
+    private long dropped;
+
+    /**
+     * Costruttore. Non crea istanze: usare {@link #prefill} per averne una riserva già pronta.
+     * @param factory La fabbrica delle nuove istanze.
+     * @param capacity Numero massimo di istanze libere conservate; quelle in più vengono lasciate al garbage collector.
+     * @throws IllegalArgumentException se la capacità è negativa.
+     */
+    public ObjectPool(Factory<T> factory, int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacità non valida: " + capacity);
+        }
+        this.factory = factory;
+        this.free = new Object[capacity];
+    }
+
+    /**
+     * Ritorna un'istanza libera, creandola se il pool è vuoto.
+     */
+    @SuppressWarnings("unchecked")
+    public T acquire() {
+        if (freeCount == 0) {
+            created++;
+            return factory.create();
+        }
+        reused++;
+        T object = (T) free[--freeCount];
+        free[freeCount] = null;
+        return object;
+    }
+
+    /**
+     * Rimette un'istanza a disposizione. L'istanza non deve essere più usata da chi la rilascia,
+     * né rilasciata due volte.
+     * @return true se è stata conservata, false se il pool era pieno e l'istanza è stata scartata.
+     */
+    public boolean release(T object) {
+        if (freeCount == free.length) {
+            dropped++;
+            return false;
+        }
+        released++;
+        free[freeCount++] = object;
+        return true;
+    }
+
+    /**
+     * Crea in anticipo le istanze mancanti per averne almeno {@code count} libere (entro la capacità),
+     * così che le prossime {@link #acquire} non allochino.
+     */
+    public void prefill(int count) {
+        int target = Math.min(count, free.length);
+        while (freeCount < target) {
+            created++;
+            free[freeCount++] = factory.create();
+        }
+    }
+
+    /**
+     * Svuota il pool, lasciando le istanze libere al garbage collector. Le statistiche restano.
+     */
+    public void clear() {
+        Arrays.fill(free, 0, freeCount, null);
+        freeCount = 0;
+    }
+
+    // --- STATISTICHE ---
+
+    /** Istanze libere pronte per {@link #acquire}. */
+    public int getFreeCount() { return freeCount; }
+
+    public int getCapacity() { return free.length; }
+
+    /** Istanze create dalla fabbrica, da {@link #acquire} a pool vuoto o da {@link #prefill}. */
+    public long getCreatedCount() { return created; }
+
+    /** Chiamate a {@link #acquire} servite da un'istanza libera. */
+    public long getReusedCount() { return reused; }
+
+    /** Istanze rilasciate e conservate. */
+    public long getReleasedCount() { return released; }
+
+    /** Istanze rilasciate ma scartate perché il pool era pieno. */
+    public long getDroppedCount() { return dropped; }
+}
@@ -0,0 +1,394 @@
+package com.github.matteoCarda.simplerougelike.util;
+
+import com.github.matteoCarda.simplerougelike.model.ChunkedTerrain;
+import com.github.matteoCarda.simplerougelike.model.DenseTerrain;
+import com.github.matteoCarda.simplerougelike.model.GameMap;
+import com.github.matteoCarda.simplerougelike.model.Terrain;
+import com.github.matteoCarda.simplerougelike.model.entity.Character;
+import com.github.matteoCarda.simplerougelike.model.entity.Enemy;
+import com.github.matteoCarda.simplerougelike.model.entity.EnemyStore;
+import com.github.matteoCarda.simplerougelike.model.entity.Item;
+import com.github.matteoCarda.simplerougelike.model.entity.Player;
+import com.github.matteoCarda.simplerougelike.model.entity.PotionItem;
+import com.github.matteoCarda.simplerougelike.service.EnergyScheduler;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Formato binario versionato dei salvataggi di una partita.
+ * Struttura (big-endian):
+ * - intestazione: {@link #MAGIC}, {@link #VERSION}, seme del livello, numero di turni giocati, orologio in tick;
+ * - terreno denso: larghezza, altezza, bit per cella e celle impacchettate (1 bit per cella se ci sono solo muri
+ *   e pavimenti), nello stesso ordine x * altezza + y del terreno in memoria;
+ *   terreno a blocchi: dimensioni, raggio di caricamento e seme del generatore (i blocchi si rigenerano identici);
+ * - giocatore e inventario, nemici e oggetti come record primitivi a dimensione fissa
+ *   (i personaggi: posizione, salute, salute massima, attacco e velocità; i nemici anche raggio visivo
+ *   e ricordo del giocatore);
+ * - CRC32 di tutto il contenuto precedente.
+ * La scrittura passa da un FileChannel su un file temporaneo, poi rinominato: un salvataggio interrotto
+ * non sovrascrive quello precedente. La lettura mappa il file in memoria e decodifica direttamente dal buffer.
+ */
+public final class SaveGameFormat {
+
+    /** "SRLG": identifica un salvataggio di questo gioco. */
+    public static final int MAGIC = 0x53524C47;
+    /** Versione corrente del formato. Da incrementare a ogni modifica incompatibile. */
+    public static final short VERSION = 3;
+
+    private static final byte TERRAIN_DENSE = 0;
+    private static final byte TERRAIN_CHUNKED = 1;
+    private static final byte ITEM_POTION = 0;
+
+    private static final int HEADER_BYTES = 4 + 2 + 2 + 8 + 8 + 8;
+    private static final int CHARACTER_BYTES = 4 + 4 + 8 + 8 + 8 + 4;
+    private static final int ENEMY_BYTES = CHARACTER_BYTES + 4 + 4 + 4 + 4;
+    private static final int ITEM_BYTES = 1 + 4 + 4;
+
+    private SaveGameFormat() {
+    }
+
+    /**
+     * Contenuto di un salvataggio: il livello con le sue entità, il seme, il numero di turni giocati
+     * e l'orologio di gioco (l'istante in tick dell'ultima azione del giocatore).
+     */
+    public static final class SaveData {
+        private final GameMap gameMap;
+        private final long seed;
+        private final long turnCount;
+        private final long time;
+
+        public SaveData(GameMap gameMap, long seed, long turnCount, long time) {
+            this.gameMap = gameMap;
+            this.seed = seed;
+            this.turnCount = turnCount;
+            this.time = time;
+        }
+
+        /**
+         * Salvataggio di una partita giocata sempre a velocità normale: l'orologio è ricavato dai turni.
+         */
+        public SaveData(GameMap gameMap, long seed, long turnCount) {
+            this(gameMap, seed, turnCount, turnCount * EnergyScheduler.actionDelay(Character.NORMAL_SPEED));
+        }
+
+        public GameMap getGameMap() { return gameMap; }
+
+        public long getSeed() { return seed; }
+
+        public long getTurnCount() { return turnCount; }
+
+        public long getTime() { return time; }
+    }
+
+    /**
+     * Scrive un salvataggio, sostituendo atomicamente il file esistente.
+     * @throws IOException se la scrittura fallisce.
+     * @throws IllegalArgumentException se il terreno non è salvabile (es. un terreno a blocchi con un generatore sconosciuto).
+     */
+    public static void write(SaveData data, Path file) throws IOException {
+        ByteBuffer buffer = encode(data);
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Legge un salvataggio mappando il file in memoria.
+     * @throws IOException se il file non è leggibile, è di un'altra versione o è corrotto.
+     */
+    public static SaveData read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return decode(buffer);
+        }
+    }
+
+    /**
+     * Codifica un salvataggio in un buffer pronto da scrivere (posizione 0, limite alla fine dei dati).
+     */
+    public static ByteBuffer encode(SaveData data) {
+        GameMap gameMap = data.getGameMap();
+        Terrain terrain = gameMap.getTerrain();
+        Player player = gameMap.getPlayer();
+        EnemyStore enemies = gameMap.getEnemyStore();
+        List<Item> items = gameMap.getItems();
+        List<Item> inventory = player.getInventory();
+
+        int bitsPerCell = (terrain instanceof ChunkedTerrain) ? 0 : bitsPerCell(terrain);
+        long terrainBytes = (terrain instanceof ChunkedTerrain)
+                ? 1 + 4 + 4 + 4 + 8
+                : 1 + 4 + 4 + 1 + packedLength(terrain.getWidth(), terrain.getHeight(), bitsPerCell);
+        long size = HEADER_BYTES + terrainBytes
+                + CHARACTER_BYTES + 4 + (long) inventory.size() * ITEM_BYTES
+                + 4 + (long) enemies.size() * ENEMY_BYTES
+                + 4 + (long) items.size() * ITEM_BYTES
+                + 4;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Salvataggio troppo grande: " + size + " byte");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) size);
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.putShort((short) 0); // Riservato.
+        buffer.putLong(data.getSeed());
+        buffer.putLong(data.getTurnCount());
+        buffer.putLong(data.getTime());
+
+        if (terrain instanceof ChunkedTerrain) {
+            putChunkedTerrain(buffer, (ChunkedTerrain) terrain);
+        } else {
+            putDenseTerrain(buffer, terrain, bitsPerCell);
+        }
+
+        putCharacter(buffer, player);
+        buffer.putInt(inventory.size());
+        for (Item item : inventory) {
+            putItem(buffer, item);
+        }
+        buffer.putInt(enemies.size());
+        for (int slot = 0; slot < enemies.size(); slot++) {
+            buffer.putInt(enemies.getX(slot));
+            buffer.putInt(enemies.getY(slot));
+            buffer.putDouble(enemies.getHealth(slot));
+            buffer.putDouble(enemies.getMaxHealth(slot));
+            buffer.putDouble(enemies.getAttackPower(slot));
+            buffer.putInt(enemies.getSpeed(slot));
+            buffer.putInt(enemies.getSightRadius(slot));
+            buffer.putInt(enemies.getLastSeenX(slot));
+            buffer.putInt(enemies.getLastSeenY(slot));
+            buffer.putInt(enemies.getMemory(slot));
+        }
+        buffer.putInt(items.size());
+        for (Item item : items) {
+            putItem(buffer, item);
+        }
+
+        buffer.putInt((int) checksum(buffer, 0, buffer.position()));
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Decodifica un salvataggio a partire dalla posizione 0 del buffer.
+     * @throws IOException se il formato, la versione o il checksum non sono validi.
+     */
+    public static SaveData decode(ByteBuffer buffer) throws IOException {
+        try {
+            int length = buffer.limit();
+            if (length < HEADER_BYTES + 4 || buffer.getInt(0) != MAGIC) {
+                throw new IOException("Non è un salvataggio valido");
+            }
+            // La versione va controllata per prima: un'altra versione potrebbe avere un layout diverso.
+            short version = buffer.getShort(4);
+            if (version != VERSION) {
+                throw new IOException("Versione del salvataggio non supportata: " + version);
+            }
+            int storedChecksum = buffer.getInt(length - 4);
+            if ((int) checksum(buffer, 0, length - 4) != storedChecksum) {
+                throw new IOException("Salvataggio corrotto (checksum errato)");
+            }
+            buffer.position(8);
+            long seed = buffer.getLong();
+            long turnCount = buffer.getLong();
+            long time = buffer.getLong();
+
+            byte terrainKind = buffer.get();
+            Terrain terrain;
+            if (terrainKind == TERRAIN_DENSE) {
+                terrain = getDenseTerrain(buffer);
+            } else if (terrainKind == TERRAIN_CHUNKED) {
+                terrain = getChunkedTerrain(buffer);
+            } else {
+                throw new IOException("Tipo di terreno sconosciuto: " + terrainKind);
+            }
+
+            Player player = new Player(buffer.getInt(), buffer.getInt());
+            getStats(buffer, player);
+            int inventorySize = buffer.getInt();
+            for (int i = 0; i < inventorySize; i++) {
+                player.getInventory().add(getItem(buffer));
+            }
+
+            int enemyCount = buffer.getInt();
+            List<Enemy> enemies = new ArrayList<>(enemyCount);
+            for (int i = 0; i < enemyCount; i++) {
+                Enemy enemy = new Enemy(buffer.getInt(), buffer.getInt());
+                getStats(buffer, enemy);
+                enemy.setSightRadius(buffer.getInt());
+                enemy.setLastSeen(buffer.getInt(), buffer.getInt(), buffer.getInt());
+                enemies.add(enemy);
+            }
+            int itemCount = buffer.getInt();
+            List<Item> items = new ArrayList<>(itemCount);
+            for (int i = 0; i < itemCount; i++) {
+                items.add(getItem(buffer));
+            }
+
+            GameMap gameMap = new GameMap(terrain, player, enemies, items);
+            gameMap.focus(player.getX(), player.getY());
+            return new SaveData(gameMap, seed, turnCount, time);
+        } catch (RuntimeException e) {
+            // Buffer troncato o valori incoerenti: per il chiamante è comunque un file illeggibile.
+            throw new IOException("Salvataggio non leggibile", e);
+        }
+    }
+
+    // --- TERRENO ---
+
+    private static void putDenseTerrain(ByteBuffer buffer, Terrain terrain, int bitsPerCell) {
+        int width = terrain.getWidth();
+        int height = terrain.getHeight();
+        buffer.put(TERRAIN_DENSE);
+        buffer.putInt(width);
+        buffer.putInt(height);
+        buffer.put((byte) bitsPerCell);
+        if (bitsPerCell == 8) {
+            for (int x = 0; x < width; x++) {
+                for (int y = 0; y < height; y++) {
+                    buffer.put(terrain.get(x, y));
+                }
+            }
+            return;
+        }
+        // Un bit per cella, dal bit meno significativo di ogni byte.
+        int current = 0;
+        int filled = 0;
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                current |= terrain.get(x, y) << filled;
+                if (++filled == 8) {
+                    buffer.put((byte) current);
+                    current = 0;
+                    filled = 0;
+                }
+            }
+        }
+        if (filled > 0) {
+            buffer.put((byte) current);
+        }
+    }
+
+    private static Terrain getDenseTerrain(ByteBuffer buffer) throws IOException {
+        int width = buffer.getInt();
+        int height = buffer.getInt();
+        int bitsPerCell = buffer.get();
+        if (width < 0 || height < 0 || (long) width * height > Integer.MAX_VALUE) {
+            throw new IOException("Dimensioni del terreno non valide: " + width + "x" + height);
+        }
+        byte[] cells = new byte[width * height];
+        if (bitsPerCell == 8) {
+            buffer.get(cells);
+        } else if (bitsPerCell == 1) {
+            int packed = (int) packedLength(width, height, 1);
+            for (int i = 0; i < packed; i++) {
+                int bits = buffer.get() & 0xFF;
+                int base = i << 3;
+                int end = Math.min(8, cells.length - base);
+                for (int b = 0; b < end; b++) {
+                    cells[base + b] = (byte) ((bits >>> b) & 1);
+                }
+            }
+        } else {
+            throw new IOException("Bit per cella non supportati: " + bitsPerCell);
+        }
+        return new DenseTerrain(cells, width, height);
+    }
+
+    private static void putChunkedTerrain(ByteBuffer buffer, ChunkedTerrain terrain) {
+        if (!(terrain.getSource() instanceof ChunkGenerator)) {
+            throw new IllegalArgumentException("Terreno a blocchi con un generatore non salvabile");
+        }
+        buffer.put(TERRAIN_CHUNKED);
+        buffer.putInt(terrain.getWidth());
+        buffer.putInt(terrain.getHeight());
+        buffer.putInt(terrain.getLoadRadius());
+        buffer.putLong(((ChunkGenerator) terrain.getSource()).getSeed());
+    }
+
+    private static Terrain getChunkedTerrain(ByteBuffer buffer) {
+        int width = buffer.getInt();
+        int height = buffer.getInt();
+        int loadRadius = buffer.getInt();
+        long worldSeed = buffer.getLong();
+        int size = ChunkedTerrain.CHUNK_SIZE;
+        ChunkGenerator generator = new ChunkGenerator(worldSeed, (width + size - 1) / size, (height + size - 1) / size);
+        return new ChunkedTerrain(width, height, loadRadius, generator);
+    }
+
+    /**
+     * 1 se il terreno contiene solo i codici 0 e 1 (muri e pavimenti), altrimenti 8.
+     */
+    private static int bitsPerCell(Terrain terrain) {
+        for (int x = 0; x < terrain.getWidth(); x++) {
+            for (int y = 0; y < terrain.getHeight(); y++) {
+                if ((terrain.get(x, y) & ~1) != 0) return 8;
+            }
+        }
+        return 1;
+    }
+
+    private static long packedLength(int width, int height, int bitsPerCell) {
+        return ((long) width * height * bitsPerCell + 7) / 8;
+    }
+
+    // --- ENTITÀ ---
+
+    private static void putCharacter(ByteBuffer buffer, Character character) {
+        buffer.putInt(character.getX());
+        buffer.putInt(character.getY());
+        buffer.putDouble(character.getHealth());
+        buffer.putDouble(character.getMaxHealth());
+        buffer.putDouble(character.getAttackPower());
+        buffer.putInt(character.getSpeed());
+    }
+
+    private static void getStats(ByteBuffer buffer, Character character) {
+        character.setHealth(buffer.getDouble());
+        character.setMaxHealth(buffer.getDouble());
+        character.setAttackPower(buffer.getDouble());
+        character.setSpeed(buffer.getInt());
+    }
+
+    private static void putItem(ByteBuffer buffer, Item item) {
+        if (!(item instanceof PotionItem)) {
+            throw new IllegalArgumentException("Tipo di oggetto non salvabile: " + item.getClass().getName());
+        }
+        buffer.put(ITEM_POTION);
+        buffer.putInt(item.getX());
+        buffer.putInt(item.getY());
+    }
+
+    private static Item getItem(ByteBuffer buffer) throws IOException {
+        byte type = buffer.get();
+        if (type != ITEM_POTION) {
+            throw new IOException("Tipo di oggetto sconosciuto: " + type);
+        }
+        return new PotionItem(buffer.getInt(), buffer.getInt());
+    }
+
+    private static long checksum(ByteBuffer buffer, int from, int to) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(from);
+        view.limit(to);
+        CRC32 crc = new CRC32();
+        crc.update(view);
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,160 @@
+package com.github.matteoCarda.simplerougelike.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metriche dei turni: un {@link LatencyHistogram} per ogni fase e contatori di nemici processati e celle scansionate.
+ * Le fasi vengono misurate dal thread della logica solo se le metriche sono attive: chi misura legge
+ * {@link #isEnabled()} una volta per turno e, se sono spente, non chiama nemmeno System.nanoTime.
+ * La lettura (overlay di debug, report su file) è possibile da qualsiasi thread.
+ */
+public class TurnMetrics {
+
+    /**
+     * Le fasi misurate di un turno.
+     */
+    public enum Phase {
+        /** L'intero turno, da handlePlayerTurn all'ultimo controllo. */
+        TURN("turno"),
+        /** Movimento, attacco o raccolta del giocatore. */
+        PLAYER_ACTION("azione giocatore"),
+        /** Aggiornamento del campo visivo. */
+        FOV("campo visivo"),
+        /** Costruzione e scansione della DijkstraMap verso il giocatore. */
+        DIJKSTRA("dijkstra"),
+        /** La fase di tutti i nemici. */
+        ENEMY_PHASE("fase nemici"),
+        /** Il turno di un singolo nemico (modalità sequenziale). */
+        ENEMY_TURN("turno nemico"),
+        /** Fase "decidi" del motore parallelo. */
+        ENEMY_DECIDE("nemici: decidi"),
+        /** Fase "risolvi" del motore parallelo. */
+        ENEMY_RESOLVE("nemici: risolvi"),
+        /** Riciclo dei nemici morti e nuove comparse. */
+        SPAWN("comparse"),
+        /** Controllo di fine partita. */
+        END_CONDITIONS("fine partita");
+
+        private final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[PHASES.length];
+    private final AtomicLong enemiesProcessed = new AtomicLong();
+    private final AtomicLong cellsScanned = new AtomicLong();
+    private volatile boolean enabled;
+
+    public TurnMetrics() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Attiva o disattiva le misure. Chiamabile da qualsiasi thread; vale dal turno successivo.
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public LatencyHistogram getHistogram(Phase phase) {
+        return histograms[phase.ordinal()];
+    }
+
+    public long getEnemiesProcessed() {
+        return enemiesProcessed.get();
+    }
+
+    public long getCellsScanned() {
+        return cellsScanned.get();
+    }
+
+    /**
+     * Istante corrente per iniziare una misura, o 0 se {@code metrics} è null (misure spente).
+     */
+    public static long start(TurnMetrics metrics) {
+        return (metrics != null) ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Registra la durata di una fase iniziata in {@code start}. Non fa nulla se {@code metrics} è null.
+     * @return L'istante di fine, da usare come inizio della fase successiva.
+     */
+    public static long stop(TurnMetrics metrics, Phase phase, long start) {
+        if (metrics == null) return 0;
+        long end = System.nanoTime();
+        metrics.histograms[phase.ordinal()].record(end - start);
+        return end;
+    }
+
+    /**
+     * Aggiunge nemici processati. Da chiamare dal thread della logica.
+     */
+    public void addEnemiesProcessed(long count) {
+        enemiesProcessed.lazySet(enemiesProcessed.get() + count);
+    }
+
+    /**
+     * Aggiunge celle scansionate dal pathfinding. Da chiamare dal thread della logica.
+     */
+    public void addCellsScanned(long count) {
+        cellsScanned.lazySet(cellsScanned.get() + count);
+    }
+
+    /**
+     * Azzera tutte le metriche. Da chiamare dal thread della logica.
+     */
+    public void reset() {
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+        enemiesProcessed.lazySet(0);
+        cellsScanned.lazySet(0);
+    }
+
+    /**
+     * Una riga per fase (numero di misure, p50, p99 e massimo in millisecondi) e i contatori.
+     */
+    public String formatReport() {
+        StringBuilder builder = new StringBuilder();
+        for (Phase phase : PHASES) {
+            LatencyHistogram histogram = getHistogram(phase);
+            if (histogram.getCount() == 0) continue;
+            builder.append(String.format(Locale.ROOT, "%-16s n=%-7d p50=%8.3f ms  p99=%8.3f ms  max=%8.3f ms%n",
+                    phase.getLabel(), histogram.getCount(),
+                    millis(histogram.getPercentile(50)), millis(histogram.getPercentile(99)), millis(histogram.getMax())));
+        }
+        builder.append(String.format(Locale.ROOT, "nemici processati=%d celle scansionate=%d%n",
+                getEnemiesProcessed(), getCellsScanned()));
+        return builder.toString();
+    }
+
+    /**
+     * Scrive il report in un file di testo, sostituendo quello esistente.
+     */
+    public void writeReport(Path file) throws IOException {
+        Files.write(file, formatReport().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
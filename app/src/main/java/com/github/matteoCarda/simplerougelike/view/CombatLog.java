@@ -0,0 +1,101 @@
+package com.github.matteoCarda.simplerougelike.view;
+
+import com.github.matteoCarda.simplerougelike.service.GameEventBus;
+
+/**
+ * Registro a schermo degli ultimi eventi di combattimento e delle raccolte.
+ * Legge il {@link GameEventBus} con una propria sottoscrizione dal thread di disegno: le frasi vengono
+ * composte qui, fuori dal thread della logica, e solo per gli eventi che finiscono a schermo.
+ * Non è thread-safe: va usato da un solo thread.
+ */
+public class CombatLog implements GameEventBus.Handler {
+
+    /** Numero di righe conservate. */
+    public static final int MAX_LINES = 5;
+
+    private final GameEventBus eventBus;
+    private final GameEventBus.Subscription subscription;
+    // Buffer circolare delle righe: la più vecchia è in "first".
+    private final String[] lines = new String[MAX_LINES];
+    private int first;
+    private int count;
+    private boolean changed;
+
+    /**
+     * Costruttore. Mostrerà gli eventi pubblicati da ora in poi.
+     */
+    public CombatLog(GameEventBus eventBus) {
+        this.eventBus = eventBus;
+        this.subscription = eventBus.subscribe();
+    }
+
+    public GameEventBus getEventBus() {
+        return eventBus;
+    }
+
+    /**
+     * Legge gli eventi arrivati dall'ultima chiamata.
+     * @return true se sono state aggiunte righe.
+     */
+    public boolean update() {
+        changed = false;
+        subscription.drain(this);
+        return changed;
+    }
+
+    /**
+     * Numero di eventi persi perché il bus li ha sovrascritti prima che il thread di disegno li leggesse.
+     */
+    public long getLostCount() {
+        return subscription.getLostCount();
+    }
+
+    public int getLineCount() {
+        return count;
+    }
+
+    /**
+     * Ritorna una riga: 0 è la più vecchia, {@link #getLineCount()} - 1 la più recente.
+     */
+    public String getLine(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Riga " + index + " su " + count);
+        }
+        return lines[(first + index) % MAX_LINES];
+    }
+
+    @Override
+    public void onEvent(int type, int actor, int target, int x, int y, double value) {
+        switch (type) {
+            case GameEventBus.ATTACK:
+                add(actor == GameEventBus.ACTOR_PLAYER
+                        ? "Colpisci il nemico: " + formatAmount(value) + " danni"
+                        : "Un nemico ti colpisce: " + formatAmount(value) + " danni");
+                break;
+            case GameEventBus.DEATH:
+                add(actor == GameEventBus.ACTOR_PLAYER ? "Sei stato sconfitto!" : "Nemico sconfitto");
+                break;
+            case GameEventBus.PICKUP:
+                add("Hai raccolto un oggetto");
+                break;
+            default:
+                // Danni e movimenti sono già visibili sulla mappa.
+                break;
+        }
+    }
+
+    private void add(String line) {
+        if (count < MAX_LINES) {
+            lines[(first + count) % MAX_LINES] = line;
+            count++;
+        } else {
+            lines[first] = line;
+            first = (first + 1) % MAX_LINES;
+        }
+        changed = true;
+    }
+
+    private static String formatAmount(double value) {
+        return (value == Math.rint(value)) ? Long.toString((long) value) : Double.toString(value);
+    }
+}
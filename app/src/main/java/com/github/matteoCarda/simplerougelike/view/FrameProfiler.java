@@ -0,0 +1,87 @@
+package com.github.matteoCarda.simplerougelike.view;
+
+import android.view.Choreographer;
+import android.view.Display;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Profilatore dei frame di una view di gioco: misura ogni disegno del {@link GameRenderer} e, finché è attivo,
+ * resta iscritto a ogni vsync del {@link Choreographer} per contare i jank nelle {@link FrameStats}.
+ * Da spento costa un controllo di un booleano per frame, senza System.nanoTime né callback.
+ * Non è thread-safe: va usato dal thread di disegno, lo stesso del Choreographer passato a {@link #setEnabled}.
+ */
+class FrameProfiler implements Choreographer.FrameCallback {
+
+    private final FrameStats stats = new FrameStats();
+    private Choreographer choreographer;
+    private boolean enabled;
+
+    FrameStats getStats() {
+        return stats;
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Accende o spegne il profilatore.
+     * @param enabled true per misurare i frame.
+     * @param choreographer Il Choreographer del thread di disegno (ignorato se il profilatore viene spento).
+     */
+    void setEnabled(boolean enabled, Choreographer choreographer) {
+        if (this.choreographer != null) {
+            this.choreographer.removeFrameCallback(this);
+        }
+        stats.resetVsync();
+        this.enabled = enabled && choreographer != null;
+        this.choreographer = this.enabled ? choreographer : null;
+        if (this.enabled) {
+            choreographer.postFrameCallback(this);
+        }
+    }
+
+    /**
+     * Imposta il periodo del vsync in base alla frequenza dello schermo (60 Hz se non è nota).
+     */
+    void setDisplay(Display display) {
+        float refreshRate = (display != null) ? display.getRefreshRate() : 0f;
+        stats.setFramePeriodNanos(refreshRate > 0 ? (long) (1_000_000_000L / refreshRate) : FrameStats.DEFAULT_FRAME_PERIOD_NANOS);
+    }
+
+    /**
+     * Istante di inizio di un frame, o 0 se il profilatore è spento.
+     */
+    long beginFrame() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Registra il frame iniziato in {@link #beginFrame} con i contatori dell'ultimo disegno del renderer.
+     */
+    void endFrame(long start, GameRenderer renderer) {
+        if (!enabled) return;
+        stats.recordFrame(start, System.nanoTime() - start, renderer.getLastTileCount(),
+                renderer.getLastEntityCount(), renderer.getLastDrawCallCount());
+    }
+
+    /**
+     * Scrive le statistiche in un file CSV. Gli errori vengono ignorati: il file serve solo al debug.
+     */
+    void export(Path csvFile) {
+        try {
+            stats.writeCsv(csvFile);
+        } catch (IOException e) {
+            // Nessun file questa volta: si riproverà al prossimo export.
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!enabled) return;
+        stats.onVsync(frameTimeNanos);
+        choreographer.postFrameCallback(this);
+    }
+}
@@ -0,0 +1,189 @@
+package com.github.matteoCarda.simplerougelike.view;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Statistiche degli ultimi {@link #CAPACITY} frame disegnati: durata, tile nell'area di culling,
+ * entità (oggetti e nemici) e chiamate di disegno, più un contatore di "jank" basato sul vsync.
+ * Ogni chiamata a {@link #onVsync} riceve l'istante di un frame del Choreographer: se dall'ultimo è passato
+ * più di un periodo e mezzo, il thread è rimasto bloccato e almeno un frame è andato perso.
+ * Non è thread-safe: va usato dal thread di disegno, che riceve anche i callback del Choreographer.
+ */
+public class FrameStats {
+
+    /** Numero di frame conservati (4 secondi a 60 Hz). */
+    public static final int CAPACITY = 240;
+    /** Periodo del vsync a 60 Hz, usato finché non si conosce quello dello schermo. */
+    public static final long DEFAULT_FRAME_PERIOD_NANOS = 16_666_667L;
+
+    // Buffer circolari dei frame: il più recente è in (next - 1).
+    private final long[] starts = new long[CAPACITY];
+    private final long[] durations = new long[CAPACITY];
+    private final int[] tiles = new int[CAPACITY];
+    private final int[] entities = new int[CAPACITY];
+    private final int[] drawCalls = new int[CAPACITY];
+    private final long[] janks = new long[CAPACITY]; // Jank totali al momento del frame.
+    private int next;
+    private long frameCount;
+
+    private long framePeriodNanos = DEFAULT_FRAME_PERIOD_NANOS;
+    private long lastVsyncNanos; // 0 = nessun vsync ancora ricevuto.
+    private long jankCount;
+    private long droppedFrames;
+
+    public long getFramePeriodNanos() {
+        return framePeriodNanos;
+    }
+
+    /**
+     * Imposta il periodo del vsync dello schermo (es. 11.1 ms a 90 Hz).
+     */
+    public void setFramePeriodNanos(long framePeriodNanos) {
+        if (framePeriodNanos <= 0) {
+            throw new IllegalArgumentException("Periodo non valido: " + framePeriodNanos);
+        }
+        this.framePeriodNanos = framePeriodNanos;
+    }
+
+    /**
+     * Registra un frame disegnato.
+     * @param startNanos Inizio del disegno (System.nanoTime).
+     * @param durationNanos Durata del disegno.
+     * @param tileCount Tile nell'area di culling.
+     * @param entityCount Oggetti e nemici disegnati.
+     * @param drawCallCount Chiamate di disegno sul canvas.
+     */
+    public void recordFrame(long startNanos, long durationNanos, int tileCount, int entityCount, int drawCallCount) {
+        starts[next] = startNanos;
+        durations[next] = durationNanos;
+        tiles[next] = tileCount;
+        entities[next] = entityCount;
+        drawCalls[next] = drawCallCount;
+        janks[next] = jankCount;
+        next = (next + 1) % CAPACITY;
+        frameCount++;
+    }
+
+    /**
+     * Riceve l'istante di un frame del Choreographer e conta i frame persi dall'ultimo.
+     * @param frameTimeNanos L'istante del vsync passato al FrameCallback.
+     */
+    public void onVsync(long frameTimeNanos) {
+        if (lastVsyncNanos != 0) {
+            long gap = frameTimeNanos - lastVsyncNanos;
+            if (gap * 2 > framePeriodNanos * 3) {
+                jankCount++;
+                droppedFrames += Math.max(1, Math.round((double) gap / framePeriodNanos) - 1);
+            }
+        }
+        lastVsyncNanos = frameTimeNanos;
+    }
+
+    /**
+     * Dimentica l'ultimo vsync: da chiamare quando i callback si interrompono di proposito
+     * (profilatore spento, surface distrutta), così la pausa non conta come jank.
+     */
+    public void resetVsync() {
+        lastVsyncNanos = 0;
+    }
+
+    /**
+     * Numero di frame conservati, al massimo {@link #CAPACITY}.
+     */
+    public int getWindowSize() {
+        return (int) Math.min(frameCount, CAPACITY);
+    }
+
+    /** Frame registrati in totale. */
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    /** Volte in cui il vsync è arrivato in ritardo. */
+    public long getJankCount() {
+        return jankCount;
+    }
+
+    /** Frame persi in totale nei jank. */
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    /**
+     * Durata di un frame della finestra.
+     * @param index 0 per il più vecchio, {@code getWindowSize() - 1} per il più recente.
+     */
+    public long getDuration(int index) {
+        return durations[slot(index)];
+    }
+
+    public int getTiles(int index) {
+        return tiles[slot(index)];
+    }
+
+    public int getEntities(int index) {
+        return entities[slot(index)];
+    }
+
+    public int getDrawCalls(int index) {
+        return drawCalls[slot(index)];
+    }
+
+    /**
+     * Durata massima dei frame nella finestra.
+     */
+    public long getMaxDuration() {
+        long max = 0;
+        for (int i = 0; i < getWindowSize(); i++) {
+            max = Math.max(max, durations[i]);
+        }
+        return max;
+    }
+
+    /**
+     * Azzera frame e contatori, mantenendo il periodo del vsync.
+     */
+    public void reset() {
+        next = 0;
+        frameCount = 0;
+        lastVsyncNanos = 0;
+        jankCount = 0;
+        droppedFrames = 0;
+    }
+
+    /**
+     * Scrive i frame della finestra in formato CSV, dal più vecchio al più recente.
+     * Colonne: numero del frame, inizio e durata in nanosecondi, tile, entità, chiamate di disegno, jank totali.
+     */
+    public void writeCsv(Writer writer) throws IOException {
+        writer.write("frame,start_ns,duration_ns,tiles,entities,draw_calls,janks\n");
+        int size = getWindowSize();
+        long firstFrame = frameCount - size;
+        for (int i = 0; i < size; i++) {
+            int s = slot(i);
+            writer.write((firstFrame + i) + "," + starts[s] + "," + durations[s] + "," + tiles[s] + ","
+                    + entities[s] + "," + drawCalls[s] + "," + janks[s] + "\n");
+        }
+    }
+
+    /**
+     * Scrive il CSV in un file, sostituendo quello esistente.
+     */
+    public void writeCsv(Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writeCsv(writer);
+        }
+    }
+
+    private int slot(int index) {
+        if (index < 0 || index >= getWindowSize()) {
+            throw new IndexOutOfBoundsException("Frame " + index + " fuori dalla finestra di " + getWindowSize());
+        }
+        return (next - getWindowSize() + index + CAPACITY) % CAPACITY;
+    }
+}
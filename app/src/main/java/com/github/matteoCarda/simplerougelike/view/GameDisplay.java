@@ -0,0 +1,32 @@
+package com.github.matteoCarda.simplerougelike.view;
+
+import com.github.matteoCarda.simplerougelike.controller.GameLoop;
+
+import java.nio.file.Path;
+
+/**
+ * Una view capace di disegnare le fotografie pubblicate da un {@link GameLoop}.
+ * Permette all'Activity di usare indifferentemente {@link GameView} o {@link GameSurfaceView}.
+ */
+public interface GameDisplay {
+
+    /**
+     * Collega la view al loop di gioco, o la scollega se il parametro è null.
+     */
+    void setGameLoop(GameLoop gameLoop);
+
+    /**
+     * Accende o spegne il profilatore dei frame e il relativo grafico a schermo.
+     */
+    void setFrameProfilerEnabled(boolean enabled);
+
+    /**
+     * Scrive in un file CSV le statistiche degli ultimi frame, dal thread di disegno.
+     */
+    void exportFrameStats(Path csvFile);
+
+    /**
+     * Avvia il viaggio automatico del giocatore verso la cella disegnata nel punto indicato della view.
+     */
+    void travelToPoint(float x, float y);
+}
@@ -0,0 +1,415 @@
+package com.github.matteoCarda.simplerougelike.view;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+
+import com.github.matteoCarda.simplerougelike.controller.GameController;
+import com.github.matteoCarda.simplerougelike.controller.RenderSnapshot;
+import com.github.matteoCarda.simplerougelike.service.GameEventBus;
+import com.github.matteoCarda.simplerougelike.util.LatencyHistogram;
+import com.github.matteoCarda.simplerougelike.util.TurnMetrics;
+
+import java.util.Arrays;
+
+/**
+ * Disegna una {@link RenderSnapshot} su un Canvas: telecamera che segue il giocatore, culling delle tile
+ * fuori schermo, "fog of war" e entità visibili. Il terreno viene disegnato dal {@link TerrainLayer} in cache.
+ * Condiviso dalla {@link GameView} classica e dalla {@link GameSurfaceView}. Tra due fotografie consecutive
+ * sa interpolare la posizione di giocatore e nemici, così il movimento da una cella all'altra è fluido.
+ * Non è thread-safe: va usato da un solo thread di disegno.
+ */
+public class GameRenderer {
+
+    private final Paint paint = new Paint(); // Un unico oggetto Paint per disegnare tutto, per efficienza.
+    private final TerrainLayer terrain = new TerrainLayer();
+    private CombatLog combatLog; // Ultimi eventi di combattimento, in sovrimpressione.
+    private TurnMetrics metrics; // Metriche dei turni per l'overlay di debug, mostrate solo se attive.
+    private FrameStats frameStats; // Statistiche dei frame per il grafico di debug, null se spento.
+    // Segmenti delle barre del grafico (x0, y0, x1, y1): frame nel periodo del vsync e frame più lenti.
+    private final float[] fastBars = new float[FrameStats.CAPACITY * 4];
+    private final float[] slowBars = new float[FrameStats.CAPACITY * 4];
+
+    // Contatori dell'ultimo frame, letti dal profilatore.
+    private int lastTileCount;
+    private int lastEntityCount;
+    private int drawCallCount;
+
+    // Dimensione fissa per ogni cella della griglia. Aumentala o diminuiscila per zoomare.
+    private final float cellSize = 80f;
+
+    // Fotografia da raggiungere e fotografia di partenza dell'interpolazione.
+    private RenderSnapshot current;
+    private RenderSnapshot previous;
+
+    // Posizioni di partenza dei nemici di "current", indicizzate come i nemici della fotografia.
+    private int[] enemyFromXs = new int[0];
+    private int[] enemyFromYs = new int[0];
+    // Coppie (id, indice) dei nemici di "previous", ordinate per id, per trovare la posizione precedente.
+    private long[] previousIds = new long[0];
+
+    /**
+     * Ritorna la fotografia attualmente in disegno (la destinazione dell'interpolazione).
+     */
+    public RenderSnapshot getSnapshot() {
+        return current;
+    }
+
+    /**
+     * Imposta una nuova fotografia da raggiungere. La precedente diventa il punto di partenza dell'interpolazione,
+     * a meno che non appartenga a un altro livello.
+     * @return true se la fotografia è cambiata.
+     */
+    public boolean setSnapshot(RenderSnapshot snapshot) {
+        if (snapshot == current) return false;
+        previous = (current != null && snapshot != null && current.isSameLevel(snapshot)) ? current : null;
+        current = snapshot;
+        terrain.update(snapshot);
+        if (current != null) {
+            prepareEnemyTween();
+        }
+        return true;
+    }
+
+    /**
+     * Imposta il bus da cui leggere gli eventi del registro a schermo (null per non mostrarlo).
+     * Se il bus non cambia il registro resta quello attuale.
+     */
+    public void setEventBus(GameEventBus eventBus) {
+        if (eventBus == null) {
+            combatLog = null;
+        } else if (combatLog == null || combatLog.getEventBus() != eventBus) {
+            combatLog = new CombatLog(eventBus);
+        }
+    }
+
+    /**
+     * Imposta le metriche da mostrare nell'overlay di debug (null per nessuna).
+     * L'overlay compare solo mentre le metriche sono attive.
+     */
+    public void setMetrics(TurnMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Imposta le statistiche dei frame da mostrare nel grafico di debug (null per nasconderlo).
+     */
+    public void setFrameStats(FrameStats frameStats) {
+        this.frameStats = frameStats;
+    }
+
+    /** Tile nell'area di culling dell'ultimo frame. */
+    int getLastTileCount() {
+        return lastTileCount;
+    }
+
+    /** Oggetti e nemici disegnati nell'ultimo frame. */
+    int getLastEntityCount() {
+        return lastEntityCount;
+    }
+
+    /** Chiamate di disegno sul canvas nell'ultimo frame. */
+    int getLastDrawCallCount() {
+        return drawCallCount;
+    }
+
+    /**
+     * Libera le risorse grafiche in cache (i blocchi del terreno). Il renderer resta utilizzabile.
+     */
+    public void release() {
+        terrain.release();
+        current = null;
+        previous = null;
+    }
+
+    /**
+     * Disegna la fotografia corrente.
+     * @param canvas L'area di disegno su cui operare.
+     * @param screenWidth Larghezza dell'area in pixel.
+     * @param screenHeight Altezza dell'area in pixel.
+     * @param progress Avanzamento dell'interpolazione: 0 = posizioni della fotografia precedente, 1 = posizioni attuali.
+     */
+    public void draw(Canvas canvas, int screenWidth, int screenHeight, float progress) {
+        lastTileCount = 0;
+        lastEntityCount = 0;
+        // Sfondo nero, per le aree fuori mappa.
+        canvas.drawColor(Color.BLACK);
+        drawCallCount = 1;
+
+        RenderSnapshot snapshot = current;
+        // Se non c'è una partita in corso, non c'è nulla da disegnare.
+        if (snapshot == null || snapshot.getGameState() != GameController.GameState.PLAYING) {
+            drawFrameGraph(canvas, screenWidth, screenHeight);
+            return;
+        }
+        if (previous == null) {
+            progress = 1f;
+        }
+
+        // Il giocatore scivola solo tra celle adiacenti; per spostamenti più lunghi la telecamera salta.
+        int playerFromX = snapshot.getPlayerX();
+        int playerFromY = snapshot.getPlayerY();
+        if (previous != null && Math.abs(previous.getPlayerX() - playerFromX) + Math.abs(previous.getPlayerY() - playerFromY) <= 1) {
+            playerFromX = previous.getPlayerX();
+            playerFromY = previous.getPlayerY();
+        }
+        float playerX = lerp(playerFromX, snapshot.getPlayerX(), progress);
+        float playerY = lerp(playerFromY, snapshot.getPlayerY(), progress);
+
+        // --- 1. CALCOLO DELLA TELECAMERA ---
+        float cameraOffsetX = playerX * cellSize - screenWidth / 2f + cellSize / 2f;
+        float cameraOffsetY = playerY * cellSize - screenHeight / 2f + cellSize / 2f;
+
+        canvas.save(); // Salviamo lo stato attuale del canvas...
+        canvas.translate(-cameraOffsetX, -cameraOffsetY);
+
+        // --- 2. OTTIMIZZAZIONE: CULLING ---
+        // Calcoliamo quali tile sono visibili sullo schermo per non disegnare tutta la mappa.
+        int startX = (int) (cameraOffsetX / cellSize);
+        int endX = startX + (int) (screenWidth / cellSize) + 2;
+        int startY = (int) (cameraOffsetY / cellSize);
+        int endY = startY + (int) (screenHeight / cellSize) + 2;
+
+        // Limitiamo i calcoli ai bordi della mappa per evitare errori.
+        startX = Math.max(0, startX);
+        endX = Math.min(snapshot.getWidth(), endX);
+        startY = Math.max(0, startY);
+        endY = Math.min(snapshot.getHeight(), endY);
+
+
+        // --- TERRENO IN CACHE ---
+        // Poche blit di blocchi già colorati (ombreggiati per luce e FOV) invece di un drawRect per cella.
+        drawCallCount += terrain.draw(canvas, startX, endX, startY, endY, cellSize);
+        lastTileCount = Math.max(0, endX - startX) * Math.max(0, endY - startY);
+
+
+        // --- 3. DISEGNO DELLE ENTITÀ ---
+        // La fotografia contiene già solo oggetti e nemici dentro il campo visivo attuale.
+        drawItems(canvas, snapshot);
+        drawEnemies(canvas, snapshot, progress);
+        lastEntityCount = snapshot.getItemCount() + snapshot.getEnemyCount();
+
+        // Disegniamo il giocatore per ultimo in modo che sia sempre in cima
+        drawPlayer(canvas, playerX, playerY);
+
+
+        // --- 4. RIPRISTINO DEL CANVAS ---
+        canvas.restore();
+
+        // --- 5. REGISTRO DEGLI EVENTI ---
+        // In coordinate dello schermo, sopra alla mappa.
+        drawCombatLog(canvas, screenHeight);
+        drawMetricsOverlay(canvas);
+        drawFrameGraph(canvas, screenWidth, screenHeight);
+    }
+
+    /**
+     * Disegna in basso a destra il grafico a barre della durata degli ultimi frame, con una linea al periodo
+     * del vsync: le barre oltre la linea (frame troppo lenti) sono rosse. Sopra, massimo e jank totali.
+     * Le barre sono due sole drawLines su array preallocati, per non pesare sul frame che si sta misurando.
+     */
+    private void drawFrameGraph(Canvas canvas, int screenWidth, int screenHeight) {
+        FrameStats stats = frameStats;
+        if (stats == null) return;
+
+        float barWidth = 2f;
+        float graphHeight = cellSize * 2;
+        float right = screenWidth - cellSize * 0.25f;
+        float left = right - FrameStats.CAPACITY * barWidth;
+        float bottom = screenHeight - cellSize * 0.25f;
+        // Il grafico arriva a due periodi: la linea del vsync è a metà altezza.
+        float nanosToPixels = graphHeight / (2f * stats.getFramePeriodNanos());
+
+        int fast = 0;
+        int slow = 0;
+        int size = stats.getWindowSize();
+        for (int i = 0; i < size; i++) {
+            long duration = stats.getDuration(i);
+            float x = left + (FrameStats.CAPACITY - size + i) * barWidth;
+            float top = bottom - Math.min(graphHeight, duration * nanosToPixels);
+            float[] bars = (duration > stats.getFramePeriodNanos()) ? slowBars : fastBars;
+            int offset = (bars == slowBars) ? slow++ * 4 : fast++ * 4;
+            bars[offset] = x;
+            bars[offset + 1] = bottom;
+            bars[offset + 2] = x;
+            bars[offset + 3] = top;
+        }
+
+        paint.setStrokeWidth(barWidth);
+        paint.setColor(Color.GREEN);
+        canvas.drawLines(fastBars, 0, fast * 4, paint);
+        paint.setColor(Color.RED);
+        canvas.drawLines(slowBars, 0, slow * 4, paint);
+        paint.setColor(Color.WHITE);
+        float periodY = bottom - graphHeight / 2;
+        canvas.drawLine(left, periodY, right, periodY, paint);
+        paint.setStrokeWidth(0f);
+
+        float textSize = cellSize * 0.3f;
+        paint.setTextSize(textSize);
+        canvas.drawText("frame max " + formatMillis(stats.getMaxDuration()) + "  jank " + stats.getJankCount()
+                + "  persi " + stats.getDroppedFrames(), left, bottom - graphHeight - textSize * 0.5f, paint);
+        drawCallCount += 4;
+    }
+
+    /**
+     * Disegna in alto a sinistra p50, p99 e massimo di ogni fase misurata, in millisecondi.
+     * @param canvas Il canvas su cui disegnare.
+     */
+    private void drawMetricsOverlay(Canvas canvas) {
+        TurnMetrics shown = metrics;
+        if (shown == null || !shown.isEnabled()) return;
+
+        float textSize = cellSize * 0.3f;
+        paint.setTextSize(textSize);
+        paint.setColor(Color.YELLOW);
+        float y = textSize * 1.5f;
+        for (TurnMetrics.Phase phase : TurnMetrics.Phase.values()) {
+            LatencyHistogram histogram = shown.getHistogram(phase);
+            if (histogram.getCount() == 0) continue;
+            canvas.drawText(phase.getLabel() + "  p50 " + formatMillis(histogram.getPercentile(50))
+                    + "  p99 " + formatMillis(histogram.getPercentile(99))
+                    + "  max " + formatMillis(histogram.getMax()), textSize * 0.5f, y, paint);
+            drawCallCount++;
+            y += textSize * 1.2f;
+        }
+        canvas.drawText("nemici " + shown.getEnemiesProcessed() + "  celle " + shown.getCellsScanned()
+                + "  eventi persi " + (combatLog == null ? 0 : combatLog.getLostCount()), textSize * 0.5f, y, paint);
+        drawCallCount++;
+    }
+
+    /**
+     * Millisecondi con due decimali, senza String.format (chiamato a ogni frame mentre l'overlay è attivo).
+     */
+    private static String formatMillis(long nanos) {
+        long hundredths = nanos / 10_000;
+        long fraction = hundredths % 100;
+        return (hundredths / 100) + (fraction < 10 ? ".0" : ".") + fraction;
+    }
+
+    /**
+     * Disegna le ultime righe del registro degli eventi in basso a sinistra, la più recente in fondo.
+     * @param canvas Il canvas su cui disegnare.
+     * @param screenHeight Altezza dell'area in pixel.
+     */
+    private void drawCombatLog(Canvas canvas, int screenHeight) {
+        if (combatLog == null) return;
+        combatLog.update();
+        int lineCount = combatLog.getLineCount();
+        if (lineCount == 0) return;
+
+        float textSize = cellSize * 0.4f;
+        paint.setTextSize(textSize);
+        paint.setColor(Color.WHITE);
+        float y = screenHeight - textSize * 0.5f - (lineCount - 1) * textSize * 1.2f;
+        for (int i = 0; i < lineCount; i++) {
+            canvas.drawText(combatLog.getLine(i), textSize * 0.5f, y, paint);
+            drawCallCount++;
+            y += textSize * 1.2f;
+        }
+    }
+
+    /**
+     * Disegna il giocatore sulla mappa.
+     * @param canvas Il canvas su cui disegnare.
+     * @param x Coordinata x (in celle, eventualmente frazionaria) del giocatore.
+     * @param y Coordinata y (in celle, eventualmente frazionaria) del giocatore.
+     */
+    private void drawPlayer(Canvas canvas, float x, float y) {
+        paint.setColor(Color.GREEN);
+        canvas.drawCircle(x * cellSize + cellSize / 2, y * cellSize + cellSize / 2, cellSize / 2.2f, paint);
+        drawCallCount++;
+    }
+
+    /**
+     * Disegna gli oggetti visibili al giocatore.
+     * @param canvas Il canvas su cui disegnare.
+     * @param snapshot La fotografia con gli oggetti nel campo visivo.
+     */
+    private void drawItems(Canvas canvas, RenderSnapshot snapshot) {
+        paint.setColor(Color.CYAN);
+        float offset = cellSize * 0.25f;
+        for (int i = 0; i < snapshot.getItemCount(); i++) {
+            int x = snapshot.getItemX(i);
+            int y = snapshot.getItemY(i);
+            canvas.drawRect(x * cellSize + offset, y * cellSize + offset,
+                    (x + 1) * cellSize - offset, (y + 1) * cellSize - offset, paint);
+        }
+        drawCallCount += snapshot.getItemCount();
+    }
+
+    /**
+     * Disegna i nemici vivi visibili al giocatore, interpolando dalla loro posizione precedente.
+     * @param canvas Il canvas su cui disegnare.
+     * @param snapshot La fotografia con i nemici nel campo visivo.
+     * @param progress Avanzamento dell'interpolazione.
+     */
+    private void drawEnemies(Canvas canvas, RenderSnapshot snapshot, float progress) {
+        paint.setColor(Color.RED);
+        for (int i = 0; i < snapshot.getEnemyCount(); i++) {
+            float x = lerp(enemyFromXs[i], snapshot.getEnemyX(i), progress);
+            float y = lerp(enemyFromYs[i], snapshot.getEnemyY(i), progress);
+            canvas.drawCircle(x * cellSize + cellSize / 2, y * cellSize + cellSize / 2, cellSize / 2.2f, paint);
+        }
+        drawCallCount += snapshot.getEnemyCount();
+    }
+
+    /**
+     * Calcola da dove parte ogni nemico della nuova fotografia: la sua posizione nella precedente,
+     * se c'era ed era adiacente, altrimenti la posizione attuale (il nemico compare senza scivolare).
+     */
+    private void prepareEnemyTween() {
+        int count = current.getEnemyCount();
+        if (enemyFromXs.length < count) {
+            enemyFromXs = new int[count];
+            enemyFromYs = new int[count];
+        }
+
+        int previousCount = (previous != null) ? previous.getEnemyCount() : 0;
+        if (previousIds.length < previousCount) {
+            previousIds = new long[previousCount];
+        }
+        for (int i = 0; i < previousCount; i++) {
+            previousIds[i] = ((long) previous.getEnemyId(i) << 32) | i;
+        }
+        Arrays.sort(previousIds, 0, previousCount);
+
+        for (int i = 0; i < count; i++) {
+            int x = current.getEnemyX(i);
+            int y = current.getEnemyY(i);
+            enemyFromXs[i] = x;
+            enemyFromYs[i] = y;
+
+            int found = Arrays.binarySearch(previousIds, 0, previousCount, (long) current.getEnemyId(i) << 32);
+            // La chiave cercata ha indice 0, quindi la coppia cercata è al punto di inserimento (o esattamente lì).
+            int position = (found >= 0) ? found : -found - 1;
+            if (position < previousCount && (int) (previousIds[position] >>> 32) == current.getEnemyId(i)) {
+                int index = (int) previousIds[position];
+                int fromX = previous.getEnemyX(index);
+                int fromY = previous.getEnemyY(index);
+                if (Math.abs(fromX - x) + Math.abs(fromY - y) <= 1) {
+                    enemyFromXs[i] = fromX;
+                    enemyFromYs[i] = fromY;
+                }
+            }
+        }
+    }
+
+    /**
+     * Colonna della mappa disegnata all'ascissa indicata, con la telecamera ferma sul giocatore.
+     */
+    int screenToCellX(float screenX, int screenWidth, int playerX) {
+        return (int) Math.floor(playerX + (screenX - screenWidth / 2f) / cellSize + 0.5f);
+    }
+
+    /**
+     * Riga della mappa disegnata all'ordinata indicata, con la telecamera ferma sul giocatore.
+     */
+    int screenToCellY(float screenY, int screenHeight, int playerY) {
+        return (int) Math.floor(playerY + (screenY - screenHeight / 2f) / cellSize + 0.5f);
+    }
+
+    private static float lerp(float from, float to, float progress) {
+        return from + (to - from) * progress;
+    }
+}
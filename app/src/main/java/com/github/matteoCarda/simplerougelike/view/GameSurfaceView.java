@@ -0,0 +1,228 @@
+package com.github.matteoCarda.simplerougelike.view;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.AttributeSet;
+import android.view.Choreographer;
+import android.view.Display;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.github.matteoCarda.simplerougelike.controller.GameLoop;
+import com.github.matteoCarda.simplerougelike.controller.RenderSnapshot;
+
+import java.nio.file.Path;
+
+/**
+ * Renderer alternativo alla {@link GameView}, basato su SurfaceView e su un thread di disegno dedicato.
+ * Si attiva con {@code MainActivity.USE_SURFACE_RENDERER}.
+ * I frame sono scanditi dal vsync tramite il {@link Choreographer} del thread di disegno, quindi
+ * né il thread della UI né quello della logica vengono mai bloccati dal rendering.
+ * Quando arriva un nuovo turno giocatore e nemici scivolano dalla cella precedente a quella nuova
+ * in {@link #TWEEN_DURATION_NANOS}; finita l'animazione il thread smette di disegnare fino al turno successivo.
+ */
+public class GameSurfaceView extends SurfaceView implements GameDisplay, SurfaceHolder.Callback {
+
+    /** Durata dell'interpolazione del movimento tra due turni. */
+    public static final long TWEEN_DURATION_NANOS = 120_000_000L;
+
+    // Usato solo dal thread di disegno.
+    private final GameRenderer renderer = new GameRenderer();
+    private final FrameProfiler profiler = new FrameProfiler();
+    private long tweenStartNanos;
+
+    private volatile GameLoop gameLoop;
+    private HandlerThread renderThread;
+    private volatile Handler renderHandler;
+    private Choreographer choreographer;
+
+    // Stato condiviso tra thread della UI e thread di disegno.
+    private volatile int surfaceWidth;
+    private volatile int surfaceHeight;
+    private volatile boolean surfaceReady;
+    private volatile boolean profilerRequested; // Stato voluto del profilatore, applicato dal thread di disegno.
+    private volatile Display profilerDisplay; // Schermo da cui leggere il periodo del vsync.
+    private boolean frameScheduled; // Solo thread di disegno; azzerato a ogni nuovo thread.
+
+    // Chiede un frame quando il thread della logica pubblica un nuovo stato.
+    private final GameLoop.SnapshotListener snapshotListener = snapshot -> requestFrame();
+
+    private final Choreographer.FrameCallback frameCallback = this::onFrame;
+
+    // --- COSTRUTTORI ---
+    public GameSurfaceView(Context context) { super(context); init(); }
+    public GameSurfaceView(Context context, @Nullable AttributeSet attrs) { super(context, attrs); init(); }
+    public GameSurfaceView(Context context, @Nullable AttributeSet attrs, int defStyleAttr) { super(context, attrs, defStyleAttr); init(); }
+
+    private void init() {
+        getHolder().addCallback(this);
+    }
+
+    /**
+     * Collega la view al loop di gioco da cui leggere le fotografie da disegnare.
+     * @param gameLoop Il loop, o null per scollegarla.
+     */
+    @Override
+    public void setGameLoop(@Nullable GameLoop gameLoop) {
+        if (this.gameLoop != null) {
+            this.gameLoop.removeSnapshotListener(snapshotListener);
+        }
+        this.gameLoop = gameLoop;
+        if (gameLoop != null) {
+            gameLoop.addSnapshotListener(snapshotListener);
+        }
+        requestFrame();
+    }
+
+    // --- CICLO DI VITA DELLA SURFACE ---
+
+    @Override
+    public void surfaceCreated(@NonNull SurfaceHolder holder) {
+        renderThread = new HandlerThread("game-render");
+        renderThread.start();
+        renderHandler = new Handler(renderThread.getLooper());
+        // Il Choreographer è per-thread: va ottenuto dal thread che riceverà i callback.
+        renderHandler.post(() -> {
+            // Un callback in attesa sul thread precedente è morto con lui: senza azzerare il flag
+            // scheduleFrame non programmerebbe più nulla e lo schermo resterebbe vuoto.
+            frameScheduled = false;
+            choreographer = Choreographer.getInstance();
+            applyFrameProfiler();
+        });
+    }
+
+    @Override
+    public void surfaceChanged(@NonNull SurfaceHolder holder, int format, int width, int height) {
+        surfaceWidth = width;
+        surfaceHeight = height;
+        surfaceReady = true;
+        requestFrame();
+    }
+
+    @Override
+    public void surfaceDestroyed(@NonNull SurfaceHolder holder) {
+        // Dopo il ritorno da questo metodo la surface non è più valida: il thread di disegno va fermato prima.
+        surfaceReady = false;
+        HandlerThread thread = renderThread;
+        renderThread = null;
+        renderHandler = null;
+        if (thread != null) {
+            // quitSafely esegue ancora i messaggi già in coda, compreso il rilascio delle bitmap.
+            new Handler(thread.getLooper()).post(() -> {
+                if (choreographer != null) choreographer.removeFrameCallback(frameCallback);
+                choreographer = null;
+                frameScheduled = false;
+                profiler.setEnabled(false, null);
+                renderer.release();
+            });
+            thread.quitSafely();
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // --- PROFILATORE DEI FRAME ---
+
+    /**
+     * Il profilatore vive sul thread di disegno: qui si registra solo lo stato voluto, che il thread applica
+     * subito se esiste o alla prossima creazione della surface.
+     */
+    @Override
+    public void setFrameProfilerEnabled(boolean enabled) {
+        profilerRequested = enabled;
+        profilerDisplay = getDisplay();
+        Handler handler = renderHandler;
+        if (handler != null) {
+            handler.post(this::applyFrameProfiler);
+        }
+    }
+
+    /**
+     * Scrive il CSV dal thread di disegno; se la surface è già stata distrutta quel thread è fermo,
+     * quindi si scrive direttamente dal thread chiamante.
+     */
+    @Override
+    public void exportFrameStats(Path csvFile) {
+        Handler handler = renderHandler;
+        if (handler != null) {
+            handler.post(() -> profiler.export(csvFile));
+        } else {
+            profiler.export(csvFile);
+        }
+    }
+
+    @Override
+    public void travelToPoint(float x, float y) {
+        GameLoop loop = gameLoop;
+        RenderSnapshot current = (loop != null) ? loop.getSnapshot() : null;
+        if (current == null) return;
+        loop.travelTo(renderer.screenToCellX(x, getWidth(), current.getPlayerX()),
+                renderer.screenToCellY(y, getHeight(), current.getPlayerY()));
+    }
+
+    private void applyFrameProfiler() {
+        profiler.setDisplay(profilerDisplay);
+        profiler.setEnabled(profilerRequested, choreographer);
+        renderer.setFrameStats(profilerRequested ? profiler.getStats() : null);
+        scheduleFrame();
+    }
+
+    // --- THREAD DI DISEGNO ---
+
+    /**
+     * Chiede al thread di disegno di programmare un frame al prossimo vsync. Chiamabile da qualsiasi thread.
+     */
+    private void requestFrame() {
+        Handler handler = renderHandler;
+        if (handler != null) {
+            handler.post(this::scheduleFrame);
+        }
+    }
+
+    private void scheduleFrame() {
+        if (!frameScheduled && choreographer != null) {
+            frameScheduled = true;
+            choreographer.postFrameCallback(frameCallback);
+        }
+    }
+
+    /**
+     * Disegna un frame. Se c'è un'interpolazione in corso programma subito il frame successivo,
+     * altrimenti il thread resta fermo fino alla prossima richiesta.
+     */
+    private void onFrame(long frameTimeNanos) {
+        frameScheduled = false;
+        if (!surfaceReady) return;
+
+        GameLoop loop = gameLoop;
+        RenderSnapshot snapshot = (loop != null) ? loop.getSnapshot() : null;
+        renderer.setEventBus((loop != null) ? loop.getEventBus() : null);
+        renderer.setMetrics((loop != null) ? loop.getMetrics() : null);
+        if (renderer.setSnapshot(snapshot)) {
+            tweenStartNanos = frameTimeNanos;
+        }
+        float progress = Math.min(1f, (frameTimeNanos - tweenStartNanos) / (float) TWEEN_DURATION_NANOS);
+
+        SurfaceHolder holder = getHolder();
+        Canvas canvas = holder.lockHardwareCanvas();
+        if (canvas == null) return;
+        long frameStart = profiler.beginFrame();
+        try {
+            renderer.draw(canvas, surfaceWidth, surfaceHeight, progress);
+        } finally {
+            holder.unlockCanvasAndPost(canvas);
+        }
+        profiler.endFrame(frameStart, renderer);
+
+        if (progress < 1f) {
+            scheduleFrame();
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.github.matteoCarda.simplerougelike.view;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RectF;
+
+import com.github.matteoCarda.simplerougelike.controller.RenderSnapshot;
+
+import java.util.Arrays;
+
+/**
+ * Livello del terreno disegnato in cache.
+ * La mappa è divisa in blocchi di {@link #CHUNK_SIZE} x {@link #CHUNK_SIZE} celle; ogni blocco è una bitmap
+ * con un pixel per cella, che viene ingrandita a {@code cellSize} senza filtro al momento del disegno:
+ * ogni cella resta un quadrato di colore pieno, identico al vecchio drawRect.
+ * I blocchi vengono creati la prima volta che entrano nello schermo; a ogni nuovo turno si riscrivono
+ * solo i pixel delle celle il cui colore è cambiato. Le celle visibili sono ombreggiate in base alla luce
+ * (giocatore, torce, oggetti), ridotta a {@link #SHADES} livelli così che piccole variazioni non ricolorino nulla. Un frame costa così una blit per blocco visibile
+ * invece di un drawRect per cella.
+ * Su mappe molto grandi (mondi a blocchi) le bitmap in cache sono al massimo {@link #MAX_CACHED_CHUNKS}:
+ * oltre quel numero vengono liberate quelle fuori dallo schermo.
+ * Non è thread-safe: va usato dallo stesso thread del {@link GameRenderer}.
+ */
+class TerrainLayer {
+
+    /** Lato di un blocco, in celle. */
+    static final int CHUNK_SIZE = 64;
+    /** Numero di bitmap oltre il quale quelle fuori dallo schermo vengono liberate. */
+    static final int MAX_CACHED_CHUNKS = 48;
+
+    /** Livelli di ombreggiatura: 0 fuori dal campo visivo, poi dal più buio alla piena luce. */
+    static final int SHADES = 8;
+
+    // Colori delle celle: in piena luce (saturi) e fuori dal campo visivo (scuri/desaturati).
+    private static final int FLOOR_VISIBLE = Color.DKGRAY;
+    private static final int WALL_VISIBLE = Color.rgb(139, 69, 19); // Marrone per i muri
+    private static final int FLOOR_HIDDEN = Color.rgb(40, 40, 40); // Grigio scuro
+    private static final int WALL_HIDDEN = Color.rgb(50, 25, 5); // Marrone scuro
+    // Colore per ogni livello, precalcolato: ricolorare una cella non fa conti sui canali.
+    private static final int[] FLOOR_SHADES = shades(FLOOR_HIDDEN, FLOOR_VISIBLE);
+    private static final int[] WALL_SHADES = shades(WALL_HIDDEN, WALL_VISIBLE);
+    private static final int MAX_LIGHT = 255;
+
+    // Nessun filtro: ingrandendo la bitmap ogni pixel diventa un quadrato netto.
+    private final Paint bitmapPaint = new Paint();
+    private final RectF destination = new RectF();
+
+    // Fotografia di cui i blocchi riflettono luce e FOV.
+    private RenderSnapshot applied;
+    private Bitmap[] chunks = new Bitmap[0];
+    private int chunksX;
+    private int chunksY;
+    // Indici dei blocchi che hanno una bitmap, per liberarli senza scorrere tutta la tabella.
+    private int[] liveChunks = new int[MAX_CACHED_CHUNKS * 2];
+    private int liveCount;
+
+    TerrainLayer() {
+        bitmapPaint.setFilterBitmap(false);
+        bitmapPaint.setAntiAlias(false);
+    }
+
+    /**
+     * Porta i blocchi allo stato della nuova fotografia.
+     * Se il livello è cambiato i blocchi vengono scartati (e ricreati pigramente); altrimenti
+     * vengono riscritte solo le celle delle due finestre di FOV, vecchia e nuova, che hanno cambiato livello di luce.
+     */
+    void update(RenderSnapshot snapshot) {
+        if (snapshot == applied) return;
+        if (snapshot == null || applied == null || !applied.isSameLevel(snapshot)) {
+            reset(snapshot);
+            return;
+        }
+        RenderSnapshot old = applied;
+        applied = snapshot;
+        patchWindow(old, snapshot, old);
+        patchWindow(old, snapshot, snapshot);
+    }
+
+    /**
+     * Disegna i blocchi che coprono l'intervallo di celle indicato (estremi finali esclusi).
+     * @return Il numero di blit eseguite.
+     */
+    int draw(Canvas canvas, int startX, int endX, int startY, int endY, float cellSize) {
+        if (applied == null || startX >= endX || startY >= endY) return 0;
+        int minChunkX = startX / CHUNK_SIZE;
+        int maxChunkX = (endX - 1) / CHUNK_SIZE;
+        int minChunkY = startY / CHUNK_SIZE;
+        int maxChunkY = (endY - 1) / CHUNK_SIZE;
+        int drawCalls = 0;
+        for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+            for (int chunkY = minChunkY; chunkY <= maxChunkY; chunkY++) {
+                Bitmap chunk = getOrCreateChunk(chunkX, chunkY);
+                float left = chunkX * CHUNK_SIZE * cellSize;
+                float top = chunkY * CHUNK_SIZE * cellSize;
+                destination.set(left, top, left + chunk.getWidth() * cellSize, top + chunk.getHeight() * cellSize);
+                canvas.drawBitmap(chunk, null, destination, bitmapPaint);
+                drawCalls++;
+            }
+        }
+        if (liveCount > MAX_CACHED_CHUNKS) {
+            evictOutside(minChunkX, maxChunkX, minChunkY, maxChunkY);
+        }
+        return drawCalls;
+    }
+
+    /**
+     * Libera le bitmap dei blocchi.
+     */
+    void release() {
+        reset(null);
+    }
+
+    private void reset(RenderSnapshot snapshot) {
+        for (int i = 0; i < liveCount; i++) {
+            chunks[liveChunks[i]].recycle();
+        }
+        liveCount = 0;
+        applied = snapshot;
+        if (snapshot == null) {
+            chunks = new Bitmap[0];
+            chunksX = 0;
+            chunksY = 0;
+            return;
+        }
+        chunksX = (snapshot.getWidth() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        chunksY = (snapshot.getHeight() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        chunks = new Bitmap[chunksX * chunksY];
+    }
+
+    /**
+     * Ricolora le celle della finestra di FOV di {@code window} il cui colore differisce tra le due fotografie.
+     * Le celle fuori da entrambe le finestre sono fuori dal FOV in tutte e due, quindi non cambiano.
+     */
+    private void patchWindow(RenderSnapshot from, RenderSnapshot to, RenderSnapshot window) {
+        int radius = window.getFovRadius();
+        int minX = Math.max(0, window.getPlayerX() - radius);
+        int maxX = Math.min(to.getWidth() - 1, window.getPlayerX() + radius);
+        int minY = Math.max(0, window.getPlayerY() - radius);
+        int maxY = Math.min(to.getHeight() - 1, window.getPlayerY() + radius);
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+                if (shadeOf(from, x, y) == shadeOf(to, x, y)) continue;
+                Bitmap chunk = chunks[(x / CHUNK_SIZE) * chunksY + y / CHUNK_SIZE];
+                // I blocchi non ancora creati verranno colorati con lo stato giusto alla creazione.
+                if (chunk != null) {
+                    chunk.setPixel(x % CHUNK_SIZE, y % CHUNK_SIZE, colorOf(to, x, y));
+                }
+            }
+        }
+    }
+
+    private Bitmap getOrCreateChunk(int chunkX, int chunkY) {
+        int index = chunkX * chunksY + chunkY;
+        Bitmap chunk = chunks[index];
+        if (chunk != null) return chunk;
+
+        int originX = chunkX * CHUNK_SIZE;
+        int originY = chunkY * CHUNK_SIZE;
+        int width = Math.min(CHUNK_SIZE, applied.getWidth() - originX);
+        int height = Math.min(CHUNK_SIZE, applied.getHeight() - originY);
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                pixels[y * width + x] = colorOf(applied, originX + x, originY + y);
+            }
+        }
+        chunk = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        chunk.setPixels(pixels, 0, width, 0, 0, width, height);
+        chunks[index] = chunk;
+        if (liveCount == liveChunks.length) {
+            liveChunks = Arrays.copyOf(liveChunks, liveCount * 2);
+        }
+        liveChunks[liveCount++] = index;
+        return chunk;
+    }
+
+    /**
+     * Libera le bitmap dei blocchi fuori dall'intervallo indicato (estremi inclusi).
+     * Verranno ricreate con lo stato corrente se tornano sullo schermo.
+     */
+    private void evictOutside(int minChunkX, int maxChunkX, int minChunkY, int maxChunkY) {
+        for (int i = liveCount - 1; i >= 0; i--) {
+            int index = liveChunks[i];
+            int chunkX = index / chunksY;
+            int chunkY = index % chunksY;
+            if (chunkX < minChunkX || chunkX > maxChunkX || chunkY < minChunkY || chunkY > maxChunkY) {
+                chunks[index].recycle();
+                chunks[index] = null;
+                liveChunks[i] = liveChunks[--liveCount];
+            }
+        }
+    }
+
+    private static int colorOf(RenderSnapshot snapshot, int x, int y) {
+        int shade = shadeOf(snapshot, x, y);
+        return snapshot.isWalkable(x, y) ? FLOOR_SHADES[shade] : WALL_SHADES[shade];
+    }
+
+    /**
+     * Livello di ombreggiatura di una cella: 0 se non è visibile, altrimenti da 1 a {@link #SHADES} - 1
+     * arrotondando per eccesso, così ogni cella visibile resta distinta da quelle fuori dal campo visivo.
+     */
+    static int shadeOf(RenderSnapshot snapshot, int x, int y) {
+        return (snapshot.getLight(x, y) * (SHADES - 1) + MAX_LIGHT - 1) / MAX_LIGHT;
+    }
+
+    /**
+     * Interpola canale per canale dal colore nascosto (livello 0) a quello in piena luce (ultimo livello).
+     */
+    private static int[] shades(int hidden, int visible) {
+        int[] colors = new int[SHADES];
+        for (int shade = 0; shade < SHADES; shade++) {
+            int color = 0xFF000000;
+            for (int shift = 0; shift <= 16; shift += 8) {
+                int from = (hidden >> shift) & 0xFF;
+                int to = (visible >> shift) & 0xFF;
+                color |= (from + (to - from) * shade / (SHADES - 1)) << shift;
+            }
+            colors[shade] = color;
+        }
+        return colors;
+    }
+}
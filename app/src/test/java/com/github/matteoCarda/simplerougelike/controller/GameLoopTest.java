@@ -0,0 +1,175 @@
+package com.github.matteoCarda.simplerougelike.controller;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.matteoCarda.simplerougelike.util.TurnMetrics;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+public class GameLoopTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private GameController gameController;
+    private GameLoop gameLoop;
+
+    @Before
+    public void setUp() throws InterruptedException {
+        gameController = GameController.getInstance();
+        gameLoop = new GameLoop(gameController);
+        gameLoop.startNewGame(40, 40, 10, 5, 42L);
+        Assert.assertTrue(gameLoop.awaitIdle(10, TimeUnit.SECONDS));
+    }
+
+    @After
+    public void tearDown() {
+        gameLoop.shutdown();
+        // Il controller è un singleton: le metriche non devono restare accese per gli altri test.
+        gameController.getMetrics().setEnabled(false);
+        gameController.getMetrics().reset();
+    }
+
+    @Test
+    public void startNewGame_PublishesSnapshot() {
+        RenderSnapshot snapshot = gameLoop.getSnapshot();
+
+        Assert.assertNotNull(snapshot);
+        Assert.assertEquals(0, snapshot.getTurn());
+        Assert.assertEquals(GameController.GameState.PLAYING, snapshot.getGameState());
+        // La cella del giocatore è sempre dentro il suo campo visivo.
+        Assert.assertTrue(snapshot.isVisible(snapshot.getPlayerX(), snapshot.getPlayerY()));
+        Assert.assertFalse(snapshot.isVisible(snapshot.getPlayerX() + GameController.PLAYER_VISION_RADIUS + 1, snapshot.getPlayerY()));
+    }
+
+    @Test
+    public void enqueue_BuffersEveryCommand_AndRunsThemInOrder() throws InterruptedException {
+        // Arrange
+        CopyOnWriteArrayList<Long> publishedTurns = new CopyOnWriteArrayList<>();
+        gameLoop.addSnapshotListener(snapshot -> publishedTurns.add(snapshot.getTurn()));
+
+        // Act: una raffica di input, accodati senza attendere la fine dei turni.
+        GameController.Direction[] directions = GameController.Direction.values();
+        for (int i = 0; i < 12; i++) {
+            gameLoop.enqueue(directions[i % directions.length]);
+        }
+        Assert.assertTrue(gameLoop.awaitIdle(10, TimeUnit.SECONDS));
+
+        // Assert
+        // Nessun comando perso: un turno (e una fotografia) per ogni input, in ordine.
+        Assert.assertEquals(0, gameLoop.getPendingCommands());
+        Assert.assertEquals(12, publishedTurns.size());
+        Assert.assertEquals(gameController.getTurnCount(), (long) publishedTurns.get(11));
+        for (int i = 1; i < publishedTurns.size(); i++) {
+            Assert.assertTrue(publishedTurns.get(i) >= publishedTurns.get(i - 1));
+        }
+    }
+
+    @Test
+    public void shutdown_WaitsForQueuedTurns_AndLeavesTheNextLoopsJournal() throws InterruptedException {
+        // Arrange: un vecchio loop con il suo registro, poi il loop nuovo che installa il proprio.
+        GameLoop oldLoop = new GameLoop(gameController);
+        oldLoop.recordJournal(folder.getRoot().toPath().resolve("old.bin"));
+        Assert.assertTrue(oldLoop.awaitIdle(10, TimeUnit.SECONDS));
+        gameLoop.recordJournal(folder.getRoot().toPath().resolve("new.bin"));
+        Assert.assertTrue(gameLoop.awaitIdle(10, TimeUnit.SECONDS));
+        TurnJournal newJournal = gameController.getJournal();
+        for (int i = 0; i < 4; i++) {
+            oldLoop.enqueue(GameController.Direction.values()[i]);
+        }
+
+        // Act
+        oldLoop.shutdown();
+
+        // Assert: i turni accodati sono finiti prima del ritorno, e il registro del loop nuovo è ancora attivo.
+        Assert.assertEquals(0, oldLoop.getPendingCommands());
+        Assert.assertNotNull(newJournal);
+        Assert.assertSame(newJournal, gameController.getJournal());
+    }
+
+    @Test
+    public void snapshot_IsNotChangedByLaterTurns() throws InterruptedException {
+        // Arrange
+        RenderSnapshot before = gameLoop.getSnapshot();
+        int playerX = before.getPlayerX();
+        int playerY = before.getPlayerY();
+        int enemyCount = before.getEnemyCount();
+
+        // Act
+        for (int i = 0; i < 8; i++) {
+            gameLoop.enqueue(GameController.Direction.values()[i % 4]);
+        }
+        Assert.assertTrue(gameLoop.awaitIdle(10, TimeUnit.SECONDS));
+
+        // Assert
+        Assert.assertNotSame(before, gameLoop.getSnapshot());
+        Assert.assertEquals(playerX, before.getPlayerX());
+        Assert.assertEquals(playerY, before.getPlayerY());
+        Assert.assertEquals(enemyCount, before.getEnemyCount());
+        Assert.assertEquals(0, before.getTurn());
+    }
+
+    @Test
+    public void snapshot_MatchesControllerState() {
+        RenderSnapshot snapshot = gameLoop.getSnapshot();
+
+        Assert.assertEquals(gameController.getGameMap().getPlayer().getX(), snapshot.getPlayerX());
+        Assert.assertEquals(gameController.getGameMap().getPlayer().getY(), snapshot.getPlayerY());
+        Assert.assertEquals(gameController.getGameMap().getWidth(), snapshot.getWidth());
+        for (int i = 0; i < snapshot.getEnemyCount(); i++) {
+            Assert.assertNotNull(gameController.getGameMap().getEnemyAt(snapshot.getEnemyX(i), snapshot.getEnemyY(i)));
+        }
+    }
+
+    @Test
+    public void metrics_WhenDisabled_RecordNothing() throws InterruptedException {
+        TurnMetrics metrics = gameLoop.getMetrics();
+        metrics.reset();
+
+        for (int i = 0; i < 6; i++) {
+            gameLoop.enqueue(GameController.Direction.values()[i % 4]);
+        }
+        Assert.assertTrue(gameLoop.awaitIdle(10, TimeUnit.SECONDS));
+
+        for (TurnMetrics.Phase phase : TurnMetrics.Phase.values()) {
+            Assert.assertEquals(0, metrics.getHistogram(phase).getCount());
+        }
+        Assert.assertEquals(0, metrics.getEnemiesProcessed());
+    }
+
+    @Test
+    public void metrics_WhenEnabled_TimeEveryTurn_AndDumpAReport() throws Exception {
+        // Arrange
+        TurnMetrics metrics = gameLoop.getMetrics();
+        gameLoop.setMetricsEnabled(true);
+        Assert.assertTrue(gameLoop.awaitIdle(10, TimeUnit.SECONDS));
+        metrics.reset();
+
+        // Act
+        for (int i = 0; i < 6; i++) {
+            gameLoop.enqueue(GameController.Direction.values()[i % 4]);
+        }
+        Path report = folder.getRoot().toPath().resolve("metrics.txt");
+        gameLoop.dumpMetrics(report);
+        Assert.assertTrue(gameLoop.awaitIdle(10, TimeUnit.SECONDS));
+
+        // Assert: una misura per turno dell'intero turno e del controllo di fine partita.
+        long turns = metrics.getHistogram(TurnMetrics.Phase.TURN).getCount();
+        Assert.assertTrue(turns > 0);
+        Assert.assertEquals(turns, metrics.getHistogram(TurnMetrics.Phase.END_CONDITIONS).getCount());
+        Assert.assertTrue(metrics.getHistogram(TurnMetrics.Phase.TURN).getMax() > 0);
+        Assert.assertTrue(metrics.getCellsScanned() > 0);
+        String text = new String(Files.readAllBytes(report), StandardCharsets.UTF_8);
+        Assert.assertTrue(text.contains(TurnMetrics.Phase.TURN.getLabel()));
+        Assert.assertTrue(text.contains("celle scansionate=" + metrics.getCellsScanned()));
+    }
+}
@@ -0,0 +1,188 @@
+package com.github.matteoCarda.simplerougelike.controller;
+
+import com.github.matteoCarda.simplerougelike.model.GameMap;
+import com.github.matteoCarda.simplerougelike.model.entity.Player;
+import com.github.matteoCarda.simplerougelike.service.SpawnRules;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Controlla che un turno a regime non allochi memoria sul thread della logica: ogni byte per turno
+ * diventa lavoro per il garbage collector, che su Android si vede come scatti durante i viaggi lunghi.
+ * La misura gira in una JVM separata: Mockito, negli altri test, riscrive le classi che finge
+ * (es. CharacterService) e le chiamate alle istanze reali passerebbero dal suo dispatcher, che alloca.
+ */
+public class TurnAllocationTest {
+
+    // Tolleranza per le rare allocazioni legittime (es. un nuovo blocco di memoria per gli eventi).
+    private static final double MAX_BYTES_PER_TURN = 16;
+    private static final int WARM_UP_TURNS = 1500;
+    private static final int MEASURED_TURNS = 1500;
+    // Destinazioni irraggiungibili di fila dopo cui la misura si arrende invece di girare per sempre.
+    private static final int MAX_FAILED_GOALS = 1000;
+    private static final long TIMEOUT_MINUTES = 2;
+    // Con le comparse attive muore un nemico ogni KILL_INTERVAL turni, così le ondate lo rimpiazzano di continuo.
+    private static final int KILL_INTERVAL = 5;
+    private static final SpawnRules SPAWN_RULES = SpawnRules.NONE
+            .withEnemyWaves(10, 3, 100)
+            .withItems(20, 20);
+
+    @Test
+    public void handlePlayerTurn_Sequential_DoesNotAllocate() throws Exception {
+        double bytesPerTurn = measureInFreshJvm(false, false);
+
+        Assert.assertTrue(bytesPerTurn + " byte per turno", bytesPerTurn <= MAX_BYTES_PER_TURN);
+    }
+
+    @Test
+    public void handlePlayerTurn_Parallel_DoesNotAllocate() throws Exception {
+        double bytesPerTurn = measureInFreshJvm(true, false);
+
+        Assert.assertTrue(bytesPerTurn + " byte per turno", bytesPerTurn <= MAX_BYTES_PER_TURN);
+    }
+
+    @Test
+    public void handlePlayerTurn_WithSpawning_DoesNotAllocate() throws Exception {
+        // Nemici che muoiono e ricompaiono: id, pool e tabelle per id devono restare a regime.
+        double bytesPerTurn = measureInFreshJvm(false, true);
+
+        Assert.assertTrue(bytesPerTurn + " byte per turno", bytesPerTurn <= MAX_BYTES_PER_TURN);
+    }
+
+    /**
+     * Avvia {@link #main} con lo stesso classpath dei test e ne legge il risultato.
+     * L'output viene letto da un thread a parte, così un processo bloccato non blocca il test oltre il timeout.
+     * Il test viene saltato se la JVM non sa misurare le allocazioni per thread.
+     */
+    private static double measureInFreshJvm(boolean parallel, boolean spawning) throws IOException, InterruptedException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                TurnAllocationTest.class.getName(), Boolean.toString(parallel), Boolean.toString(spawning))
+                .redirectErrorStream(true)
+                .start();
+        StringBuffer output = new StringBuffer();
+        Thread drain = new Thread(() -> {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    output.append(line).append('\n');
+                }
+            } catch (IOException e) {
+                // Il processo è stato chiuso: quel che è stato letto basta per il messaggio d'errore.
+            }
+        }, "turn-allocation-output");
+        drain.setDaemon(true);
+        drain.start();
+        if (!process.waitFor(TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+            process.destroyForcibly();
+            drain.join(TimeUnit.SECONDS.toMillis(5));
+            Assert.fail("la misura non è terminata entro " + TIMEOUT_MINUTES + " minuti:\n" + output);
+        }
+        drain.join();
+        Assert.assertEquals(output.toString(), 0, process.exitValue());
+        String[] lines = output.toString().trim().split("\n");
+        double bytesPerTurn = Double.parseDouble(lines[lines.length - 1].trim());
+        Assume.assumeFalse(Double.isNaN(bytesPerTurn));
+        return bytesPerTurn;
+    }
+
+    /**
+     * Punto d'ingresso della JVM separata: stampa i byte allocati in media per turno, o NaN se non misurabili.
+     * @param args Il primo: "true" per il motore dei turni parallelo, "false" per quello sequenziale.
+     *             Il secondo: "true" per attivare le comparse e far morire un nemico ogni {@link #KILL_INTERVAL} turni.
+     */
+    public static void main(String[] args) {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)
+                || !((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            System.out.println(Double.NaN);
+            System.exit(0);
+        }
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        GameController gameController = GameController.getInstance();
+        gameController.setParallelEnemyTurns(Boolean.parseBoolean(args[0]));
+        boolean spawning = Boolean.parseBoolean(args[1]);
+        if (spawning) gameController.setSpawnRules(SPAWN_RULES);
+        gameController.startNewGame(200, 200, 100, 10, 7L);
+        System.out.println(measureBytesPerTurn(gameController, threadBean, spawning));
+        // Il pool dei turni paralleli non deve tenere in vita la JVM.
+        System.exit(0);
+    }
+
+    /**
+     * Fa camminare il giocatore verso destinazioni casuali e misura solo le chiamate a handlePlayerTurn,
+     * dopo un riscaldamento che porta a regime buffer, finestre di Dijkstra e compilatore JIT.
+     * La salute viene ripristinata a ogni passo, così la partita non finisce.
+     * Con {@code killing} un nemico muore ogni {@link #KILL_INTERVAL} turni, fuori dalla misura;
+     * la sua rimozione e le comparse che lo rimpiazzano avvengono dentro handlePlayerTurn e vengono misurate.
+     */
+    private static double measureBytesPerTurn(GameController gameController, com.sun.management.ThreadMXBean threadBean,
+                                              boolean killing) {
+        GameMap gameMap = gameController.getGameMap();
+        Player player = gameMap.getPlayer();
+        int width = gameMap.getWidth();
+        int height = gameMap.getHeight();
+        Random random = new Random(9L);
+        long threadId = Thread.currentThread().getId();
+        long allocated = 0;
+        int turns = 0;
+        int failedGoals = 0;
+        while (turns < WARM_UP_TURNS + MEASURED_TURNS) {
+            if (failedGoals == MAX_FAILED_GOALS) {
+                throw new IllegalStateException("nessuna destinazione raggiungibile da " + player.getX() + "," + player.getY());
+            }
+            int goalX = Math.max(0, Math.min(width - 1, player.getX() + random.nextInt(61) - 30));
+            int goalY = Math.max(0, Math.min(height - 1, player.getY() + random.nextInt(61) - 30));
+            int[] path = gameController.findTravelPath(goalX, goalY);
+            if (path == null) {
+                failedGoals++;
+                continue;
+            }
+            int turnsBefore = turns;
+            for (int cell : path) {
+                GameController.Direction direction = directionTo(player, cell / height, cell % height);
+                if (direction == null || turns == WARM_UP_TURNS + MEASURED_TURNS) break;
+                player.setHealth(player.getMaxHealth());
+                if (killing && turns % KILL_INTERVAL == 0 && gameMap.getEnemies().size() > 0) {
+                    gameMap.getEnemies().get(turns % gameMap.getEnemies().size()).setHealth(0);
+                }
+                long before = threadBean.getThreadAllocatedBytes(threadId);
+                gameController.handlePlayerTurn(direction);
+                long after = threadBean.getThreadAllocatedBytes(threadId);
+                if (turns >= WARM_UP_TURNS) allocated += after - before;
+                turns++;
+            }
+            // Un percorso di cui non si è fatto nemmeno un passo conta come una destinazione mancata.
+            failedGoals = (turns > turnsBefore) ? 0 : failedGoals + 1;
+            if (gameController.getGameState() != GameController.GameState.PLAYING) {
+                throw new IllegalStateException("partita finita durante la misura: " + gameController.getGameState());
+            }
+        }
+        return (double) allocated / MEASURED_TURNS;
+    }
+
+    /**
+     * Direzione del passo verso una cella adiacente, o null se non è adiacente (il giocatore è stato bloccato).
+     */
+    private static GameController.Direction directionTo(Player player, int x, int y) {
+        int dx = x - player.getX();
+        int dy = y - player.getY();
+        if (Math.abs(dx) + Math.abs(dy) != 1) return null;
+        if (dx > 0) return GameController.Direction.RIGHT;
+        if (dx < 0) return GameController.Direction.LEFT;
+        return dy > 0 ? GameController.Direction.DOWN : GameController.Direction.UP;
+    }
+}
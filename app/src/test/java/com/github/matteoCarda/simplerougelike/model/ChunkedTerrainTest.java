@@ -0,0 +1,124 @@
+package com.github.matteoCarda.simplerougelike.model;
+
+import com.github.matteoCarda.simplerougelike.model.tile.Tile;
+import com.github.matteoCarda.simplerougelike.util.ChunkGenerator;
+import com.github.matteoCarda.simplerougelike.util.MapGenerator;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test del terreno a blocchi generati su richiesta.
+ */
+public class ChunkedTerrainTest {
+
+    private static final int SIZE = ChunkedTerrain.CHUNK_SIZE;
+
+    @Test
+    public void chunkGenerator_IsDeterministic_AcrossInstancesAndEviction() {
+        ChunkGenerator first = new ChunkGenerator(42L, 8, 8);
+        ChunkGenerator second = new ChunkGenerator(42L, 8, 8);
+        assertArrayEquals(first.generate(3, 5), second.generate(3, 5));
+        assertFalse(Arrays.equals(first.generate(3, 5), new ChunkGenerator(43L, 8, 8).generate(3, 5)));
+
+        // Un blocco scaricato e poi riletto torna identico.
+        ChunkedTerrain terrain = new ChunkedTerrain(8 * SIZE, 8 * SIZE, 0, first);
+        byte before = terrain.get(10, 10);
+        terrain.focus(7 * SIZE, 7 * SIZE);
+        assertFalse(terrain.isLoaded(10, 10));
+        assertEquals(before, terrain.get(10, 10));
+    }
+
+    @Test
+    public void chunkGenerator_ConnectsNeighbouringChunks() {
+        // Mondo 3x3: dal centro si deve poter raggiungere pavimento in ogni blocco.
+        ChunkedTerrain terrain = new ChunkedTerrain(3 * SIZE, 3 * SIZE, 3, new ChunkGenerator(7L, 3, 3));
+        int startX = -1;
+        int startY = -1;
+        for (int x = SIZE; x < 2 * SIZE && startX < 0; x++) {
+            for (int y = SIZE; y < 2 * SIZE && startX < 0; y++) {
+                if (terrain.get(x, y) == Tile.FLOOR) {
+                    startX = x;
+                    startY = y;
+                }
+            }
+        }
+
+        boolean[][] reached = new boolean[3 * SIZE][3 * SIZE];
+        boolean[] chunkReached = new boolean[9];
+        ArrayDeque<int[]> queue = new ArrayDeque<>();
+        queue.add(new int[] { startX, startY });
+        reached[startX][startY] = true;
+        int[][] steps = { {1, 0}, {-1, 0}, {0, 1}, {0, -1} };
+        while (!queue.isEmpty()) {
+            int[] cell = queue.poll();
+            chunkReached[(cell[0] / SIZE) * 3 + cell[1] / SIZE] = true;
+            for (int[] step : steps) {
+                int nx = cell[0] + step[0];
+                int ny = cell[1] + step[1];
+                if (nx < 0 || ny < 0 || nx >= 3 * SIZE || ny >= 3 * SIZE || reached[nx][ny]) continue;
+                if (terrain.get(nx, ny) != Tile.FLOOR) continue;
+                reached[nx][ny] = true;
+                queue.add(new int[] { nx, ny });
+            }
+        }
+        for (int i = 0; i < chunkReached.length; i++) {
+            assertTrue("Blocco " + i + " non raggiungibile", chunkReached[i]);
+        }
+    }
+
+    @Test
+    public void focus_KeepsLoadedChunksBounded_WhileWalkingAcrossTheWorld() {
+        AtomicInteger generated = new AtomicInteger();
+        ChunkedTerrain terrain = new ChunkedTerrain(ChunkedTerrain.MAX_SIDE, ChunkedTerrain.MAX_SIDE, 1,
+                (chunkX, chunkY) -> {
+                    generated.incrementAndGet();
+                    return new byte[SIZE * SIZE];
+                });
+
+        // Cammina in diagonale per 30 blocchi leggendo sempre la cella sotto i piedi.
+        int maxLoaded = 0;
+        for (int step = 0; step < 30 * SIZE; step += 8) {
+            terrain.focus(step, step);
+            terrain.get(step, step);
+            maxLoaded = Math.max(maxLoaded, terrain.getLoadedChunkCount());
+        }
+
+        // Raggio 1 più il margine di scaricamento: al massimo 5x5 blocchi, più uno appena uscito dalla coda.
+        assertTrue("Blocchi caricati: " + maxLoaded, maxLoaded <= 26);
+        assertTrue(generated.get() >= 30);
+        assertTrue(terrain.estimateMemoryFootprint() < 2L * 1024 * 1024);
+    }
+
+    @Test
+    public void focus_PrefetchesNearbyChunks_InTheBackground() throws InterruptedException {
+        ChunkedTerrain terrain = new ChunkedTerrain(10 * SIZE, 10 * SIZE, 1, new ChunkGenerator(1L, 10, 10));
+        assertEquals(0, terrain.getLoadedChunkCount());
+
+        terrain.focus(5 * SIZE, 5 * SIZE);
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (terrain.getLoadedChunkCount() < 9 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(9, terrain.getLoadedChunkCount());
+        assertTrue(terrain.isLoaded(4 * SIZE, 6 * SIZE));
+        assertFalse(terrain.isLoaded(2 * SIZE, 2 * SIZE));
+    }
+
+    @Test
+    public void generateChunkedMap_HugeWorld_StartsWithSmallFootprint() {
+        GameMap gameMap = new MapGenerator(5L).generateChunkedMap(ChunkedTerrain.MAX_SIDE, ChunkedTerrain.MAX_SIDE, 10, 5);
+
+        assertTrue(gameMap.isWalkable(gameMap.getPlayer().getX(), gameMap.getPlayer().getY()));
+        assertEquals(10, gameMap.getEnemies().size());
+        assertSame(gameMap.getEnemies().get(0), gameMap.getEnemyAt(gameMap.getEnemies().get(0).getX(), gameMap.getEnemies().get(0).getY()));
+        // Un miliardo di celle, ma in memoria solo i blocchi attorno al giocatore e le pagine abitate degli indici.
+        assertTrue("Byte stimati: " + gameMap.estimateMemoryFootprint(), gameMap.estimateMemoryFootprint() < 8L * 1024 * 1024);
+    }
+}
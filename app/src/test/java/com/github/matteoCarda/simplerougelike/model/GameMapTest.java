@@ -0,0 +1,95 @@
+package com.github.matteoCarda.simplerougelike.model;
+
+import com.github.matteoCarda.simplerougelike.model.entity.Enemy;
+import com.github.matteoCarda.simplerougelike.model.entity.Item;
+import com.github.matteoCarda.simplerougelike.model.entity.Player;
+import com.github.matteoCarda.simplerougelike.model.entity.PotionItem;
+import com.github.matteoCarda.simplerougelike.model.tile.FloorTile;
+import com.github.matteoCarda.simplerougelike.model.tile.Tile;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test dell'indice di occupazione mantenuto dalla GameMap.
+ */
+public class GameMapTest {
+
+    private GameMap gameMap;
+    private Enemy enemy;
+    private PotionItem potion;
+
+    @Before
+    public void setUp() {
+        // Mappa 10x10 tutta calpestabile, con un nemico e una pozione.
+        Tile[][] grid = new Tile[10][10];
+        for (int x = 0; x < 10; x++) {
+            for (int y = 0; y < 10; y++) {
+                grid[x][y] = FloorTile.INSTANCE;
+            }
+        }
+        enemy = new Enemy(2, 2);
+        potion = new PotionItem(5, 5);
+        List<Enemy> enemies = new ArrayList<>();
+        enemies.add(enemy);
+        List<Item> items = new ArrayList<>();
+        items.add(potion);
+        gameMap = new GameMap(grid, new Player(0, 0), enemies, items);
+    }
+
+    @Test
+    public void getEnemyAt_FindsRegisteredEnemy() {
+        assertSame(enemy, gameMap.getEnemyAt(2, 2));
+        assertNull(gameMap.getEnemyAt(3, 3));
+        assertNull(gameMap.getEnemyAt(-1, 20)); // Fuori mappa.
+    }
+
+    @Test
+    public void setPosition_UpdatesIndex() {
+        enemy.setPosition(3, 2);
+
+        assertNull(gameMap.getEnemyAt(2, 2));
+        assertSame(enemy, gameMap.getEnemyAt(3, 2));
+    }
+
+    @Test
+    public void removeItem_ClearsCell() {
+        assertSame(potion, gameMap.getItemAt(5, 5));
+
+        gameMap.removeItem(potion);
+
+        assertNull(gameMap.getItemAt(5, 5));
+        assertTrue(gameMap.getItems().isEmpty());
+        // Una volta rimosso, spostare l'oggetto non deve più toccare l'indice.
+        potion.setPosition(6, 6);
+        assertNull(gameMap.getItemAt(6, 6));
+    }
+
+    @Test
+    public void findEnemiesWithin_UsesManhattanRadius() {
+        Enemy farEnemy = new Enemy(9, 9);
+        gameMap.addEnemy(farEnemy);
+
+        List<Enemy> found = gameMap.findEnemiesWithin(3, 3, 2, new ArrayList<>());
+
+        assertEquals(1, found.size());
+        assertSame(enemy, found.get(0));
+    }
+
+    @Test
+    public void terrain_UsesSharedTilesAndOneBytePerCell() {
+        // Tutte le celle di pavimento condividono la stessa istanza.
+        assertSame(FloorTile.INSTANCE, gameMap.getTile(1, 1));
+        assertSame(gameMap.getTile(1, 1), gameMap.getTile(8, 8));
+        assertTrue(gameMap.isWalkable(4, 4));
+        assertFalse(gameMap.isWalkable(10, 0)); // Fuori mappa.
+
+        // Terreno (1 byte) + due indici di occupazione (4 byte ciascuno) per cella, più le intestazioni.
+        assertEquals(100 * 9 + 3 * 16, gameMap.estimateMemoryFootprint());
+    }
+}
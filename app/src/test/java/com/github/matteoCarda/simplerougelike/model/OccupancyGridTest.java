@@ -0,0 +1,55 @@
+package com.github.matteoCarda.simplerougelike.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test dell'indice di occupazione paginato dei mondi molto grandi.
+ */
+public class OccupancyGridTest {
+
+    private static final int SIZE = OccupancyGrid.PAGE_SIZE;
+
+    @Test
+    public void paged_FreesPagesWhenTheLastEntityLeaves() {
+        OccupancyGrid grid = new OccupancyGrid(ChunkedTerrain.MAX_SIDE, ChunkedTerrain.MAX_SIDE);
+        long emptyFootprint = grid.estimateMemoryFootprint();
+
+        // Un'entità attraversa 100 pagine in fila: ne resta occupata una sola alla volta.
+        int x = 10;
+        grid.put(x, 10, 7);
+        for (int page = 1; page < 100; page++) {
+            int next = page * SIZE + 10;
+            grid.move(7, x, 10, next, 10);
+            x = next;
+        }
+
+        // Assert: una pagina viva, più al massimo le pagine vuote tenute da parte.
+        assertEquals(1, grid.getAllocatedPageCount());
+        assertEquals(7, grid.get(x, 10));
+        assertEquals(OccupancyGrid.EMPTY, grid.get(10, 10));
+        long pageBytes = 16L + 4L * SIZE * SIZE;
+        assertTrue(grid.estimateMemoryFootprint() <= emptyFootprint + (1 + OccupancyGrid.SPARE_PAGES) * pageBytes);
+
+        // Anche l'ultima se ne va quando la cella si libera.
+        grid.remove(x, 10, 7);
+        assertEquals(0, grid.getAllocatedPageCount());
+    }
+
+    @Test
+    public void paged_KeepsPagesWithOtherEntities() {
+        OccupancyGrid grid = new OccupancyGrid(ChunkedTerrain.MAX_SIDE, ChunkedTerrain.MAX_SIDE);
+        grid.put(1, 1, 1);
+        grid.put(2, 2, 2);
+
+        // Sovrascrivere un occupante non cambia il conto delle celle occupate.
+        grid.put(2, 2, 3);
+        grid.remove(1, 1, 1);
+
+        assertEquals(1, grid.getAllocatedPageCount());
+        assertEquals(3, grid.get(2, 2));
+        grid.remove(2, 2, 3);
+        assertEquals(0, grid.getAllocatedPageCount());
+    }
+}
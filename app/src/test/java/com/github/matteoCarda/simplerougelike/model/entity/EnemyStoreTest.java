@@ -0,0 +1,100 @@
+package com.github.matteoCarda.simplerougelike.model.entity;
+
+import com.github.matteoCarda.simplerougelike.model.OccupancyGrid;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test dell'archivio a array paralleli dei nemici e delle viste Enemy.
+ */
+public class EnemyStoreTest {
+
+    private OccupancyGrid occupancy;
+    private EnemyStore store;
+    private Enemy first;
+    private Enemy second;
+    private Enemy third;
+
+    @Before
+    public void setUp() {
+        occupancy = new OccupancyGrid(10, 10);
+        store = new EnemyStore(occupancy);
+        first = new Enemy(1, 1);
+        second = new Enemy(2, 2);
+        third = new Enemy(3, 3);
+        store.add(first);
+        store.add(second);
+        store.add(third);
+    }
+
+    @Test
+    public void view_ReadsAndWritesStoreArrays() {
+        // Act
+        second.setHealth(12.0);
+        second.setPosition(4, 2);
+
+        // Assert
+        // La vista e gli array devono vedere gli stessi valori, e l'indice deve seguire la mossa.
+        assertEquals(12.0, store.getHealth(1), 0.0);
+        assertEquals(4, store.getX(1));
+        assertEquals(second.getId(), occupancy.get(4, 2));
+        assertEquals(OccupancyGrid.EMPTY, occupancy.get(2, 2));
+    }
+
+    @Test
+    public void removeDead_SwapsLastIntoFreedSlot() {
+        // Arrange
+        first.setHealth(0);
+        int thirdId = third.getId();
+
+        // Act
+        int removed = store.removeDead();
+
+        // Assert
+        assertEquals(1, removed);
+        assertEquals(2, store.size());
+        // L'ultimo nemico ha preso lo slot 0, ma il suo id è rimasto lo stesso.
+        assertSame(third, store.getEnemy(0));
+        assertEquals(thirdId, third.getId());
+        assertSame(third, store.getById(thirdId));
+        assertEquals(3, third.getX());
+        // Il nemico rimosso conserva il suo ultimo stato e ha liberato la cella.
+        assertEquals(0.0, first.getHealth(), 0.0);
+        assertEquals(1, first.getX());
+        assertEquals(OccupancyGrid.EMPTY, occupancy.get(1, 1));
+        assertEquals(GameObject.NO_ID, first.getId());
+    }
+
+    @Test
+    public void add_ReusesTheIdsOfRemovedEnemies() {
+        // Arrange
+        int secondId = second.getId();
+        long added = store.getAddedCount();
+        store.remove(second);
+
+        // Act
+        Enemy newcomer = new Enemy(5, 5);
+        store.add(newcomer);
+
+        // Assert: l'id liberato torna in uso, il limite degli id resta fermo ma l'arrivo viene contato.
+        assertEquals(secondId, newcomer.getId());
+        assertSame(newcomer, store.getById(secondId));
+        assertEquals(3, store.getIdCount());
+        assertEquals(added + 1, store.getAddedCount());
+        assertEquals(secondId, occupancy.get(5, 5));
+    }
+
+    @Test
+    public void asList_FollowsSlotOrder() {
+        // Act
+        store.remove(second);
+
+        // Assert
+        assertEquals(2, store.asList().size());
+        assertSame(first, store.asList().get(0));
+        assertSame(third, store.asList().get(1));
+    }
+}
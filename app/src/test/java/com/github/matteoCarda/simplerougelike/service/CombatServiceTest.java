@@ -4,10 +4,12 @@ import com.github.matteoCarda.simplerougelike.model.entity.Enemy;
 import com.github.matteoCarda.simplerougelike.model.entity.Player;
 import org.junit.Before;
 import org.junit.Test;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
@@ -20,10 +22,10 @@ public class CombatServiceTest {
     @Mock
     private CharacterService mockCharacterService;
 
-    // @InjectMocks crea un'istanza REALE di CombatService e cerca di
-    // iniettare automaticamente tutti gli oggetti annotati con @Mock
-    // nei suoi campi corrispondenti (nel nostro caso, nel costruttore).
-    @InjectMocks
+    // Il bus degli eventi è reale: i test leggono gli eventi pubblicati.
+    private final GameEventBus eventBus = new GameEventBus(16);
+
+    // Istanza REALE di CombatService, creata in setUp con il mock e il bus.
     private CombatService combatService;
 
     // --- Oggetti di gioco standard ---
@@ -32,8 +34,9 @@ public class CombatServiceTest {
 
     @Before
     public void setUp() {
-        // Questa riga è FONDAMENTALE. Inizializza tutti gli oggetti annotati con @Mock e @InjectMocks.
+        // Questa riga è FONDAMENTALE. Inizializza tutti gli oggetti annotati con @Mock.
         MockitoAnnotations.openMocks(this);
+        combatService = new CombatService(mockCharacterService, eventBus);
 
         // Creiamo istanze reali per il giocatore e il nemico
         player = new Player(0, 0); // 100 HP, 10 Attack
@@ -96,4 +99,40 @@ public class CombatServiceTest {
         // Verifichiamo che il metodo abbia restituito false.
         assertFalse(targetDied);
     }
+
+    @Test
+    public void performAttack_PublishesAttackDamageAndDeathEvents() {
+        // Arrange
+        GameEventBus.Subscription subscription = eventBus.subscribe();
+        when(mockCharacterService.isAlive(enemy))
+                .thenReturn(true)
+                .thenReturn(false);
+        List<Integer> types = new ArrayList<>();
+        List<Integer> actors = new ArrayList<>();
+        List<Double> values = new ArrayList<>();
+
+        // Act
+        combatService.performAttack(player, enemy);
+        subscription.drain((type, actor, target, x, y, value) -> {
+            types.add(type);
+            actors.add(actor);
+            values.add(value);
+        });
+
+        // Assert
+        assertEquals(List.of(GameEventBus.ATTACK, GameEventBus.DAMAGE, GameEventBus.DEATH), types);
+        assertEquals(GameEventBus.ACTOR_PLAYER, (int) actors.get(0));
+        assertEquals(player.getAttackPower(), values.get(0), 0.0);
+        assertEquals(enemy.getId(), (int) actors.get(2));
+    }
+
+    @Test
+    public void performAttack_PublishesNothing_WhenTargetIsAlreadyDead() {
+        GameEventBus.Subscription subscription = eventBus.subscribe();
+        when(mockCharacterService.isAlive(enemy)).thenReturn(false);
+
+        combatService.performAttack(player, enemy);
+
+        assertEquals(0, subscription.drain((type, actor, target, x, y, value) -> { }));
+    }
 }
@@ -1,8 +1,12 @@
 package com.github.matteoCarda.simplerougelike.service;
 
+import com.github.matteoCarda.simplerougelike.model.ChunkedTerrain;
 import com.github.matteoCarda.simplerougelike.model.GameMap;
 import com.github.matteoCarda.simplerougelike.model.entity.Enemy;
 import com.github.matteoCarda.simplerougelike.model.entity.Player;
+import com.github.matteoCarda.simplerougelike.model.tile.FloorTile;
+import com.github.matteoCarda.simplerougelike.model.tile.Tile;
+import com.github.matteoCarda.simplerougelike.model.tile.WallTile;
 import com.github.matteoCarda.simplerougelike.util.MapGenerator;
 
 import org.junit.Assert;
@@ -18,6 +22,8 @@ import static org.mockito.ArgumentMatchers.anyDouble;
 import static org.mockito.Mockito.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+
 
 public class EnemyAIServiceTest {
 
@@ -39,6 +45,7 @@ public class EnemyAIServiceTest {
     private Player player;
     private Enemy enemy;
     private GameMap gameMap;
+    private final GameEventBus eventBus = new GameEventBus(64);
 
     @Before
     public void setUp() {
@@ -56,6 +63,8 @@ public class EnemyAIServiceTest {
 
         // Istruzione di default: per la maggior parte dei test, il nemico è vivo.
         when(mockCharacterService.isAlive(enemy)).thenReturn(true);
+        // I movimenti vengono pubblicati sul bus del servizio di combattimento.
+        when(mockCombatService.getEventBus()).thenReturn(eventBus);
     }
 
     @Test
@@ -81,18 +90,21 @@ public class EnemyAIServiceTest {
     @Test
     public void performTurn_ChasesPlayer_WhenInSight() {
         // Arrange
+        // La mappa è casuale: spostiamo il nemico su una cella con pavimento anche a destra,
+        // così il passo previsto (x+1) è sempre percorribile.
+        moveEnemyNextToFloorOnTheRight();
         // Posizioniamo il giocatore a una distanza media (ma non adiacente).
         player.setPosition(enemy.getX() + 3, enemy.getY());
 
-        // Creiamo un finto percorso per il nostro mock di DijkstraMap.
-        // Questo simula che il pathfinding abbia trovato un percorso verso il giocatore.
-        // Il percorso dice al nemico di muoversi di un passo verso destra (x+1).
-        ArrayList<squidpony.squidmath.Coord> fakedPath = new ArrayList<>();
-        fakedPath.add(squidpony.squidmath.Coord.get(enemy.getX() + 1, enemy.getY()));
-
-        // Istruiamo il mock: "QUANDO ti viene chiesto di trovare un percorso,
-        // restituisci il nostro percorso finto".
-        when(mockDijkstraMap.findPath(anyInt(), any(), any(), any())).thenReturn(fakedPath);
+        // Creiamo un finto gradiente per il nostro mock di DijkstraMap.
+        // Questo simula una mappa già scansionata verso il giocatore: la cella a destra
+        // del nemico (x+1) ha il costo più basso, quindi è il passo da compiere.
+        double[][] fakedGradient = new double[gameMap.getWidth()][gameMap.getHeight()];
+        for (double[] column : fakedGradient) {
+            Arrays.fill(column, 10.0);
+        }
+        fakedGradient[enemy.getX() + 1][enemy.getY()] = 1.0;
+        mockDijkstraMap.gradientMap = fakedGradient;
 
         int originalX = enemy.getX(); // Salviamo la posizione originale per la verifica
 
@@ -100,14 +112,34 @@ public class EnemyAIServiceTest {
         enemyAIService.performTurn(enemy, gameMap, player, mockDijkstraMap);
 
         // Assert
-        // Verifichiamo che l'IA abbia cercato di trovare un percorso.
-        verify(mockDijkstraMap, times(1)).findPath(anyInt(), any(), any(), any());
+        // Verifichiamo che l'IA abbia letto la mappa già scansionata, senza ricalcolare un percorso.
+        verify(mockDijkstraMap, never()).findPath(anyInt(), any(), any(), any(), any());
 
         // Verifichiamo che il nemico NON abbia attaccato.
         verify(mockCombatService, never()).performAttack(any(), any());
 
         // Verifichiamo che la posizione del nemico sia cambiata come previsto dal percorso.
         Assert.assertEquals(originalX + 1, enemy.getX());
+        // Il passo è stato pubblicato come evento di movimento.
+        Assert.assertEquals(1, eventBus.getPublishedCount());
+    }
+
+    @Test
+    public void isMoveValid_ReadsWallsAndBoundsFromTheTerrainBytes() {
+        // Arrange
+        // Mappa 4x3 costruita direttamente dai codici delle celle, con un muro in (2, 1).
+        byte[] cells = new byte[4 * 3];
+        Arrays.fill(cells, Tile.FLOOR);
+        cells[2 * 3 + 1] = Tile.WALL;
+        Player cornerPlayer = new Player(0, 0);
+        GameMap small = new GameMap(cells, 4, 3, cornerPlayer, new ArrayList<>(), new ArrayList<>());
+
+        // Act & Assert
+        Assert.assertTrue(enemyAIService.isMoveValid(1, 1, small, cornerPlayer));
+        Assert.assertFalse(enemyAIService.isMoveValid(2, 1, small, cornerPlayer)); // Muro.
+        Assert.assertFalse(enemyAIService.isMoveValid(4, 1, small, cornerPlayer)); // Fuori mappa.
+        Assert.assertFalse(enemyAIService.isMoveValid(1, -1, small, cornerPlayer)); // Fuori mappa.
+        Assert.assertFalse(enemyAIService.isMoveValid(0, 0, small, cornerPlayer)); // Cella del giocatore.
     }
 
     @Test
@@ -136,4 +168,169 @@ public class EnemyAIServiceTest {
         // Il test più robusto è semplicemente verificare che la logica di attacco/inseguimento non sia stata attivata.
         // L'asserzione `hasMoved` potrebbe fallire casualmente, quindi ci fidiamo delle verifiche `never()` di cui sopra.
     }
+
+    @Test
+    public void getDijkstraMapTo_ReusesMapAndScan_WhenGoalUnchanged() {
+        // Act
+        DijkstraMap first = enemyAIService.getDijkstraMapTo(gameMap, player.getX(), player.getY());
+        double[][] firstGradient = first.gradientMap;
+        DijkstraMap second = enemyAIService.getDijkstraMapTo(gameMap, player.getX(), player.getY());
+
+        // Assert
+        // Stessa istanza e stesso gradiente: nessuna nuova allocazione né nuova scansione.
+        Assert.assertSame(first, second);
+        Assert.assertSame(firstGradient, second.gradientMap);
+        Assert.assertEquals(0.0, second.gradientMap[player.getX()][player.getY()], 0.0);
+    }
+
+    @Test
+    public void getDijkstraMapTo_BoundedScan_StopsAtAggroRadius() {
+        // Arrange
+        // Un corridoio lungo 60 celle, tutto calpestabile, con l'obiettivo a un'estremità.
+        Tile[][] grid = new Tile[60][3];
+        for (int x = 0; x < 60; x++) {
+            for (int y = 0; y < 3; y++) {
+                grid[x][y] = FloorTile.INSTANCE;
+            }
+        }
+        GameMap corridor = new GameMap(grid, new Player(0, 1), new ArrayList<>(), new ArrayList<>());
+
+        // Act
+        DijkstraMap bounded = enemyAIService.getDijkstraMapTo(corridor, 0, 1);
+
+        // Assert
+        // Vicino all'obiettivo il gradiente è la distanza reale, lontano la cella non viene toccata.
+        Assert.assertEquals(5.0, bounded.gradientMap[5][1], 0.0);
+        Assert.assertEquals(DijkstraMap.FLOOR, bounded.gradientMap[40][1], 0.0);
+
+        // Spostando l'obiettivo, l'area della scansione precedente viene ripulita.
+        bounded = enemyAIService.getDijkstraMapTo(corridor, 50, 1);
+        Assert.assertEquals(DijkstraMap.FLOOR, bounded.gradientMap[5][1], 0.0);
+        Assert.assertEquals(3.0, bounded.gradientMap[47][1], 0.0);
+
+        // In modalità completa l'intero livello viene scansionato.
+        enemyAIService.setBoundedScan(false);
+        DijkstraMap full = enemyAIService.getDijkstraMapTo(corridor, 0, 1);
+        Assert.assertEquals(40.0, full.gradientMap[40][1], 0.0);
+    }
+
+    @Test
+    public void getDijkstraMapTo_RoutesAroundWalls() {
+        // Arrange
+        // Stanza 7x7 con un muro verticale in x = 3, aperto solo in basso (y = 6).
+        Tile[][] grid = new Tile[7][7];
+        for (int x = 0; x < 7; x++) {
+            for (int y = 0; y < 7; y++) {
+                grid[x][y] = (x == 3 && y < 6) ? WallTile.INSTANCE : FloorTile.INSTANCE;
+            }
+        }
+        Player walledPlayer = new Player(5, 0);
+        Enemy walledEnemy = new Enemy(1, 0);
+        GameMap room = new GameMap(grid, walledPlayer, new ArrayList<>(Arrays.asList(walledEnemy)), new ArrayList<>());
+        when(mockCharacterService.isAlive(walledEnemy)).thenReturn(true);
+        // Il giro attorno al muro è più lungo del raggio della scansione limitata.
+        enemyAIService.setBoundedScan(false);
+
+        // Act
+        DijkstraMap dijkstraMap = enemyAIService.getDijkstraMapTo(room, 5, 0);
+        int intent = enemyAIService.decideIntent(walledEnemy, room, walledPlayer, dijkstraMap, 0L);
+
+        // Assert
+        // I muri non sono attraversabili: la distanza segue il varco, e il nemico scende verso di esso.
+        Assert.assertEquals(DijkstraMap.WALL, dijkstraMap.gradientMap[3][0], 0.0);
+        Assert.assertEquals(16.0, dijkstraMap.gradientMap[1][0], 0.0);
+        Assert.assertEquals(1 * 7 + 1, intent);
+    }
+
+    @Test
+    public void getDijkstraMapTo_HugeMap_UsesAWindowThatFollowsTheGoal() {
+        // Arrange
+        // Mondo a blocchi tutto pavimento, troppo grande per una DijkstraMap completa.
+        int side = 4096;
+        ChunkedTerrain terrain = new ChunkedTerrain(side, side, 1, (chunkX, chunkY) -> {
+            byte[] cells = new byte[ChunkedTerrain.CHUNK_SIZE * ChunkedTerrain.CHUNK_SIZE];
+            Arrays.fill(cells, Tile.FLOOR);
+            return cells;
+        });
+        Player farPlayer = new Player(2000, 2000);
+        Enemy farEnemy = new Enemy(2005, 2000);
+        GameMap world = new GameMap(terrain, farPlayer, new ArrayList<>(Arrays.asList(farEnemy)), new ArrayList<>());
+        world.focus(2000, 2000);
+
+        // Act
+        DijkstraMap window = enemyAIService.getDijkstraMapTo(world, 2000, 2000);
+        int intent = enemyAIService.decideIntent(farEnemy, world, farPlayer, window, 0L);
+
+        // Assert
+        // La finestra è piccola, ma il passo scelto è in coordinate del mondo.
+        Assert.assertEquals(EnemyAIService.DIJKSTRA_WINDOW_SIZE, window.width);
+        Assert.assertEquals(2004 * side + 2000, intent);
+
+        // Un obiettivo lontano sposta la finestra invece di uscire dalla mappa.
+        farPlayer.setPosition(2300, 2000);
+        farEnemy.setPosition(2303, 2000);
+        world.focus(2300, 2000);
+        window = enemyAIService.getDijkstraMapTo(world, 2300, 2000);
+        Assert.assertEquals(2302 * side + 2000, enemyAIService.decideIntent(farEnemy, world, farPlayer, window, 0L));
+    }
+
+    @Test
+    public void getDijkstraMapTo_HugeMap_ShiftedWindowMatchesAFreshOne() {
+        // Arrange: mondo a blocchi con muri sparsi, così ogni colonna e riga della finestra è diversa.
+        int side = 4096;
+        ChunkedTerrain terrain = new ChunkedTerrain(side, side, 2, (chunkX, chunkY) -> {
+            byte[] cells = new byte[ChunkedTerrain.CHUNK_SIZE * ChunkedTerrain.CHUNK_SIZE];
+            for (int i = 0; i < cells.length; i++) {
+                cells[i] = ((i * 31 + chunkX * 7 + chunkY * 13) % 5 == 0) ? Tile.WALL : Tile.FLOOR;
+            }
+            return cells;
+        });
+        Player mover = new Player(2000, 2000);
+        GameMap world = new GameMap(terrain, mover, new ArrayList<>(), new ArrayList<>());
+        world.focus(2000, 2000);
+        enemyAIService.getDijkstraMapTo(world, 2000, 2000);
+
+        // Act + Assert: spostamenti parziali in ogni direzione, poi un salto senza celle in comune.
+        int[][] goals = { {2070, 2030}, {2010, 1950}, {2060, 2040}, {1990, 2100}, {2600, 1500} };
+        for (int[] goal : goals) {
+            mover.setPosition(goal[0], goal[1]);
+            world.focus(goal[0], goal[1]);
+            DijkstraMap shifted = enemyAIService.getDijkstraMapTo(world, goal[0], goal[1]);
+            DijkstraMap fresh = EnemyAIService.preparePathing(world).getDijkstraMap();
+            for (int x = 0; x < fresh.width; x++) {
+                Assert.assertArrayEquals(fresh.physicalMap[x], shifted.physicalMap[x], 0.0);
+            }
+            // Il gradiente parte dalla mappa fisica nuova: l'obiettivo, al centro della finestra, vale 0.
+            Assert.assertEquals(0.0, shifted.gradientMap[fresh.width / 2][fresh.height / 2], 0.0);
+        }
+    }
+
+    @Test
+    public void isAnyEnemyInAggroRange_IgnoresDeadAndFarEnemies() {
+        // Arrange
+        player.setPosition(enemy.getX() + EnemyAIService.AGGRO_RADIUS + 1, enemy.getY());
+
+        // Act & Assert
+        Assert.assertFalse(enemyAIService.isAnyEnemyInAggroRange(gameMap, player));
+
+        player.setPosition(enemy.getX() + 2, enemy.getY());
+        Assert.assertTrue(enemyAIService.isAnyEnemyInAggroRange(gameMap, player));
+
+        when(mockCharacterService.isAlive(enemy)).thenReturn(false);
+        Assert.assertFalse(enemyAIService.isAnyEnemyInAggroRange(gameMap, player));
+    }
+
+    /**
+     * Porta il nemico su una cella di pavimento che ha pavimento anche alla sua destra.
+     */
+    private void moveEnemyNextToFloorOnTheRight() {
+        for (int x = 0; x + 1 < gameMap.getWidth(); x++) {
+            for (int y = 0; y < gameMap.getHeight(); y++) {
+                if (gameMap.isWalkable(x, y) && gameMap.isWalkable(x + 1, y)) {
+                    enemy.setPosition(x, y);
+                    return;
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,158 @@
+package com.github.matteoCarda.simplerougelike.service;
+
+import com.github.matteoCarda.simplerougelike.model.GameMap;
+import com.github.matteoCarda.simplerougelike.model.entity.Enemy;
+import com.github.matteoCarda.simplerougelike.model.entity.Item;
+import com.github.matteoCarda.simplerougelike.model.entity.Player;
+import com.github.matteoCarda.simplerougelike.model.tile.FloorTile;
+import com.github.matteoCarda.simplerougelike.model.tile.Tile;
+import com.github.matteoCarda.simplerougelike.util.MapGenerator;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test delle fasce di attività dei nemici.
+ */
+public class EnemySchedulerTest {
+
+    /**
+     * Mappa tutta calpestabile con il giocatore in (0, 0) e un nemico per ogni distanza indicata, lungo l'asse x.
+     */
+    private static GameMap openMap(int width, int... distances) {
+        Tile[][] grid = new Tile[width][3];
+        for (Tile[] column : grid) {
+            Arrays.fill(column, FloorTile.INSTANCE);
+        }
+        List<Enemy> enemies = new ArrayList<>();
+        for (int distance : distances) {
+            enemies.add(new Enemy(distance, 0));
+        }
+        return new GameMap(grid, new Player(0, 0), enemies, new ArrayList<Item>());
+    }
+
+    @Test
+    public void schedule_SortsEnemiesIntoTiers_AndTicksDistantOnesEveryInterval() {
+        // Arrange: un nemico per fascia.
+        GameMap gameMap = openMap(200, 3, 20, 40, 100);
+        EnemyScheduler scheduler = new EnemyScheduler();
+        int[] slots = new int[4];
+
+        // Act + Assert: il nemico lontano (slot 2) agisce un turno su DISTANT_INTERVAL, il dormiente mai.
+        int distantTurns = 0;
+        for (long turn = 0; turn < 4 * EnemyScheduler.DISTANT_INTERVAL; turn++) {
+            int count = scheduler.schedule(gameMap, gameMap.getPlayer(), turn, slots);
+            assertEquals(0, slots[0]);
+            assertEquals(1, slots[1]);
+            if (count == 3) {
+                assertEquals(2, slots[2]);
+                distantTurns++;
+            } else {
+                assertEquals(2, count);
+            }
+        }
+        assertEquals(4, distantTurns);
+        assertEquals(1, scheduler.getTierCount(EnemyScheduler.Tier.ACTIVE));
+        assertEquals(1, scheduler.getTierCount(EnemyScheduler.Tier.NEARBY));
+        assertEquals(1, scheduler.getTierCount(EnemyScheduler.Tier.DISTANT));
+        assertEquals(1, scheduler.getTierCount(EnemyScheduler.Tier.DORMANT));
+    }
+
+    @Test
+    public void schedule_WakesDormantEnemiesAsThePlayerApproaches() {
+        GameMap gameMap = openMap(200, EnemyScheduler.DORMANT_RADIUS + 2);
+        Player player = gameMap.getPlayer();
+        EnemyScheduler scheduler = new EnemyScheduler();
+        int[] slots = new int[1];
+        scheduler.schedule(gameMap, player, 0, slots);
+        assertEquals(1, scheduler.getTierCount(EnemyScheduler.Tier.DORMANT));
+
+        // Act: due passi verso il nemico, uno alla volta.
+        player.setPosition(1, 0);
+        scheduler.schedule(gameMap, player, 1, slots);
+        assertEquals(1, scheduler.getTierCount(EnemyScheduler.Tier.DORMANT));
+        player.setPosition(2, 0);
+        scheduler.schedule(gameMap, player, 2, slots);
+
+        // Assert
+        assertEquals(0, scheduler.getTierCount(EnemyScheduler.Tier.DORMANT));
+        assertEquals(1, scheduler.getTierCount(EnemyScheduler.Tier.DISTANT));
+    }
+
+    @Test
+    public void incrementalTiers_MatchAFullRebuild_WhileThePlayerWanders() {
+        // Arrange: mappa grande e affollata, giocatore che cammina a caso per molti turni.
+        CharacterService characterService = new CharacterService();
+        CombatService combatService = new CombatService(characterService);
+        EnemyAIService enemyAIService = new EnemyAIService(combatService, characterService);
+        EnemyTurnEngine engine = new EnemyTurnEngine(enemyAIService, combatService, characterService);
+        engine.setSeed(7L);
+        GameMap gameMap = new MapGenerator(4321L).generateMap(200, 200, 2000, 0);
+        Player player = gameMap.getPlayer();
+        int[] incremental = new int[gameMap.getEnemies().size()];
+        int[] rebuilt = new int[incremental.length];
+        int[][] steps = { {0, 1}, {0, -1}, {1, 0}, {-1, 0} };
+        Random random = new Random(3);
+
+        for (int turn = 0; turn < 150; turn++) {
+            int[] step = steps[random.nextInt(4)];
+            int x = player.getX() + step[0];
+            int y = player.getY() + step[1];
+            if (gameMap.isWalkable(x, y) && gameMap.getEnemyAt(x, y) == null) {
+                player.setPosition(x, y);
+            }
+            player.setHealth(player.getMaxHealth());
+            engine.processTurn(gameMap, player, null);
+            gameMap.removeDeadEnemies();
+
+            // Assert: lo scheduler aggiornato a ogni passo sceglie gli stessi nemici di uno nuovo.
+            int count = engine.getScheduler().schedule(gameMap, player, turn, incremental);
+            int expected = new EnemyScheduler().schedule(gameMap, player, turn, rebuilt);
+            assertEquals(expected, count);
+            assertArrayEquals(Arrays.copyOf(rebuilt, expected), Arrays.copyOf(incremental, count));
+        }
+    }
+
+    @Test
+    public void tieredTurn_IsIdenticalNearThePlayer() {
+        // Arrange: due copie dello stesso livello, una con le fasce e una senza.
+        GameMap tieredMap = new MapGenerator(99L).generateMap(150, 150, 800, 0);
+        GameMap fullMap = new MapGenerator(99L).generateMap(150, 150, 800, 0);
+        EnemyTurnEngine tiered = newEngine();
+        EnemyTurnEngine full = newEngine();
+        full.setTieredScheduling(false);
+        Player player = tieredMap.getPlayer();
+
+        // Act
+        tiered.processTurn(tieredMap, tieredMap.getPlayer(), null);
+        full.processTurn(fullMap, fullMap.getPlayer(), null);
+
+        // Assert: vicino al giocatore i nemici fanno esattamente le stesse mosse.
+        int compared = 0;
+        for (int slot = 0; slot < tieredMap.getEnemies().size(); slot++) {
+            Enemy enemy = tieredMap.getEnemies().get(slot);
+            int distance = Math.abs(enemy.getX() - player.getX()) + Math.abs(enemy.getY() - player.getY());
+            if (distance < EnemyScheduler.NEARBY_RADIUS - 2) {
+                assertEquals(fullMap.getEnemies().get(slot).getX(), enemy.getX());
+                assertEquals(fullMap.getEnemies().get(slot).getY(), enemy.getY());
+                compared++;
+            }
+        }
+        assertTrue(compared > 0);
+    }
+
+    private static EnemyTurnEngine newEngine() {
+        CharacterService characterService = new CharacterService();
+        CombatService combatService = new CombatService(characterService);
+        EnemyAIService enemyAIService = new EnemyAIService(combatService, characterService);
+        EnemyTurnEngine engine = new EnemyTurnEngine(enemyAIService, combatService, characterService);
+        engine.setSeed(5L);
+        return engine;
+    }
+}
@@ -0,0 +1,158 @@
+package com.github.matteoCarda.simplerougelike.service;
+
+import com.github.matteoCarda.simplerougelike.model.GameMap;
+import com.github.matteoCarda.simplerougelike.model.entity.Enemy;
+import com.github.matteoCarda.simplerougelike.model.entity.Player;
+import com.github.matteoCarda.simplerougelike.util.MapGenerator;
+
+import org.junit.Test;
+import squidpony.squidai.DijkstraMap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test del motore dei turni nemici a due fasi.
+ * Usa servizi reali e mappe generate con seme fisso.
+ */
+public class EnemyTurnEngineTest {
+
+    private static final long MAP_SEED = 1234L;
+    private static final long TURN_SEED = 99L;
+
+    /**
+     * Simula alcuni turni su una mappa con seme fisso e ritorna lo stato finale
+     * (posizioni dei nemici e salute del giocatore) come lista di interi.
+     */
+    private List<Integer> simulate(boolean parallel, int turns) {
+        CharacterService characterService = new CharacterService();
+        CombatService combatService = new CombatService(characterService);
+        EnemyAIService enemyAIService = new EnemyAIService(combatService, characterService);
+        EnemyTurnEngine engine = new EnemyTurnEngine(enemyAIService, combatService, characterService);
+        engine.setParallel(parallel);
+        engine.setSeed(TURN_SEED);
+
+        // Abbastanza nemici da far dividere la fase di decisione in più task.
+        GameMap gameMap = new MapGenerator(MAP_SEED).generateMap(80, 80, 600, 0);
+        Player player = gameMap.getPlayer();
+
+        for (int turn = 0; turn < turns; turn++) {
+            DijkstraMap dijkstraMap = enemyAIService.getDijkstraMapTo(gameMap, player.getX(), player.getY());
+            engine.processTurn(gameMap, player, dijkstraMap);
+        }
+
+        List<Integer> state = new ArrayList<>();
+        for (Enemy enemy : gameMap.getEnemies()) {
+            state.add(enemy.getX());
+            state.add(enemy.getY());
+        }
+        state.add((int) player.getHealth());
+        return state;
+    }
+
+    @Test
+    public void parallelTurns_AreReproducibleForSameSeed() {
+        // Act
+        List<Integer> first = simulate(true, 10);
+        List<Integer> second = simulate(true, 10);
+
+        // Assert
+        assertEquals(first, second);
+    }
+
+    @Test
+    public void parallelTurns_NeverStackEnemiesOnSameCell() {
+        // Arrange
+        CharacterService characterService = new CharacterService();
+        CombatService combatService = new CombatService(characterService);
+        EnemyAIService enemyAIService = new EnemyAIService(combatService, characterService);
+        EnemyTurnEngine engine = new EnemyTurnEngine(enemyAIService, combatService, characterService);
+        engine.setSeed(TURN_SEED);
+        GameMap gameMap = new MapGenerator(MAP_SEED).generateMap(40, 40, 150, 0);
+        Player player = gameMap.getPlayer();
+
+        // Act
+        for (int turn = 0; turn < 10; turn++) {
+            engine.processTurn(gameMap, player, enemyAIService.getDijkstraMapTo(gameMap, player.getX(), player.getY()));
+        }
+
+        // Assert
+        // Ogni nemico deve essere l'unico occupante registrato della propria cella.
+        for (Enemy enemy : gameMap.getEnemies()) {
+            assertSame(enemy, gameMap.getEnemyAt(enemy.getX(), enemy.getY()));
+            assertTrue(gameMap.getTile(enemy.getX(), enemy.getY()).isWalkable());
+        }
+    }
+
+    @Test
+    public void sequentialMode_UsesClassicTurns() {
+        // Arrange: il giocatore è adiacente a un nemico, che deve attaccarlo in entrambe le modalità.
+        CharacterService characterService = new CharacterService();
+        CombatService combatService = new CombatService(characterService);
+        EnemyAIService enemyAIService = new EnemyAIService(combatService, characterService);
+        EnemyTurnEngine engine = new EnemyTurnEngine(enemyAIService, combatService, characterService);
+        engine.setParallel(false);
+        GameMap gameMap = new MapGenerator(MAP_SEED).generateMap(10, 10, 1, 0);
+        Player player = gameMap.getPlayer();
+        Enemy enemy = gameMap.getEnemies().get(0);
+        player.setPosition(5, 5);
+        enemy.setPosition(5, 6);
+
+        // Act
+        engine.processTurn(gameMap, player, null);
+
+        // Assert
+        assertEquals(100.0 - enemy.getAttackPower(), player.getHealth(), 0.0);
+    }
+
+    @Test
+    public void enemySpeed_SetsHowManyTimesItActsPerTurn() {
+        // Arrange: un nemico veloce e uno lento, entrambi adiacenti al giocatore.
+        CharacterService characterService = new CharacterService();
+        CombatService combatService = new CombatService(characterService);
+        EnemyAIService enemyAIService = new EnemyAIService(combatService, characterService);
+        EnemyTurnEngine engine = new EnemyTurnEngine(enemyAIService, combatService, characterService);
+        GameMap gameMap = new MapGenerator(MAP_SEED).generateMap(10, 10, 2, 0);
+        Player player = gameMap.getPlayer();
+        Enemy fast = gameMap.getEnemies().get(0);
+        Enemy slow = gameMap.getEnemies().get(1);
+        player.setPosition(5, 5);
+        fast.setPosition(5, 6);
+        slow.setPosition(5, 4);
+        fast.setSpeed(2 * Enemy.NORMAL_SPEED);
+        slow.setSpeed(Enemy.NORMAL_SPEED / 2);
+        double attack = fast.getAttackPower();
+
+        // Act + Assert: nel primo turno il veloce attacca due volte e il lento nessuna...
+        engine.processTurn(gameMap, player, null);
+        assertEquals(100.0 - 2 * attack, player.getHealth(), 0.0);
+        assertEquals(EnergyScheduler.TICKS_PER_ACTION, engine.getTime());
+
+        // ...nel secondo attaccano entrambi.
+        engine.processTurn(gameMap, player, null);
+        assertEquals(100.0 - 5 * attack, player.getHealth(), 0.0);
+    }
+
+    @Test
+    public void fastPlayer_GetsTwoActionsPerEnemyAction() {
+        CharacterService characterService = new CharacterService();
+        CombatService combatService = new CombatService(characterService);
+        EnemyAIService enemyAIService = new EnemyAIService(combatService, characterService);
+        EnemyTurnEngine engine = new EnemyTurnEngine(enemyAIService, combatService, characterService);
+        GameMap gameMap = new MapGenerator(MAP_SEED).generateMap(10, 10, 1, 0);
+        Player player = gameMap.getPlayer();
+        player.setPosition(5, 5);
+        gameMap.getEnemies().get(0).setPosition(5, 6);
+        player.setSpeed(2 * Player.NORMAL_SPEED);
+
+        // Act: due turni del giocatore coprono un solo intervallo del nemico.
+        engine.processTurn(gameMap, player, null);
+        engine.processTurn(gameMap, player, null);
+
+        // Assert
+        assertEquals(100.0 - gameMap.getEnemies().get(0).getAttackPower(), player.getHealth(), 0.0);
+        assertEquals(EnergyScheduler.TICKS_PER_ACTION, engine.getTime());
+    }
+}
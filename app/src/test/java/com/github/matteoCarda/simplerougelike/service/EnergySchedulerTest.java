@@ -0,0 +1,94 @@
+package com.github.matteoCarda.simplerougelike.service;
+
+import com.github.matteoCarda.simplerougelike.model.entity.Character;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test della coda delle azioni ordinate per tempo.
+ */
+public class EnergySchedulerTest {
+
+    private static final long TURN = EnergyScheduler.actionDelay(Character.NORMAL_SPEED);
+
+    @Test
+    public void next_ReturnsActionsByTimeThenSlot_WithFastActorsActingMoreOften() {
+        EnergyScheduler scheduler = new EnergyScheduler();
+
+        // Act: una finestra di un turno normale, con un nemico veloce, uno normale e uno lento.
+        scheduler.begin(0, TURN, 3);
+        scheduler.add(2, Character.NORMAL_SPEED * 2);
+        scheduler.add(0, Character.NORMAL_SPEED);
+        scheduler.add(1, Character.NORMAL_SPEED / 2);
+        List<long[]> actions = drain(scheduler);
+
+        // Assert: il veloce agisce a metà turno e di nuovo a fine turno, insieme al normale; il lento mai.
+        assertEquals(3, actions.size());
+        assertArrayEquals(new long[] { TURN / 2, 2 }, actions.get(0));
+        assertArrayEquals(new long[] { TURN, 0 }, actions.get(1));
+        assertArrayEquals(new long[] { TURN, 2 }, actions.get(2));
+
+        // Nel turno successivo il lento recupera la sua azione.
+        scheduler.begin(TURN, 2 * TURN, 3);
+        scheduler.add(1, Character.NORMAL_SPEED / 2);
+        assertEquals(1, drain(scheduler).size());
+    }
+
+    @Test
+    public void actionCount_MatchesSpeed_OverManyTurns() {
+        EnergyScheduler scheduler = new EnergyScheduler();
+        int[] speeds = { 50, 100, 150, 200, 300 };
+        int[] counts = new int[speeds.length];
+
+        for (int turn = 0; turn < 12; turn++) {
+            scheduler.begin(turn * TURN, (turn + 1) * TURN, speeds.length);
+            for (int slot = 0; slot < speeds.length; slot++) {
+                scheduler.add(slot, speeds[slot]);
+            }
+            for (long[] action : drain(scheduler)) {
+                counts[(int) action[1]]++;
+            }
+        }
+
+        assertArrayEquals(new int[] { 6, 12, 18, 24, 36 }, counts);
+    }
+
+    @Test
+    public void heap_StaysOrdered_WithThousandsOfActors() {
+        EnergyScheduler scheduler = new EnergyScheduler();
+        Random random = new Random(11);
+        int actors = 5000;
+
+        scheduler.begin(1000, 1000 + TURN, actors);
+        for (int slot = 0; slot < actors; slot++) {
+            scheduler.add(slot, 40 + random.nextInt(300));
+        }
+        List<long[]> actions = drain(scheduler);
+
+        assertTrue(actions.size() >= actors / 3);
+        for (int i = 1; i < actions.size(); i++) {
+            long[] previous = actions.get(i - 1);
+            long[] current = actions.get(i);
+            assertTrue(previous[0] < current[0] || (previous[0] == current[0] && previous[1] < current[1]));
+            assertTrue(current[0] > 1000 && current[0] <= 1000 + TURN);
+        }
+    }
+
+    /**
+     * Estrae tutte le azioni della finestra come coppie (istante, slot).
+     */
+    private static List<long[]> drain(EnergyScheduler scheduler) {
+        List<long[]> actions = new ArrayList<>();
+        while (!scheduler.isEmpty()) {
+            long time = scheduler.peekTime();
+            actions.add(new long[] { time, scheduler.next() });
+        }
+        return actions;
+    }
+}
@@ -0,0 +1,154 @@
+package com.github.matteoCarda.simplerougelike.service;
+
+import com.github.matteoCarda.simplerougelike.model.GameMap;
+import com.github.matteoCarda.simplerougelike.util.MapGenerator;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import squidpony.squidgrid.FOV;
+
+public class FieldOfViewTest {
+
+    private static final int RADIUS = 8;
+
+    private GameMap gameMap;
+    private double[][] resistanceMap;
+    private FieldOfView fieldOfView;
+
+    @Before
+    public void setUp() {
+        gameMap = new MapGenerator(77L).generateMap(60, 40, 0, 0);
+        resistanceMap = new double[gameMap.getWidth()][gameMap.getHeight()];
+        for (int x = 0; x < gameMap.getWidth(); x++) {
+            for (int y = 0; y < gameMap.getHeight(); y++) {
+                resistanceMap[x][y] = gameMap.isWalkable(x, y) ? 0.0 : 1.0;
+            }
+        }
+        fieldOfView = new FieldOfView(gameMap, RADIUS);
+    }
+
+    @Test
+    public void update_MatchesSquidLibFov_OnEveryFloorCell() {
+        double[][] expected = new double[gameMap.getWidth()][gameMap.getHeight()];
+        for (int originX = 0; originX < gameMap.getWidth(); originX++) {
+            for (int originY = 0; originY < gameMap.getHeight(); originY++) {
+                if (!gameMap.isWalkable(originX, originY)) continue;
+
+                // Act
+                FOV.reuseFOV(resistanceMap, expected, originX, originY, RADIUS);
+                fieldOfView.update(originX, originY);
+
+                // Assert
+                for (int x = 0; x < gameMap.getWidth(); x++) {
+                    for (int y = 0; y < gameMap.getHeight(); y++) {
+                        Assert.assertEquals("Cella " + x + "," + y + " da " + originX + "," + originY,
+                                expected[x][y] > 0.0, fieldOfView.isVisible(x, y));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void update_SkipsRecomputation_WhenObserverDidNotMove() {
+        int[] origin = findFloorCell();
+
+        Assert.assertTrue(fieldOfView.update(origin[0], origin[1]));
+        Assert.assertTrue(fieldOfView.getChangedCount() > 0);
+
+        Assert.assertFalse(fieldOfView.update(origin[0], origin[1]));
+        Assert.assertEquals(0, fieldOfView.getChangedCount());
+
+        // Dopo un'invalidazione il calcolo viene rifatto, ma nessuna cella cambia.
+        fieldOfView.invalidate();
+        Assert.assertTrue(fieldOfView.update(origin[0], origin[1]));
+        Assert.assertEquals(0, fieldOfView.getChangedCount());
+    }
+
+    @Test
+    public void update_ReportsExactlyTheCellsWhoseVisibilityChanged() {
+        boolean[][] before = new boolean[gameMap.getWidth()][gameMap.getHeight()];
+        int[] origin = findFloorCell();
+        fieldOfView.update(origin[0], origin[1]);
+
+        // Percorre il livello cella per cella e confronta il resoconto con un confronto completo.
+        for (int x = 0; x < gameMap.getWidth(); x++) {
+            for (int y = 0; y < gameMap.getHeight(); y++) {
+                if (!gameMap.isWalkable(x, y)) continue;
+                snapshot(before);
+
+                fieldOfView.update(x, y);
+
+                Set<Integer> reported = new HashSet<>();
+                for (int i = 0; i < fieldOfView.getChangedCount(); i++) {
+                    Assert.assertTrue("Cella riportata due volte", reported.add(fieldOfView.getChangedX(i) * gameMap.getHeight() + fieldOfView.getChangedY(i)));
+                }
+                for (int cx = 0; cx < gameMap.getWidth(); cx++) {
+                    for (int cy = 0; cy < gameMap.getHeight(); cy++) {
+                        boolean changed = before[cx][cy] != fieldOfView.isVisible(cx, cy);
+                        Assert.assertEquals(changed, reported.contains(cx * gameMap.getHeight() + cy));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void light_IsFullAtOrigin_AndZeroOutsideRadius() {
+        int[] origin = findFloorCell();
+        fieldOfView.update(origin[0], origin[1]);
+
+        Assert.assertEquals(FieldOfView.MAX_LIGHT, fieldOfView.getLight(origin[0], origin[1]));
+        Assert.assertFalse(fieldOfView.isVisible(origin[0] + RADIUS + 1, origin[1]));
+        Assert.assertFalse(fieldOfView.isVisible(-1, -1));
+    }
+
+    @Test
+    public void copyTo_ProducesFullMapMatrix_AndClearsThePreviousWindow() {
+        double[][] out = new double[gameMap.getWidth()][gameMap.getHeight()];
+        int[] first = findFloorCell();
+        fieldOfView.update(first[0], first[1]);
+        fieldOfView.copyTo(out, 0, 0, false);
+        Assert.assertEquals(1.0, out[first[0]][first[1]], 0.0);
+
+        // Sposta l'osservatore lontano: la vecchia finestra va azzerata.
+        int[] second = findFarFloorCell(first);
+        fieldOfView.update(second[0], second[1]);
+        fieldOfView.copyTo(out, first[0], first[1], true);
+
+        Assert.assertEquals(0.0, out[first[0]][first[1]], 0.0);
+        for (int x = 0; x < gameMap.getWidth(); x++) {
+            for (int y = 0; y < gameMap.getHeight(); y++) {
+                Assert.assertEquals(fieldOfView.isVisible(x, y), out[x][y] > 0.0);
+            }
+        }
+    }
+
+    private void snapshot(boolean[][] out) {
+        for (int x = 0; x < gameMap.getWidth(); x++) {
+            for (int y = 0; y < gameMap.getHeight(); y++) {
+                out[x][y] = fieldOfView.isVisible(x, y);
+            }
+        }
+    }
+
+    private int[] findFloorCell() {
+        return new int[] { gameMap.getPlayer().getX(), gameMap.getPlayer().getY() };
+    }
+
+    private int[] findFarFloorCell(int[] from) {
+        for (int x = 0; x < gameMap.getWidth(); x++) {
+            for (int y = 0; y < gameMap.getHeight(); y++) {
+                if (gameMap.isWalkable(x, y) && Math.abs(x - from[0]) > 2 * RADIUS + 1) {
+                    return new int[] { x, y };
+                }
+            }
+        }
+        throw new AssertionError("Nessuna cella lontana nella mappa di test");
+    }
+}
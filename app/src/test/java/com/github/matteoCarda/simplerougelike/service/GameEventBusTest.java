@@ -0,0 +1,123 @@
+package com.github.matteoCarda.simplerougelike.service;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class GameEventBusTest {
+
+    @Test
+    public void drain_DeliversEventsInOrder_WithAllFields() {
+        GameEventBus bus = new GameEventBus(8);
+        GameEventBus.Subscription subscription = bus.subscribe();
+
+        // Act
+        bus.publish(GameEventBus.ATTACK, GameEventBus.ACTOR_PLAYER, 3, 10, 11, 7.5);
+        bus.publish(GameEventBus.MOVE, 3, -1, 12, 13, 0);
+        List<double[]> events = new ArrayList<>();
+        int delivered = subscription.drain((type, actor, target, x, y, value) ->
+                events.add(new double[] { type, actor, target, x, y, value }));
+
+        // Assert
+        Assert.assertEquals(2, delivered);
+        Assert.assertArrayEquals(new double[] { GameEventBus.ATTACK, GameEventBus.ACTOR_PLAYER, 3, 10, 11, 7.5 }, events.get(0), 0.0);
+        Assert.assertArrayEquals(new double[] { GameEventBus.MOVE, 3, -1, 12, 13, 0 }, events.get(1), 0.0);
+        // Una seconda lettura non consegna di nuovo gli stessi eventi.
+        Assert.assertEquals(0, subscription.drain((type, actor, target, x, y, value) -> Assert.fail()));
+    }
+
+    @Test
+    public void subscriptions_AreIndependent_AndStartFromNow() {
+        GameEventBus bus = new GameEventBus(8);
+        GameEventBus.Subscription early = bus.subscribe();
+        bus.publish(GameEventBus.DAMAGE, 1, 2, 0, 0, 20);
+        GameEventBus.Subscription late = bus.subscribe();
+        bus.publish(GameEventBus.DEATH, 1, 2, 0, 0, 0);
+
+        Assert.assertEquals(2, early.drain((type, actor, target, x, y, value) -> { }));
+        Assert.assertEquals(1, late.drain((type, actor, target, x, y, value) ->
+                Assert.assertEquals(GameEventBus.DEATH, type)));
+    }
+
+    @Test
+    public void drain_SkipsOverwrittenEvents_AndCountsThemAsLost() {
+        GameEventBus bus = new GameEventBus(5);
+        Assert.assertEquals(8, bus.getCapacity());
+        GameEventBus.Subscription subscription = bus.subscribe();
+
+        // Act: il consumatore resta indietro di molto più della capacità.
+        for (int i = 0; i < 20; i++) {
+            bus.publish(GameEventBus.MOVE, i, -1, i, i, 0);
+        }
+        List<Integer> actors = new ArrayList<>();
+        subscription.drain((type, actor, target, x, y, value) -> actors.add(actor));
+
+        // Assert: arrivano gli eventi più recenti, in ordine, e gli altri risultano persi.
+        Assert.assertEquals(20, actors.size() + subscription.getLostCount());
+        Assert.assertEquals(19, (int) actors.get(actors.size() - 1));
+        for (int i = 1; i < actors.size(); i++) {
+            Assert.assertEquals(actors.get(i - 1) + 1, (int) actors.get(i));
+        }
+    }
+
+    @Test
+    public void logicThreadConsumer_ReadsBeforeTheBufferWraps() {
+        GameEventBus bus = new GameEventBus(8);
+        GameEventBus.Subscription subscription = bus.subscribe();
+        List<Integer> actors = new ArrayList<>();
+        bus.setLogicThreadConsumer(() -> subscription.drain((type, actor, target, x, y, value) -> actors.add(actor)));
+
+        // Act: un solo "turno" pubblica molti più eventi della capacità.
+        for (int i = 0; i < 100; i++) {
+            bus.publish(GameEventBus.MOVE, i, -1, i, i, 0);
+        }
+        subscription.drain((type, actor, target, x, y, value) -> actors.add(actor));
+
+        // Assert: nessun evento perso, tutti in ordine.
+        Assert.assertEquals(0, subscription.getLostCount());
+        Assert.assertEquals(100, actors.size());
+        for (int i = 0; i < actors.size(); i++) {
+            Assert.assertEquals(i, (int) actors.get(i));
+        }
+    }
+
+    @Test
+    public void drain_FromAnotherThread_NeverSeesMixedSlots() throws InterruptedException {
+        GameEventBus bus = new GameEventBus(64);
+        GameEventBus.Subscription subscription = bus.subscribe();
+        int total = 200_000;
+        AtomicReference<String> error = new AtomicReference<>();
+
+        Thread consumer = new Thread(() -> {
+            long[] last = { -1 };
+            long[] seen = { 0 };
+            while (seen[0] + subscription.getLostCount() < total && error.get() == null) {
+                subscription.drain((type, actor, target, x, y, value) -> {
+                    // Tutti i campi di un evento vengono dallo stesso publish.
+                    if (actor != target || actor != x || actor != y || actor != (int) value) {
+                        error.compareAndSet(null, "Evento misto: " + actor + " " + target + " " + x + " " + y + " " + value);
+                    }
+                    if (actor <= last[0]) {
+                        error.compareAndSet(null, "Fuori ordine: " + last[0] + " poi " + actor);
+                    }
+                    last[0] = actor;
+                    seen[0]++;
+                });
+            }
+        });
+        consumer.start();
+
+        // Act: il thread della logica pubblica senza mai aspettare il consumatore.
+        for (int i = 0; i < total; i++) {
+            bus.publish(GameEventBus.MOVE, i, i, i, i, i);
+        }
+        consumer.join(10_000);
+
+        // Assert
+        Assert.assertFalse(consumer.isAlive());
+        Assert.assertNull(error.get());
+    }
+}
@@ -0,0 +1,185 @@
+package com.github.matteoCarda.simplerougelike.service;
+
+import com.github.matteoCarda.simplerougelike.model.GameMap;
+import com.github.matteoCarda.simplerougelike.model.entity.Enemy;
+import com.github.matteoCarda.simplerougelike.model.entity.Item;
+import com.github.matteoCarda.simplerougelike.model.entity.Player;
+import com.github.matteoCarda.simplerougelike.model.tile.Tile;
+import com.github.matteoCarda.simplerougelike.util.MapGenerator;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test del pathfinding gerarchico, confrontato con una BFS su tutta la griglia.
+ */
+public class HierarchicalPathfinderTest {
+
+    private static final int[] STEP_X = {0, 0, -1, 1};
+    private static final int[] STEP_Y = {-1, 1, 0, 0};
+
+    private static GameMap mapOf(byte[] cells, int width, int height) {
+        return new GameMap(cells, width, height, new Player(0, 0), new ArrayList<Enemy>(), new ArrayList<Item>());
+    }
+
+    private static byte[] openCells(int width, int height) {
+        byte[] cells = new byte[width * height];
+        Arrays.fill(cells, Tile.FLOOR);
+        return cells;
+    }
+
+    /**
+     * Lunghezza del percorso più breve con una BFS 4-connessa, o -1 se la destinazione non è raggiungibile.
+     */
+    private static int bfsDistance(GameMap gameMap, int startX, int startY, int goalX, int goalY) {
+        int height = gameMap.getHeight();
+        int[] dist = new int[gameMap.getWidth() * height];
+        Arrays.fill(dist, -1);
+        int[] queue = new int[dist.length];
+        int head = 0;
+        int tail = 0;
+        dist[startX * height + startY] = 0;
+        queue[tail++] = startX * height + startY;
+        while (head < tail) {
+            int cell = queue[head++];
+            int x = cell / height;
+            int y = cell % height;
+            if (x == goalX && y == goalY) return dist[cell];
+            for (int d = 0; d < STEP_X.length; d++) {
+                int nx = x + STEP_X[d];
+                int ny = y + STEP_Y[d];
+                if (!gameMap.isWalkable(nx, ny) || dist[nx * height + ny] >= 0) continue;
+                dist[nx * height + ny] = dist[cell] + 1;
+                queue[tail++] = nx * height + ny;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Controlla che il percorso parta accanto alla partenza, proceda a passi 4-connessi su celle calpestabili
+     * e finisca sulla destinazione.
+     */
+    private static void assertValidPath(GameMap gameMap, int[] path, int startX, int startY, int goalX, int goalY) {
+        int height = gameMap.getHeight();
+        int x = startX;
+        int y = startY;
+        for (int cell : path) {
+            int nx = cell / height;
+            int ny = cell % height;
+            assertEquals("passo non adiacente", 1, Math.abs(nx - x) + Math.abs(ny - y));
+            assertTrue("cella non calpestabile", gameMap.isWalkable(nx, ny));
+            x = nx;
+            y = ny;
+        }
+        assertEquals(goalX, x);
+        assertEquals(goalY, y);
+    }
+
+    @Test
+    public void findPath_OnGeneratedLevel_IsValidAndCloseToShortest() {
+        // Arrange
+        GameMap gameMap = new MapGenerator(11L).generateMap(160, 160, 0, 0);
+        HierarchicalPathfinder pathfinder = new HierarchicalPathfinder(gameMap);
+        Random random = new Random(3L);
+
+        // Act + Assert: coppie casuali di celle calpestabili.
+        int checked = 0;
+        while (checked < 60) {
+            int sx = random.nextInt(160), sy = random.nextInt(160), gx = random.nextInt(160), gy = random.nextInt(160);
+            if (!gameMap.isWalkable(sx, sy) || !gameMap.isWalkable(gx, gy)) continue;
+            int shortest = bfsDistance(gameMap, sx, sy, gx, gy);
+            int[] path = pathfinder.findPath(sx, sy, gx, gy);
+            if (shortest < 0) {
+                assertNull(path);
+            } else {
+                assertNotNull(path);
+                assertValidPath(gameMap, path, sx, sy, gx, gy);
+                // Passando dai portali il percorso può allungarsi, ma di poco.
+                assertTrue(path.length + " contro " + shortest, path.length <= shortest * 5 / 4 + HierarchicalPathfinder.CLUSTER_SIZE);
+            }
+            checked++;
+        }
+    }
+
+    @Test
+    public void findPath_OnOpenMap_IsNearlyShortest_AndBuildsOnlyClustersNearTheRoute() {
+        // Arrange: 1024 x 1024 celle tutte calpestabili, 4096 blocchi.
+        int side = 1024;
+        GameMap gameMap = mapOf(openCells(side, side), side, side);
+        HierarchicalPathfinder pathfinder = new HierarchicalPathfinder(gameMap);
+
+        // Act: un percorso lungo una riga.
+        int[] path = pathfinder.findPath(5, 100, 1000, 100);
+
+        // Assert: senza ostacoli è lungo quasi quanto la distanza di Manhattan (al più la deviazione verso
+        // i portali agli estremi delle entrate), e la ricerca resta vicina alla riga.
+        assertNotNull(path);
+        assertTrue(path.length >= 995 && path.length <= 995 + 2 * HierarchicalPathfinder.CLUSTER_SIZE);
+        assertValidPath(gameMap, path, 5, 100, 1000, 100);
+        assertTrue(pathfinder.getBuiltClusterCount() < side / HierarchicalPathfinder.CLUSTER_SIZE * 4);
+    }
+
+    @Test
+    public void findPath_InsideOneCluster_ReturnsTheShortestPath_AndEmptyForTheSameCell() {
+        GameMap gameMap = mapOf(openCells(64, 64), 64, 64);
+        HierarchicalPathfinder pathfinder = new HierarchicalPathfinder(gameMap);
+
+        int[] path = pathfinder.findPath(1, 1, 10, 12);
+
+        assertNotNull(path);
+        assertEquals(20, path.length);
+        assertValidPath(gameMap, path, 1, 1, 10, 12);
+        assertEquals(0, pathfinder.findPath(3, 3, 3, 3).length);
+    }
+
+    @Test
+    public void findPath_ToAWallOrAnEnclosedCell_ReturnsNull() {
+        // Arrange: una colonna di muri divide la mappa in due.
+        int side = 64;
+        byte[] cells = openCells(side, side);
+        for (int y = 0; y < side; y++) {
+            cells[40 * side + y] = Tile.WALL;
+        }
+        GameMap gameMap = mapOf(cells, side, side);
+        HierarchicalPathfinder pathfinder = new HierarchicalPathfinder(gameMap);
+
+        // Act + Assert
+        assertNull(pathfinder.findPath(2, 2, 40, 5));
+        assertNull(pathfinder.findPath(2, 2, 50, 5));
+        assertNotNull(pathfinder.findPath(2, 2, 39, 60));
+    }
+
+    @Test
+    public void invalidate_RebuildsOnlyTheClustersAroundTheChangedCells() {
+        // Arrange: mappa aperta, tutti i blocchi costruiti da un primo percorso da un angolo all'altro.
+        int side = 64;
+        byte[] cells = openCells(side, side);
+        GameMap gameMap = mapOf(cells, side, side);
+        HierarchicalPathfinder pathfinder = new HierarchicalPathfinder(gameMap);
+        assertEquals(2 * 63, pathfinder.findPath(0, 0, 63, 63).length);
+
+        // Act: un muro attraversa la mappa nella colonna 20 (interna ai blocchi di colonna 1), tranne un varco in y = 60.
+        for (int y = 0; y < side; y++) {
+            if (y != 60) cells[20 * side + y] = Tile.WALL;
+        }
+        int builtBefore = pathfinder.getBuiltClusterCount();
+        long buildsBefore = pathfinder.getBuildCount();
+        pathfinder.invalidate(20, 0, 20, side - 1);
+        int afterInvalidate = pathfinder.getBuiltClusterCount();
+        int[] path = pathfinder.findPath(0, 0, 63, 0);
+
+        // Assert: solo la colonna di blocchi toccata è stata scartata e ricostruita, e il percorso passa dal varco.
+        int column = side / HierarchicalPathfinder.CLUSTER_SIZE;
+        assertEquals(builtBefore - column, afterInvalidate);
+        assertTrue(pathfinder.getBuildCount() - buildsBefore <= column);
+        assertNotNull(path);
+        assertValidPath(gameMap, path, 0, 0, 63, 0);
+        assertEquals(bfsDistance(gameMap, 0, 0, 63, 0), path.length);
+    }
+}
@@ -4,10 +4,13 @@ import com.github.matteoCarda.simplerougelike.model.entity.Player;
 import com.github.matteoCarda.simplerougelike.model.entity.PotionItem;
 import org.junit.Before;
 import org.junit.Test;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.*;
 
 public class ItemServiceTest {
@@ -17,9 +20,11 @@ public class ItemServiceTest {
     @Mock
     private CharacterService mockCharacterService;
 
+    // Bus degli eventi reale: i test leggono gli eventi pubblicati.
+    private final GameEventBus eventBus = new GameEventBus(16);
+
     // --- Classe sotto test ---
-    // Crea un'istanza reale di ItemService e inietta il mockCharacterService.
-    @InjectMocks
+    // Istanza reale di ItemService, creata in setUp con il mockCharacterService.
     private ItemService itemService;
 
     // --- Oggetti di gioco ---
@@ -28,8 +33,9 @@ public class ItemServiceTest {
 
     @Before
     public void setUp() {
-        // Inizializza @Mock e @InjectMocks
+        // Inizializza @Mock
         MockitoAnnotations.openMocks(this);
+        itemService = new ItemService(mockCharacterService, eventBus);
 
         // Creiamo istanze reali per il giocatore e l'oggetto
         player = new Player(0, 0);
@@ -69,4 +75,24 @@ public class ItemServiceTest {
         // `never()` è l'opposto di `times(1)`.
         verify(mockCharacterService, never()).heal(any(Player.class), anyDouble());
     }
+
+    @Test
+    public void onPickup_PublishesPickupEvent_OnlyWhenTheItemIsTaken() {
+        // Arrange
+        GameEventBus.Subscription subscription = eventBus.subscribe();
+        when(mockCharacterService.takeItem(player, potion)).thenReturn(true).thenReturn(false);
+        List<int[]> events = new ArrayList<>();
+
+        // Act: la seconda raccolta fallisce (es. inventario pieno).
+        itemService.onPickup(potion, player);
+        itemService.onPickup(potion, player);
+        subscription.drain((type, actor, target, x, y, value) -> events.add(new int[] { type, actor, x, y }));
+
+        // Assert
+        assertEquals(1, events.size());
+        assertEquals(GameEventBus.PICKUP, events.get(0)[0]);
+        assertEquals(GameEventBus.ACTOR_PLAYER, events.get(0)[1]);
+        assertEquals(potion.getX(), events.get(0)[2]);
+        assertEquals(potion.getY(), events.get(0)[3]);
+    }
 }
@@ -0,0 +1,103 @@
+package com.github.matteoCarda.simplerougelike.service;
+
+import com.github.matteoCarda.simplerougelike.model.GameMap;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import squidpony.squidai.DijkstraMap;
+
+public class LevelPrefetchServiceTest {
+
+    private LevelPrefetchService prefetchService;
+
+    @Before
+    public void setUp() {
+        prefetchService = new LevelPrefetchService(2, 99L);
+    }
+
+    @After
+    public void tearDown() {
+        prefetchService.shutdown();
+    }
+
+    @Test
+    public void configure_PreparesLevelsInTheBackground_UpToCapacity() throws InterruptedException {
+        // Act
+        prefetchService.configure(40, 30, 5, 3);
+        awaitReady(2);
+
+        // Assert
+        LevelPrefetchService.PreparedLevel level = prefetchService.take();
+        Assert.assertEquals(40, level.getGameMap().getWidth());
+        Assert.assertEquals(30, level.getGameMap().getHeight());
+        Assert.assertEquals(5, level.getGameMap().getEnemies().size());
+        // Consegnato un livello, ne viene preparato un altro per tornare alla capacità.
+        awaitReady(2);
+    }
+
+    @Test
+    public void take_IsReproducible_ForTheSameSeed() {
+        LevelPrefetchService other = new LevelPrefetchService(2, 99L);
+        try {
+            prefetchService.configure(30, 30, 2, 2);
+            other.configure(30, 30, 2, 2);
+
+            for (int i = 0; i < 3; i++) {
+                GameMap first = prefetchService.take().getGameMap();
+                GameMap second = other.take().getGameMap();
+                Assert.assertEquals(first.getPlayer().getX(), second.getPlayer().getX());
+                Assert.assertEquals(first.getPlayer().getY(), second.getPlayer().getY());
+            }
+        } finally {
+            other.shutdown();
+        }
+    }
+
+    @Test
+    public void configure_WithNewParameters_DiscardsQueuedLevels() throws InterruptedException {
+        prefetchService.configure(30, 30, 2, 2);
+        awaitReady(2);
+
+        // Act
+        prefetchService.configure(50, 20, 4, 1);
+        LevelPrefetchService.PreparedLevel level = prefetchService.take();
+
+        // Assert
+        Assert.assertEquals(50, level.getGameMap().getWidth());
+        Assert.assertEquals(20, level.getGameMap().getHeight());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void take_Throws_WhenNotConfigured() {
+        prefetchService.take();
+    }
+
+    @Test
+    public void preparedPathing_IsAdoptedWithoutRebuildingTheDijkstraMap() {
+        prefetchService.configure(30, 30, 2, 2);
+        LevelPrefetchService.PreparedLevel level = prefetchService.take();
+        GameMap gameMap = level.getGameMap();
+        EnemyAIService enemyAIService = new EnemyAIService(new CombatService(new CharacterService()), new CharacterService());
+
+        // Act
+        enemyAIService.usePathing(level.getPathing());
+        DijkstraMap first = enemyAIService.getDijkstraMapTo(gameMap, gameMap.getPlayer().getX(), gameMap.getPlayer().getY());
+        DijkstraMap second = enemyAIService.getDijkstraMap(gameMap);
+
+        // Assert
+        Assert.assertSame(level.getPathing().getDijkstraMap(), first);
+        Assert.assertSame(first, second);
+        Assert.assertEquals(0.0, first.gradientMap[gameMap.getPlayer().getX()][gameMap.getPlayer().getY()], 0.0);
+    }
+
+    private void awaitReady(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (prefetchService.getReadyCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        Assert.assertEquals(count, prefetchService.getReadyCount());
+    }
+}
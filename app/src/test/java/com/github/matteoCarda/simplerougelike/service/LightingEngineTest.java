@@ -0,0 +1,196 @@
+package com.github.matteoCarda.simplerougelike.service;
+
+import com.github.matteoCarda.simplerougelike.model.ChunkedTerrain;
+import com.github.matteoCarda.simplerougelike.model.GameMap;
+import com.github.matteoCarda.simplerougelike.model.entity.Enemy;
+import com.github.matteoCarda.simplerougelike.model.entity.Item;
+import com.github.matteoCarda.simplerougelike.model.entity.Player;
+import com.github.matteoCarda.simplerougelike.model.entity.PotionItem;
+import com.github.matteoCarda.simplerougelike.model.tile.Tile;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Test dell'illuminazione a più sorgenti: ombre dei muri, composizione, ricalcolo pigro e torce.
+ */
+public class LightingEngineTest {
+
+    private static final int SIDE = 100;
+    private static final int WALL_X = 18;
+
+    private GameMap gameMap;
+    private LightingEngine lighting;
+
+    /**
+     * Stanza 100 x 100 con un muro verticale in x = 18, da y = 10 a y = 20.
+     */
+    @Before
+    public void setUp() {
+        byte[] cells = new byte[SIDE * SIDE];
+        Arrays.fill(cells, Tile.FLOOR);
+        for (int y = 10; y <= 20; y++) {
+            cells[WALL_X * SIDE + y] = Tile.WALL;
+        }
+        gameMap = new GameMap(cells, SIDE, SIDE, new Player(50, 50), new ArrayList<Enemy>(), new ArrayList<Item>());
+        lighting = new LightingEngine(gameMap);
+    }
+
+    @Test
+    public void update_WallsCastShadows_AndLightsAdd() {
+        // Arrange: due luci vicine al muro, dallo stesso lato.
+        lighting.addLight(15, 15, 6, 200);
+        lighting.addLight(15, 12, 6, 100);
+
+        // Act
+        int computed = lighting.update(10, 10, 20, 20);
+
+        // Assert: il centro somma le due luci, oltre il muro è buio.
+        Assert.assertEquals(2, computed);
+        Assert.assertTrue(lighting.getLight(15, 15) > 200);
+        Assert.assertTrue(lighting.getLight(17, 15) > 0);
+        Assert.assertEquals(0, lighting.getLight(19, 15));
+        Assert.assertTrue(lighting.getLight(15, 15) <= LightingEngine.MAX_LIGHT);
+    }
+
+    @Test
+    public void removeLight_SubtractsItsLight() {
+        int id = lighting.addLight(15, 15, 6, 200);
+        lighting.update(10, 10, 20, 20);
+
+        lighting.removeLight(id);
+
+        Assert.assertEquals(0, lighting.getLight(15, 15));
+        Assert.assertEquals(0, lighting.getLightCount());
+    }
+
+    @Test
+    public void update_ComputesOnlyPendingLightsNearTheArea() {
+        // Arrange: una luce vicina e una lontana dalla zona richiesta.
+        lighting.addLight(15, 15, 6, 200);
+        lighting.addLight(80, 80, 6, 200);
+
+        // Act + Assert: solo quella vicina viene calcolata, e una volta sola.
+        Assert.assertEquals(1, lighting.update(10, 10, 20, 20));
+        Assert.assertEquals(0, lighting.update(10, 10, 20, 20));
+        Assert.assertEquals(0, lighting.getLight(80, 80));
+        Assert.assertEquals(1, lighting.update(75, 75, 85, 85));
+        Assert.assertTrue(lighting.getLight(80, 80) > 0);
+        Assert.assertEquals(2, lighting.getRecomputedCount());
+    }
+
+    @Test
+    public void moveLight_RecomputesAtTheNewPosition() {
+        int id = lighting.addLight(15, 15, 6, 200);
+        lighting.update(10, 10, 30, 30);
+
+        lighting.moveLight(id, 25, 15);
+
+        // La luce vecchia è tolta subito, quella nuova arriva con il prossimo update.
+        Assert.assertEquals(0, lighting.getLight(15, 15));
+        Assert.assertEquals(1, lighting.update(10, 10, 30, 30));
+        Assert.assertEquals(200, lighting.getLight(25, 15));
+        Assert.assertEquals(0, lighting.getLight(15, 15));
+    }
+
+    @Test
+    public void itemLights_FollowTheItemsOnTheMap() {
+        PotionItem potion = new PotionItem(40, 40);
+        gameMap.addItem(potion);
+
+        lighting.addItemLight(potion);
+        lighting.update(35, 35, 45, 45);
+        Assert.assertEquals(LightingEngine.ITEM_LIGHT_INTENSITY, lighting.getLight(40, 40));
+
+        lighting.removeItemLight(potion);
+        Assert.assertEquals(0, lighting.getLight(40, 40));
+    }
+
+    @Test
+    public void blocks_FollowTheLights_EvenInHugeWorlds() {
+        // Arrange: un mondo a blocchi grande quanto il massimo, tutto pavimento.
+        ChunkedTerrain terrain = new ChunkedTerrain(ChunkedTerrain.MAX_SIDE, ChunkedTerrain.MAX_SIDE, 1, (chunkX, chunkY) -> {
+            byte[] cells = new byte[ChunkedTerrain.CHUNK_SIZE * ChunkedTerrain.CHUNK_SIZE];
+            Arrays.fill(cells, Tile.FLOOR);
+            return cells;
+        });
+        GameMap world = new GameMap(terrain, new Player(20000, 20000), new ArrayList<Enemy>(), new ArrayList<Item>());
+        LightingEngine worldLighting = new LightingEngine(world);
+        Assert.assertEquals(0, worldLighting.placeTorches(1L));
+        Assert.assertEquals(0, worldLighting.getBlockCount());
+
+        // Act: una luce a cavallo di quattro blocchi, poi spostata lontano e infine tolta.
+        int id = worldLighting.addLight(20000, 20000, 6, 200);
+        worldLighting.update(19990, 19990, 20010, 20010);
+        int blocksAtStart = worldLighting.getBlockCount();
+        worldLighting.moveLight(id, 30000, 30000);
+        worldLighting.update(29990, 29990, 30010, 30010);
+
+        // Assert: esistono solo i blocchi che la luce raggiunge, e nessuno dopo averla tolta.
+        Assert.assertEquals(4, blocksAtStart);
+        Assert.assertEquals(1, worldLighting.getBlockCount());
+        Assert.assertEquals(0, worldLighting.getLight(20000, 20000));
+        Assert.assertEquals(200, worldLighting.getLight(30000, 30000));
+        worldLighting.removeLight(id);
+        Assert.assertEquals(0, worldLighting.getBlockCount());
+        Assert.assertEquals(0, worldLighting.getLight(30000, 30000));
+    }
+
+    @Test
+    public void placeRoomLights_LightsRooms_ButNotCorridors() {
+        // Arrange: 48 x 48 di muro con una stanza 30 x 46 e, a destra, un corridoio largo una cella in y = 24.
+        int side = 48;
+        byte[] cells = new byte[side * side];
+        Arrays.fill(cells, Tile.WALL);
+        for (int x = 1; x <= 30; x++) {
+            for (int y = 1; y <= 46; y++) {
+                cells[x * side + y] = Tile.FLOOR;
+            }
+        }
+        for (int x = 31; x <= 46; x++) {
+            cells[x * side + 24] = Tile.FLOOR;
+        }
+        GameMap rooms = new GameMap(cells, side, side, new Player(5, 5), new ArrayList<Enemy>(), new ArrayList<Item>());
+        LightingEngine roomLighting = new LightingEngine(rooms);
+
+        // Act
+        int placed = roomLighting.placeRoomLights(7L);
+        roomLighting.update(0, 0, side - 1, side - 1);
+
+        // Assert: stesso seme, stesse stanze; la luce resta nella stanza e non arriva in fondo al corridoio.
+        Assert.assertTrue(placed > 0);
+        Assert.assertEquals(placed, new LightingEngine(rooms).placeRoomLights(7L));
+        Assert.assertEquals(placed, roomLighting.getLightCount());
+        Assert.assertEquals(0, roomLighting.getLight(46, 24));
+        Assert.assertEquals(0, roomLighting.getLight(40, 10));
+        int litCells = 0;
+        for (int x = 1; x <= 30; x++) {
+            for (int y = 1; y <= 46; y++) {
+                if (roomLighting.getLight(x, y) > 0) litCells++;
+            }
+        }
+        Assert.assertTrue(litCells > 0);
+    }
+
+    @Test
+    public void placeTorches_IsDeterministic_AndOnlyNextToWalls() {
+        LightingEngine other = new LightingEngine(gameMap);
+
+        int placed = lighting.placeTorches(42L);
+
+        // Assert: stesso seme, stesse torce; nella stanza aperta possono stare solo lungo il muro e i bordi.
+        Assert.assertEquals(placed, other.placeTorches(42L));
+        lighting.update(0, 0, SIDE - 1, SIDE - 1);
+        other.update(0, 0, SIDE - 1, SIDE - 1);
+        for (int x = 0; x < SIDE; x++) {
+            for (int y = 0; y < SIDE; y++) {
+                Assert.assertEquals(lighting.getLight(x, y), other.getLight(x, y));
+            }
+        }
+        Assert.assertTrue(placed > 0);
+    }
+}
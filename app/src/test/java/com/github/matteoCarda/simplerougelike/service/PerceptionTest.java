@@ -0,0 +1,154 @@
+package com.github.matteoCarda.simplerougelike.service;
+
+import com.github.matteoCarda.simplerougelike.model.GameMap;
+import com.github.matteoCarda.simplerougelike.model.entity.Enemy;
+import com.github.matteoCarda.simplerougelike.model.entity.Item;
+import com.github.matteoCarda.simplerougelike.model.entity.Player;
+import com.github.matteoCarda.simplerougelike.model.tile.Tile;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import squidpony.squidai.DijkstraMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Test della percezione dei nemici: visibilità attraverso il campo visivo del giocatore e ricordo dell'ultima posizione.
+ */
+public class PerceptionTest {
+
+    private static final int SIDE = 40;
+    private static final int WALL_X = 18;
+
+    private GameMap gameMap;
+    private Player player;
+    private FieldOfView fieldOfView;
+    private Perception perception;
+    private EnemyAIService enemyAIService;
+
+    // Nemici: dietro il muro, allo scoperto, lontano con vista lunga, lontano con vista normale.
+    private Enemy hidden;
+    private Enemy inSight;
+    private Enemy farSighted;
+    private Enemy farNormal;
+
+    /**
+     * Stanza 40 x 40 con il giocatore in (15,15) e un muro verticale in x = 18, da y = 10 a y = 20.
+     */
+    @Before
+    public void setUp() {
+        byte[] cells = new byte[SIDE * SIDE];
+        Arrays.fill(cells, Tile.FLOOR);
+        for (int y = 10; y <= 20; y++) {
+            cells[WALL_X * SIDE + y] = Tile.WALL;
+        }
+        hidden = new Enemy(20, 15);
+        inSight = new Enemy(15, 19);
+        farSighted = new Enemy(15, 27);
+        farSighted.setSightRadius(14);
+        farNormal = new Enemy(3, 15);
+        List<Enemy> enemies = new ArrayList<>(Arrays.asList(hidden, inSight, farSighted, farNormal));
+        player = new Player(15, 15);
+        gameMap = new GameMap(cells, SIDE, SIDE, player, enemies, new ArrayList<Item>());
+
+        fieldOfView = new FieldOfView(gameMap, 8);
+        fieldOfView.update(player.getX(), player.getY());
+        perception = new Perception(gameMap, fieldOfView);
+        CharacterService characterService = new CharacterService();
+        enemyAIService = new EnemyAIService(new CombatService(characterService), characterService);
+    }
+
+    @Test
+    public void canSeePlayer_UsesThePlayerViewAndEachSightRadius() {
+        // Il muro nasconde il nemico vicino; la distanza conta solo entro il raggio visivo di ognuno.
+        Assert.assertFalse(perception.canSeePlayer(hidden));
+        Assert.assertTrue(perception.canSeePlayer(inSight));
+        Assert.assertTrue(perception.canSeePlayer(farSighted));
+        Assert.assertFalse(perception.canSeePlayer(farNormal));
+
+        // Il batch aggiorna il ricordo solo di chi vede il giocatore.
+        Enemy[] batch = {hidden, inSight, farSighted, farNormal};
+        Assert.assertEquals(2, perception.perceive(batch, batch.length, player));
+        Assert.assertEquals(0, hidden.getMemory());
+        Assert.assertEquals(Perception.MEMORY_ACTIONS, inSight.getMemory());
+        Assert.assertEquals(15, inSight.getLastSeenX());
+        Assert.assertEquals(15, inSight.getLastSeenY());
+    }
+
+    @Test
+    public void decideIntent_DoesNotChaseThroughWalls_WithPerception() {
+        // Arrange: la mappa di Dijkstra c'è, e il nemico dietro il muro è nel raggio di aggro.
+        enemyAIService.setBoundedScan(false);
+        DijkstraMap dijkstraMap = enemyAIService.getDijkstraMapTo(gameMap, player.getX(), player.getY());
+        int chase = enemyAIService.decideIntent(hidden, gameMap, player, dijkstraMap, 0L);
+
+        // Act
+        enemyAIService.setPerception(perception);
+        enemyAIService.perceive(new Enemy[] {hidden}, 1, player);
+        int intent = enemyAIService.decideIntent(hidden, gameMap, player, dijkstraMap, 0L);
+
+        // Assert: senza percezione insegue lungo il gradiente; con la percezione non sa dove sia il giocatore
+        // e i bit casuali a zero lo spostano in diagonale, in (19,14).
+        Assert.assertEquals(20 * SIDE + 14, chase);
+        Assert.assertEquals(19 * SIDE + 14, intent);
+    }
+
+    @Test
+    public void needsDijkstraMap_CoversAnEnemyThatSeesThePlayerDiagonally() {
+        // Arrange: stanza 30 x 30 con il giocatore in (10,10) e il nemico in (15,15), a distanza euclidea 7
+        // ma di Manhattan 10. I due passi diretti verso il giocatore, (14,15) e (15,14), sono muri.
+        int side = 30;
+        byte[] cells = new byte[side * side];
+        Arrays.fill(cells, Tile.FLOOR);
+        cells[14 * side + 15] = Tile.WALL;
+        cells[15 * side + 14] = Tile.WALL;
+        Player watched = new Player(10, 10);
+        Enemy watcher = new Enemy(15, 15);
+        GameMap room = new GameMap(cells, side, side, watched, new ArrayList<>(Arrays.asList(watcher)), new ArrayList<Item>());
+        FieldOfView view = new FieldOfView(room, 8);
+        view.update(watched.getX(), watched.getY());
+        Perception roomPerception = new Perception(room, view);
+        enemyAIService.setPerception(roomPerception);
+
+        // Act
+        boolean needed = enemyAIService.needsDijkstraMap(room, watched);
+        DijkstraMap dijkstraMap = enemyAIService.getDijkstraMapTo(room, watched.getX(), watched.getY());
+        enemyAIService.perceive(new Enemy[] {watcher}, 1, watched);
+        int intent = enemyAIService.decideIntent(watcher, room, watched, dijkstraMap, 0L);
+
+        // Assert: il nemico è fuori dal raggio di aggro ma vede il giocatore, quindi la mappa serve e lo copre;
+        // il gradiente gli fa aggirare i muri invece di fermarlo contro di essi.
+        Assert.assertFalse(enemyAIService.isAnyEnemyInAggroRange(room, watched));
+        Assert.assertTrue(roomPerception.canSeePlayer(watcher));
+        Assert.assertTrue(needed);
+        Assert.assertEquals(12.0, dijkstraMap.gradientMap[15][15], 0.0);
+        Assert.assertTrue(intent == 16 * side + 15 || intent == 15 * side + 16);
+    }
+
+    @Test
+    public void perceive_RemembersTheLastSeenPosition_UntilTheEnemyGetsThere() {
+        // Arrange: il nemico vede il giocatore, poi il giocatore va dietro il muro.
+        enemyAIService.setPerception(perception);
+        Enemy[] batch = {inSight};
+        enemyAIService.perceive(batch, 1, player);
+        player.setPosition(25, 15);
+        fieldOfView.update(player.getX(), player.getY());
+
+        // Act
+        enemyAIService.perceive(batch, 1, player);
+        int intent = enemyAIService.decideIntent(inSight, gameMap, player, null, 0L);
+
+        // Assert: il ricordo si consuma, e il nemico va in linea retta verso (15,15) invece di vagare.
+        Assert.assertFalse(perception.canSeePlayer(inSight));
+        Assert.assertEquals(Perception.MEMORY_ACTIONS - 1, inSight.getMemory());
+        Assert.assertEquals(15 * SIDE + 18, intent);
+
+        // Arrivato sulla posizione ricordata senza trovare il giocatore, la dimentica.
+        inSight.setPosition(15, 15);
+        enemyAIService.perceive(batch, 1, player);
+        Assert.assertEquals(0, inSight.getMemory());
+    }
+}
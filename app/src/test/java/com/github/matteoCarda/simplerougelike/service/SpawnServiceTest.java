@@ -0,0 +1,156 @@
+package com.github.matteoCarda.simplerougelike.service;
+
+import com.github.matteoCarda.simplerougelike.model.GameMap;
+import com.github.matteoCarda.simplerougelike.model.entity.Enemy;
+import com.github.matteoCarda.simplerougelike.model.entity.Item;
+import com.github.matteoCarda.simplerougelike.model.entity.Player;
+import com.github.matteoCarda.simplerougelike.model.entity.PotionItem;
+import com.github.matteoCarda.simplerougelike.model.tile.Tile;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test delle comparse a ondate e del riuso delle istanze dai pool.
+ */
+public class SpawnServiceTest {
+
+    private static final long SEED = 99L;
+
+    /**
+     * Mappa 60 x 60 tutta calpestabile con il giocatore al centro.
+     */
+    private static GameMap openMap(List<Enemy> enemies, List<Item> items) {
+        byte[] cells = new byte[60 * 60];
+        Arrays.fill(cells, Tile.FLOOR);
+        return new GameMap(cells, 60, 60, new Player(30, 30), enemies, items);
+    }
+
+    private static FieldOfView fovOf(GameMap gameMap) {
+        FieldOfView fieldOfView = new FieldOfView(gameMap, 8);
+        fieldOfView.update(gameMap.getPlayer().getX(), gameMap.getPlayer().getY());
+        return fieldOfView;
+    }
+
+    @Test
+    public void spawn_SpreadsWavesOverTheBudget_AndRespectsCapDistanceAndFov() {
+        // Arrange: un'ondata da 5 ogni 10 turni, al più 2 per turno e 4 nemici in tutto.
+        GameMap gameMap = openMap(new ArrayList<Enemy>(), new ArrayList<Item>());
+        FieldOfView fieldOfView = fovOf(gameMap);
+        SpawnService spawnService = new SpawnService();
+        spawnService.setRules(SpawnRules.NONE.withEnemyWaves(10, 5, 4).withBudget(2).withDistance(5, 12));
+
+        // Act
+        int[] spawnedPerTurn = new int[30];
+        for (int turn = 0; turn < spawnedPerTurn.length; turn++) {
+            spawnedPerTurn[turn] = spawnService.spawn(gameMap, fieldOfView, turn, SEED);
+        }
+
+        // Assert: l'ondata parte dopo 10 turni (turno 9) e si ferma al limite; nulla prima.
+        assertEquals(0, spawnedPerTurn[8]);
+        assertEquals(2, spawnedPerTurn[9]);
+        assertEquals(2, spawnedPerTurn[10]);
+        assertEquals(0, spawnedPerTurn[11]);
+        assertEquals(0, spawnedPerTurn[19]);
+        assertEquals(4, gameMap.getEnemies().size());
+        Player player = gameMap.getPlayer();
+        for (Enemy enemy : gameMap.getEnemies()) {
+            int distance = Math.abs(enemy.getX() - player.getX()) + Math.abs(enemy.getY() - player.getY());
+            assertTrue("distanza " + distance, distance >= 5 && distance <= 12);
+            assertFalse(fieldOfView.isVisible(enemy.getX(), enemy.getY()));
+            assertEquals(Enemy.BASE_HEALTH, enemy.getHealth(), 0.0);
+        }
+    }
+
+    @Test
+    public void removeDeadEnemies_RecyclesThem_AndTheNextWaveReusesTheInstances() {
+        // Arrange: due nemici, uno morto.
+        List<Enemy> enemies = new ArrayList<>();
+        Enemy dead = new Enemy(31, 30);
+        enemies.add(dead);
+        enemies.add(new Enemy(40, 40));
+        GameMap gameMap = openMap(enemies, new ArrayList<Item>());
+        dead.setHealth(0);
+        dead.setAttackPower(50);
+        SpawnService spawnService = new SpawnService();
+        spawnService.setRules(SpawnRules.NONE.withEnemyWaves(1, 1, 2));
+
+        // Act
+        int removed = spawnService.removeDeadEnemies(gameMap);
+        int spawned = spawnService.spawn(gameMap, fovOf(gameMap), 0, SEED);
+
+        // Assert: il nemico morto torna sulla mappa come nuovo, senza creare istanze.
+        assertEquals(1, removed);
+        assertEquals(1, spawned);
+        assertEquals(2, gameMap.getEnemies().size());
+        assertTrue(gameMap.getEnemies().contains(dead));
+        assertEquals(Enemy.BASE_HEALTH, dead.getHealth(), 0.0);
+        assertEquals(Enemy.BASE_ATTACK_POWER, dead.getAttackPower(), 0.0);
+        assertSame(dead, gameMap.getEnemyAt(dead.getX(), dead.getY()));
+        assertEquals(0, spawnService.getEnemyPool().getCreatedCount());
+        assertEquals(1, spawnService.getEnemyPool().getReusedCount());
+    }
+
+    @Test
+    public void retire_ReturnsEnemiesAndItemsToThePools_ForTheNextLevel() {
+        // Arrange: un livello con un nemico e una pozione, abbandonato.
+        List<Enemy> enemies = new ArrayList<>();
+        enemies.add(new Enemy(10, 10));
+        List<Item> items = new ArrayList<>();
+        PotionItem potion = new PotionItem(12, 12);
+        items.add(potion);
+        GameMap oldLevel = openMap(enemies, items);
+        SpawnService spawnService = new SpawnService();
+        spawnService.retire(oldLevel);
+
+        // Act: nel livello nuovo compare una pozione.
+        GameMap newLevel = openMap(new ArrayList<Enemy>(), new ArrayList<Item>());
+        spawnService.setRules(SpawnRules.NONE.withItems(1, 1));
+        spawnService.spawn(newLevel, fovOf(newLevel), 0, SEED);
+
+        // Assert
+        assertTrue(oldLevel.getEnemies().isEmpty());
+        assertTrue(oldLevel.getItems().isEmpty());
+        assertNull(oldLevel.getItemAt(12, 12));
+        assertEquals(1, spawnService.getEnemyPool().getFreeCount());
+        assertEquals(1, newLevel.getItems().size());
+        assertSame(potion, newLevel.getItems().get(0));
+        assertSame(potion, newLevel.getItemAt(potion.getX(), potion.getY()));
+        assertEquals(0, spawnService.getItemPool().getCreatedCount());
+    }
+
+    @Test
+    public void spawn_IsDeterministic_ForTheSameSeedAndTurns() {
+        int[] first = spawnPositions();
+        int[] second = spawnPositions();
+
+        assertTrue(first.length > 0);
+        assertArrayEquals(first, second);
+    }
+
+    private static int[] spawnPositions() {
+        GameMap gameMap = openMap(new ArrayList<Enemy>(), new ArrayList<Item>());
+        FieldOfView fieldOfView = fovOf(gameMap);
+        SpawnService spawnService = new SpawnService();
+        spawnService.setRules(SpawnRules.NONE.withEnemyWaves(3, 2, 10).withItems(4, 3));
+        for (int turn = 0; turn < 20; turn++) {
+            spawnService.spawn(gameMap, fieldOfView, turn, SEED);
+        }
+        int[] positions = new int[2 * (gameMap.getEnemies().size() + gameMap.getItems().size())];
+        int i = 0;
+        for (Enemy enemy : gameMap.getEnemies()) {
+            positions[i++] = enemy.getX();
+            positions[i++] = enemy.getY();
+        }
+        for (Item item : gameMap.getItems()) {
+            positions[i++] = item.getX();
+            positions[i++] = item.getY();
+        }
+        return positions;
+    }
+}
@@ -0,0 +1,57 @@
+package com.github.matteoCarda.simplerougelike.util;
+
+import com.github.matteoCarda.simplerougelike.service.GameEventBus;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class EventFileSinkTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void drain_WritesOnlyFullBlocks_AndCloseWritesTheRest() throws Exception {
+        Path file = folder.newFile("events.bin").toPath();
+        GameEventBus bus = new GameEventBus(256);
+        int header = 8;
+
+        try (EventFileSink sink = EventFileSink.open(bus, file)) {
+            // Act: pochi eventi restano nel buffer, senza I/O.
+            bus.publish(GameEventBus.ATTACK, GameEventBus.ACTOR_PLAYER, 7, 3, 4, 10);
+            bus.publish(GameEventBus.DEATH, 7, GameEventBus.ACTOR_PLAYER, 3, 4, 0);
+            Assert.assertEquals(2, sink.drain());
+            Assert.assertEquals(0, Files.size(file));
+
+            // Molti eventi riempiono il buffer, che viene scritto a blocchi.
+            for (int i = 0; i < 4000; i++) {
+                bus.publish(GameEventBus.MOVE, i, -1, i, i, 0);
+                if (i % 100 == 0) sink.drain();
+            }
+            sink.drain();
+            Assert.assertTrue(Files.size(file) > 0);
+            Assert.assertEquals(0, sink.getLostCount());
+        }
+
+        // Assert: alla chiusura il file contiene l'intestazione e tutti gli eventi, in ordine.
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file));
+        Assert.assertEquals(header + 4002L * EventFileSink.RECORD_BYTES, data.limit());
+        Assert.assertEquals(EventFileSink.MAGIC, data.getInt(0));
+        data.position(header);
+        Assert.assertEquals(GameEventBus.ATTACK, data.get());
+        Assert.assertEquals(GameEventBus.ACTOR_PLAYER, data.getInt());
+        Assert.assertEquals(7, data.getInt());
+        Assert.assertEquals(3, data.getInt());
+        Assert.assertEquals(4, data.getInt());
+        Assert.assertEquals(10.0, data.getDouble(), 0.0);
+        int lastRecord = data.limit() - EventFileSink.RECORD_BYTES;
+        Assert.assertEquals(GameEventBus.MOVE, data.get(lastRecord));
+        Assert.assertEquals(3999, data.getInt(lastRecord + 1));
+    }
+}
@@ -0,0 +1,66 @@
+package com.github.matteoCarda.simplerougelike.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void getPercentile_IsWithinTheBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        // Act: durate da 1 a 10000 microsecondi, distribuite uniformemente.
+        for (long micros = 1; micros <= 10_000; micros++) {
+            histogram.record(micros * 1_000);
+        }
+
+        // Assert
+        Assert.assertEquals(10_000, histogram.getCount());
+        Assert.assertEquals(10_000_000L, histogram.getMax());
+        Assert.assertEquals(5_000_500.0, histogram.getMean(), 1.0);
+        assertClose(5_000_000, histogram.getPercentile(50));
+        assertClose(9_900_000, histogram.getPercentile(99));
+        Assert.assertEquals(histogram.getMax(), histogram.getPercentile(100));
+    }
+
+    @Test
+    public void getPercentile_NeverExceedsTheMax() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1_000_001);
+
+        Assert.assertEquals(1_000_001, histogram.getPercentile(50));
+        Assert.assertEquals(1_000_001, histogram.getPercentile(99));
+    }
+
+    @Test
+    public void reset_ClearsEverything() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(42);
+        histogram.record(-5);
+
+        histogram.reset();
+
+        Assert.assertEquals(0, histogram.getCount());
+        Assert.assertEquals(0, histogram.getMax());
+        Assert.assertEquals(0, histogram.getPercentile(99));
+        Assert.assertEquals(0.0, histogram.getMean(), 0.0);
+    }
+
+    @Test
+    public void buckets_CoverEveryValue_WithoutGaps() {
+        // Ogni valore cade in un bucket il cui limite superiore lo contiene, e i bucket sono contigui.
+        for (long value = 0; value < 100_000; value++) {
+            int index = LatencyHistogram.bucketIndex(value);
+            Assert.assertTrue(value <= LatencyHistogram.bucketUpperBound(index));
+            if (index > 0) {
+                Assert.assertTrue(value > LatencyHistogram.bucketUpperBound(index - 1));
+            }
+        }
+        long huge = 1L << 62;
+        Assert.assertTrue(huge <= LatencyHistogram.bucketUpperBound(LatencyHistogram.bucketIndex(huge)));
+    }
+
+    private static void assertClose(long expected, long actual) {
+        Assert.assertEquals(expected, actual, expected * 0.125);
+    }
+}
@@ -0,0 +1,57 @@
+package com.github.matteoCarda.simplerougelike.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ObjectPoolTest {
+
+    @Test
+    public void acquire_ReusesReleasedInstances_AndCreatesOnlyWhenEmpty() {
+        ObjectPool<StringBuilder> pool = new ObjectPool<>(StringBuilder::new, 4);
+
+        StringBuilder first = pool.acquire();
+        Assert.assertTrue(pool.release(first));
+        StringBuilder second = pool.acquire();
+        StringBuilder third = pool.acquire();
+
+        // L'istanza rilasciata torna per prima; la successiva va creata.
+        Assert.assertSame(first, second);
+        Assert.assertNotSame(first, third);
+        Assert.assertEquals(2, pool.getCreatedCount());
+        Assert.assertEquals(1, pool.getReusedCount());
+        Assert.assertEquals(1, pool.getReleasedCount());
+        Assert.assertEquals(0, pool.getFreeCount());
+    }
+
+    @Test
+    public void release_DropsInstancesBeyondTheCapacity() {
+        ObjectPool<StringBuilder> pool = new ObjectPool<>(StringBuilder::new, 2);
+
+        Assert.assertTrue(pool.release(new StringBuilder()));
+        Assert.assertTrue(pool.release(new StringBuilder()));
+        Assert.assertFalse(pool.release(new StringBuilder()));
+
+        Assert.assertEquals(2, pool.getFreeCount());
+        Assert.assertEquals(1, pool.getDroppedCount());
+    }
+
+    @Test
+    public void prefill_CreatesUpToTheCapacity_SoAcquireDoesNotCreate() {
+        ObjectPool<StringBuilder> pool = new ObjectPool<>(StringBuilder::new, 3);
+
+        pool.prefill(5);
+        long created = pool.getCreatedCount();
+        for (int i = 0; i < 3; i++) {
+            pool.acquire();
+        }
+
+        Assert.assertEquals(3, created);
+        Assert.assertEquals(3, pool.getCreatedCount());
+        Assert.assertEquals(3, pool.getReusedCount());
+
+        // Una riserva già sufficiente non crea altro.
+        pool.release(new StringBuilder());
+        pool.prefill(1);
+        Assert.assertEquals(3, pool.getCreatedCount());
+    }
+}
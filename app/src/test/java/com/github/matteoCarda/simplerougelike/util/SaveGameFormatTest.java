@@ -0,0 +1,126 @@
+package com.github.matteoCarda.simplerougelike.util;
+
+import com.github.matteoCarda.simplerougelike.model.ChunkedTerrain;
+import com.github.matteoCarda.simplerougelike.model.GameMap;
+import com.github.matteoCarda.simplerougelike.model.entity.Enemy;
+import com.github.matteoCarda.simplerougelike.model.entity.Item;
+import com.github.matteoCarda.simplerougelike.model.entity.PotionItem;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class SaveGameFormatTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void writeAndRead_RoundTripsTheWholeLevel() throws IOException {
+        // Arrange
+        GameMap original = new MapGenerator(21L).generateMap(80, 60, 15, 8);
+        original.getPlayer().setHealth(42.5);
+        original.getPlayer().getInventory().add(new PotionItem(1, 2));
+        original.getEnemies().get(3).setHealth(7.0);
+        original.getEnemies().get(4).setSpeed(250);
+        original.getEnemies().get(2).setSightRadius(12);
+        original.getEnemies().get(2).setLastSeen(5, 6, 3);
+        original.getPlayer().setSpeed(150);
+        Path file = folder.getRoot().toPath().resolve("save.bin");
+
+        // Act
+        SaveGameFormat.write(new SaveGameFormat.SaveData(original, 1234L, 77L, 9999L), file);
+        SaveGameFormat.SaveData loaded = SaveGameFormat.read(file);
+
+        // Assert
+        GameMap copy = loaded.getGameMap();
+        Assert.assertEquals(1234L, loaded.getSeed());
+        Assert.assertEquals(77L, loaded.getTurnCount());
+        Assert.assertEquals(9999L, loaded.getTime());
+        Assert.assertEquals(150, copy.getPlayer().getSpeed());
+        Assert.assertEquals(original.getWidth(), copy.getWidth());
+        Assert.assertEquals(original.getHeight(), copy.getHeight());
+        for (int x = 0; x < original.getWidth(); x++) {
+            for (int y = 0; y < original.getHeight(); y++) {
+                Assert.assertEquals(original.isWalkable(x, y), copy.isWalkable(x, y));
+            }
+        }
+        Assert.assertEquals(original.getPlayer().getX(), copy.getPlayer().getX());
+        Assert.assertEquals(original.getPlayer().getY(), copy.getPlayer().getY());
+        Assert.assertEquals(42.5, copy.getPlayer().getHealth(), 0.0);
+        Assert.assertEquals(1, copy.getPlayer().getInventory().size());
+        Assert.assertTrue(copy.getPlayer().getInventory().get(0) instanceof PotionItem);
+
+        Assert.assertEquals(original.getEnemies().size(), copy.getEnemies().size());
+        for (int i = 0; i < original.getEnemies().size(); i++) {
+            Enemy expected = original.getEnemies().get(i);
+            Enemy actual = copy.getEnemies().get(i);
+            Assert.assertEquals(expected.getX(), actual.getX());
+            Assert.assertEquals(expected.getY(), actual.getY());
+            Assert.assertEquals(expected.getHealth(), actual.getHealth(), 0.0);
+            Assert.assertEquals(expected.getMaxHealth(), actual.getMaxHealth(), 0.0);
+            Assert.assertEquals(expected.getSpeed(), actual.getSpeed());
+            Assert.assertEquals(expected.getSightRadius(), actual.getSightRadius());
+            Assert.assertEquals(expected.getLastSeenX(), actual.getLastSeenX());
+            Assert.assertEquals(expected.getLastSeenY(), actual.getLastSeenY());
+            Assert.assertEquals(expected.getMemory(), actual.getMemory());
+            // L'indice di occupazione viene ricostruito.
+            Assert.assertSame(actual, copy.getEnemyAt(actual.getX(), actual.getY()));
+        }
+        Assert.assertEquals(original.getItems().size(), copy.getItems().size());
+        for (Item item : original.getItems()) {
+            Assert.assertNotNull(copy.getItemAt(item.getX(), item.getY()));
+        }
+    }
+
+    @Test
+    public void encode_PacksTerrainToOneBitPerCell() {
+        GameMap gameMap = new MapGenerator(3L).generateMap(1000, 1000, 50, 20);
+
+        ByteBuffer encoded = SaveGameFormat.encode(new SaveGameFormat.SaveData(gameMap, 0L, 0L));
+
+        // 125.000 byte di terreno più intestazione, giocatore ed entità.
+        Assert.assertTrue("Byte: " + encoded.remaining(), encoded.remaining() < 1000 * 1000 / 8 + 4096);
+    }
+
+    @Test
+    public void encode_ChunkedWorld_StoresOnlyTheGeneratorSeed() throws IOException {
+        GameMap world = new MapGenerator(9L).generateChunkedMap(ChunkedTerrain.MAX_SIDE, ChunkedTerrain.MAX_SIDE, 5, 5);
+
+        ByteBuffer encoded = SaveGameFormat.encode(new SaveGameFormat.SaveData(world, 9L, 3L));
+        GameMap copy = SaveGameFormat.decode(encoded).getGameMap();
+
+        Assert.assertTrue(encoded.limit() < 1024);
+        Assert.assertTrue(copy.getTerrain() instanceof ChunkedTerrain);
+        int px = world.getPlayer().getX();
+        int py = world.getPlayer().getY();
+        for (int x = px - 100; x <= px + 100; x++) {
+            Assert.assertEquals(world.isWalkable(x, py), copy.isWalkable(x, py));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void read_RejectsCorruptedFile() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("save.bin");
+        SaveGameFormat.write(new SaveGameFormat.SaveData(new MapGenerator(4L).generateMap(30, 30, 2, 2), 0L, 0L), file);
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 0x10;
+        Files.write(file, bytes);
+
+        SaveGameFormat.read(file);
+    }
+
+    @Test(expected = IOException.class)
+    public void decode_RejectsOtherVersions() throws IOException {
+        ByteBuffer encoded = SaveGameFormat.encode(new SaveGameFormat.SaveData(new MapGenerator(4L).generateMap(30, 30, 2, 2), 0L, 0L));
+        encoded.putShort(4, (short) (SaveGameFormat.VERSION + 1));
+
+        SaveGameFormat.decode(encoded);
+    }
+}
@@ -0,0 +1,46 @@
+package com.github.matteoCarda.simplerougelike.view;
+
+import com.github.matteoCarda.simplerougelike.service.GameEventBus;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CombatLogTest {
+
+    @Test
+    public void update_AddsLinesForCombatAndPickups_ButNotForMoves() {
+        GameEventBus bus = new GameEventBus(16);
+        CombatLog combatLog = new CombatLog(bus);
+
+        // Act
+        bus.publish(GameEventBus.MOVE, GameEventBus.ACTOR_PLAYER, -1, 1, 1, 0);
+        bus.publish(GameEventBus.ATTACK, GameEventBus.ACTOR_PLAYER, 0, 2, 1, 10);
+        bus.publish(GameEventBus.DAMAGE, 0, GameEventBus.ACTOR_PLAYER, 2, 1, 20);
+        bus.publish(GameEventBus.ATTACK, 0, GameEventBus.ACTOR_PLAYER, 1, 1, 5);
+        bus.publish(GameEventBus.PICKUP, GameEventBus.ACTOR_PLAYER, 4, 1, 1, 0);
+
+        // Assert
+        Assert.assertTrue(combatLog.update());
+        Assert.assertEquals(3, combatLog.getLineCount());
+        Assert.assertEquals("Colpisci il nemico: 10 danni", combatLog.getLine(0));
+        Assert.assertEquals("Un nemico ti colpisce: 5 danni", combatLog.getLine(1));
+        Assert.assertEquals("Hai raccolto un oggetto", combatLog.getLine(2));
+        Assert.assertFalse(combatLog.update());
+    }
+
+    @Test
+    public void update_KeepsOnlyTheMostRecentLines() {
+        GameEventBus bus = new GameEventBus(16);
+        CombatLog combatLog = new CombatLog(bus);
+
+        for (int i = 0; i < CombatLog.MAX_LINES + 2; i++) {
+            bus.publish(GameEventBus.ATTACK, GameEventBus.ACTOR_PLAYER, 0, 0, 0, i);
+        }
+        bus.publish(GameEventBus.DEATH, 0, GameEventBus.ACTOR_PLAYER, 0, 0, 0);
+        combatLog.update();
+
+        Assert.assertEquals(CombatLog.MAX_LINES, combatLog.getLineCount());
+        Assert.assertEquals("Colpisci il nemico: 3 danni", combatLog.getLine(0));
+        Assert.assertEquals("Nemico sconfitto", combatLog.getLine(CombatLog.MAX_LINES - 1));
+    }
+}
@@ -0,0 +1,76 @@
+package com.github.matteoCarda.simplerougelike.view;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.StringWriter;
+
+public class FrameStatsTest {
+
+    private static final long PERIOD = FrameStats.DEFAULT_FRAME_PERIOD_NANOS;
+
+    @Test
+    public void recordFrame_KeepsOnlyTheLastFrames_OldestFirst() {
+        FrameStats stats = new FrameStats();
+
+        // Act: più frame della capacità.
+        for (int i = 0; i < FrameStats.CAPACITY + 10; i++) {
+            stats.recordFrame(i * PERIOD, i, i % 7, i % 5, i % 3);
+        }
+
+        // Assert
+        Assert.assertEquals(FrameStats.CAPACITY + 10, stats.getFrameCount());
+        Assert.assertEquals(FrameStats.CAPACITY, stats.getWindowSize());
+        Assert.assertEquals(10, stats.getDuration(0));
+        Assert.assertEquals(FrameStats.CAPACITY + 9, stats.getDuration(FrameStats.CAPACITY - 1));
+        Assert.assertEquals((FrameStats.CAPACITY + 9) % 7, stats.getTiles(FrameStats.CAPACITY - 1));
+        Assert.assertEquals(FrameStats.CAPACITY + 9, stats.getMaxDuration());
+    }
+
+    @Test
+    public void onVsync_CountsLateFramesAsJank_WithTheFramesLost() {
+        FrameStats stats = new FrameStats();
+        long time = 1_000_000L;
+
+        // Act: vsync regolari, poi un buco di tre periodi e uno appena oltre il periodo (non jank).
+        for (int i = 0; i < 10; i++) {
+            stats.onVsync(time);
+            time += PERIOD;
+        }
+        time += 2 * PERIOD;
+        stats.onVsync(time);
+        stats.onVsync(time + PERIOD + PERIOD / 4);
+
+        // Assert
+        Assert.assertEquals(1, stats.getJankCount());
+        Assert.assertEquals(2, stats.getDroppedFrames());
+    }
+
+    @Test
+    public void resetVsync_DoesNotCountThePauseAsJank() {
+        FrameStats stats = new FrameStats();
+        stats.onVsync(PERIOD);
+
+        stats.resetVsync();
+        stats.onVsync(100 * PERIOD);
+        stats.onVsync(101 * PERIOD);
+
+        Assert.assertEquals(0, stats.getJankCount());
+    }
+
+    @Test
+    public void writeCsv_WritesAHeaderAndOneRowPerFrame() throws Exception {
+        FrameStats stats = new FrameStats();
+        stats.recordFrame(100, 2_000_000, 300, 4, 12);
+        stats.onVsync(PERIOD);
+        stats.onVsync(5 * PERIOD);
+        stats.recordFrame(200, 3_000_000, 310, 5, 14);
+
+        StringWriter writer = new StringWriter();
+        stats.writeCsv(writer);
+
+        Assert.assertEquals("frame,start_ns,duration_ns,tiles,entities,draw_calls,janks\n"
+                + "0,100,2000000,300,4,12,0\n"
+                + "1,200,3000000,310,5,14,1\n", writer.toString());
+    }
+}
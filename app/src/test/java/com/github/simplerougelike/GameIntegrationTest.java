@@ -1,21 +1,51 @@
 package com.github.simplerougelike;
 
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import static org.junit.Assert.*;
 
+import com.github.matteoCarda.simplerougelike.controller.GameController;
+import com.github.matteoCarda.simplerougelike.controller.JournalReplayer;
+import com.github.matteoCarda.simplerougelike.controller.TurnJournal;
 import com.github.matteoCarda.simplerougelike.model.GameMap;
 import com.github.matteoCarda.simplerougelike.model.entity.Enemy;
 import com.github.matteoCarda.simplerougelike.model.entity.Player;
 import com.github.matteoCarda.simplerougelike.service.CharacterService;
 import com.github.matteoCarda.simplerougelike.service.CombatService;
 import com.github.matteoCarda.simplerougelike.service.EnemyAIService;
+import com.github.matteoCarda.simplerougelike.service.SpawnRules;
 import com.github.matteoCarda.simplerougelike.util.MapGenerator;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
 import squidpony.squidai.DijkstraMap;
 
 public class GameIntegrationTest {
 
+    private static final int TURNS = 2 * TurnJournal.KEYFRAME_INTERVAL + 100;
+
+    // Partita registrata una volta e salvata tra le risorse dei test, con le impronte attese (turno, tab, impronta).
+    // Se un cambio di regole o di bilanciamento la fa fallire di proposito, va rigenerata con {@link #main}.
+    private static final String GOLDEN_JOURNAL = "golden-journal.bin";
+    private static final String GOLDEN_FINGERPRINTS = "golden-journal.txt";
+    private static final SpawnRules GOLDEN_SPAWN_RULES = SpawnRules.NONE.withEnemyWaves(60, 2, 14).withItems(40, 6);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Test
     public void enemyChasesAndAttacksPlayer_IntegrationTest() {
         // Arrange: Creiamo le istanze REALI di tutti i servizi
@@ -44,4 +74,156 @@ public class GameIntegrationTest {
         assertTrue("La salute del giocatore dovrebbe essere diminuita dopo l'attacco", player.getHealth() < playerInitialHealth);
         Assert.assertEquals(100.0 - enemy.getAttackPower(), player.getHealth(), 0.0);
     }
+
+    @Test
+    public void journalReplay_MatchesLiveGame_InParallelMode() throws Exception {
+        assertReplayMatchesLiveGame(true, SpawnRules.NONE);
+    }
+
+    @Test
+    public void journalReplay_MatchesLiveGame_InSequentialMode() throws Exception {
+        assertReplayMatchesLiveGame(false, SpawnRules.NONE);
+    }
+
+    @Test
+    public void journalReplay_MatchesLiveGame_WithSpawnRules() throws Exception {
+        // Le comparse dipendono dalle regole registrate: il replay (anche dai fotogrammi chiave) le rifà identiche.
+        long spawnedBefore = GameController.getInstance().getSpawnService().getSpawnedEnemyCount();
+        assertReplayMatchesLiveGame(true, SpawnRules.NONE.withEnemyWaves(60, 2, 14).withItems(40, 6));
+        Assert.assertTrue(GameController.getInstance().getSpawnService().getSpawnedEnemyCount() > spawnedBefore);
+    }
+
+    @Test
+    public void journalReplay_IgnoresTruncatedTail() throws Exception {
+        Path file = folder.newFile("journal.bin").toPath();
+        List<String> live = playRecorded(file, true, SpawnRules.NONE);
+
+        // Simula un processo chiuso a metà scrittura: l'ultimo fotogramma chiave resta incompleto.
+        long size = Files.size(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 10);
+        }
+
+        JournalReplayer replayer = JournalReplayer.open(file);
+        int level = replayer.getLevelCount() - 1;
+        long lastTurn = replayer.getTurnCount(level);
+        Assert.assertTrue(lastTurn >= TurnJournal.KEYFRAME_INTERVAL);
+        Assert.assertEquals(live.get((int) lastTurn), fingerprint(replayer.replay(level)));
+    }
+
+    @Test
+    public void goldenJournal_ReplaysToTheRecordedStates() throws Exception {
+        // Arrange: il registro è una risorsa, ma il replayer lo vuole su file.
+        Path file = folder.newFile(GOLDEN_JOURNAL).toPath();
+        try (InputStream journal = GameIntegrationTest.class.getResourceAsStream(GOLDEN_JOURNAL)) {
+            Assert.assertNotNull("Risorsa mancante: " + GOLDEN_JOURNAL, journal);
+            Files.copy(journal, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        List<String> expected = readResourceLines(GOLDEN_FINGERPRINTS);
+        JournalReplayer replayer = JournalReplayer.open(file);
+        Assert.assertEquals(1, replayer.getLevelCount());
+
+        // Act + Assert: l'ultima riga è lo stato finale; ogni riga è confrontata anche con un salto a quel turno.
+        String[] last = expected.get(expected.size() - 1).split("\t", 2);
+        Assert.assertEquals(Long.parseLong(last[0]), replayer.getTurnCount(0));
+        Assert.assertEquals(last[1], fingerprint(replayer.replay(0)));
+        for (String line : expected) {
+            String[] fields = line.split("\t", 2);
+            long turn = Long.parseLong(fields[0]);
+            Assert.assertEquals("Stato diverso al turno " + turn, fields[1], fingerprint(replayer.seek(0, turn)));
+        }
+    }
+
+    /**
+     * Rigenera la partita di riferimento: scrive registro e impronte attese nella cartella indicata
+     * (di solito app/src/test/resources/com/github/simplerougelike).
+     */
+    public static void main(String[] args) throws Exception {
+        Path directory = Paths.get(args[0]);
+        List<String> live = playRecorded(directory.resolve(GOLDEN_JOURNAL), true, GOLDEN_SPAWN_RULES);
+        long[] turns = { 0, TurnJournal.KEYFRAME_INTERVAL - 1, TurnJournal.KEYFRAME_INTERVAL + 37, live.size() - 1 };
+        StringBuilder lines = new StringBuilder();
+        for (long turn : turns) {
+            lines.append(turn).append('\t').append(live.get((int) turn)).append('\n');
+        }
+        Files.write(directory.resolve(GOLDEN_FINGERPRINTS), lines.toString().getBytes(StandardCharsets.UTF_8));
+        // Il pool dei turni paralleli non deve tenere in vita la JVM.
+        System.exit(0);
+    }
+
+    private static List<String> readResourceLines(String name) throws IOException {
+        try (InputStream input = GameIntegrationTest.class.getResourceAsStream(name)) {
+            Assert.assertNotNull("Risorsa mancante: " + name, input);
+            List<String> lines = new ArrayList<>();
+            for (String line : new String(input.readAllBytes(), StandardCharsets.UTF_8).split("\n")) {
+                if (!line.isEmpty()) lines.add(line);
+            }
+            return lines;
+        }
+    }
+
+    private void assertReplayMatchesLiveGame(boolean parallel, SpawnRules spawnRules) throws Exception {
+        Path file = folder.newFile("journal-" + parallel + ".bin").toPath();
+        List<String> live = playRecorded(file, parallel, spawnRules);
+
+        JournalReplayer replayer = JournalReplayer.open(file);
+        // Se il controller aveva già una partita in corso, il registro parte da quella: la nostra è l'ultima.
+        int level = replayer.getLevelCount() - 1;
+        Assert.assertEquals(0, replayer.getStartTurn(level));
+        long lastTurn = replayer.getTurnCount(level);
+        Assert.assertEquals(live.size() - 1, lastTurn);
+        Assert.assertTrue("La partita deve superare almeno due fotogrammi chiave", lastTurn > 2 * TurnJournal.KEYFRAME_INTERVAL);
+
+        // Replay completo dall'inizio.
+        Assert.assertEquals(live.get((int) lastTurn), fingerprint(replayer.replay(level)));
+
+        // Salti prima, sopra e dopo i fotogrammi chiave.
+        long[] targets = { 0, 1, TurnJournal.KEYFRAME_INTERVAL - 1, TurnJournal.KEYFRAME_INTERVAL,
+                TurnJournal.KEYFRAME_INTERVAL + 37, 2 * TurnJournal.KEYFRAME_INTERVAL + 1, lastTurn };
+        for (long turn : targets) {
+            GameController seeked = replayer.seek(level, turn);
+            Assert.assertEquals(turn, seeked.getTurnCount());
+            Assert.assertEquals("Stato diverso al turno " + turn, live.get((int) turn), fingerprint(seeked));
+        }
+    }
+
+    /**
+     * Gioca una partita con mosse pseudo-casuali registrandola nel file.
+     * @return L'impronta dello stato dopo ogni turno (l'elemento i è lo stato dopo i turni).
+     */
+    private static List<String> playRecorded(Path file, boolean parallel, SpawnRules spawnRules) throws Exception {
+        GameController controller = GameController.getInstance();
+        GameController.Direction[] directions = GameController.Direction.values();
+        Random moves = new Random(7L);
+        List<String> fingerprints = new ArrayList<>();
+        try (TurnJournal journal = TurnJournal.create(file)) {
+            controller.setJournal(journal);
+            controller.setParallelEnemyTurns(parallel);
+            controller.setSpawnRules(spawnRules);
+            controller.startNewGame(60, 60, 12, 4, 1234L);
+            fingerprints.add(fingerprint(controller));
+            for (int i = 0; i < TURNS && controller.getGameState() == GameController.GameState.PLAYING; i++) {
+                controller.handlePlayerTurn(directions[moves.nextInt(directions.length)]);
+                fingerprints.add(fingerprint(controller));
+            }
+        } finally {
+            controller.setJournal(null);
+            controller.setParallelEnemyTurns(true);
+            controller.setSpawnRules(SpawnRules.NONE);
+        }
+        return fingerprints;
+    }
+
+    private static String fingerprint(GameController controller) {
+        GameMap gameMap = controller.getGameMap();
+        Player player = gameMap.getPlayer();
+        StringBuilder builder = new StringBuilder()
+                .append(controller.getTurnCount()).append(' ').append(controller.getGameState())
+                .append(" P ").append(player.getX()).append(',').append(player.getY()).append(',').append(player.getHealth())
+                .append(" I ").append(gameMap.getItems().size());
+        for (Enemy enemy : gameMap.getEnemies()) {
+            builder.append(" E ").append(enemy.getX()).append(',').append(enemy.getY()).append(',').append(enemy.getHealth());
+        }
+        return builder.toString();
+    }
 }
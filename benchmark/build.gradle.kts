@@ -0,0 +1,44 @@
+// Modulo JVM puro con i micro-benchmark JMH della logica di gioco.
+// Compila direttamente i sorgenti non Android di :app (modello, servizi, controller, utilità),
+// così i benchmark misurano esattamente lo stesso codice del gioco senza bisogno di un dispositivo.
+// Esecuzione: ./gradlew :benchmark:jmh (risultati in build/results/jmh/results.json).
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+sourceSets {
+    main {
+        java {
+            srcDir("../app/src/main/java")
+            // Le classi che dipendono dal framework Android restano fuori.
+            exclude("**/activity/**", "**/view/**")
+        }
+    }
+}
+
+tasks.withType<JavaCompile>().configureEach {
+    // I commenti dei sorgenti sono in italiano, con lettere accentate.
+    options.encoding = "UTF-8"
+}
+
+dependencies {
+    implementation("com.github.yellowstonegames:squidlib:3.0.6")
+    jmh(libs.jmh.core)
+    jmh(libs.jmh.generator.annprocess)
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    // Misura anche le allocazioni per operazione (gc.alloc.rate.norm).
+    profilers.add("gc")
+    resultFormat.set("JSON")
+}
@@ -0,0 +1,24 @@
+package com.github.matteoCarda.simplerougelike.benchmark;
+
+/**
+ * Parametri condivisi dai benchmark per costruire i livelli.
+ * Il seme è fisso, così ogni esecuzione misura gli stessi livelli e gli stessi turni.
+ */
+final class BenchmarkLevels {
+
+    static final long MAP_SEED = 0x5EED_1234L;
+
+    private BenchmarkLevels() {
+    }
+
+    /**
+     * Limita un numero di entità a una frazione delle celle della mappa, così le combinazioni
+     * di parametri "mappa piccola, tante entità" non esauriscono il pavimento disponibile.
+     * @param count Il numero richiesto dal parametro del benchmark.
+     * @param size Il lato della mappa quadrata.
+     * @param cellsPerEntity Quante celle della mappa servono per ogni entità.
+     */
+    static int fit(int count, int size, int cellsPerEntity) {
+        return Math.min(count, size * size / cellsPerEntity);
+    }
+}
@@ -0,0 +1,71 @@
+package com.github.matteoCarda.simplerougelike.benchmark;
+
+import com.github.matteoCarda.simplerougelike.controller.GameController;
+import com.github.matteoCarda.simplerougelike.model.GameMap;
+import com.github.matteoCarda.simplerougelike.service.FieldOfView;
+import com.github.matteoCarda.simplerougelike.util.MapGenerator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import squidpony.squidgrid.FOV;
+
+/**
+ * Misura il ricalcolo del campo visivo del giocatore con lo stesso raggio di {@code GameController}:
+ * il {@link FieldOfView} incrementale usato dal gioco e, come riferimento, {@code FOV.reuseFOV} di SquidLib
+ * su matrici grandi quanto la mappa.
+ * Il punto di osservazione alterna tra due celle calpestabili vicine.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class FovBenchmark {
+
+    @Param({"50", "200", "500", "1000"})
+    public int size;
+
+    private FieldOfView fieldOfView;
+    private double[][] resistanceMap;
+    private double[][] playerFov;
+    private int[] originsX;
+    private int[] originsY;
+    private int turn;
+
+    @Setup
+    public void setUp() {
+        GameMap gameMap = new MapGenerator(BenchmarkLevels.MAP_SEED).generateMap(size, size, 0, 0);
+        resistanceMap = new double[size][size];
+        playerFov = new double[size][size];
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                resistanceMap[x][y] = gameMap.isWalkable(x, y) ? 0.0 : 1.0;
+            }
+        }
+        fieldOfView = new FieldOfView(gameMap, GameController.PLAYER_VISION_RADIUS);
+        int x = gameMap.getPlayer().getX();
+        int y = gameMap.getPlayer().getY();
+        int otherY = gameMap.isWalkable(x, y + 1) ? y + 1 : (gameMap.isWalkable(x, y - 1) ? y - 1 : y);
+        originsX = new int[] { x, x };
+        originsY = new int[] { y, otherY };
+    }
+
+    @Benchmark
+    public boolean incrementalFov() {
+        int origin = turn++ & 1;
+        return fieldOfView.update(originsX[origin], originsY[origin]);
+    }
+
+    @Benchmark
+    public double[][] squidLibFov() {
+        int origin = turn++ & 1;
+        return FOV.reuseFOV(resistanceMap, playerFov, originsX[origin], originsY[origin], GameController.PLAYER_VISION_RADIUS);
+    }
+}
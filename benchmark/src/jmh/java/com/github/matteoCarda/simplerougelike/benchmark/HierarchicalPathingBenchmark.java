@@ -0,0 +1,65 @@
+package com.github.matteoCarda.simplerougelike.benchmark;
+
+import com.github.matteoCarda.simplerougelike.model.GameMap;
+import com.github.matteoCarda.simplerougelike.service.HierarchicalPathfinder;
+import com.github.matteoCarda.simplerougelike.util.MapGenerator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Misura i percorsi lunghi del pathfinding gerarchico tra coppie casuali di celle calpestabili.
+ * I blocchi del livello vengono costruiti nel setup, quindi la misura riguarda solo la ricerca sul grafo dei portali
+ * e il raffinamento locale, come per un viaggio su un livello già esplorato.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HierarchicalPathingBenchmark {
+
+    private static final int PAIRS = 64;
+
+    @Param({"200", "1000"})
+    public int size;
+
+    private HierarchicalPathfinder pathfinder;
+    private final int[] startsX = new int[PAIRS];
+    private final int[] startsY = new int[PAIRS];
+    private final int[] goalsX = new int[PAIRS];
+    private final int[] goalsY = new int[PAIRS];
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        GameMap gameMap = new MapGenerator(BenchmarkLevels.MAP_SEED).generateMap(size, size, 0, 0);
+        pathfinder = new HierarchicalPathfinder(gameMap);
+        Random random = new Random(BenchmarkLevels.MAP_SEED);
+        int found = 0;
+        while (found < PAIRS) {
+            int sx = random.nextInt(size), sy = random.nextInt(size), gx = random.nextInt(size), gy = random.nextInt(size);
+            // Solo coppie collegate: la prima ricerca costruisce anche i blocchi attraversati.
+            if (pathfinder.findPath(sx, sy, gx, gy) == null) continue;
+            startsX[found] = sx;
+            startsY[found] = sy;
+            goalsX[found] = gx;
+            goalsY[found] = gy;
+            found++;
+        }
+    }
+
+    @Benchmark
+    public int[] findPath() {
+        int pair = next++ % PAIRS;
+        return pathfinder.findPath(startsX[pair], startsY[pair], goalsX[pair], goalsY[pair]);
+    }
+}
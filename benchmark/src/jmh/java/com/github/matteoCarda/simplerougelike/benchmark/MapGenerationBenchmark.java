@@ -0,0 +1,50 @@
+package com.github.matteoCarda.simplerougelike.benchmark;
+
+import com.github.matteoCarda.simplerougelike.model.ChunkedTerrain;
+import com.github.matteoCarda.simplerougelike.model.GameMap;
+import com.github.matteoCarda.simplerougelike.util.MapGenerator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Misura la generazione procedurale di un livello completo (terreno, giocatore, nemici e oggetti).
+ * Ogni invocazione usa un generatore con seme fisso, quindi genera sempre la stessa mappa.
+ * Sulle mappe piccole il numero di entità viene limitato da {@link BenchmarkLevels#fit}.
+ * Per confronto, {@link #generateChunkedWorld} misura l'avvio di un mondo a blocchi di lato massimo,
+ * che genera solo la zona di partenza e non dipende da {@code size}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MapGenerationBenchmark {
+
+    @Param({"50", "200", "500", "1000"})
+    public int size;
+
+    @Param({"20", "500", "5000"})
+    public int enemyCount;
+
+    @Param({"10", "500"})
+    public int itemCount;
+
+    @Benchmark
+    public GameMap generateMap() {
+        return new MapGenerator(BenchmarkLevels.MAP_SEED).generateMap(size, size,
+                BenchmarkLevels.fit(enemyCount, size, 10), BenchmarkLevels.fit(itemCount, size, 20));
+    }
+
+    @Benchmark
+    public GameMap generateChunkedWorld() {
+        int startArea = 3 * ChunkedTerrain.CHUNK_SIZE;
+        return new MapGenerator(BenchmarkLevels.MAP_SEED).generateChunkedMap(ChunkedTerrain.MAX_SIDE, ChunkedTerrain.MAX_SIDE,
+                BenchmarkLevels.fit(enemyCount, startArea, 10), BenchmarkLevels.fit(itemCount, startArea, 20));
+    }
+}
@@ -0,0 +1,88 @@
+package com.github.matteoCarda.simplerougelike.benchmark;
+
+import com.github.matteoCarda.simplerougelike.model.GameMap;
+import com.github.matteoCarda.simplerougelike.model.entity.Enemy;
+import com.github.matteoCarda.simplerougelike.model.entity.Player;
+import com.github.matteoCarda.simplerougelike.service.CharacterService;
+import com.github.matteoCarda.simplerougelike.service.CombatService;
+import com.github.matteoCarda.simplerougelike.service.EnemyAIService;
+import com.github.matteoCarda.simplerougelike.util.MapGenerator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import squidpony.squidai.DijkstraMap;
+
+/**
+ * Misura il pathfinding dei nemici: la scansione della mappa di Dijkstra verso il giocatore
+ * (limitata al raggio di aggro o completa) e il turno dell'IA su tutti i nemici.
+ * L'obiettivo alterna tra due celle vicine, come un giocatore che si muove a ogni turno,
+ * così ogni invocazione esegue davvero una nuova scansione.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PathingBenchmark {
+
+    @Param({"50", "200", "500", "1000"})
+    public int size;
+
+    @Param({"20", "500"})
+    public int enemyCount;
+
+    @Param({"true", "false"})
+    public boolean boundedScan;
+
+    private EnemyAIService enemyAIService;
+    private GameMap gameMap;
+    private Player player;
+    private int[] goalsX;
+    private int[] goalsY;
+    private int turn;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        CharacterService characterService = new CharacterService();
+        enemyAIService = new EnemyAIService(new CombatService(characterService), characterService);
+        enemyAIService.setSeed(BenchmarkLevels.MAP_SEED);
+        enemyAIService.setBoundedScan(boundedScan);
+        gameMap = new MapGenerator(BenchmarkLevels.MAP_SEED).generateMap(size, size, BenchmarkLevels.fit(enemyCount, size, 10), 0);
+        player = gameMap.getPlayer();
+
+        // Due obiettivi calpestabili: la cella del giocatore e una vicina, se esiste.
+        int x = player.getX();
+        int y = player.getY();
+        int otherX = gameMap.isWalkable(x + 1, y) ? x + 1 : (gameMap.isWalkable(x - 1, y) ? x - 1 : x);
+        goalsX = new int[] { x, otherX };
+        goalsY = new int[] { y, y };
+        turn = 0;
+    }
+
+    @Benchmark
+    public DijkstraMap scanToPlayer() {
+        int goal = turn++ & 1;
+        return enemyAIService.getDijkstraMapTo(gameMap, goalsX[goal], goalsY[goal]);
+    }
+
+    @Benchmark
+    public DijkstraMap enemyTurns() {
+        int goal = turn++ & 1;
+        DijkstraMap dijkstraMap = enemyAIService.getDijkstraMapTo(gameMap, goalsX[goal], goalsY[goal]);
+        player.setHealth(player.getMaxHealth());
+        List<Enemy> enemies = gameMap.getEnemies();
+        for (int i = 0; i < enemies.size(); i++) {
+            enemyAIService.performTurn(enemies.get(i), gameMap, player, dijkstraMap);
+        }
+        return dijkstraMap;
+    }
+}
@@ -0,0 +1,78 @@
+package com.github.matteoCarda.simplerougelike.benchmark;
+
+import com.github.matteoCarda.simplerougelike.model.GameMap;
+import com.github.matteoCarda.simplerougelike.util.MapGenerator;
+import com.github.matteoCarda.simplerougelike.util.SaveGameFormat;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Misura il salvataggio e la ripresa di una partita con {@link SaveGameFormat}:
+ * codifica in memoria, scrittura su file tramite FileChannel e lettura tramite file mappato.
+ * La dimensione del salvataggio (circa un ottavo di byte per cella più 32 byte per nemico) è verificata
+ * da {@code SaveGameFormatTest}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SaveGameBenchmark {
+
+    @Param({"50", "200", "500", "1000"})
+    public int size;
+
+    private SaveGameFormat.SaveData saveData;
+    private ByteBuffer encoded;
+    private Path directory;
+    private Path saveFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        GameMap gameMap = new MapGenerator(BenchmarkLevels.MAP_SEED).generateMap(size, size,
+                BenchmarkLevels.fit(500, size, 10), BenchmarkLevels.fit(100, size, 20));
+        saveData = new SaveGameFormat.SaveData(gameMap, BenchmarkLevels.MAP_SEED, 0L);
+        encoded = SaveGameFormat.encode(saveData);
+        directory = Files.createTempDirectory("save-benchmark");
+        saveFile = directory.resolve("save.bin");
+        SaveGameFormat.write(saveData, saveFile);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(saveFile);
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public ByteBuffer encode() {
+        return SaveGameFormat.encode(saveData);
+    }
+
+    @Benchmark
+    public SaveGameFormat.SaveData decodeFromMemory() throws IOException {
+        return SaveGameFormat.decode(encoded.duplicate());
+    }
+
+    @Benchmark
+    public void writeFile() throws IOException {
+        SaveGameFormat.write(saveData, saveFile);
+    }
+
+    @Benchmark
+    public SaveGameFormat.SaveData readMappedFile() throws IOException {
+        return SaveGameFormat.read(saveFile);
+    }
+}
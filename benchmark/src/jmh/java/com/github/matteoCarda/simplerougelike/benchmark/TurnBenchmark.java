@@ -0,0 +1,63 @@
+package com.github.matteoCarda.simplerougelike.benchmark;
+
+import com.github.matteoCarda.simplerougelike.controller.GameController;
+import com.github.matteoCarda.simplerougelike.model.entity.Player;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Misura un turno completo di gioco: azione del giocatore, FOV, turno dei nemici e pulizia dei morti.
+ * La partita viene rigenerata con lo stesso seme a ogni iterazione, così tutte le iterazioni
+ * partono dallo stesso stato; il giocatore viene curato prima di ogni turno per non finire la partita.
+ * Sulle mappe piccole il numero di entità viene limitato da {@link BenchmarkLevels#fit}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TurnBenchmark {
+
+    private static final GameController.Direction[] DIRECTIONS = GameController.Direction.values();
+
+    @Param({"50", "200", "500", "1000"})
+    public int size;
+
+    @Param({"20", "500", "5000"})
+    public int enemyCount;
+
+    @Param({"10", "500"})
+    public int itemCount;
+
+    @Param({"true", "false"})
+    public boolean parallel;
+
+    private GameController controller;
+    private Player player;
+    private int turn;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        controller = GameController.getInstance();
+        controller.setParallelEnemyTurns(parallel);
+        controller.startNewGame(size, size,
+                BenchmarkLevels.fit(enemyCount, size, 10), BenchmarkLevels.fit(itemCount, size, 20), BenchmarkLevels.MAP_SEED);
+        player = controller.getGameMap().getPlayer();
+        turn = 0;
+    }
+
+    @Benchmark
+    public GameController.GameState handlePlayerTurn() {
+        player.setHealth(player.getMaxHealth());
+        controller.handlePlayerTurn(DIRECTIONS[turn++ & 3]);
+        return controller.getGameState();
+    }
+}
@@ -22,4 +22,5 @@ dependencyResolutionManagement {
 
 rootProject.name = "SimpleRougeLike"
 include(":app")
+include(":benchmark")
  
\ No newline at end of file